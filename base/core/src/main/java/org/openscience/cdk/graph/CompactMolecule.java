@@ -0,0 +1,370 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.graph;
+
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * An immutable, compact, read-only view of the constitution of a molecule
+ * stored in arrays of primitives. The atoms and bonds are indexed in the
+ * same order as the {@link IAtomContainer} the view was created from. The
+ * adjacency is stored in compressed sparse row (CSR) form where the
+ * neighbors of atom {@code v} are {@code neighbors[offset(v)]} to {@code
+ * neighbors[offset(v+1)-1]}.
+ *
+ * <blockquote><pre>
+ * IAtomContainer  container = ...;
+ * CompactMolecule mol       = CompactMolecule.of(container);
+ *
+ * for (int v = 0; v &lt; mol.order(); v++) {
+ *     for (int j = mol.offset(v); j &lt; mol.offset(v + 1); j++) {
+ *         int w = mol.neighbor(j);  // adjacent atom
+ *         int e = mol.edge(j);      // index of the bond v-w
+ *         int o = mol.bondOrder(e); // order of the bond v-w
+ *     }
+ * }
+ * </pre></blockquote>
+ *
+ * The view holds no reference to the original container and is intended for
+ * hot read-only algorithms (e.g. screening) where the per-atom object and
+ * property overhead of {@link IAtomContainer} dominates. Only the atom
+ * properties listed below are captured, pseudo atoms and atoms without an
+ * atomic number have an atomic number of 0 and unset values (charge,
+ * hydrogen count and bond order) are stored as 0.
+ *
+ * @cdk.module core
+ * @cdk.githash
+ * @see GraphUtil
+ */
+@TestClass("org.openscience.cdk.graph.CompactMoleculeTest")
+public final class CompactMolecule {
+
+    /* atom properties */
+    private final byte[]    elements, charges, hydrogens;
+    private final boolean[] aromaticAtoms;
+
+    /* CSR adjacency */
+    private final int[] offsets, neighbors, edges;
+
+    /* bond properties */
+    private final int[]     us, vs;
+    private final byte[]    orders;
+    private final boolean[] aromaticBonds;
+
+    private CompactMolecule(byte[] elements, byte[] charges, byte[] hydrogens, boolean[] aromaticAtoms,
+                            int[] offsets, int[] neighbors, int[] edges,
+                            int[] us, int[] vs, byte[] orders, boolean[] aromaticBonds) {
+        this.elements      = elements;
+        this.charges       = charges;
+        this.hydrogens     = hydrogens;
+        this.aromaticAtoms = aromaticAtoms;
+        this.offsets       = offsets;
+        this.neighbors     = neighbors;
+        this.edges         = edges;
+        this.us            = us;
+        this.vs            = vs;
+        this.orders        = orders;
+        this.aromaticBonds = aromaticBonds;
+    }
+
+    /**
+     * Create a compact view of the provided container.
+     *
+     * @param container the molecule
+     * @return compact view of the molecule
+     * @throws NullPointerException     the container was null
+     * @throws IllegalArgumentException a bond was found which contained atoms
+     *                                  not in the molecule or the bond was
+     *                                  not between two atoms
+     */
+    @TestMethod("ethanol,benzene,pseudoAtom,missingAtom")
+    public static CompactMolecule of(IAtomContainer container) {
+
+        if (container == null)
+            throw new NullPointerException("atom container was null");
+
+        int n = container.getAtomCount();
+        int m = container.getBondCount();
+
+        byte[]    elements      = new byte[n];
+        byte[]    charges       = new byte[n];
+        byte[]    hydrogens     = new byte[n];
+        boolean[] aromaticAtoms = new boolean[n];
+
+        Map<IAtom, Integer> atomToIndex = new IdentityHashMap<IAtom, Integer>(2 * n);
+        for (int i = 0; i < n; i++) {
+            IAtom   atom   = container.getAtom(i);
+            Integer elem   = atom.getAtomicNumber();
+            Integer charge = atom.getFormalCharge();
+            Integer hCount = atom.getImplicitHydrogenCount();
+            elements[i]      = (byte) (elem != null ? elem : 0);
+            charges[i]       = (byte) (charge != null ? charge : 0);
+            hydrogens[i]     = (byte) (hCount != null ? hCount : 0);
+            aromaticAtoms[i] = atom.getFlag(CDKConstants.ISAROMATIC);
+            atomToIndex.put(atom, i);
+        }
+
+        int[]     us            = new int[m];
+        int[]     vs            = new int[m];
+        byte[]    orders        = new byte[m];
+        boolean[] aromaticBonds = new boolean[m];
+        int[]     offsets       = new int[n + 1];
+
+        for (int i = 0; i < m; i++) {
+            IBond   bond = container.getBond(i);
+            if (bond.getAtomCount() != 2)
+                throw new IllegalArgumentException("bond at index " + i + " was not between two atoms");
+            Integer u    = atomToIndex.get(bond.getAtom(0));
+            Integer v    = atomToIndex.get(bond.getAtom(1));
+            if (u == null || v == null)
+                throw new IllegalArgumentException("bond at index " + i
+                                                           + " contained an atom not pressent in molecule");
+            IBond.Order order = bond.getOrder();
+            us[i]            = u;
+            vs[i]            = v;
+            orders[i]        = (byte) (order != null ? order.numeric() : 0);
+            aromaticBonds[i] = bond.getFlag(CDKConstants.ISAROMATIC);
+            offsets[u + 1]++;
+            offsets[v + 1]++;
+        }
+
+        // cumulative degree gives the offsets
+        for (int i = 0; i < n; i++)
+            offsets[i + 1] += offsets[i];
+
+        int[] neighbors = new int[2 * m];
+        int[] edges     = new int[2 * m];
+        int[] next      = new int[n];
+        System.arraycopy(offsets, 0, next, 0, n);
+        for (int i = 0; i < m; i++) {
+            int u = us[i], v = vs[i];
+            neighbors[next[u]]   = v;
+            edges[next[u]++]     = i;
+            neighbors[next[v]]   = u;
+            edges[next[v]++]     = i;
+        }
+
+        return new CompactMolecule(elements, charges, hydrogens, aromaticAtoms,
+                                   offsets, neighbors, edges,
+                                   us, vs, orders, aromaticBonds);
+    }
+
+    /**
+     * Number of atoms (vertices).
+     *
+     * @return number of atoms
+     */
+    @TestMethod("ethanol")
+    public int order() {
+        return elements.length;
+    }
+
+    /**
+     * Number of bonds (edges).
+     *
+     * @return number of bonds
+     */
+    @TestMethod("ethanol")
+    public int size() {
+        return orders.length;
+    }
+
+    /**
+     * Atomic number of the atom at index {@code v}, 0 if unset.
+     *
+     * @param v atom index
+     * @return the atomic number
+     */
+    @TestMethod("ethanol,pseudoAtom")
+    public int atomicNumber(int v) {
+        return elements[v];
+    }
+
+    /**
+     * Formal charge of the atom at index {@code v}, 0 if unset.
+     *
+     * @param v atom index
+     * @return the formal charge
+     */
+    @TestMethod("ethanol")
+    public int charge(int v) {
+        return charges[v];
+    }
+
+    /**
+     * Implicit hydrogen count of the atom at index {@code v}, 0 if unset.
+     *
+     * @param v atom index
+     * @return the implicit hydrogen count
+     */
+    @TestMethod("ethanol")
+    public int implicitHydrogens(int v) {
+        return hydrogens[v];
+    }
+
+    /**
+     * Whether the atom at index {@code v} is aromatic.
+     *
+     * @param v atom index
+     * @return the atom is aromatic
+     */
+    @TestMethod("benzene")
+    public boolean isAromaticAtom(int v) {
+        return aromaticAtoms[v];
+    }
+
+    /**
+     * Number of atoms adjacent to the atom at index {@code v}.
+     *
+     * @param v atom index
+     * @return the degree
+     */
+    @TestMethod("ethanol")
+    public int degree(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    /**
+     * Start of the neighbors of atom {@code v} in the adjacency arrays, the
+     * neighbors of {@code v} are {@link #neighbor(int)} for indices {@code
+     * offset(v)} (inclusive) to {@code offset(v+1)} (exclusive).
+     *
+     * @param v atom index (0 &le; v &le; order())
+     * @return offset in the adjacency arrays
+     */
+    @TestMethod("ethanol")
+    public int offset(int v) {
+        return offsets[v];
+    }
+
+    /**
+     * Atom at index {@code j} of the adjacency array.
+     *
+     * @param j index in the adjacency arrays
+     * @return an adjacent atom index
+     * @see #offset(int)
+     */
+    @TestMethod("ethanol")
+    public int neighbor(int j) {
+        return neighbors[j];
+    }
+
+    /**
+     * Bond at index {@code j} of the adjacency array, the bond connects the
+     * atom the offset belongs to and {@link #neighbor(int)}.
+     *
+     * @param j index in the adjacency arrays
+     * @return a bond index
+     * @see #offset(int)
+     */
+    @TestMethod("ethanol")
+    public int edge(int j) {
+        return edges[j];
+    }
+
+    /**
+     * Index of the bond connecting the atoms {@code u} and {@code v}, -1 if
+     * the atoms are not bonded.
+     *
+     * @param u an atom index
+     * @param v another atom index
+     * @return the bond index or -1
+     */
+    @TestMethod("ethanol")
+    public int edge(int u, int v) {
+        for (int j = offsets[u]; j < offsets[u + 1]; j++)
+            if (neighbors[j] == v)
+                return edges[j];
+        return -1;
+    }
+
+    /**
+     * Index of the first atom of the bond at index {@code e}.
+     *
+     * @param e bond index
+     * @return atom index
+     */
+    @TestMethod("ethanol")
+    public int begin(int e) {
+        return us[e];
+    }
+
+    /**
+     * Index of the second atom of the bond at index {@code e}.
+     *
+     * @param e bond index
+     * @return atom index
+     */
+    @TestMethod("ethanol")
+    public int end(int e) {
+        return vs[e];
+    }
+
+    /**
+     * Numeric bond order (1-4) of the bond at index {@code e}, 0 if unset.
+     *
+     * @param e bond index
+     * @return bond order
+     */
+    @TestMethod("ethanol,benzene")
+    public int bondOrder(int e) {
+        return orders[e];
+    }
+
+    /**
+     * Whether the bond at index {@code e} is aromatic.
+     *
+     * @param e bond index
+     * @return the bond is aromatic
+     */
+    @TestMethod("benzene")
+    public boolean isAromaticBond(int e) {
+        return aromaticBonds[e];
+    }
+
+    /**
+     * Create an adjacency list representation, equivalent to {@link
+     * GraphUtil#toAdjList(IAtomContainer)} of the original container.
+     *
+     * @return adjacency list
+     */
+    @TestMethod("toAdjList")
+    public int[][] toAdjList() {
+        int n = order();
+        int[][] g = new int[n][];
+        for (int v = 0; v < n; v++) {
+            g[v] = new int[degree(v)];
+            System.arraycopy(neighbors, offsets[v], g[v], 0, g[v].length);
+        }
+        return g;
+    }
+}
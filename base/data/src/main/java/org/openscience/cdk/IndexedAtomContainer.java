@@ -0,0 +1,395 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An atom container which maintains an identity index of its atoms and bonds
+ * and the bonds incident to each atom. Index lookups ({@link
+ * #getAtomNumber(IAtom)}, {@link #getBondNumber(IBond)}, {@link
+ * #contains(IAtom)}, {@link #contains(IBond)}) run in constant time and
+ * adjacency queries ({@link #getBond(IAtom, IAtom)}, {@link
+ * #getConnectedAtomsList(IAtom)}, {@link #getConnectedBondsList(IAtom)}) are
+ * proportional to the degree of the atom rather than to the number of bonds in
+ * the container. Algorithms which query each neighbour of each atom therefore
+ * stay linear on large structures (peptides, polymers, PDB ligands) where the
+ * {@link AtomContainer} becomes quadratic.
+ *
+ * <p/>Appending atoms and bonds updates the index incrementally. Any other
+ * modification (removal, replacement, {@link #setAtoms(IAtom[])}, {@link
+ * #setBonds(IBond[])}) invalidates the index which is rebuilt, in linear time,
+ * on the next lookup. The adjacency is captured when a bond is added, a bond
+ * which has its atoms reassigned whilst in the container should be removed and
+ * added again.
+ *
+ * <blockquote><pre>
+ * IAtomContainer container = new IndexedAtomContainer(peptide);
+ * for (IBond bond : container.bonds()) {
+ *     int u = container.getAtomNumber(bond.getAtom(0)); // O(1)
+ *     int v = container.getAtomNumber(bond.getAtom(1)); // O(1)
+ * }
+ * </pre></blockquote>
+ *
+ * @cdk.module data
+ * @cdk.githash
+ * @cdk.keyword atom container, index
+ * @see org.openscience.cdk.silent.IndexedAtomContainer
+ */
+@TestClass("org.openscience.cdk.IndexedAtomContainerTest")
+public class IndexedAtomContainer extends AtomContainer {
+
+    private static final long serialVersionUID = -2296413880542325212L;
+
+    /** Index of each atom in the atoms array. */
+    private transient Map<IAtom, Integer> atomIndex;
+
+    /** Index of each bond in the bonds array. */
+    private transient Map<IBond, Integer> bondIndex;
+
+    /** Bonds incident to each atom, in the order they appear in the container. */
+    private transient Map<IAtom, List<IBond>> incident;
+
+    /**
+     * Constructs an empty container.
+     */
+    public IndexedAtomContainer() {
+        super();
+    }
+
+    /**
+     * Constructs an empty container with the given initial capacities.
+     *
+     * @param atomCount the number of atoms to be in the container
+     * @param bondCount the number of bonds to be in the container
+     * @param lpCount   the number of lone pairs to be in the container
+     * @param seCount   the number of single electrons to be in the container
+     */
+    public IndexedAtomContainer(int atomCount, int bondCount, int lpCount, int seCount) {
+        super(atomCount, bondCount, lpCount, seCount);
+    }
+
+    /**
+     * Constructs a container with a shallow copy of the atoms and electron
+     * containers of another container.
+     *
+     * @param container the container to copy
+     */
+    public IndexedAtomContainer(IAtomContainer container) {
+        super(container);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("testGetAtomNumber_IAtom")
+    @Override
+    public int getAtomNumber(IAtom atom) {
+        Integer i = atomIndex().get(atom);
+        return i != null ? i : -1;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("testGetBondNumber_IBond")
+    @Override
+    public int getBondNumber(IBond bond) {
+        Integer i = bondIndex().get(bond);
+        return i != null ? i : -1;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("testContains_IAtom")
+    @Override
+    public boolean contains(IAtom atom) {
+        return atomIndex().containsKey(atom);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("testContains_IBond")
+    @Override
+    public boolean contains(IBond bond) {
+        return bondIndex().containsKey(bond);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("testGetBond_IAtom_IAtom")
+    @Override
+    public IBond getBond(IAtom atom1, IAtom atom2) {
+        for (IBond bond : incident(atom1)) {
+            if (bond.getConnectedAtom(atom1) == atom2)
+                return bond;
+        }
+        return null;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("testGetConnectedAtomsList_IAtom")
+    @Override
+    public List<IAtom> getConnectedAtomsList(IAtom atom) {
+        List<IBond> bonds = incident(atom);
+        List<IAtom> atoms = new ArrayList<IAtom>(bonds.size());
+        for (IBond bond : bonds)
+            atoms.add(bond.getConnectedAtom(atom));
+        return atoms;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("testGetConnectedBondsList_IAtom")
+    @Override
+    public List<IBond> getConnectedBondsList(IAtom atom) {
+        return new ArrayList<IBond>(incident(atom));
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("testGetConnectedAtomsCount_IAtom")
+    @Override
+    public int getConnectedAtomsCount(IAtom atom) {
+        return incident(atom).size();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("testAddAtom_IAtom")
+    @Override
+    public void addAtom(IAtom atom) {
+        int n = atomCount;
+        super.addAtom(atom);
+        if (atomIndex != null && atomCount > n)
+            atomIndex.put(atom, n);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("testAddBond_IBond")
+    @Override
+    public void addBond(IBond bond) {
+        int n = bondCount;
+        super.addBond(bond);
+        if (bondIndex != null && !bondIndex.containsKey(bond))
+            bondIndex.put(bond, n);
+        if (incident != null)
+            index(incident, bond);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("testSetAtoms_arrayIAtom")
+    @Override
+    public void setAtoms(IAtom[] atoms) {
+        invalidate();
+        super.setAtoms(atoms);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("testSetBonds_arrayIBond")
+    @Override
+    public void setBonds(IBond[] bonds) {
+        invalidate();
+        super.setBonds(bonds);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("testSetAtom_int_IAtom")
+    @Override
+    public void setAtom(int number, IAtom atom) {
+        invalidate();
+        super.setAtom(number, atom);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("testRemoveAtom_int")
+    @Override
+    public void removeAtom(int position) {
+        invalidate();
+        super.removeAtom(position);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("testRemoveBond_int")
+    @Override
+    public IBond removeBond(int position) {
+        invalidate();
+        return super.removeBond(position);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("testRemoveAllElements")
+    @Override
+    public void removeAllElements() {
+        invalidate();
+        super.removeAllElements();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("testRemoveAllBonds")
+    @Override
+    public void removeAllBonds() {
+        invalidate();
+        super.removeAllBonds();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("testClone")
+    @Override
+    public IAtomContainer clone() throws CloneNotSupportedException {
+        IndexedAtomContainer clone = (IndexedAtomContainer) super.clone();
+        clone.invalidate();
+        return clone;
+    }
+
+    /**
+     * Discard the index, it will be rebuilt on the next lookup. The maps are
+     * released rather than cleared as a shallow copy (clone) may still refer
+     * to them.
+     */
+    private void invalidate() {
+        atomIndex = null;
+        bondIndex = null;
+        incident  = null;
+    }
+
+    /**
+     * Access the atom index, building it if needed.
+     *
+     * @return atom index
+     */
+    private Map<IAtom, Integer> atomIndex() {
+        if (atomIndex == null) {
+            Map<IAtom, Integer> index = new IdentityHashMap<IAtom, Integer>(2 * atomCount);
+            // first occurrence wins, consistent with a linear scan
+            for (int i = atomCount - 1; i >= 0; i--)
+                index.put(atoms[i], i);
+            atomIndex = index;
+        }
+        return atomIndex;
+    }
+
+    /**
+     * Access the bond index, building it if needed.
+     *
+     * @return bond index
+     */
+    private Map<IBond, Integer> bondIndex() {
+        if (bondIndex == null) {
+            Map<IBond, Integer> index = new IdentityHashMap<IBond, Integer>(2 * bondCount);
+            // first occurrence wins, consistent with a linear scan
+            for (int i = bondCount - 1; i >= 0; i--)
+                index.put(bonds[i], i);
+            bondIndex = index;
+        }
+        return bondIndex;
+    }
+
+    /**
+     * Access the bonds incident to an atom, building the adjacency if needed.
+     * The atom need not belong to this container.
+     *
+     * @param atom an atom
+     * @return the bonds incident to the atom (should not be modified)
+     */
+    private List<IBond> incident(IAtom atom) {
+        if (incident == null) {
+            Map<IAtom, List<IBond>> index = new IdentityHashMap<IAtom, List<IBond>>(2 * atomCount);
+            for (int i = 0; i < bondCount; i++)
+                index(index, bonds[i]);
+            incident = index;
+        }
+        List<IBond> bonds = incident.get(atom);
+        return bonds != null ? bonds : Collections.<IBond>emptyList();
+    }
+
+    /**
+     * Add a bond to the incidence lists of each of its atoms.
+     *
+     * @param index incidence lists
+     * @param bond  the bond to add
+     */
+    private static void index(Map<IAtom, List<IBond>> index, IBond bond) {
+        for (int i = 0; i < bond.getAtomCount(); i++) {
+            IAtom atom = bond.getAtom(i);
+            if (atom == null || repeated(bond, atom, i))
+                continue;
+            List<IBond> bonds = index.get(atom);
+            if (bonds == null)
+                index.put(atom, bonds = new ArrayList<IBond>(4));
+            bonds.add(bond);
+        }
+    }
+
+    /**
+     * Check if an atom occurs in a bond before the given position.
+     *
+     * @param bond a bond
+     * @param atom an atom of the bond
+     * @param pos  position of the atom in the bond
+     * @return the atom was already seen
+     */
+    private static boolean repeated(IBond bond, IAtom atom, int pos) {
+        for (int j = 0; j < pos; j++)
+            if (bond.getAtom(j) == atom)
+                return true;
+        return false;
+    }
+}
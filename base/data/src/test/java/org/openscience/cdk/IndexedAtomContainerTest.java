@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openscience.cdk.interfaces.AbstractAtomContainerTest;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObject;
+import org.openscience.cdk.interfaces.ITestObjectBuilder;
+
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the functionality of the {@link IndexedAtomContainer}. The container
+ * must behave identically to the {@link AtomContainer}.
+ *
+ * @cdk.module test-data
+ */
+public class IndexedAtomContainerTest extends AbstractAtomContainerTest {
+
+    @BeforeClass public static void setUp() {
+        setTestObjectBuilder(new ITestObjectBuilder() {
+            public IChemObject newTestObject() {
+                return new IndexedAtomContainer();
+            }
+        });
+    }
+
+    @Test public void indexAfterRemoveAtom() {
+        IAtomContainer container = chain(5);
+        IAtom a0 = container.getAtom(0), a4 = container.getAtom(4);
+        assertThat(container.getAtomNumber(a4), is(4));
+        container.removeAtom(a0);
+        assertThat(container.getAtomNumber(a0), is(-1));
+        assertThat(container.getAtomNumber(a4), is(3));
+        assertTrue(!container.contains(a0));
+    }
+
+    @Test public void indexAfterRemoveBond() {
+        IAtomContainer container = chain(5);
+        IAtom a1 = container.getAtom(1), a2 = container.getAtom(2);
+        IBond b0 = container.getBond(0), b1 = container.getBond(1), b3 = container.getBond(3);
+        assertThat(container.getBond(a1, a2), is(sameInstance(b1)));
+        container.removeBond(b0);
+        assertThat(container.getBondNumber(b0), is(-1));
+        assertThat(container.getBondNumber(b3), is(2));
+        assertThat(container.getConnectedAtomsCount(a1), is(1));
+        container.removeBond(a1, a2);
+        assertThat(container.getBond(a1, a2), is(nullValue()));
+        assertThat(container.getConnectedAtomsCount(a1), is(0));
+        assertThat(container.getConnectedAtomsCount(a2), is(1));
+    }
+
+    @Test public void indexAfterAddBond() {
+        IAtomContainer container = chain(5);
+        IAtom a0 = container.getAtom(0), a4 = container.getAtom(4);
+        assertThat(container.getBond(a0, a4), is(nullValue()));
+        IBond bond = new Bond(a0, a4);
+        container.addBond(bond);
+        assertThat(container.getBond(a0, a4), is(sameInstance(bond)));
+        assertThat(container.getBond(a4, a0), is(sameInstance(bond)));
+        assertThat(container.getBondNumber(bond), is(4));
+        assertThat(container.getConnectedAtomsList(a0),
+                   is(Arrays.asList(container.getAtom(1), a4)));
+    }
+
+    @Test public void indexAfterSetAtom() {
+        IAtomContainer container = chain(3);
+        IAtom a1 = container.getAtom(1);
+        IAtom replacement = new Atom("N");
+        assertThat(container.getAtomNumber(a1), is(1));
+        container.setAtom(1, replacement);
+        assertThat(container.getAtomNumber(a1), is(-1));
+        assertThat(container.getAtomNumber(replacement), is(1));
+    }
+
+    @Test public void indexAfterSetBonds() {
+        IAtomContainer container = chain(3);
+        IAtom a0 = container.getAtom(0), a2 = container.getAtom(2);
+        IBond bond = new Bond(a0, a2);
+        container.setBonds(new IBond[]{bond});
+        assertThat(container.getConnectedAtomsCount(container.getAtom(1)), is(0));
+        assertThat(container.getBond(a0, a2), is(sameInstance(bond)));
+        assertThat(container.getBondNumber(bond), is(0));
+    }
+
+    @Test public void cloneHasIndependentIndex() throws Exception {
+        IAtomContainer container = chain(3);
+        container.getAtomNumber(container.getAtom(0));
+        IAtomContainer clone = container.clone();
+        assertThat(clone.getAtomNumber(container.getAtom(0)), is(-1));
+        assertThat(clone.getAtomNumber(clone.getAtom(2)), is(2));
+        assertThat(clone.getConnectedAtomsCount(clone.getAtom(1)), is(2));
+        clone.removeAtom(0);
+        assertThat(container.getAtomNumber(container.getAtom(2)), is(2));
+    }
+
+    /**
+     * Once indexed, looking up a bond or the neighbours of an atom only visits
+     * the bonds incident to that atom. The linear scans of {@link
+     * AtomContainer} visit every bond of the container, the number of visits
+     * per lookup must therefore not grow with the size of the container.
+     */
+    @Test public void lookupsOnlyVisitIncidentBonds() {
+        int[] sizes = {1000, 10000, 50000};
+        int[] visits = new int[sizes.length];
+        for (int i = 0; i < sizes.length; i++)
+            visits[i] = lookupVisits(sizes[i]);
+        assertTrue(visits[0] <= 4);
+        for (int i = 1; i < sizes.length; i++)
+            assertThat(visits[i], is(visits[0]));
+    }
+
+    /**
+     * Count the bond visits of the lookups around the middle of an indexed
+     * chain of n atoms.
+     */
+    private static int lookupVisits(int n) {
+        int[] visits = new int[1];
+        IAtomContainer container = new IndexedAtomContainer(n, n, 0, 0);
+        for (int i = 0; i < n; i++)
+            container.addAtom(new Atom("C"));
+        for (int i = 1; i < n; i++)
+            container.addBond(new VisitCountingBond(container.getAtom(i - 1), container.getAtom(i), visits));
+        int mid = n / 2;
+        IAtom u = container.getAtom(mid), v = container.getAtom(mid + 1);
+        IBond expected = container.getBond(mid);
+        assertThat(container.getBond(u, v), is(sameInstance(expected)));
+        visits[0] = 0;
+        assertThat(container.getBond(u, v), is(sameInstance(expected)));
+        assertThat(container.getConnectedAtomsList(u).size(), is(2));
+        assertThat(container.getConnectedAtomsCount(u), is(2));
+        assertThat(container.getBondNumber(expected), is(mid));
+        assertThat(container.getAtomNumber(v), is(mid + 1));
+        return visits[0];
+    }
+
+    private static IAtomContainer chain(int n) {
+        IAtomContainer container = new IndexedAtomContainer(n, n, 0, 0);
+        for (int i = 0; i < n; i++)
+            container.addAtom(new Atom("C"));
+        for (int i = 1; i < n; i++)
+            container.addBond(new Bond(container.getAtom(i - 1), container.getAtom(i)));
+        return container;
+    }
+
+    /**
+     * A bond which counts how many times it is visited (queried for its
+     * atoms).
+     */
+    private static final class VisitCountingBond extends Bond {
+
+        private final int[] visits;
+
+        VisitCountingBond(IAtom u, IAtom v, int[] visits) {
+            super(u, v);
+            this.visits = visits;
+        }
+
+        @Override public IAtom getAtom(int position) {
+            visits[0]++;
+            return super.getAtom(position);
+        }
+
+        @Override public IAtom getConnectedAtom(IAtom atom) {
+            visits[0]++;
+            return super.getConnectedAtom(atom);
+        }
+
+        @Override public boolean contains(IAtom atom) {
+            visits[0]++;
+            return super.contains(atom);
+        }
+    }
+}
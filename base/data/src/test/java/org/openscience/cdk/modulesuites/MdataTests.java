@@ -29,6 +29,7 @@ import org.junit.runners.Suite.SuiteClasses;
 import org.openscience.cdk.AminoAcidTest;
 import org.openscience.cdk.AtomContainerSetTest;
 import org.openscience.cdk.AtomContainerTest;
+import org.openscience.cdk.IndexedAtomContainerTest;
 import org.openscience.cdk.AtomTest;
 import org.openscience.cdk.AtomTypeTest;
 import org.openscience.cdk.BioPolymerTest;
@@ -79,6 +80,7 @@ import org.openscience.cdk.protein.data.PDBStructureTest;
         
     AminoAcidTest.class,
     AtomContainerTest.class,
+    IndexedAtomContainerTest.class,
     AtomTest.class,
     AtomTypeTest.class,
     BioPolymerTest.class,
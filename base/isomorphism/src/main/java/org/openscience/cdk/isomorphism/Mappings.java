@@ -37,6 +37,7 @@ import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.isomorphism.matchers.IQueryAtomContainer;
 
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -179,6 +180,20 @@ public final class Mappings implements Iterable<int[]> {
         this.iterable = iterable;
     }
 
+    /**
+     * Create an instance with no mappings of the query to the target, the
+     * target is not searched. This is useful when a target has been rejected
+     * (e.g. by a prescreen) without matching.
+     *
+     * @param query  the structure to be found
+     * @param target the structure being searched
+     * @return fluent-api instance with no mappings
+     */
+    @TestMethod("empty")
+    public static Mappings empty(IAtomContainer query, IAtomContainer target) {
+        return new Mappings(query, target, Collections.<int[]>emptyList());
+    }
+
     /**
      * Filter the mappings and keep only those which match the provided
      * predicate (Guava).
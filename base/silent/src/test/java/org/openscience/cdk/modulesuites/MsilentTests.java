@@ -30,6 +30,7 @@ import org.openscience.cdk.coverage.SilentCoverageTest;
 import org.openscience.cdk.silent.AminoAcidTest;
 import org.openscience.cdk.silent.AtomContainerSetTest;
 import org.openscience.cdk.silent.AtomContainerTest;
+import org.openscience.cdk.silent.IndexedAtomContainerTest;
 import org.openscience.cdk.silent.AtomTest;
 import org.openscience.cdk.silent.AtomTypeTest;
 import org.openscience.cdk.silent.BioPolymerTest;
@@ -73,6 +74,7 @@ import org.openscience.cdk.silent.StrandTest;
     SilentChemObjectBuilderTest.class,
     AminoAcidTest.class,
     AtomContainerTest.class,
+    IndexedAtomContainerTest.class,
     AtomTest.class,
     AtomTypeTest.class,
     BioPolymerTest.class,
@@ -41,6 +41,7 @@ import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
 import org.openscience.cdk.tools.periodictable.PeriodicTable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -108,6 +109,9 @@ public class Fingerprinter implements IFingerprinter {
 	private int size;
 	private int searchDepth;
 
+    /** Use 64-bit path hashes rather than the legacy string hashes. */
+    private boolean hashed = false;
+
 	static int debugCounter = 0;
 
 	private static ILoggingTool logger =
@@ -168,7 +172,6 @@ public class Fingerprinter implements IFingerprinter {
     public IBitFingerprint getBitFingerprint(IAtomContainer container, 
                                  AllRingsFinder ringFinder) 
                   throws CDKException {
-		int position = -1;
 		logger.debug("Entering Fingerprinter");
 		logger.debug("Starting Aromaticity Detection");
 		long before = System.currentTimeMillis();
@@ -180,15 +183,38 @@ public class Fingerprinter implements IFingerprinter {
 		logger.debug("Finished Aromaticity Detection");
 		BitSet bitSet = new BitSet(size);
 
-        int[] hashes = findPathes(container, searchDepth);
-        for (int hash : hashes) {
-            position = new java.util.Random(hash).nextInt(size);
-            bitSet.set(position);
-        }
+        new PathEncoder(container).encode(bitSet);
 
         return new BitSetFingerprint(bitSet);
 	}
 
+    /**
+     * Use 64-bit hashes of the paths rather than the hash codes of the path
+     * strings. The hashes are computed in both directions as each path is
+     * extended and mapped directly to a bit, this is faster and has fewer
+     * collisions but the bits set are different from those of the legacy
+     * encoding. By default the legacy encoding is used and the bits set are
+     * the same as previous versions, fingerprints of the two encodings should
+     * not be compared.
+     *
+     * @param hashed use 64-bit path hashes
+     */
+    @TestMethod("hashedPaths,hashedPaths_substructure")
+    public void setHashedPaths(boolean hashed) {
+        this.hashed = hashed;
+    }
+
+    /**
+     * Whether 64-bit path hashes are used rather than the legacy encoding.
+     *
+     * @return 64-bit path hashes are used
+     * @see #setHashedPaths(boolean)
+     */
+    @TestMethod("hashedPaths")
+    public boolean isHashedPaths() {
+        return hashed;
+    }
+
 
 	/**
 	 * Generates a fingerprint of the default size for the given AtomContainer.
@@ -210,7 +236,9 @@ public class Fingerprinter implements IFingerprinter {
      * Get all paths of lengths 0 to the specified length.
      *
      * This method will find all paths upto length N starting from each
-     * atom in the molecule and return the unique set of such paths.
+     * atom in the molecule and return the unique set of such paths. The
+     * {@link #getBitFingerprint(IAtomContainer)} methods set the same bits
+     * without creating the path strings and do not invoke this method.
      *
      * @param container The molecule to search
      * @param searchDepth The maximum path length desired
@@ -290,6 +318,245 @@ public class Fingerprinter implements IFingerprinter {
         return hashes;
     }
 
+    /**
+     * Equivalent to {@code new Random(seed).nextInt(n)} without creating a
+     * {@link java.util.Random} instance, the bit positions of the legacy
+     * encoding are determined this way.
+     *
+     * @param seed the seed
+     * @param n    the bound (exclusive)
+     * @return the first pseudo random number in the range [0, n)
+     */
+    static int randomInt(int seed, int n) {
+        long state = (seed ^ 0x5DEECE66DL) & ((1L << 48) - 1);
+        state = (state * 0x5DEECE66DL + 0xBL) & ((1L << 48) - 1);
+        int bits = (int) (state >>> 17);
+        if ((n & -n) == n)
+            return (int) ((n * (long) bits) >> 31);
+        int val = bits % n;
+        while (bits - val + (n - 1) < 0) {
+            state = (state * 0x5DEECE66DL + 0xBL) & ((1L << 48) - 1);
+            bits = (int) (state >>> 17);
+            val = bits % n;
+        }
+        return val;
+    }
+
+    /**
+     * Finalisation step of MurmurHash3 (64-bit), distributes the bits of a
+     * path hash.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Enumerates the paths of a molecule by depth first search over an
+     * adjacency list and sets the bits of the fingerprint as each path is
+     * found. The atom and bond symbols are determined once per molecule.
+     * In the legacy encoding the path string is built in a reusable character
+     * buffer and the bit is determined by the {@link String#hashCode()} of the
+     * greater of the path string and its reverse, exactly as {@link
+     * #findPathes(IAtomContainer, int)}. When the paths are hashed a forward
+     * and reverse 64-bit hash is maintained as the path is extended and the
+     * lower of the two determines the bit.
+     */
+    private final class PathEncoder {
+
+        private static final long PRIME = 0x100000001b3L;
+
+        /** Adjacency list and the index of the bond to each neighbour. */
+        private final int[][] graph, edges;
+
+        /** Symbol of an atom at the start and elsewhere in a path and the bond symbols. */
+        private final char[][] head, atomSymbols, bondSymbols;
+
+        /** Atom and bond codes of the hashed encoding. */
+        private final long[] atomCodes, bondCodes;
+
+        private final boolean[] visited;
+
+        private BitSet bits;
+        private char[] buffer = new char[64];
+        private int    length, count;
+
+        private PathEncoder(IAtomContainer container) {
+            int numAtoms = container.getAtomCount();
+            int numBonds = container.getBondCount();
+
+            Map<IAtom, Integer> indices = new HashMap<IAtom, Integer>(2 * numAtoms);
+            head        = new char[numAtoms][];
+            atomSymbols = new char[numAtoms][];
+            atomCodes   = new long[numAtoms];
+            visited     = new boolean[numAtoms];
+            char[] unknown = Integer.toString((char) PeriodicTable.getElementCount() + 1).toCharArray();
+            for (int i = 0; i < numAtoms; i++) {
+                IAtom atom = container.getAtom(i);
+                indices.put(atom, i);
+                String symbol = atom.getSymbol();
+                atomSymbols[i] = String.valueOf(convertSymbol(symbol)).toCharArray();
+                if (atom instanceof IPseudoAtom || PeriodicTable.getAtomicNumber(symbol) == null) {
+                    head[i] = unknown;
+                    atomCodes[i] = mix(1L << 32);
+                } else {
+                    head[i] = atomSymbols[i];
+                    atomCodes[i] = mix((2L << 32) | (symbol.hashCode() & 0xffffffffL));
+                }
+            }
+
+            int[] degree = new int[numAtoms];
+            int[] us = new int[numBonds], vs = new int[numBonds];
+            bondSymbols = new char[numBonds][];
+            bondCodes   = new long[numBonds];
+            for (int j = 0; j < numBonds; j++) {
+                IBond bond = container.getBond(j);
+                String symbol = getBondSymbol(bond);
+                us[j] = indices.get(bond.getAtom(0));
+                vs[j] = indices.get(bond.getAtom(1));
+                degree[us[j]]++;
+                degree[vs[j]]++;
+                bondSymbols[j] = symbol.toCharArray();
+                bondCodes[j] = mix((3L << 32) | (symbol.hashCode() & 0xffffffffL));
+            }
+
+            graph = new int[numAtoms][];
+            edges = new int[numAtoms][];
+            for (int i = 0; i < numAtoms; i++) {
+                graph[i] = new int[degree[i]];
+                edges[i] = new int[degree[i]];
+                degree[i] = 0;
+            }
+            for (int j = 0; j < numBonds; j++) {
+                int u = us[j], v = vs[j];
+                graph[u][degree[u]] = v;
+                edges[u][degree[u]++] = j;
+                graph[v][degree[v]] = u;
+                edges[v][degree[v]++] = j;
+            }
+        }
+
+        /**
+         * Set the bits of all paths up to the search depth.
+         *
+         * @param bits the fingerprint
+         * @throws CDKException too many paths from a single atom
+         */
+        private void encode(BitSet bits) throws CDKException {
+            this.bits = bits;
+            for (int i = 0; i < graph.length; i++) {
+                count = 0;
+                visited[i] = true;
+                if (hashed) {
+                    emit(atomCodes[i], atomCodes[i]);
+                    walk(i, 0, atomCodes[i], atomCodes[i], PRIME);
+                } else {
+                    length = 0;
+                    append(head[i]);
+                    emit();
+                    walk(i, 0);
+                }
+                visited[i] = false;
+            }
+        }
+
+        /**
+         * Extend the path (legacy encoding) ending at atom {@code u}.
+         */
+        private void walk(int u, int depth) throws CDKException {
+            if (depth == searchDepth)
+                return;
+            int mark = length;
+            for (int k = 0; k < graph[u].length; k++) {
+                int v = graph[u][k];
+                if (visited[v])
+                    continue;
+                append(bondSymbols[edges[u][k]]);
+                append(atomSymbols[v]);
+                emit();
+                visited[v] = true;
+                walk(v, depth + 1);
+                visited[v] = false;
+                length = mark;
+            }
+        }
+
+        /**
+         * Extend the path (hashed encoding) ending at atom {@code u}, the
+         * reverse hash weights the next symbol by {@code pow}.
+         */
+        private void walk(int u, int depth, long fwd, long rev, long pow) throws CDKException {
+            if (depth == searchDepth)
+                return;
+            for (int k = 0; k < graph[u].length; k++) {
+                int v = graph[u][k];
+                if (visited[v])
+                    continue;
+                long bond = bondCodes[edges[u][k]];
+                long atom = atomCodes[v];
+                long f = (fwd * PRIME + bond) * PRIME + atom;
+                long r = rev + bond * pow + atom * pow * PRIME;
+                emit(f, r);
+                visited[v] = true;
+                walk(v, depth + 1, f, r, pow * PRIME * PRIME);
+                visited[v] = false;
+            }
+        }
+
+        private void append(char[] cs) {
+            if (length + cs.length > buffer.length)
+                buffer = Arrays.copyOf(buffer, 2 * (length + cs.length));
+            System.arraycopy(cs, 0, buffer, length, cs.length);
+            length += cs.length;
+        }
+
+        /**
+         * Set the bit of the path in the buffer, the bit is determined by the
+         * hash code of the greater of the path string and its reverse.
+         */
+        private void emit() throws CDKException {
+            checkLimit();
+            int cmp = 0;
+            for (int i = 0, j = length - 1; i < length; i++, j--) {
+                if (buffer[i] != buffer[j]) {
+                    cmp = buffer[i] - buffer[j];
+                    break;
+                }
+            }
+            int hash = 0;
+            if (cmp <= 0) {
+                for (int j = length - 1; j >= 0; j--)
+                    hash = 31 * hash + buffer[j];
+            } else {
+                for (int i = 0; i < length; i++)
+                    hash = 31 * hash + buffer[i];
+            }
+            bits.set(randomInt(hash, size));
+        }
+
+        /**
+         * Set the bit of a path given its forward and reverse hash.
+         */
+        private void emit(long fwd, long rev) throws CDKException {
+            checkLimit();
+            long hash = mix(Math.min(fwd, rev));
+            bits.set((int) ((hash >>> 1) % size));
+        }
+
+        /**
+         * Limit the number of paths from each atom, as {@link
+         * PathTools#getLimitedPathsOfLengthUpto(IAtomContainer, IAtom, int, int)}.
+         */
+        private void checkLimit() throws CDKException {
+            if (++count > PATH_LIMIT)
+                throw new CDKException("Too many paths generate. We're working making this faster but for now try generating paths with a smaller length");
+        }
+    }
+
     private String convertSymbol(String symbol) {
 
         String returnSymbol = queryReplace.get( symbol );
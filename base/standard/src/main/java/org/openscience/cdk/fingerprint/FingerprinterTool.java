@@ -25,10 +25,16 @@
 package org.openscience.cdk.fingerprint;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
@@ -38,6 +44,21 @@ import org.openscience.cdk.tools.LoggingToolFactory;
 /**
  * Tool with helper methods for IFingerprint.
  *
+ * Besides the pairwise helpers, bulk operations are provided for large
+ * collections of fingerprints of the same length. The collection is packed in
+ * to a single long[] where each fingerprint (row) occupies <i>w</i> =
+ * &lceil;length / 64&rceil; consecutive words, bit <i>i</i> of row <i>r</i>
+ * is bit <i>i</i> mod 64 of word <i>r</i>&middot;<i>w</i> + <i>i</i> / 64.
+ * Each bulk operation has an overload that processes shards of rows in
+ * parallel on a provided {@link ExecutorService}.
+ *
+ * <blockquote><pre>
+ * long[] packed = FingerprinterTool.pack(fingerprints, 1024);
+ * int[]  freq   = FingerprinterTool.bitFrequencies(packed, 1024, executor);
+ * BitSet keep   = FingerprinterTool.frequentBits(freq, 100);
+ * long[] subset = FingerprinterTool.filter(packed, 1024, keep, executor);
+ * </pre></blockquote>
+ *
  * @author         steinbeck
  * @cdk.created    2002-02-24
  * @cdk.keyword    fingerprint
@@ -49,6 +70,9 @@ public class FingerprinterTool {
 	
 	private final static ILoggingTool logger =
         LoggingToolFactory.createLoggingTool(FingerprinterTool.class);
+
+    /** Number of rows processed by each parallel task. */
+    private static final int SHARD_SIZE = 65536;
 	
 	/**
 	 *  Checks whether all the positive bits in BitSet bs2 occur in BitSet bs1. If
@@ -129,5 +153,412 @@ public class FingerprinterTool {
         return differences;
     }
 
+
+    /**
+     * Pack fingerprints of the given length in to consecutive rows of 64-bit
+     * words.
+     *
+     * @param fingerprints the fingerprints
+     * @param length       fingerprint length
+     * @return the packed fingerprints
+     * @throws IllegalArgumentException a bit beyond the length was set
+     */
+    @TestMethod("testPack")
+    public static long[] pack(List<BitSet> fingerprints, int length) {
+        final int width = width(length);
+        final long[] packed = new long[fingerprints.size() * width];
+        for (int r = 0; r < fingerprints.size(); r++) {
+            BitSet bits = fingerprints.get(r);
+            if (bits.length() > length)
+                throw new IllegalArgumentException("fingerprint " + r + " has bits beyond the length " + length);
+            for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1))
+                packed[r * width + (i >>> 6)] |= 1L << i;
+        }
+        return packed;
+    }
+
+    /**
+     * Unpack a single row of packed fingerprints.
+     *
+     * @param packed packed fingerprints
+     * @param length fingerprint length
+     * @param row    the row to unpack
+     * @return the fingerprint
+     */
+    @TestMethod("testPack")
+    public static BitSet unpack(long[] packed, int length, int row) {
+        final int width = width(length);
+        final BitSet bits = new BitSet(length);
+        for (int w = 0; w < width; w++) {
+            for (long word = packed[row * width + w]; word != 0; word &= word - 1)
+                bits.set((w << 6) + Long.numberOfTrailingZeros(word));
+        }
+        return bits;
+    }
+
+    /**
+     * Count the number of fingerprints each bit is set in.
+     *
+     * @param packed packed fingerprints
+     * @param length fingerprint length
+     * @return the frequency of each bit
+     */
+    @TestMethod("testBitFrequencies")
+    public static int[] bitFrequencies(long[] packed, int length) {
+        return bitFrequencies(packed, length, null);
+    }
+
+    /**
+     * Count the number of fingerprints each bit is set in, counting shards of
+     * the fingerprints in parallel.
+     *
+     * @param packed   packed fingerprints
+     * @param length   fingerprint length
+     * @param executor the executor to run the shards
+     * @return the frequency of each bit
+     */
+    @TestMethod("testBitFrequencies")
+    public static int[] bitFrequencies(final long[] packed, final int length, ExecutorService executor) {
+        final int width = width(length);
+        final int[][] partial = new int[shards(rows(packed, width), executor)][];
+        forEachShard(rows(packed, width), executor, new Shard() {
+            @Override public void run(int shard, int from, int to) {
+                final int[] freq = new int[length];
+                for (int r = from; r < to; r++) {
+                    final int offset = r * width;
+                    for (int w = 0; w < width; w++) {
+                        for (long word = packed[offset + w]; word != 0; word &= word - 1)
+                            freq[(w << 6) + Long.numberOfTrailingZeros(word)]++;
+                    }
+                }
+                partial[shard] = freq;
+            }
+        });
+        final int[] freq = new int[length];
+        for (int[] counts : partial) {
+            for (int i = 0; i < length; i++)
+                freq[i] += counts[i];
+        }
+        return freq;
+    }
+
+    /**
+     * Select the bits that are set in at least the given number of
+     * fingerprints, the rarely set bits are excluded.
+     *
+     * @param frequencies frequency of each bit, see {@link #bitFrequencies(long[], int)}
+     * @param minCount    minimum number of fingerprints a bit is set in
+     * @return the selected bits
+     */
+    @TestMethod("testFilter")
+    public static BitSet frequentBits(int[] frequencies, int minCount) {
+        final BitSet bits = new BitSet(frequencies.length);
+        for (int i = 0; i < frequencies.length; i++) {
+            if (frequencies[i] >= minCount)
+                bits.set(i);
+        }
+        return bits;
+    }
+
+    /**
+     * Reduce each fingerprint to the selected bits. The <i>j</i>th selected
+     * bit becomes bit <i>j</i> of the filtered fingerprints which have a
+     * length of {@code keep.cardinality()}.
+     *
+     * @param packed packed fingerprints
+     * @param length fingerprint length
+     * @param keep   the bits to keep
+     * @return the packed filtered fingerprints
+     * @see #unfold(long[], java.util.BitSet, int)
+     */
+    @TestMethod("testFilter")
+    public static long[] filter(long[] packed, int length, BitSet keep) {
+        return filter(packed, length, keep, null);
+    }
+
+    /**
+     * Reduce each fingerprint to the selected bits, filtering shards of the
+     * fingerprints in parallel.
+     *
+     * @param packed   packed fingerprints
+     * @param length   fingerprint length
+     * @param keep     the bits to keep
+     * @param executor the executor to run the shards
+     * @return the packed filtered fingerprints
+     * @see #filter(long[], int, java.util.BitSet)
+     */
+    @TestMethod("testFilter")
+    public static long[] filter(long[] packed, int length, BitSet keep, ExecutorService executor) {
+        final int[] map = new int[length];
+        int n = 0;
+        for (int i = 0; i < length; i++)
+            map[i] = keep.get(i) ? n++ : -1;
+        return remap(packed, length, map, n, executor);
+    }
+
+    /**
+     * Restore filtered fingerprints to their original bit positions, the
+     * inverse of {@link #filter(long[], int, java.util.BitSet)}.
+     *
+     * @param packed packed filtered fingerprints (of length {@code keep.cardinality()})
+     * @param keep   the bits that were kept by the filter
+     * @param length original fingerprint length
+     * @return the packed fingerprints
+     */
+    @TestMethod("testFilter")
+    public static long[] unfold(long[] packed, BitSet keep, int length) {
+        return unfold(packed, keep, length, null);
+    }
+
+    /**
+     * Restore filtered fingerprints to their original bit positions,
+     * processing shards of the fingerprints in parallel.
+     *
+     * @param packed   packed filtered fingerprints (of length {@code keep.cardinality()})
+     * @param keep     the bits that were kept by the filter
+     * @param length   original fingerprint length
+     * @param executor the executor to run the shards
+     * @return the packed fingerprints
+     */
+    @TestMethod("testFilter")
+    public static long[] unfold(long[] packed, BitSet keep, int length, ExecutorService executor) {
+        if (keep.length() > length)
+            throw new IllegalArgumentException("kept bits exceed the fingerprint length " + length);
+        final int[] map = new int[keep.cardinality()];
+        int n = 0;
+        for (int i = keep.nextSetBit(0); i >= 0; i = keep.nextSetBit(i + 1))
+            map[n++] = i;
+        return remap(packed, map.length, map, length, executor);
+    }
+
+    /**
+     * Fold each fingerprint to a shorter length, bit <i>i</i> is set in the
+     * folded fingerprint if any bit <i>j</i> with <i>j</i> mod {@code
+     * foldedLength} = <i>i</i> is set.
+     *
+     * @param packed       packed fingerprints
+     * @param length       fingerprint length
+     * @param foldedLength length of the folded fingerprints
+     * @return the packed folded fingerprints
+     */
+    @TestMethod("testFold")
+    public static long[] fold(long[] packed, int length, int foldedLength) {
+        return fold(packed, length, foldedLength, null);
+    }
+
+    /**
+     * Fold each fingerprint to a shorter length, folding shards of the
+     * fingerprints in parallel.
+     *
+     * @param packed       packed fingerprints
+     * @param length       fingerprint length
+     * @param foldedLength length of the folded fingerprints
+     * @param executor     the executor to run the shards
+     * @return the packed folded fingerprints
+     * @see #fold(long[], int, int)
+     */
+    @TestMethod("testFold")
+    public static long[] fold(long[] packed, int length, int foldedLength, ExecutorService executor) {
+        if (foldedLength < 1 || foldedLength > length)
+            throw new IllegalArgumentException("invalid folded length: " + foldedLength);
+        final int[] map = new int[length];
+        for (int i = 0; i < length; i++)
+            map[i] = i % foldedLength;
+        return remap(packed, length, map, foldedLength, executor);
+    }
+
+    /**
+     * Find the fingerprints which have all the bits of the query set (see
+     * {@link #isSubset(java.util.BitSet, java.util.BitSet)}), the rows which
+     * may contain the query as a substructure.
+     *
+     * @param packed packed fingerprints
+     * @param length fingerprint length
+     * @param query  the query fingerprint
+     * @return the rows which are a superset of the query, in ascending order
+     */
+    @TestMethod("testSupersets")
+    public static int[] supersets(long[] packed, int length, BitSet query) {
+        return supersets(packed, length, query, null);
+    }
+
+    /**
+     * Find the fingerprints which have all the bits of the query set,
+     * screening shards of the fingerprints in parallel.
+     *
+     * @param packed   packed fingerprints
+     * @param length   fingerprint length
+     * @param query    the query fingerprint
+     * @param executor the executor to run the shards
+     * @return the rows which are a superset of the query, in ascending order
+     * @see #supersets(long[], int, java.util.BitSet)
+     */
+    @TestMethod("testSupersets")
+    public static int[] supersets(final long[] packed, int length, BitSet query, ExecutorService executor) {
+        final int width = width(length);
+        final int rows = rows(packed, width);
+        if (query.length() > length)
+            return new int[0];
+
+        // only the words with query bits set need to be checked
+        final long[] q = pack(Collections.singletonList(query), length);
+        int n = 0;
+        for (long word : q)
+            if (word != 0) n++;
+        final int[] words = new int[n];
+        n = 0;
+        for (int w = 0; w < width; w++)
+            if (q[w] != 0) words[n++] = w;
+
+        final int[][] partial = new int[shards(rows, executor)][];
+        forEachShard(rows, executor, new Shard() {
+            @Override public void run(int shard, int from, int to) {
+                int[] hits = new int[16];
+                int nhits = 0;
+                ROW: for (int r = from; r < to; r++) {
+                    final int offset = r * width;
+                    for (int w : words) {
+                        if ((packed[offset + w] & q[w]) != q[w])
+                            continue ROW;
+                    }
+                    if (nhits == hits.length)
+                        hits = Arrays.copyOf(hits, 2 * nhits);
+                    hits[nhits++] = r;
+                }
+                partial[shard] = Arrays.copyOf(hits, nhits);
+            }
+        });
+
+        int total = 0;
+        for (int[] hits : partial)
+            total += hits.length;
+        final int[] hits = new int[total];
+        total = 0;
+        for (int[] shard : partial) {
+            System.arraycopy(shard, 0, hits, total, shard.length);
+            total += shard.length;
+        }
+        return hits;
+    }
+
+    /**
+     * Move the bits of each fingerprint, bit <i>i</i> is moved to {@code
+     * map[i]} (or dropped if it is -1).
+     *
+     * @param packed    packed fingerprints
+     * @param length    fingerprint length
+     * @param map       new position of each bit
+     * @param newLength length of the new fingerprints
+     * @param executor  the executor to run the shards (null: in this thread)
+     * @return the packed new fingerprints
+     */
+    private static long[] remap(final long[] packed, int length, final int[] map, int newLength,
+                                ExecutorService executor) {
+        final int width = width(length), newWidth = (newLength + 63) >>> 6;
+        final int rows = rows(packed, width);
+        final long[] dest = new long[rows * newWidth];
+        forEachShard(rows, executor, new Shard() {
+            @Override public void run(int shard, int from, int to) {
+                for (int r = from; r < to; r++) {
+                    final int src = r * width, dst = r * newWidth;
+                    for (int w = 0; w < width; w++) {
+                        for (long word = packed[src + w]; word != 0; word &= word - 1) {
+                            final int bit = (w << 6) + Long.numberOfTrailingZeros(word);
+                            final int pos = bit < map.length ? map[bit] : -1;
+                            if (pos >= 0)
+                                dest[dst + (pos >>> 6)] |= 1L << pos;
+                        }
+                    }
+                }
+            }
+        });
+        return dest;
+    }
+
+    /**
+     * Number of words in each packed row of the given fingerprint length.
+     *
+     * @param length fingerprint length
+     * @return words per row
+     */
+    private static int width(int length) {
+        if (length < 0)
+            throw new IllegalArgumentException("invalid fingerprint length: " + length);
+        return (length + 63) >>> 6;
+    }
+
+    /**
+     * Number of rows in packed fingerprints.
+     *
+     * @param packed packed fingerprints
+     * @param width  words per row
+     * @return number of rows
+     */
+    private static int rows(long[] packed, int width) {
+        if (width == 0)
+            return 0;
+        if (packed.length % width != 0)
+            throw new IllegalArgumentException("packed words are not a whole number of " + width + " word rows");
+        return packed.length / width;
+    }
+
+    /**
+     * Number of shards the rows are split in to.
+     *
+     * @param rows     number of rows
+     * @param executor the executor (null: in this thread)
+     * @return number of shards
+     */
+    private static int shards(int rows, ExecutorService executor) {
+        return executor == null ? 1 : Math.max(1, (rows + SHARD_SIZE - 1) / SHARD_SIZE);
+    }
+
+    /**
+     * Run a task on each shard of the rows, in parallel if an executor is
+     * provided.
+     *
+     * @param rows     number of rows
+     * @param executor the executor (null: in this thread)
+     * @param task     the task
+     */
+    private static void forEachShard(int rows, ExecutorService executor, final Shard task) {
+        if (executor == null) {
+            task.run(0, 0, rows);
+            return;
+        }
+        final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int shard = 0, n = shards(rows, executor); shard < n; shard++) {
+            final int id = shard, from = shard * SHARD_SIZE, to = Math.min(from + SHARD_SIZE, rows);
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override public Void call() throws Exception {
+                    task.run(id, from, to);
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("bulk operation was interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("bulk operation failed: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    /** A task run on a range of rows. */
+    private static interface Shard {
+
+        /**
+         * Process the rows [from, to).
+         *
+         * @param shard index of the shard
+         * @param from  first row (inclusive)
+         * @param to    last row (exclusive)
+         */
+        void run(int shard, int from, int to);
+    }
 }
 
@@ -24,6 +24,9 @@
 
 package org.openscience.cdk.graph.invariant;
 
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.graph.CompactMolecule;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IPseudoAtom;
@@ -65,6 +68,7 @@ import java.util.Arrays;
  * @cdk.module standard 
  * @cdk.githash
  */
+@TestClass("org.openscience.cdk.graph.invariant.CanonTest")
 public final class Canon {
 
     /**
@@ -160,6 +164,47 @@ public final class Canon {
                          true).symmetry;
     }
 
+    /**
+     * Compute the canonical labels for the provided compact structure. The
+     * labelling is the same as {@link #label(IAtomContainer, int[][])} for
+     * the container the compact structure was created from. Note the compact
+     * structure stores an unset hydrogen count or formal charge as 0, where
+     * the container method would throw a {@link NullPointerException} these
+     * atoms are labelled as having no hydrogens or no charge.
+     *
+     * @param mol compact structure
+     * @return the canonical labelling
+     * @see CompactMolecule
+     */
+    @TestMethod("compactLabelling,compactUnsetValues")
+    public static long[] label(CompactMolecule mol) {
+        int[][] g = mol.toAdjList();
+        return new Canon(g,
+                         basicInvariants(mol, g),
+                         terminalHydrogens(mol, g),
+                         false).labelling;
+    }
+
+    /**
+     * Compute the symmetry classes for the provided compact structure. The
+     * classes are the same as {@link #symmetry(IAtomContainer, int[][])} for
+     * the container the compact structure was created from. As with {@link
+     * #label(CompactMolecule)} an unset hydrogen count or formal charge is
+     * treated as 0.
+     *
+     * @param mol compact structure
+     * @return symmetry classes
+     * @see CompactMolecule
+     */
+    @TestMethod("compactLabelling,compactUnsetValues")
+    public static long[] symmetry(CompactMolecule mol) {
+        int[][] g = mol.toAdjList();
+        return new Canon(g,
+                         basicInvariants(mol, g),
+                         terminalHydrogens(mol, g),
+                         true).symmetry;
+    }
+
     /**
      * Internal - refine invariants to a canonical labelling and
      * symmetry classes. 
@@ -308,24 +353,70 @@ public final class Canon {
                 if (atomicNumber(container.getAtom(w)) == 1)
                     expH++;
 
-            long label = 0; // connectivity (first in)
-            label |= deg + impH & 0xf;
-            label <<= 4;    // connectivity (heavy) <= 15 (4 bits)
-            label |= deg - expH & 0xf;
-            label <<= 7;   // atomic number <= 127 (7 bits)
-            label |= elem & 0x7f;
-            label <<= 1;   // charge sign == 1 (1 bit)
-            label |= chg >> 31 & 0x1;
-            label <<= 2;   // charge <= 3 (2 bits)
-            label |= Math.abs(chg) & 0x3;
-            label <<= 4;   // hydrogen count <= 15 (4 bits)
-            label |= impH + expH & 0xf;
-
-            labels[v] = label;
+            labels[v] = invariant(deg, impH, expH, elem, chg);
+        }
+        return labels;
+    }
+
+    /**
+     * Generate the initial invariants for each atom of the compact {@code mol}.
+     * The invariants are the same as those described in {@link
+     * #basicInvariants(IAtomContainer, int[][])} except an unset hydrogen
+     * count or formal charge (stored as 0) does not throw an exception.
+     *
+     * @param mol   a compact structure to generate labels for
+     * @param graph graph representation (adjacency list)
+     * @return initial invariants
+     */
+    @TestMethod("testBasicInvariants_compact")
+    public static long[] basicInvariants(CompactMolecule mol, int[][] graph) {
+
+        long[] labels = new long[graph.length];
+
+        for (int v = 0; v < graph.length; v++) {
+
+            int deg  = graph[v].length;
+            int impH = mol.implicitHydrogens(v);
+            int expH = 0;
+            int elem = mol.atomicNumber(v);
+            int chg  = mol.charge(v);
+
+            // count non-suppressed (explicit) hydrogens
+            for (int w : graph[v])
+                if (mol.atomicNumber(w) == 1)
+                    expH++;
+
+            labels[v] = invariant(deg, impH, expH, elem, chg);
         }
         return labels;
     }
 
+    /**
+     * Encode the basic invariant of an atom.
+     *
+     * @param deg  number of connections
+     * @param impH implicit hydrogen count
+     * @param expH explicit hydrogen count
+     * @param elem atomic number
+     * @param chg  formal charge
+     * @return the invariant
+     */
+    private static long invariant(int deg, int impH, int expH, int elem, int chg) {
+        long label = 0; // connectivity (first in)
+        label |= deg + impH & 0xf;
+        label <<= 4;    // connectivity (heavy) <= 15 (4 bits)
+        label |= deg - expH & 0xf;
+        label <<= 7;   // atomic number <= 127 (7 bits)
+        label |= elem & 0x7f;
+        label <<= 1;   // charge sign == 1 (1 bit)
+        label |= chg >> 31 & 0x1;
+        label <<= 2;   // charge <= 3 (2 bits)
+        label |= Math.abs(chg) & 0x3;
+        label <<= 4;   // hydrogen count <= 15 (4 bits)
+        label |= impH + expH & 0xf;
+        return label;
+    }
+
     /**
      * Access atomic number of atom defaulting to 0 for pseudo atoms.
      *
@@ -393,6 +484,20 @@ public final class Canon {
         return hydrogens;
     }
 
+    /**
+     * Locate explicit hydrogens that are attached to exactly one other atom.
+     *
+     * @param mol a compact structure
+     * @return binary set of terminal hydrogens
+     */
+    static boolean[] terminalHydrogens(final CompactMolecule mol, final int[][] g) {
+        final boolean[] hydrogens = new boolean[mol.order()];
+        for (int i = 0; i < hydrogens.length; i++) {
+            hydrogens[i] = mol.atomicNumber(i) == 1 && g[i].length == 1;
+        }
+        return hydrogens;
+    }
+
     /** The first 2229 primes. */
     private static final int[] PRIMES = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47, 53, 59, 61, 67, 71, 73,
                                          79, 83, 89, 97, 101, 103, 107, 109, 113, 127, 131, 137, 139, 149, 151, 157, 163,
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.graph;
+
+import org.junit.Test;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @cdk.module test-core
+ */
+public class CompactMoleculeTest {
+
+    private final IChemObjectBuilder bldr = SilentChemObjectBuilder.getInstance();
+    private final SmilesParser       sp   = new SmilesParser(bldr);
+
+    @Test public void ethanol() throws Exception {
+        CompactMolecule mol = CompactMolecule.of(sp.parseSmiles("CC[O-]"));
+        assertThat(mol.order(), is(3));
+        assertThat(mol.size(), is(2));
+        assertThat(mol.atomicNumber(0), is(6));
+        assertThat(mol.atomicNumber(2), is(8));
+        assertThat(mol.charge(0), is(0));
+        assertThat(mol.charge(2), is(-1));
+        assertThat(mol.implicitHydrogens(0), is(3));
+        assertThat(mol.implicitHydrogens(1), is(2));
+        assertThat(mol.implicitHydrogens(2), is(0));
+        assertThat(mol.degree(0), is(1));
+        assertThat(mol.degree(1), is(2));
+        assertThat(mol.offset(0), is(0));
+        assertThat(mol.offset(1), is(1));
+        assertThat(mol.offset(2), is(3));
+        assertThat(mol.offset(3), is(4));
+        assertThat(mol.neighbor(mol.offset(1)), is(0));
+        assertThat(mol.neighbor(mol.offset(1) + 1), is(2));
+        assertThat(mol.edge(mol.offset(1) + 1), is(1));
+        assertThat(mol.edge(1, 2), is(1));
+        assertThat(mol.edge(2, 1), is(1));
+        assertThat(mol.edge(0, 2), is(-1));
+        assertThat(mol.begin(1), is(1));
+        assertThat(mol.end(1), is(2));
+        assertThat(mol.bondOrder(0), is(1));
+    }
+
+    @Test public void benzene() throws Exception {
+        CompactMolecule mol = CompactMolecule.of(sp.parseSmiles("c1ccccc1"));
+        for (int v = 0; v < mol.order(); v++)
+            assertTrue(mol.isAromaticAtom(v));
+        for (int e = 0; e < mol.size(); e++) {
+            assertTrue(mol.isAromaticBond(e));
+            assertThat(mol.bondOrder(e), is(e % 2 == 0 ? 2 : 1));
+        }
+        mol = CompactMolecule.of(sp.parseSmiles("C1CCCCC1"));
+        assertFalse(mol.isAromaticAtom(0));
+        assertFalse(mol.isAromaticBond(0));
+    }
+
+    @Test public void pseudoAtom() throws Exception {
+        CompactMolecule mol = CompactMolecule.of(sp.parseSmiles("*CC"));
+        assertThat(mol.atomicNumber(0), is(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingAtom() throws Exception {
+        IAtomContainer container = sp.parseSmiles("CCO");
+        container.addBond(bldr.newInstance(IBond.class, container.getAtom(0), bldr.newInstance(IAtom.class, "C")));
+        CompactMolecule.of(container);
+    }
+
+    @Test public void toAdjList() throws Exception {
+        IAtomContainer container = sp.parseSmiles("CC1=CC2=CC=CC=C2C(N)=C1");
+        assertThat(CompactMolecule.of(container).toAdjList(), is(GraphUtil.toAdjList(container)));
+    }
+}
@@ -46,6 +46,7 @@ import org.openscience.cdk.exception.NoSuchAtomExceptionTest;
 import org.openscience.cdk.exception.NoSuchAtomTypeExceptionTest;
 import org.openscience.cdk.graph.AllPairsShortestPathsTest;
 import org.openscience.cdk.graph.BitMatrixTest;
+import org.openscience.cdk.graph.CompactMoleculeTest;
 import org.openscience.cdk.graph.ConnectedComponentsTest;
 import org.openscience.cdk.graph.CyclesTest;
 import org.openscience.cdk.graph.EssentialCyclesTest;
@@ -125,6 +126,7 @@ import org.openscience.cdk.tools.periodictable.PeriodicTableTest;
     JumboCyclicVertexSearchTest.class,
     RingSearchTest.class,
     BitMatrixTest.class,
+    CompactMoleculeTest.class,
     InitialCyclesTest.class,
     GreedyBasisTest.class,
     RelevantCyclesTest.class,
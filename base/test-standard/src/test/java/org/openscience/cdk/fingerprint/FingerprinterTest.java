@@ -25,12 +25,14 @@ package org.openscience.cdk.fingerprint;
 import java.io.InputStream;
 import java.math.BigInteger;
 import java.util.BitSet;
+import java.util.Random;
 
 import org.junit.Assert;
 import org.junit.Test;
 import org.openscience.cdk.Atom;
 import org.openscience.cdk.ChemFile;
 import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.PseudoAtom;
 import org.openscience.cdk.Reaction;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.graph.AtomContainerAtomPermutor;
@@ -244,6 +246,73 @@ public class FingerprinterTest extends AbstractFixedLengthFingerprinterTest {
         }
     }
 
+    @Test public void legacyEncoding() throws Exception {
+        IAtomContainer pseudo = MoleculeFactory.makeAlphaPinene();
+        pseudo.addAtom(new PseudoAtom("R1"));
+        pseudo.addBond(0, pseudo.getAtomCount() - 1, IBond.Order.SINGLE);
+        IAtomContainer halides = MoleculeFactory.makeBenzene();
+        halides.addAtom(new Atom("Cl"));
+        halides.addAtom(new Atom("Br"));
+        halides.addAtom(new Atom("Si"));
+        halides.addBond(0, 6, IBond.Order.SINGLE);
+        halides.addBond(2, 7, IBond.Order.SINGLE);
+        halides.addBond(4, 8, IBond.Order.SINGLE);
+        IAtomContainer[] containers = {MoleculeFactory.makeIndole(), MoleculeFactory.makePyrrole(),
+                                       MoleculeFactory.makeAlphaPinene(), MoleculeFactory.makeAzulene(),
+                                       MoleculeFactory.makeBiphenyl(), MoleculeFactory.makeAdenine(),
+                                       MoleculeFactory.makeThiazole(), MoleculeFactory.makeQuinone(),
+                                       MoleculeFactory.makeBranchedAliphatic(), MoleculeFactory.makeSpiroRings(),
+                                       pseudo, halides};
+        for (Fingerprinter fpr : new Fingerprinter[]{new Fingerprinter(), new Fingerprinter(512, 6),
+                                                     new Fingerprinter(1000, 4), new GraphOnlyFingerprinter()}) {
+            for (IAtomContainer container : containers) {
+                BitSet actual   = fpr.getBitFingerprint(container).asBitSet();
+                BitSet expected = new BitSet(fpr.getSize());
+                for (int hash : fpr.findPathes(container, fpr.getSearchDepth()))
+                    expected.set(new Random(hash).nextInt(fpr.getSize()));
+                Assert.assertEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test public void randomInt() {
+        Random rnd = new Random(42);
+        for (int n : new int[]{1, 2, 3, 7, 512, 1000, 1024, 1 << 30, (1 << 30) + 1, Integer.MAX_VALUE}) {
+            for (int i = 0; i < 1000; i++) {
+                int seed = rnd.nextInt();
+                Assert.assertEquals(new Random(seed).nextInt(n), Fingerprinter.randomInt(seed, n));
+            }
+        }
+    }
+
+    @Test public void hashedPaths() throws Exception {
+        Fingerprinter fpr = new Fingerprinter();
+        Assert.assertFalse(fpr.isHashedPaths());
+        IBitFingerprint legacy = fpr.getBitFingerprint(MoleculeFactory.makeIndole());
+        fpr.setHashedPaths(true);
+        Assert.assertTrue(fpr.isHashedPaths());
+        IBitFingerprint hashed = fpr.getBitFingerprint(MoleculeFactory.makeIndole());
+        Assert.assertFalse(legacy.equals(hashed));
+        Assert.assertEquals(hashed, fpr.getBitFingerprint(MoleculeFactory.makeIndole()));
+
+        // independent of the atom order
+        IAtomContainer container = MoleculeFactory.makeAdenine();
+        IBitFingerprint expected = fpr.getBitFingerprint(container);
+        AtomContainerAtomPermutor permutor = new AtomContainerAtomPermutor(container);
+        while (permutor.hasNext()) {
+            Assert.assertEquals(expected, fpr.getBitFingerprint(permutor.next()));
+        }
+    }
+
+    @Test public void hashedPaths_substructure() throws Exception {
+        Fingerprinter fpr = new Fingerprinter();
+        fpr.setHashedPaths(true);
+        BitSet indole  = fpr.getBitFingerprint(MoleculeFactory.makeIndole()).asBitSet();
+        BitSet pyrrole = fpr.getBitFingerprint(MoleculeFactory.makePyrrole()).asBitSet();
+        Assert.assertTrue(FingerprinterTool.isSubset(indole, pyrrole));
+        Assert.assertFalse(FingerprinterTool.isSubset(pyrrole, indole));
+    }
+
     public static IAtomContainer makeFragment1()
 	{
 		IAtomContainer mol = DefaultChemObjectBuilder.getInstance().newInstance(IAtomContainer.class);
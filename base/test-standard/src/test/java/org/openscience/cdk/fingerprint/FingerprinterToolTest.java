@@ -24,9 +24,13 @@
  */
 package org.openscience.cdk.fingerprint;
 
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -90,5 +94,95 @@ public class FingerprinterToolTest extends CDKTestCase
         Assert.assertEquals(3,
                             FingerprinterTool.differences(bs1, bs2).size());
     }
+
+    @Test public void testPack() throws Exception {
+        List<BitSet> fps = randomFingerprints(10, 130, 1);
+        long[] packed = FingerprinterTool.pack(fps, 130);
+        Assert.assertEquals(30, packed.length);
+        for (int i = 0; i < fps.size(); i++)
+            Assert.assertEquals(fps.get(i), FingerprinterTool.unpack(packed, 130, i));
+    }
+
+    @Test public void testBitFrequencies() throws Exception {
+        List<BitSet> fps = randomFingerprints(150000, 100, 2);
+        int[] expected = new int[100];
+        for (BitSet fp : fps)
+            for (int i = fp.nextSetBit(0); i >= 0; i = fp.nextSetBit(i + 1))
+                expected[i]++;
+        long[] packed = FingerprinterTool.pack(fps, 100);
+        Assert.assertArrayEquals(expected, FingerprinterTool.bitFrequencies(packed, 100));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Assert.assertArrayEquals(expected, FingerprinterTool.bitFrequencies(packed, 100, executor));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test public void testFilter() throws Exception {
+        List<BitSet> fps = randomFingerprints(100, 200, 3);
+        long[] packed = FingerprinterTool.pack(fps, 200);
+        int[] freq = FingerprinterTool.bitFrequencies(packed, 200);
+        BitSet keep = FingerprinterTool.frequentBits(freq, 10);
+        for (int i = 0; i < 200; i++)
+            Assert.assertEquals(freq[i] >= 10, keep.get(i));
+
+        int n = keep.cardinality();
+        long[] filtered = FingerprinterTool.filter(packed, 200, keep);
+        Assert.assertEquals(100 * ((n + 63) / 64), filtered.length);
+        long[] unfolded = FingerprinterTool.unfold(filtered, keep, 200);
+        for (int i = 0; i < fps.size(); i++) {
+            BitSet expected = (BitSet) fps.get(i).clone();
+            expected.and(keep);
+            Assert.assertEquals(expected.cardinality(), FingerprinterTool.unpack(filtered, n, i).cardinality());
+            Assert.assertEquals(expected, FingerprinterTool.unpack(unfolded, 200, i));
+        }
+    }
+
+    @Test public void testFold() throws Exception {
+        List<BitSet> fps = randomFingerprints(100, 1024, 4);
+        long[] folded = FingerprinterTool.fold(FingerprinterTool.pack(fps, 1024), 1024, 166);
+        for (int i = 0; i < fps.size(); i++) {
+            BitSet expected = new BitSet();
+            BitSet fp = fps.get(i);
+            for (int j = fp.nextSetBit(0); j >= 0; j = fp.nextSetBit(j + 1))
+                expected.set(j % 166);
+            Assert.assertEquals(expected, FingerprinterTool.unpack(folded, 166, i));
+        }
+    }
+
+    @Test public void testSupersets() throws Exception {
+        List<BitSet> fps = randomFingerprints(100000, 128, 5);
+        long[] packed = FingerprinterTool.pack(fps, 128);
+        BitSet query = new BitSet();
+        query.set(3);
+        query.set(100);
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < fps.size(); i++)
+            if (FingerprinterTool.isSubset(fps.get(i), query))
+                expected.add(i);
+        int[] hits = FingerprinterTool.supersets(packed, 128, query);
+        Assert.assertEquals(expected.size(), hits.length);
+        for (int i = 0; i < hits.length; i++)
+            Assert.assertEquals((int) expected.get(i), hits[i]);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Assert.assertArrayEquals(hits, FingerprinterTool.supersets(packed, 128, query, executor));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static List<BitSet> randomFingerprints(int n, int length, long seed) {
+        Random rand = new Random(seed);
+        List<BitSet> fps = new ArrayList<BitSet>();
+        for (int i = 0; i < n; i++) {
+            BitSet fp = new BitSet(length);
+            for (int j = 0; j < length; j++)
+                if (rand.nextInt(4) == 0) fp.set(j);
+            fps.add(fp);
+        }
+        return fps;
+    }
 }
 
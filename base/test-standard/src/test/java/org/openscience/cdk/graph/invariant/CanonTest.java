@@ -25,7 +25,9 @@
 package org.openscience.cdk.graph.invariant;
 
 import org.junit.Test;
+import org.openscience.cdk.graph.CompactMolecule;
 import org.openscience.cdk.graph.GraphUtil;
+import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.silent.SilentChemObjectBuilder;
 import org.openscience.cdk.smiles.SmilesParser;
@@ -121,6 +123,45 @@ public class CanonTest {
         assertThat(symmetry, is(new long[]{4, 2, 3, 5, 5, 1}));
     }
     
+    @Test public void compactLabelling() throws Exception {
+        for (String smi : new String[]{"OC1=CC=CC=C1", "C1SSCSSS1", "C([H])([H])C([H])([H])O",
+                                       "CC(C)(C)c1ccc(O)cc1", "B1[H]B[H]1", "[NH4+].[Cl-]"}) {
+            IAtomContainer m = smi(smi);
+            CompactMolecule cm = CompactMolecule.of(m);
+            assertThat(Canon.label(cm), is(Canon.label(m, toAdjList(m))));
+            assertThat(Canon.symmetry(cm), is(Canon.symmetry(m, toAdjList(m))));
+        }
+    }
+
+    @Test public void testBasicInvariants_compact() throws Exception {
+        IAtomContainer m = smi("CCO");
+        long[] exp = new long[]{1065731, 1082114, 541697};
+        long[] act = Canon.basicInvariants(CompactMolecule.of(m), toAdjList(m));
+        assertThat(act, is(exp));
+    }
+
+    /**
+     * The compact structure stores unset hydrogen counts and charges as 0,
+     * unlike the container methods no exception is thrown.
+     */
+    @Test public void compactUnsetValues() throws Exception {
+        IAtomContainer m = smi("CCO");
+        m.getAtom(2).setImplicitHydrogenCount(0);
+        IAtomContainer unset = m.clone();
+        for (IAtom atom : unset.atoms())
+            atom.setFormalCharge(null);
+        unset.getAtom(2).setImplicitHydrogenCount(null);
+        assertThat(Canon.label(CompactMolecule.of(unset)), is(Canon.label(m, toAdjList(m))));
+        assertThat(Canon.symmetry(CompactMolecule.of(unset)), is(Canon.symmetry(m, toAdjList(m))));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void unsetHydrogenCount() throws Exception {
+        IAtomContainer m = smi("CCO");
+        m.getAtom(2).setImplicitHydrogenCount(null);
+        Canon.label(m, toAdjList(m));
+    }
+
     static final SmilesParser sp = new SmilesParser(SilentChemObjectBuilder.getInstance());
 
     static IAtomContainer smi(String smi) throws Exception {
@@ -103,6 +103,26 @@ public class CircularFingerprinter implements IFingerprinter
 		}
 	}
 
+	/**
+	 * Receives the fingerprints generated by {@link CircularFingerprinter#calculate(IAtomContainer,FeatureListener)}
+	 * as each iteration is completed. The fingerprints of an iteration are final once they have been passed to the
+	 * listener, so the ECFP_{p} fingerprints for every smaller diameter are available from a single pass: ECFP2 is
+	 * iterations 0 and 1, ECFP4 iterations 0 to 2 and so on.
+	 */
+	public static interface FeatureListener
+	{
+		/**
+		 * The unique fingerprints that were added by an iteration. The arrays are reused for each iteration and
+		 * molecule, and may be longer than the count: only the first 'count' values are defined.
+		 * 
+		 * @param iteration iteration number, 0 for the initial atom identities
+		 * @param hashes hash code of each fingerprint
+		 * @param atoms index of the central atom of each fingerprint (see {@link CircularFingerprinter#getAtoms(int,int)})
+		 * @param count number of fingerprints added by the iteration
+		 */
+		public void features(int iteration,int[] hashes,int[] atoms,int count);
+	}
+
 	// ------------ private members ------------
 	
 	private final int ATOMCLASS_ECFP=1;
@@ -111,11 +131,19 @@ public class CircularFingerprinter implements IFingerprinter
 	private int classType,atomClass;
 	private IAtomContainer mol;
 	
-	private int[] identity;
-	private boolean[] resolvedChiral;
-	private int[][] atomGroup;
+	private int[] identity=new int[0],newident=new int[0];
+	private boolean[] resolvedChiral=new boolean[0];
+	private int[] seq=new int[2]; // recycled for each circular iteration
 	private CRC32 crc=new CRC32(); // recycled for each CRC calculation
-	private ArrayList<FP> fplist=new ArrayList<FP>();
+	private ArrayList<FP> fplist=new ArrayList<FP>(); // built on demand from the feature arrays
+	
+	// the unique fingerprints found so far: hash code, iteration and central atom; these arrays, the atom coverage bit
+	// sets and the lookup table are recycled for each molecule
+	private int nfeat,natoms,niter,words;
+	private int[] featHash=new int[0],featIter=new int[0],featAtom=new int[0];
+	private int[] iterHash=new int[0],iterAtom=new int[0]; // the fingerprints of one iteration, passed to listeners
+	private long[] coverage=new long[0]; // atoms within 'iteration' bonds of each atom, 'words' longs per bit set
+	private int[] table=new int[0]; // open addressed table of coverage bit set to feature index+1
 	
 	// summary information about the molecule, for quick access
 	private boolean[] amask; // true for all heavy atoms, i.e. hydrogens and non-elements are excluded
@@ -124,6 +152,7 @@ public class CircularFingerprinter implements IFingerprinter
 	private int[] ringBlock; // ring block identifier; 0=not in a ring
 	private int[][] smallRings; // all rings of size 3 through 7
 	private int[] bondOrder; // numeric bond order for easy reference
+	private int[] bondBeg,bondEnd; // atom index at either end of each bond, or -1 if the bond is not a pair of atoms
 	private boolean[] atomArom,bondArom; // aromaticity precalculated
 	private int[][] tetra; // tetrahedral rubric, a precursor to chirality
 
@@ -163,7 +192,26 @@ public class CircularFingerprinter implements IFingerprinter
 	 * 
 	 * @param mol chemical structure; all nodes should be known legitimate elements
 	 */
+	@TestMethod("testFeatureListener")
 	public void calculate(IAtomContainer mol) throws CDKException
+	{
+		calculate(mol,null);
+	}
+
+	/**
+	 * Calculates the fingerprints for the given {@link IAtomContainer}, passing the new fingerprints of each iteration
+	 * to the listener (if not null) as soon as the iteration is complete. The fingerprints are also available afterwards
+	 * from {@link #getFPCount()} and {@link #getFP(int)}.
+	 * 
+	 * <p>An instance is intended to be confined to a single thread and reused for many molecules: the working arrays are
+	 * kept between calls, and the list of atoms covered by each fingerprint is only built if it is asked for (by
+	 * {@link #getFP(int)} or {@link #getAtoms(int,int)}).</p>
+	 * 
+	 * @param mol chemical structure; all nodes should be known legitimate elements
+	 * @param listener receives the fingerprints of each iteration, may be null
+	 */
+	@TestMethod("testFeatureListener")
+	public void calculate(IAtomContainer mol,FeatureListener listener) throws CDKException
 	{
 		this.mol=mol;
 		fplist.clear();
@@ -173,9 +221,10 @@ public class CircularFingerprinter implements IFingerprinter
 		if (atomClass==ATOMCLASS_FCFP) calculateBioTypes();
 		
 		final int na=mol.getAtomCount();
-		identity=new int[na];
-		resolvedChiral=new boolean[na];;
-		atomGroup=new int[na][];
+		niter=classType==CLASS_ECFP2 || classType==CLASS_FCFP2 ? 1 : 
+			  classType==CLASS_ECFP4 || classType==CLASS_FCFP4 ? 2 : 
+			  classType==CLASS_ECFP6 || classType==CLASS_FCFP6 ? 3 : 0;
+		prepareFeatures(na);
 
 		for (int n=0;n<na;n++) if (amask[n])
 		{
@@ -183,26 +232,26 @@ public class CircularFingerprinter implements IFingerprinter
 				identity[n]=initialIdentityECFP(n);
 			else // atomClass==ATOMCLASS_FCFP
 				identity[n]=initialIdentityFCFP(n);
-			atomGroup[n]=new int[]{n};
-			fplist.add(new FP(identity[n],0,atomGroup[n]));
+			coverage[n*words+(n>>>6)]=1L<<n;
+			considerNewFP(identity[n],0,n);
 		}
-		
-		int niter=classType==CLASS_ECFP2 || classType==CLASS_FCFP2 ? 1 : 
-				  classType==CLASS_ECFP4 || classType==CLASS_FCFP4 ? 2 : 
-				  classType==CLASS_ECFP6 || classType==CLASS_FCFP6 ? 3 : 0;
+		emitFeatures(listener,0,0);
 
 		// iterate outward
 		for (int iter=1;iter<=niter;iter++)
 		{
-			final int[] newident=new int[na];
+			final int first=nfeat;
 			for (int n=0;n<na;n++) if (amask[n]) newident[n]=circularIterate(iter,n);
+			final int[] swap=identity;
 			identity=newident;
+			newident=swap;
 			
 			for (int n=0;n<na;n++) if (amask[n])
 			{
-				atomGroup[n]=growAtoms(atomGroup[n]);
-				considerNewFP(new FP(identity[n],iter,atomGroup[n]));
+				growAtoms(iter,n);
+				considerNewFP(identity[n],iter,n);
 			}
+			emitFeatures(listener,iter,first);
 		}		
 	}
 	
@@ -211,7 +260,7 @@ public class CircularFingerprinter implements IFingerprinter
 	 * 
 	 * @return total number of unique fingerprint hashes generated
 	 * */
-	public int getFPCount() {return fplist.size();}
+	public int getFPCount() {return nfeat;}
 	
 	/**
 	 * Returns the requested fingerprint.
@@ -219,7 +268,40 @@ public class CircularFingerprinter implements IFingerprinter
 	 * @param N index of fingerprint (0-based)
 	 * @return instance of a fingerprint hash
 	 * */
-	public FP getFP(int N) {return fplist.get(N);}
+	public FP getFP(int N) 
+	{
+		if (fplist.size()<nfeat)
+		{
+			for (int n=fplist.size();n<nfeat;n++) fplist.add(new FP(featHash[n],featIter[n],getAtoms(featIter[n],featAtom[n])));
+		}
+		return fplist.get(N);
+	}
+	
+	/**
+	 * Returns the indices of the atoms that are within the given number of iterations (bonds) of an atom, in ascending
+	 * order, i.e. the atoms covered by a fingerprint that was found for that atom at that iteration. Refers to the most
+	 * recently calculated molecule.
+	 * 
+	 * @param iteration the iteration, from 0 to the number of iterations of the fingerprint class
+	 * @param atom index of the central (heavy) atom
+	 * @return the atoms covered
+	 */
+	@TestMethod("testFeatureListener")
+	public int[] getAtoms(int iteration,int atom)
+	{
+		if (iteration<0 || iteration>niter) throw new IllegalArgumentException("Invalid iteration: "+iteration);
+		if (atom<0 || atom>=natoms || !amask[atom]) throw new IllegalArgumentException("Invalid atom: "+atom);
+		final int off=(iteration*natoms+atom)*words;
+		int sz=0;
+		for (int i=0;i<words;i++) sz+=Long.bitCount(coverage[off+i]);
+		final int[] atoms=new int[sz];
+		sz=0;
+		for (int i=0;i<words;i++) 
+		{
+			for (long w=coverage[off+i];w!=0;w&=w-1) atoms[sz++]=(i<<6)+Long.numberOfTrailingZeros(w);
+		}
+		return atoms;
+	}
 	
 	/**
 	 * Calculates the circular fingerprint for the given {@link IAtomContainer}, and <b>folds</b> the result into a single bitset
@@ -234,9 +316,9 @@ public class CircularFingerprinter implements IFingerprinter
 		calculate(mol);
 		final int FOLDING_SIZE=1024;
 		final BitSet bits=new BitSet(FOLDING_SIZE);
-		for (int n=0;n<fplist.size();n++)
+		for (int n=0;n<nfeat;n++)
 		{
-			int i=fplist.get(n).hashCode;
+			int i=featHash[n];
 			long b=i>=0 ? i : ((i&0x7FFFFFFF)|(1L<<31));
 			bits.set((int)(b%FOLDING_SIZE));
 		}
@@ -245,7 +327,8 @@ public class CircularFingerprinter implements IFingerprinter
 
 	/**
 	 * Calculates the circular fingerprint for the given {@link IAtomContainer}, and returns a datastructure that enumerates all
-	 * of the fingerprints, and their counts (i.e. does <b>not</b> fold them into a bitmask).
+	 * of the fingerprints, and their counts (i.e. does <b>not</b> fold them into a bitmask). The result is a
+	 * {@link SortedCountFingerprint}, which can be compared without boxing.
 	 * 
 	 * @param  mol IAtomContainer for which the fingerprint should be calculated.
 	 * @return the count fingerprint
@@ -255,36 +338,8 @@ public class CircularFingerprinter implements IFingerprinter
 	{
 		calculate(mol);
 		
-		// extract a convenient {hash:count} datastructure
-		final HashMap<Integer,Integer> map=new HashMap<Integer,Integer>();
-		for (FP fp : fplist)
-		{
-			if (map.containsKey(fp.hashCode)) 
-				map.put(fp.hashCode,map.get(fp.hashCode)+1);
-			else
-				map.put(fp.hashCode,1);
-		}
-		final int sz=map.size();
-		final int[] hash=new int[sz],count=new int[sz];
-		int n=0;
-		for (int h : map.keySet())
-		{
-			hash[n]=h;
-			count[n++]=map.get(h);
-		}
-		
-		// implement a custom instance that provides a window directly into the summary content
-		return new ICountFingerprint()
-		{
-        	public long size() {return 4294967296l;}
-        	public int numOfPopulatedbins() {return sz;}
-        	public int getCount(int index) {return count[index];}
-        	public int getHash(int index) {return hash[index];}
-        	public void merge(ICountFingerprint fp) {}
-        	public void setBehaveAsBitFingerprint(boolean behaveAsBitFingerprint) {}
-            public boolean hasHash(int hash) {return map.containsKey(hash);}
-            public int getCountForHash(int hash) {return map.containsKey(hash) ? map.get(hash) : 0;}
-		};
+		// the distinct hashes (sorted) and their counts, held in primitive arrays
+		return SortedCountFingerprint.fromFeatures(featHash,nfeat);
 	}
     
 	/**
@@ -368,7 +423,9 @@ public class CircularFingerprinter implements IFingerprinter
 		
 		// build out a sequence, formulated as
 		//     {iteration,original#, adj0-bondorder,adj0-identity, ..., [chiral?]}
-		final int[] seq=new int[2+2*adj.length];
+		final int sz=2+2*adj.length;
+		if (seq.length<sz) seq=new int[sz];
+		final int[] seq=this.seq;
 		seq[0]=iter;
 		seq[1]=identity[atom];
 		for (int n=0;n<adj.length;n++)
@@ -393,7 +450,7 @@ public class CircularFingerprinter implements IFingerprinter
 		
 		// roll it up into a hash code
 		crc.reset();
-		for (int n=0;n<seq.length;n+=2)
+		for (int n=0;n<sz;n+=2)
 		{
 			crc.update(seq[n]);
 			final int v=seq[n+1];
@@ -433,49 +490,96 @@ public class CircularFingerprinter implements IFingerprinter
 		return (int)crc.getValue();
 	}
 	
-	// takes a set of atom indices and adds all atoms that are adjacent to at least one of them; the resulting list of
-	// atom indices is sorted
-	private int[] growAtoms(int[] atoms)
+	// sizes the working arrays for a molecule with the given number of atoms, reusing the arrays from the previous molecule
+	// where they are large enough
+	private void prepareFeatures(int na)
 	{
-		final int na=mol.getAtomCount();
-		boolean[] mask=new boolean[na];
-		for (int n=0;n<atoms.length;n++)
+		natoms=na;
+		words=(na+63)>>>6;
+		nfeat=0;
+		if (identity.length<na)
 		{
-			mask[atoms[n]]=true;
-			int[] adj=atomAdj[atoms[n]];
-			for (int i=0;i<adj.length;i++) mask[adj[i]]=true;
+			identity=new int[na];
+			newident=new int[na];
+			resolvedChiral=new boolean[na];
+			iterHash=new int[na];
+			iterAtom=new int[na];
+		}
+		else Arrays.fill(resolvedChiral,0,na,false);
+		
+		final int maxfeat=(niter+1)*na;
+		if (featHash.length<maxfeat)
+		{
+			featHash=new int[maxfeat];
+			featIter=new int[maxfeat];
+			featAtom=new int[maxfeat];
+		}
+		final int covsz=maxfeat*words;
+		if (coverage.length<covsz) coverage=new long[covsz];
+		else Arrays.fill(coverage,0,na*words,0L); // only the first iteration needs clearing, the rest is overwritten
+		
+		int tsz=16;
+		while (tsz<2*maxfeat) tsz<<=1;
+		if (table.length<tsz) table=new int[tsz];
+		else Arrays.fill(table,0);
+	}
+
+	// the atoms covered by an atom grow by one bond each iteration: combine the previous coverage of the atom and its neighbours
+	private void growAtoms(int iter,int atom)
+	{
+		final int na=natoms,wsz=words;
+		final long[] cov=coverage;
+		final int dst=(iter*na+atom)*wsz,src=dst-na*wsz;
+		System.arraycopy(cov,src,cov,dst,wsz);
+		final int[] adj=atomAdj[atom];
+		for (int n=0;n<adj.length;n++)
+		{
+			final int off=((iter-1)*na+adj[n])*wsz;
+			for (int i=0;i<wsz;i++) cov[dst+i]|=cov[off+i];
 		}
-		int sz=0;
-		for (int n=0;n<na;n++) if (mask[n]) sz++;
-		int[] newList=new int[sz];
-		for (int n=na-1;n>=0;n--) if (mask[n]) newList[--sz]=n;
-		return newList;
 	}
 	
 	// consider adding a new fingerprint: if it's a duplicate with regard to the atom list, either replace the match or
 	// discard it
-	private void considerNewFP(FP newFP)
+	private void considerNewFP(int hashCode,int iter,int atom)
 	{
-//wr("CONSIDER:"+newFP.iteration+",hash="+newFP.hashCode); //foo
-		int hit=-1;
-		FP fp=null;
-		for (int n=0;n<fplist.size();n++)
-		{
-			fp=fplist.get(n);
-			boolean equal=fp.atoms.length==newFP.atoms.length;
-			for (int i=fp.atoms.length-1;equal && i>=0;i--) if (fp.atoms[i]!=newFP.atoms[i]) equal=false;
-			if (equal) {hit=n; break;}
-		}
-		if (hit<0) 
+		final int wsz=words,off=(iter*natoms+atom)*wsz,mask=table.length-1;
+		final long[] cov=coverage;
+		
+		long h=0;
+		for (int i=0;i<wsz;i++) h=(h^cov[off+i])*0x9E3779B97F4A7C15L;
+		int slot=(int)(h^(h>>>32))&mask;
+		
+		for (;table[slot]!=0;slot=(slot+1)&mask)
 		{
-			fplist.add(newFP);
+			final int f=table[slot]-1;
+			final int other=(featIter[f]*natoms+featAtom[f])*wsz;
+			boolean equal=true;
+			for (int i=0;equal && i<wsz;i++) if (cov[off+i]!=cov[other+i]) equal=false;
+			if (!equal) continue;
+			
+			// if the preexisting fingerprint is from an earlier iteration, or has a lower hashcode, discard
+			if (featIter[f]<iter || featHash[f]<hashCode) return;
+			featHash[f]=hashCode;
+			featAtom[f]=atom;
 			return;
 		}
 		
-		// if the preexisting fingerprint is from an earlier iteration, or has a lower hashcode, discard
-		if (fp.iteration<newFP.iteration || fp.hashCode<newFP.hashCode) return;
-		fplist.set(hit,newFP);
-	}	
+		table[slot]=nfeat+1;
+		featHash[nfeat]=hashCode;
+		featIter[nfeat]=iter;
+		featAtom[nfeat++]=atom;
+	}
+	
+	// passes the fingerprints added by an iteration (from index 'first' onward) to the listener, if any
+	private void emitFeatures(FeatureListener listener,int iter,int first)
+	{
+		if (listener==null) return;
+		final int count=nfeat-first;
+		System.arraycopy(featHash,first,iterHash,0,count);
+		System.arraycopy(featAtom,first,iterAtom,0,count);
+		listener.features(iter,iterHash,iterAtom,count);
+	}
 	
 	// ------------ molecule analysis: cached cheminformatics ------------
 	
@@ -492,11 +596,34 @@ public class CircularFingerprinter implements IFingerprinter
 		bondAdj=new int[na][];
 		bondOrder=new int[nb];
 		hcount=new int[na];
-		for (int n=0;n<mol.getBondCount();n++)
+		
+		// atom indices of the bond ends, looked up once rather than searching the atom list for each use
+		final Map<IAtom,Integer> atomIndex=new HashMap<IAtom,Integer>(2*na);
+		for (int n=na-1;n>=0;n--) atomIndex.put(mol.getAtom(n),n);
+		bondBeg=new int[nb];
+		bondEnd=new int[nb];
+		final int[] bondSumAll=new int[na]; // sum of bond orders to each atom, including those to hydrogens
+		for (int n=0;n<nb;n++)
+		{
+			IBond bond=mol.getBond(n);
+			final int o=bond.getOrder()==IBond.Order.SINGLE ? 1 : bond.getOrder()==IBond.Order.DOUBLE ? 2 :
+						bond.getOrder()==IBond.Order.TRIPLE ? 3 : bond.getOrder()==IBond.Order.QUADRUPLE ? 4 : 0;
+			for (IAtom atom : bond.atoms())
+			{
+				Integer idx=atomIndex.get(atom);
+				if (idx!=null) bondSumAll[idx]+=o;
+			}
+			if (bond.getAtomCount()!=2) {bondBeg[n]=bondEnd[n]=-1; continue;}
+			Integer a1=atomIndex.get(bond.getAtom(0)),a2=atomIndex.get(bond.getAtom(1));
+			bondBeg[n]=a1==null ? -1 : a1;
+			bondEnd[n]=a2==null ? -1 : a2;
+		}
+		
+		for (int n=0;n<nb;n++)
 		{
 			IBond bond=mol.getBond(n);
 			if (bond.getAtomCount()!=2) continue;
-			int a1=mol.getAtomNumber(bond.getAtom(0)),a2=mol.getAtomNumber(bond.getAtom(1));
+			int a1=bondBeg[n],a2=bondEnd[n];
 			if (amask[a1] && amask[a2])
 			{
     			atomAdj[a1]=appendInteger(atomAdj[a1],a2);
@@ -532,14 +659,7 @@ public class CircularFingerprinter implements IFingerprinter
         	final int unpaired=0; // (not current available, maybe introduce later)
         	hy+=ch-unpaired;
 			// (needs to include actual H's) for (int i=0;i<bondAdj[n].length;i++) hy-=bondOrder[bondAdj[n][i]];
-			for (IBond bond : mol.getConnectedBondsList(atom))
-			{
-				if (bond.getOrder()==IBond.Order.SINGLE) hy-=1;
-				else if (bond.getOrder()==IBond.Order.DOUBLE) hy-=2;
-				else if (bond.getOrder()==IBond.Order.TRIPLE) hy-=3;
-				else if (bond.getOrder()==IBond.Order.QUADRUPLE) hy-=4;
-				// (look for zero-bonds later on)
-			}
+			hy-=bondSumAll[n]; // (look for zero-bonds later on)
         	hcount[n]+=Math.max(0,hy);
         }
 		
@@ -708,9 +828,8 @@ public class CircularFingerprinter implements IFingerprinter
 		boolean[] piAtom=new boolean[na];
 		for (int n=0;n<nb;n++) if (bondOrder[n]==2)
 		{
-			IBond bond=mol.getBond(n);
-			piAtom[mol.getAtomNumber(bond.getAtom(0))]=true;
-			piAtom[mol.getAtomNumber(bond.getAtom(1))]=true;
+			piAtom[bondBeg[n]]=true;
+			piAtom[bondEnd[n]]=true;
 		}
 
 		ArrayList<int[]> maybe=new ArrayList<int[]>(); // rings which may yet be aromatic
@@ -903,7 +1022,7 @@ public class CircularFingerprinter implements IFingerprinter
 		{
 			IBond bond=mol.getBond(n);
 			if (bond.getAtomCount()!=2) continue;
-			int a1=mol.getAtomNumber(bond.getAtom(0)),a2=mol.getAtomNumber(bond.getAtom(1)),o=bondOrder[n];
+			int a1=bondBeg[n],a2=bondEnd[n],o=bondOrder[n];
 			if (!amask[a1] || !amask[a2]) continue;
 			bondSum[a1]+=o;
 			bondSum[a2]+=o;
@@ -1148,9 +1267,8 @@ public class CircularFingerprinter implements IFingerprinter
     // returns either the bond order in the molecule, or -1 if the atoms are both labelled as aromatic
     private int bondOrderBioType(int bidx)
     {
-    	IBond bond=mol.getBond(bidx);
-    	if (bond.getAtomCount()!=2) return 0;
-    	final int a1=mol.getAtomNumber(bond.getAtom(0)),a2=mol.getAtomNumber(bond.getAtom(1));
+    	if (mol.getBond(bidx).getAtomCount()!=2) return 0;
+    	final int a1=bondBeg[bidx],a2=bondEnd[bidx];
     	if (maskAro[a1] && maskAro[a2]) return -1;
     	return bondOrder[bidx];
     }
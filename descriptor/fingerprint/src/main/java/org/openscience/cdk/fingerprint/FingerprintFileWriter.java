@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.fingerprint;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Writes fingerprints to the binary fingerprint file format read by {@link
+ * MappedFingerprintFile}. A file holds either folded bit fingerprints of a
+ * fixed length, or unfolded (sparse) count fingerprints.
+ *
+ * <blockquote><pre>
+ * FingerprintFileWriter writer = FingerprintFileWriter.bits(new File("library.fps"), 1024);
+ * for (IAtomContainer container : library)
+ *     writer.write(fingerprinter.getBitFingerprint(container));
+ * writer.close();
+ * </pre></blockquote>
+ *
+ * The file starts with a header of six (big endian) longs: the magic number
+ * 'CDKFPRT1', the type (1: bits, 2: counts), the fingerprint length in bits
+ * (0 for counts), the number of rows, the end of the row data and the length
+ * of the longest row in bytes. The rows follow the header. Each bit row is
+ * the fingerprint packed in to 64-bit words (bit <i>i</i> is bit <i>i</i> mod
+ * 64 of word <i>i</i> / 64) so every row has the same width. A count row is
+ * the <i>n</i> distinct hashes (ascending) followed by their <i>n</i> counts,
+ * all as 32-bit integers. For count files, the byte offset of each row and
+ * the end of the last row (a long[] of size <i>rows</i> + 1) follow the row
+ * data.
+ *
+ * @cdk.module fingerprint
+ * @cdk.githash
+ * @cdk.keyword fingerprint
+ * @cdk.keyword file format
+ * @see MappedFingerprintFile
+ */
+@TestClass("org.openscience.cdk.fingerprint.FingerprintFileWriterTest")
+public final class FingerprintFileWriter implements Closeable {
+
+    /** Identifies (and versions) the file format - 'CDKFPRT1'. */
+    static final long MAGIC = 0x43444B4650525431L;
+
+    /** File holds fixed length bit fingerprints. */
+    static final long TYPE_BITS = 1;
+
+    /** File holds sparse count fingerprints. */
+    static final long TYPE_COUNTS = 2;
+
+    /** Number of bytes in the header. */
+    static final int HEADER = 6 * 8;
+
+    private final File             file;
+    private final DataOutputStream out;
+
+    /** Bit fingerprint length, 0 for a count file. */
+    private final int length;
+
+    /** Offsets of the count rows (written to a temporary file), null for a bit file. */
+    private final File             offsetFile;
+    private final DataOutputStream offsets;
+
+    /** Packed words of a bit row, reused for each row. */
+    private final long[] words;
+
+    private long rows = 0, position = HEADER, longest = 0;
+    private boolean closed = false;
+
+    private FingerprintFileWriter(File file, int length, boolean counts) throws IOException {
+        this.file = file;
+        this.length = length;
+        this.words = new long[(length + 63) / 64];
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        for (int i = 0; i < HEADER / 8; i++)
+            out.writeLong(0);
+        if (counts) {
+            this.offsetFile = File.createTempFile("cdk-fp-offsets", ".tmp");
+            this.offsets = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(offsetFile), 1 << 16));
+        } else {
+            this.offsetFile = null;
+            this.offsets = null;
+        }
+    }
+
+    /**
+     * Create a file of bit fingerprints with the given length (number of
+     * bits).
+     *
+     * @param file   the file to write
+     * @param length fingerprint length
+     * @return the writer
+     * @throws IOException the file could not be created
+     */
+    @TestMethod("invalidLength")
+    public static FingerprintFileWriter bits(File file, int length) throws IOException {
+        if (length < 1)
+            throw new IllegalArgumentException("fingerprint length must be positive");
+        return new FingerprintFileWriter(file, length, false);
+    }
+
+    /**
+     * Create a file of (unfolded) count fingerprints.
+     *
+     * @param file the file to write
+     * @return the writer
+     * @throws IOException the file could not be created
+     */
+    @TestMethod("wrongType")
+    public static FingerprintFileWriter counts(File file) throws IOException {
+        return new FingerprintFileWriter(file, 0, true);
+    }
+
+    /**
+     * Append a bit fingerprint.
+     *
+     * @param fingerprint the fingerprint
+     * @throws IOException              the fingerprint could not be written
+     * @throws IllegalArgumentException the fingerprint length does not match
+     *                                  the file
+     */
+    @TestMethod("sizeMismatch")
+    public void write(IBitFingerprint fingerprint) throws IOException {
+        checkOpen(false);
+        if (fingerprint.size() != length)
+            throw new IllegalArgumentException("fingerprint length " + fingerprint.size()
+                                                       + " != file fingerprint length " + length);
+        write(fingerprint.asBitSet());
+    }
+
+    /**
+     * Append a bit fingerprint.
+     *
+     * @param fingerprint the fingerprint
+     * @throws IOException              the fingerprint could not be written
+     * @throws IllegalArgumentException a bit beyond the fingerprint length was
+     *                                  set
+     */
+    @TestMethod("sizeMismatch")
+    public void write(BitSet fingerprint) throws IOException {
+        checkOpen(false);
+        if (fingerprint.length() > length)
+            throw new IllegalArgumentException("bit " + (fingerprint.length() - 1)
+                                                       + " is beyond the fingerprint length " + length);
+        Arrays.fill(words, 0);
+        for (int i = fingerprint.nextSetBit(0); i >= 0; i = fingerprint.nextSetBit(i + 1))
+            words[i >>> 6] |= 1L << i;
+        for (long word : words)
+            out.writeLong(word);
+        longest = 8 * words.length;
+        position += 8 * words.length;
+        rows++;
+    }
+
+    /**
+     * Append a count fingerprint. The bins are stored ordered by hash, bins
+     * with the same hash are combined and empty bins are omitted.
+     *
+     * @param fingerprint the fingerprint
+     * @throws IOException the fingerprint could not be written
+     */
+    @TestMethod("wrongType")
+    public void write(ICountFingerprint fingerprint) throws IOException {
+        checkOpen(true);
+        SortedCountFingerprint sorted = SortedCountFingerprint.of(fingerprint);
+        int n = sorted.numOfPopulatedbins();
+        offsets.writeLong(position);
+        for (int i = 0; i < n; i++)
+            out.writeInt(sorted.getHash(i));
+        for (int i = 0; i < n; i++)
+            out.writeInt(sorted.getCount(i));
+        longest = Math.max(longest, 8L * n);
+        position += 8L * n;
+        rows++;
+    }
+
+    /**
+     * The number of fingerprints written.
+     *
+     * @return number of rows
+     */
+    @TestMethod("bitRows,countRows")
+    public long size() {
+        return rows;
+    }
+
+    /**
+     * Complete the header (and the offsets of a count file) and close the
+     * file.
+     *
+     * @throws IOException the file could not be written
+     */
+    @TestMethod("bitRows,countRows")
+    @Override public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            if (offsets != null) {
+                offsets.writeLong(position);
+                offsets.close();
+                InputStream in = new FileInputStream(offsetFile);
+                try {
+                    byte[] buffer = new byte[1 << 16];
+                    for (int len; (len = in.read(buffer)) > 0; )
+                        out.write(buffer, 0, len);
+                } finally {
+                    in.close();
+                }
+            }
+        } finally {
+            out.close();
+            if (offsetFile != null && !offsetFile.delete())
+                offsetFile.deleteOnExit();
+        }
+
+        RandomAccessFile header = new RandomAccessFile(file, "rw");
+        try {
+            header.writeLong(MAGIC);
+            header.writeLong(offsets != null ? TYPE_COUNTS : TYPE_BITS);
+            header.writeLong(length);
+            header.writeLong(rows);
+            header.writeLong(position);
+            header.writeLong(longest);
+        } finally {
+            header.close();
+        }
+    }
+
+    private void checkOpen(boolean counts) {
+        if (closed)
+            throw new IllegalStateException("writer has been closed");
+        if (counts != (offsets != null))
+            throw new IllegalArgumentException(counts ? "not a count fingerprint file" : "not a bit fingerprint file");
+    }
+}
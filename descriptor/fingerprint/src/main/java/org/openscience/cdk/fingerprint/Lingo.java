@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.fingerprint;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * LINGO fingerprints {@cdk.cite Vidal2005} computed directly from SMILES
+ * text. Each substring of length <i>q</i> (<i>q</i> &le; 4) of the SMILES is
+ * packed in to an int key, one character per byte, and the fingerprint is a
+ * {@link SortedCountFingerprint} of the keys and the number of times each
+ * occurs. As with the {@code LingoFingerprinter} ring closure numbers (any
+ * run of digits) are replaced by '0' first. The keys are the same substrings
+ * as the keys of {@code LingoFingerprinter.getRawFingerprint()} for the same
+ * SMILES, but no strings or maps are created and no structure is needed.
+ *
+ * <blockquote><pre>
+ * SortedCountFingerprint fp1 = Lingo.fingerprint("c1ccccc1O");
+ * SortedCountFingerprint fp2 = Lingo.fingerprint("c1ccccc1N");
+ * float sim = LingoSimilarity.calculate(fp1, fp2);
+ *
+ * // one fingerprint per line of a SMILES file
+ * List&lt;SortedCountFingerprint&gt; fps = Lingo.read(new FileReader("library.smi"));
+ * </pre></blockquote>
+ *
+ * SMILES are ASCII, any character above 0xff is treated as 0xff.
+ *
+ * @cdk.module fingerprint
+ * @cdk.githash
+ * @cdk.keyword fingerprint
+ * @cdk.keyword lingo
+ * @see org.openscience.cdk.similarity.LingoSimilarity
+ */
+@TestClass("org.openscience.cdk.fingerprint.LingoTest")
+public final class Lingo {
+
+    /** The default substring length. */
+    public static final int DEFAULT_Q = 4;
+
+    private Lingo() {
+    }
+
+    /**
+     * The LINGO fingerprint of a SMILES string using the default substring
+     * length of 4.
+     *
+     * @param smiles a SMILES string
+     * @return the fingerprint
+     */
+    @TestMethod("fingerprint")
+    public static SortedCountFingerprint fingerprint(CharSequence smiles) {
+        return fingerprint(smiles, DEFAULT_Q);
+    }
+
+    /**
+     * The LINGO fingerprint of a SMILES string.
+     *
+     * @param smiles a SMILES string
+     * @param q      substring length (1-4)
+     * @return the fingerprint
+     */
+    @TestMethod("fingerprint,invalidLength")
+    public static SortedCountFingerprint fingerprint(CharSequence smiles, int q) {
+        Builder builder = new Builder(q);
+        for (int i = 0; i < smiles.length(); i++)
+            builder.append(smiles.charAt(i));
+        return builder.build();
+    }
+
+    /**
+     * Read a SMILES file and create the LINGO fingerprint of each record,
+     * using the default substring length of 4.
+     *
+     * @param in SMILES input
+     * @return the fingerprint of each record (in order)
+     * @throws IOException the input could not be read
+     * @see #read(java.io.Reader, int)
+     */
+    @TestMethod("read")
+    public static List<SortedCountFingerprint> read(Reader in) throws IOException {
+        return read(in, DEFAULT_Q);
+    }
+
+    /**
+     * Read a SMILES file and create the LINGO fingerprint of each record.
+     * Each non-blank line is a record, the SMILES is the text up to the first
+     * whitespace and the remainder of the line (e.g. the title) is ignored.
+     * The input is scanned character by character, no strings are created.
+     * The reader is not closed.
+     *
+     * @param in SMILES input
+     * @param q  substring length (1-4)
+     * @return the fingerprint of each record (in order)
+     * @throws IOException the input could not be read
+     */
+    @TestMethod("read")
+    public static List<SortedCountFingerprint> read(Reader in, int q) throws IOException {
+        final Builder builder = new Builder(q);
+        final List<SortedCountFingerprint> fps = new ArrayList<SortedCountFingerprint>();
+        final char[] buffer = new char[8192];
+
+        boolean record = false; // a SMILES was found on this line
+        boolean title = false;  // the SMILES has ended
+        for (int len; (len = in.read(buffer)) >= 0; ) {
+            for (int i = 0; i < len; i++) {
+                final char c = buffer[i];
+                if (c == '\n' || c == '\r') {
+                    if (record)
+                        fps.add(builder.build());
+                    record = title = false;
+                } else if (title) {
+                    continue;
+                } else if (c == ' ' || c == '\t') {
+                    title = record;
+                } else {
+                    builder.append(c);
+                    record = true;
+                }
+            }
+        }
+        if (record)
+            fps.add(builder.build());
+        return fps;
+    }
+
+    /**
+     * The key of a substring, the characters packed one per byte. The keys of
+     * the fingerprint are the keys of its substrings.
+     *
+     * @param substring a substring of 1-4 characters
+     * @return the key
+     */
+    @TestMethod("fingerprint")
+    public static int key(CharSequence substring) {
+        checkLength(substring.length());
+        int key = 0;
+        for (int i = 0; i < substring.length(); i++)
+            key = (key << 8) | Math.min(substring.charAt(i), 0xff);
+        return key;
+    }
+
+    private static void checkLength(int q) {
+        if (q < 1 || q > 4)
+            throw new IllegalArgumentException("substring length must be 1-4: " + q);
+    }
+
+    /**
+     * Accumulates the keys of the substrings as the characters of a SMILES
+     * are appended, the last <i>q</i> characters are held in 'key'.
+     */
+    private static final class Builder {
+
+        private final int q, mask;
+
+        private int key, len;
+        private boolean digit;
+
+        private int[] keys = new int[64];
+        private int   nKeys;
+
+        Builder(int q) {
+            checkLength(q);
+            this.q = q;
+            this.mask = q == 4 ? 0xffffffff : (1 << (8 * q)) - 1;
+        }
+
+        void append(char c) {
+            // a run of digits (ring closures) is replaced by a single '0'
+            if (c >= '0' && c <= '9') {
+                if (digit)
+                    return;
+                digit = true;
+                c = '0';
+            } else {
+                digit = false;
+            }
+            key = ((key << 8) | Math.min(c, 0xff)) & mask;
+            if (len < q)
+                len++;
+            if (len == q) {
+                if (nKeys == keys.length)
+                    keys = Arrays.copyOf(keys, 2 * nKeys);
+                keys[nKeys++] = key;
+            }
+        }
+
+        SortedCountFingerprint build() {
+            SortedCountFingerprint fp = SortedCountFingerprint.fromFeatures(keys, nKeys);
+            key = len = nKeys = 0;
+            digit = false;
+            return fp;
+        }
+    }
+}
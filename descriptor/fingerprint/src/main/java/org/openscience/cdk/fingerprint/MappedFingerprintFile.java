@@ -0,0 +1,422 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.fingerprint;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+
+import static org.openscience.cdk.fingerprint.FingerprintFileWriter.HEADER;
+import static org.openscience.cdk.fingerprint.FingerprintFileWriter.MAGIC;
+import static org.openscience.cdk.fingerprint.FingerprintFileWriter.TYPE_BITS;
+import static org.openscience.cdk.fingerprint.FingerprintFileWriter.TYPE_COUNTS;
+
+/**
+ * Read-only access to a fingerprint file written by the {@link
+ * FingerprintFileWriter}. The file is memory mapped when opened, nothing is
+ * read or copied per row, so opening a file is independent of the number of
+ * fingerprints it holds. Rows are accessed as {@link IBitFingerprint} or
+ * {@link ICountFingerprint} views of the mapped file.
+ *
+ * <blockquote><pre>
+ * MappedFingerprintFile fps = new MappedFingerprintFile(new File("library.fps"));
+ * for (int i = 0; i &lt; fps.size(); i++) {
+ *     IBitFingerprint fp = fps.getBitFingerprint(i);
+ *     int cardinality = fp.cardinality();
+ * }
+ * fps.close();
+ * </pre></blockquote>
+ *
+ * The views are read-only, the methods that would modify a fingerprint
+ * ({@link IBitFingerprint#and(IBitFingerprint)}, {@link
+ * IBitFingerprint#set(int)}, {@link ICountFingerprint#merge(ICountFingerprint)}
+ * etc) throw an {@link UnsupportedOperationException}. A view should not be
+ * used after the file is closed. The rows may be read concurrently from many
+ * threads.
+ *
+ * @cdk.module fingerprint
+ * @cdk.githash
+ * @cdk.keyword fingerprint
+ * @cdk.keyword file format
+ * @see FingerprintFileWriter
+ */
+@TestClass("org.openscience.cdk.fingerprint.MappedFingerprintFileTest")
+public final class MappedFingerprintFile implements Closeable {
+
+    /** Size of the regions the file is mapped in. */
+    private static final int CHUNK_SIZE = 1 << 30;
+
+    private final FileChannel channel;
+
+    /** Whether the file holds count fingerprints. */
+    private final boolean counts;
+
+    /** Bit fingerprint length (0 for counts) and number of bytes in each bit row. */
+    private final int length, width;
+
+    /** Number of rows. */
+    private final int rows;
+
+    /** Number of bit rows in each chunk. */
+    private final int rowsPerChunk;
+
+    /** Offsets of each count row, the last entry is the end of the row data. */
+    private final LongBuffer offsets;
+
+    /** The mapped rows. */
+    private final MappedByteBuffer[] chunks;
+
+    private volatile boolean closed = false;
+
+    /**
+     * Open (map) a fingerprint file.
+     *
+     * @param file the fingerprint file
+     * @throws IOException the file could not be read or is not a fingerprint
+     *                     file
+     */
+    @TestMethod("bitRows,countRows,invalidFile")
+    public MappedFingerprintFile(File file) throws IOException {
+        this.channel = new RandomAccessFile(file, "r").getChannel();
+        try {
+            if (channel.size() < HEADER)
+                throw new IOException("Not a fingerprint file: " + file);
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+            if (header.getLong(0) != MAGIC)
+                throw new IOException("Not a fingerprint file: " + file);
+            long type = header.getLong(8);
+            long len = header.getLong(16);
+            long count = header.getLong(24);
+            long end = header.getLong(32);
+            long longest = header.getLong(40);
+            if (type != TYPE_BITS && type != TYPE_COUNTS)
+                throw new IOException("Unknown fingerprint file type: " + type);
+            if (count < 0 || count >= Integer.MAX_VALUE / 8 || longest >= CHUNK_SIZE)
+                throw new IOException("Fingerprint file is too large: " + file);
+
+            this.counts = type == TYPE_COUNTS;
+            this.rows = (int) count;
+            this.length = (int) len;
+            if (counts) {
+                if (channel.size() != end + 8 * (count + 1))
+                    throw new IOException("Truncated fingerprint file: " + file);
+                this.width = 0;
+                this.rowsPerChunk = 0;
+                this.offsets = channel.map(FileChannel.MapMode.READ_ONLY, end, 8 * (count + 1)).asLongBuffer();
+                this.chunks = mapCounts(channel, end, (int) longest);
+            } else {
+                this.width = 8 * ((length + 63) / 64);
+                if (length < 1 || channel.size() != HEADER + count * width)
+                    throw new IOException("Truncated fingerprint file: " + file);
+                this.rowsPerChunk = CHUNK_SIZE / width;
+                this.offsets = null;
+                this.chunks = mapBits(channel, rows, rowsPerChunk, width);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The number of fingerprints (rows) in the file.
+     *
+     * @return number of rows
+     */
+    @TestMethod("bitRows,countRows")
+    public int size() {
+        return rows;
+    }
+
+    /**
+     * The length (number of bits) of the fingerprints in a bit fingerprint
+     * file, 0 for a count fingerprint file.
+     *
+     * @return fingerprint length
+     */
+    @TestMethod("bitRows")
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Whether the file holds count fingerprints, otherwise it holds bit
+     * fingerprints.
+     *
+     * @return the file holds count fingerprints
+     */
+    @TestMethod("bitRows,countRows")
+    public boolean hasCounts() {
+        return counts;
+    }
+
+    /**
+     * Access the bit fingerprint of a row. The fingerprint is a read-only
+     * view of the mapped file. This method may be called concurrently.
+     *
+     * @param row the row number
+     * @return view of the fingerprint
+     * @throws IllegalStateException     the file holds count fingerprints or
+     *                                   has been closed
+     * @throws IndexOutOfBoundsException the row number was invalid
+     */
+    @TestMethod("bitRows,invalidRow")
+    public IBitFingerprint getBitFingerprint(int row) {
+        check(row, false);
+        return new BitRow(chunks[row / rowsPerChunk], (row % rowsPerChunk) * width, length);
+    }
+
+    /**
+     * Access the count fingerprint of a row. The fingerprint is a read-only
+     * view of the mapped file, the bins are ordered by hash. This method may
+     * be called concurrently.
+     *
+     * @param row the row number
+     * @return view of the fingerprint
+     * @throws IllegalStateException     the file holds bit fingerprints or has
+     *                                   been closed
+     * @throws IndexOutOfBoundsException the row number was invalid
+     */
+    @TestMethod("countRows,invalidRow")
+    public ICountFingerprint getCountFingerprint(int row) {
+        check(row, true);
+        long beg = offsets.get(row) - HEADER;
+        int bins = (int) ((offsets.get(row + 1) - HEADER - beg) / 8);
+        return new CountRow(chunks[(int) (beg / CHUNK_SIZE)], (int) (beg % CHUNK_SIZE), bins);
+    }
+
+    /**
+     * Close the file, rows can no longer be accessed.
+     *
+     * @throws IOException the file could not be closed
+     */
+    @TestMethod("bitRows,countRows")
+    @Override public void close() throws IOException {
+        closed = true;
+        channel.close();
+    }
+
+    private void check(int row, boolean counts) {
+        if (closed)
+            throw new IllegalStateException("File has been closed");
+        if (counts != this.counts)
+            throw new IllegalStateException(this.counts ? "File holds count fingerprints"
+                                                        : "File holds bit fingerprints");
+        if (row < 0 || row >= rows)
+            throw new IndexOutOfBoundsException("No such row " + row);
+    }
+
+    /**
+     * Map the bit rows in regions holding a whole number of rows.
+     */
+    private static MappedByteBuffer[] mapBits(FileChannel channel, int rows, int rowsPerChunk, int width)
+            throws IOException {
+        MappedByteBuffer[] chunks = new MappedByteBuffer[Math.max(1, (rows + rowsPerChunk - 1) / rowsPerChunk)];
+        for (int i = 0; i < chunks.length; i++) {
+            long first = (long) i * rowsPerChunk;
+            long n = Math.min(rowsPerChunk, rows - first);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER + first * width, n * width);
+        }
+        return chunks;
+    }
+
+    /**
+     * Map the count rows in regions of {@link #CHUNK_SIZE}, each region
+     * extends past the end of the chunk by the length of the longest row such
+     * that every row lies entirely in the region that it starts in.
+     */
+    private static MappedByteBuffer[] mapCounts(FileChannel channel, long end, int longest) throws IOException {
+        long size = end - HEADER;
+        MappedByteBuffer[] chunks = new MappedByteBuffer[(int) Math.max(1, (size + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+        for (int i = 0; i < chunks.length; i++) {
+            long pos = (long) i * CHUNK_SIZE;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER + pos,
+                                    Math.max(0, Math.min(size - pos, (long) CHUNK_SIZE + longest)));
+        }
+        return chunks;
+    }
+
+    /**
+     * A read-only bit fingerprint view of a row in the mapped file.
+     */
+    private static final class BitRow implements IBitFingerprint {
+
+        private static final long serialVersionUID = 4203155925612960618L;
+
+        private final transient ByteBuffer buffer;
+        private final int offset, words, length;
+
+        private BitRow(ByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.words = (length + 63) / 64;
+            this.length = length;
+        }
+
+        @Override public int cardinality() {
+            int cardinality = 0;
+            for (int i = 0; i < words; i++)
+                cardinality += Long.bitCount(buffer.getLong(offset + 8 * i));
+            return cardinality;
+        }
+
+        @Override public long size() {
+            return length;
+        }
+
+        @Override public boolean get(int index) {
+            if (index < 0)
+                throw new IndexOutOfBoundsException("index < 0: " + index);
+            if (index >= 64 * words)
+                return false;
+            return (buffer.getLong(offset + 8 * (index >>> 6)) & (1L << index)) != 0;
+        }
+
+        @Override public BitSet asBitSet() {
+            BitSet bits = new BitSet(length);
+            for (int i = 0; i < words; i++) {
+                for (long word = buffer.getLong(offset + 8 * i); word != 0; word &= word - 1)
+                    bits.set(64 * i + Long.numberOfTrailingZeros(word));
+            }
+            return bits;
+        }
+
+        @Override public int[] getSetbits() {
+            int[] bits = new int[cardinality()];
+            int n = 0;
+            for (int i = 0; i < words; i++) {
+                for (long word = buffer.getLong(offset + 8 * i); word != 0; word &= word - 1)
+                    bits[n++] = 64 * i + Long.numberOfTrailingZeros(word);
+            }
+            return bits;
+        }
+
+        @Override public void and(IBitFingerprint fingerprint) {
+            throw new UnsupportedOperationException("Mapped fingerprints are read-only");
+        }
+
+        @Override public void or(IBitFingerprint fingerprint) {
+            throw new UnsupportedOperationException("Mapped fingerprints are read-only");
+        }
+
+        @Override public void set(int index, boolean value) {
+            throw new UnsupportedOperationException("Mapped fingerprints are read-only");
+        }
+
+        @Override public void set(int i) {
+            throw new UnsupportedOperationException("Mapped fingerprints are read-only");
+        }
+
+        /** Serialize a copy of the fingerprint rather than the view. */
+        private Object writeReplace() throws ObjectStreamException {
+            return new BitSetFingerprint(asBitSet());
+        }
+    }
+
+    /**
+     * A read-only count fingerprint view of a row in the mapped file, the
+     * row holds the hashes (ascending) followed by the counts.
+     */
+    private static final class CountRow implements ICountFingerprint {
+
+        private static final long serialVersionUID = -2311908402616006484L;
+
+        private final transient ByteBuffer buffer;
+        private final int offset, bins;
+
+        private CountRow(ByteBuffer buffer, int offset, int bins) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.bins = bins;
+        }
+
+        @Override public long size() {
+            return 4294967296l;
+        }
+
+        @Override public int numOfPopulatedbins() {
+            return bins;
+        }
+
+        @Override public int getCount(int index) {
+            if (index < 0 || index >= bins)
+                throw new IndexOutOfBoundsException("No such bin " + index);
+            return buffer.getInt(offset + 4 * (bins + index));
+        }
+
+        @Override public int getHash(int index) {
+            if (index < 0 || index >= bins)
+                throw new IndexOutOfBoundsException("No such bin " + index);
+            return buffer.getInt(offset + 4 * index);
+        }
+
+        @Override public boolean hasHash(int hash) {
+            return indexOf(hash) >= 0;
+        }
+
+        @Override public int getCountForHash(int hash) {
+            int index = indexOf(hash);
+            return index >= 0 ? buffer.getInt(offset + 4 * (bins + index)) : 0;
+        }
+
+        @Override public void merge(ICountFingerprint fp) {
+            throw new UnsupportedOperationException("Mapped fingerprints are read-only");
+        }
+
+        @Override public void setBehaveAsBitFingerprint(boolean behaveAsBitFingerprint) {
+            throw new UnsupportedOperationException("Mapped fingerprints are read-only");
+        }
+
+        /** Binary search of the mapped hashes. */
+        private int indexOf(int hash) {
+            int lo = 0, hi = bins - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int val = buffer.getInt(offset + 4 * mid);
+                if (val < hash)
+                    lo = mid + 1;
+                else if (val > hash)
+                    hi = mid - 1;
+                else
+                    return mid;
+            }
+            return -1;
+        }
+
+        /** Serialize a copy of the fingerprint rather than the view. */
+        private Object writeReplace() throws ObjectStreamException {
+            return SortedCountFingerprint.of(this);
+        }
+    }
+}
@@ -101,6 +101,8 @@ public class PubchemFingerprinter implements IFingerprinter {
     private SMARTSQueryTool sqt;
     public PubchemFingerprinter(IChemObjectBuilder builder) {
     	sqt = new SMARTSQueryTool("C", builder);
+        // keep all the SMARTS keys parsed between molecules
+        sqt.setQueryCacheSize(1024);
         m_bits = new byte[(FP_SIZE + 7) >> 3];
     }
 
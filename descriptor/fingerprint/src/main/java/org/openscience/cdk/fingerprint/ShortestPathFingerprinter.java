@@ -181,13 +181,11 @@ public class ShortestPathFingerprinter extends RandomNumber implements IFingerpr
      */
     private Integer[] findPaths(IAtomContainer container) {
 
-        ShortestPathWalker walker = new ShortestPathWalker(container);
-        // convert paths to hashes
+        // hash codes of the shortest path strings, the strings are not built
         List<Integer> paths = new ArrayList<Integer>();
         int patternIndex = 0;
 
-        for (String s : walker.paths()) {
-            int toHashCode = s.hashCode();
+        for (int toHashCode : ShortestPathWalker.hashPaths(container)) {
             paths.add(patternIndex, toHashCode);
             patternIndex++;
         }
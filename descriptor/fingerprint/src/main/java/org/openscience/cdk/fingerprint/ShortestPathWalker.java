@@ -30,6 +30,7 @@ import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.graph.AllPairsShortestPaths;
+import org.openscience.cdk.graph.GraphUtil;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
@@ -115,6 +116,22 @@ public final class ShortestPathWalker {
 
     }
 
+    /**
+     * Compute the {@link String#hashCode()} of each distinct path that {@link
+     * #paths()} would provide, without building the path strings. A single
+     * breadth-first search from each atom over an adjacency list finds the
+     * distances and the number of shortest paths to every other atom. The
+     * shortest paths to each atom are then enumerated back to the source
+     * with the hash code of the path string and its reverse accumulated as
+     * each atom and bond is added.
+     *
+     * @param container the molecule to encode the shortest paths of
+     * @return sorted distinct hash codes of the encoded paths
+     */
+    static int[] hashPaths(IAtomContainer container) {
+        return new PathHasher(container).hashes();
+    }
+
     /**
      * Reverse an array of integers.
      *
@@ -188,7 +205,7 @@ public final class ShortestPathWalker {
      * @param bond Description of the Parameter
      * @return The bondSymbol value
      *]\     */
-    private char getBondSymbol(IBond bond) {
+    private static char getBondSymbol(IBond bond) {
         if (isSP2Bond(bond)) {
             return '@';
         } else {
@@ -210,7 +227,7 @@ public final class ShortestPathWalker {
     /**
      * Returns true if the bond binds two atoms, and both atoms are SP2 in a ring system.
      */
-    private boolean isSP2Bond(IBond bond) {
+    private static boolean isSP2Bond(IBond bond) {
         return bond.getFlag(CDKConstants.ISAROMATIC);
     }
 
@@ -232,4 +249,141 @@ public final class ShortestPathWalker {
 
         return sb.toString();
     }
+
+    /**
+     * Hashes the encoded shortest paths of a molecule. The hash code of a
+     * string is &Sigma; <i>s</i>[<i>i</i>]&middot;31<sup><i>n</i>-1-<i>i</i></sup>,
+     * so the hash of a path extended by a bond and atom (or the reverse path
+     * prefixed by them) is computed from the hash of the shorter path, the
+     * hash code of the atom symbol and the power of 31 of its length.
+     */
+    private static final class PathHasher {
+
+        /* adjacency list and the bond symbol of each adjacency */
+        private final int[][]  adj;
+        private final char[][] bondSymbols;
+
+        /* hash code of each atom symbol and 31^length of the symbol */
+        private final int[] atomHash, atomPow;
+
+        /* BFS distances and (capped) number of shortest paths from the source */
+        private final int[] dist, nPaths, queue;
+
+        /* hash codes of the encoded paths */
+        private int[] hashes = new int[64];
+        private int   nHashes;
+
+        PathHasher(IAtomContainer container) {
+            final int n = container.getAtomCount();
+            GraphUtil.EdgeToBondMap bondMap = GraphUtil.EdgeToBondMap.withSpaceFor(container);
+            this.adj         = GraphUtil.toAdjList(container, bondMap);
+            this.bondSymbols = new char[n][];
+            this.atomHash    = new int[n];
+            this.atomPow     = new int[n];
+            this.dist        = new int[n];
+            this.nPaths      = new int[n];
+            this.queue       = new int[n];
+            for (int v = 0; v < n; v++) {
+                String symbol = String.valueOf(container.getAtom(v).getSymbol());
+                atomHash[v] = symbol.hashCode();
+                atomPow[v] = pow31(symbol.length());
+                bondSymbols[v] = new char[adj[v].length];
+                for (int j = 0; j < adj[v].length; j++)
+                    bondSymbols[v][j] = getBondSymbol(bondMap.get(v, adj[v][j]));
+            }
+        }
+
+        /**
+         * Hash the paths from each atom.
+         *
+         * @return sorted distinct hash codes
+         */
+        int[] hashes() {
+            for (int i = 0; i < adj.length; i++) {
+                add(atomHash[i]);
+                search(i);
+                for (int j = i + 1; j < adj.length; j++) {
+                    // only encode when there is a manageable number of paths
+                    if (nPaths[j] > 0 && nPaths[j] < MAX_SHORTEST_PATHS)
+                        walk(j, atomHash[j], atomHash[j], atomPow[j]);
+                }
+            }
+            int[] sorted = Arrays.copyOf(hashes, nHashes);
+            Arrays.sort(sorted);
+            int n = 0;
+            for (int k = 0; k < sorted.length; k++) {
+                if (k == 0 || sorted[k] != sorted[n - 1])
+                    sorted[n++] = sorted[k];
+            }
+            return Arrays.copyOf(sorted, n);
+        }
+
+        /**
+         * Breadth-first search from the source, counting the shortest paths
+         * to each atom. The counts are capped as only small counts are
+         * encoded.
+         *
+         * @param source the source atom
+         */
+        private void search(int source) {
+            Arrays.fill(dist, Integer.MAX_VALUE);
+            Arrays.fill(nPaths, 0);
+            dist[source] = 0;
+            nPaths[source] = 1;
+            queue[0] = source;
+            for (int head = 0, tail = 1; head < tail; head++) {
+                final int v = queue[head], d = dist[v] + 1;
+                for (int w : adj[v]) {
+                    if (d < dist[w]) {
+                        dist[w] = d;
+                        nPaths[w] = nPaths[v];
+                        queue[tail++] = w;
+                    } else if (d == dist[w]) {
+                        nPaths[w] = Math.min(MAX_SHORTEST_PATHS, nPaths[w] + nPaths[v]);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Walk the shortest paths from the atom 'v' back to the source. The
+         * paths walked so far run from the end atom to 'v'.
+         *
+         * @param v   the current atom
+         * @param fwd hash code of the encoded path from the end atom to 'v'
+         * @param rev hash code of the encoded path from 'v' to the end atom
+         * @param pow 31^length of the path from 'v' to the end atom
+         */
+        private void walk(int v, int fwd, int rev, int pow) {
+            if (dist[v] == 0) {
+                add(fwd);
+                add(rev);
+                return;
+            }
+            final int[] ws = adj[v];
+            for (int j = 0; j < ws.length; j++) {
+                final int w = ws[j];
+                if (dist[w] != dist[v] - 1)
+                    continue;
+                final char bond = bondSymbols[v][j];
+                walk(w,
+                     (31 * fwd + bond) * atomPow[w] + atomHash[w],
+                     (31 * atomHash[w] + bond) * pow + rev,
+                     31 * pow * atomPow[w]);
+            }
+        }
+
+        private void add(int hash) {
+            if (nHashes == hashes.length)
+                hashes = Arrays.copyOf(hashes, 2 * nHashes);
+            hashes[nHashes++] = hash;
+        }
+
+        private static int pow31(int len) {
+            int pow = 1;
+            for (int i = 0; i < len; i++)
+                pow *= 31;
+            return pow;
+        }
+    }
 }
@@ -0,0 +1,420 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.fingerprint;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.aromaticity.Aromaticity;
+import org.openscience.cdk.aromaticity.ElectronDonation;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.graph.Cycles;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.isomorphism.ComponentGrouping;
+import org.openscience.cdk.isomorphism.Mappings;
+import org.openscience.cdk.isomorphism.Pattern;
+import org.openscience.cdk.isomorphism.SmartsStereoMatch;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.AliphaticSymbolAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.AromaticSymbolAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.AtomicNumberAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.LogicalOperatorAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.SmartsMatchers;
+import org.openscience.cdk.smiles.smarts.parser.SMARTSParser;
+import org.openscience.cdk.smiles.smarts.parser.TokenMgrError;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A set of SMARTS keys which are parsed once and matched against many
+ * molecules, as in substructure keyed fingerprints. The ring invariants and
+ * the Daylight aromaticity model are applied to each molecule once and
+ * shared by all the keys (as with the {@link
+ * org.openscience.cdk.smiles.smarts.SMARTSQueryTool}).
+ *
+ * Before a key is matched it is screened with cheap prerequisites: the
+ * molecule must have at least as many atoms of each element that the key
+ * explicitly requires (e.g. 'C', 'n', '[#7]' or '[N;H2]') and the number of
+ * independent cycles (bonds - atoms + components) in the molecule must be
+ * at least the number in the key. The remaining keys can optionally be
+ * matched in parallel.
+ *
+ * <blockquote><pre>
+ * SmartsKeySet keys = new SmartsKeySet(new String[]{"c1ccccc1", "[OX2H]", "C=O"},
+ *                                      SilentChemObjectBuilder.getInstance());
+ * BitSet       hits = keys.match(container);
+ * </pre></blockquote>
+ *
+ * A key set may be used by multiple threads provided each matches a
+ * different molecule.
+ *
+ * @cdk.module fingerprint
+ * @cdk.githash
+ * @cdk.keyword fingerprint
+ * @cdk.keyword SMARTS
+ * @see SubstructureFingerprinter
+ */
+@TestClass("org.openscience.cdk.fingerprint.SmartsKeySetTest")
+public final class SmartsKeySet {
+
+    /** Number of keys matched by a single task when matching in parallel. */
+    private static final int CHUNK_SIZE = 64;
+
+    private final Key[] keys;
+
+    /** The Daylight aromaticity model, as used for SMARTS matching. */
+    private final Aromaticity aromaticity = new Aromaticity(ElectronDonation.daylight(),
+                                                            Cycles.allOrVertexShort());
+
+    /**
+     * Parse the SMARTS keys.
+     *
+     * @param smarts  the keys
+     * @param builder chem object builder
+     * @throws CDKException one of the keys could not be parsed
+     */
+    @TestMethod("match,invalidSmarts")
+    public SmartsKeySet(String[] smarts, IChemObjectBuilder builder) throws CDKException {
+        this.keys = new Key[smarts.length];
+        for (int i = 0; i < smarts.length; i++) {
+            try {
+                keys[i] = new Key(smarts[i], SMARTSParser.parse(smarts[i], builder));
+            } catch (IllegalArgumentException e) {
+                throw new CDKException("Key " + i + " could not be parsed: " + smarts[i], e);
+            } catch (TokenMgrError e) {
+                throw new CDKException("Key " + i + " could not be parsed: " + smarts[i], e);
+            }
+        }
+    }
+
+    /**
+     * The number of keys.
+     *
+     * @return number of keys
+     */
+    @TestMethod("match")
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * The SMARTS of a key.
+     *
+     * @param i index of the key
+     * @return the SMARTS
+     */
+    @TestMethod("match")
+    public String smarts(int i) {
+        return keys[i].smarts;
+    }
+
+    /**
+     * Determine which keys match the container. The ring invariants are
+     * assigned and the Daylight aromaticity model is applied (clearing any
+     * existing aromaticity) to the container.
+     *
+     * @param container the molecule to match
+     * @return the index of each key which matched
+     * @throws CDKException the aromaticity could not be perceived
+     */
+    @TestMethod("match,prerequisites,disconnected")
+    public BitSet match(IAtomContainer container) throws CDKException {
+        Target target = prepare(container);
+        BitSet hits = new BitSet(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].screen(target) && keys[i].matches(container))
+                hits.set(i);
+        }
+        return hits;
+    }
+
+    /**
+     * Determine which keys match the container, the keys which pass the
+     * prerequisites are matched in parallel using the provided executor. The
+     * container is prepared as for {@link #match(IAtomContainer)} before the
+     * keys are matched and should not be modified until this method returns.
+     *
+     * @param container the molecule to match
+     * @param executor  executor to match the keys with
+     * @return the index of each key which matched
+     * @throws CDKException the aromaticity could not be perceived or the
+     *                      calling thread was interrupted
+     */
+    @TestMethod("match_executor")
+    public BitSet match(final IAtomContainer container, ExecutorService executor) throws CDKException {
+        Target target = prepare(container);
+
+        final int[] candidates = new int[keys.length];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].screen(target))
+                candidates[n++] = i;
+        }
+
+        List<Future<BitSet>> futures = new ArrayList<Future<BitSet>>();
+        for (int beg = 0; beg < n; beg += CHUNK_SIZE) {
+            final int from = beg;
+            final int to   = Math.min(n, beg + CHUNK_SIZE);
+            futures.add(executor.submit(new Callable<BitSet>() {
+                @Override public BitSet call() {
+                    BitSet hits = new BitSet(keys.length);
+                    for (int j = from; j < to; j++) {
+                        if (keys[candidates[j]].matches(container))
+                            hits.set(candidates[j]);
+                    }
+                    return hits;
+                }
+            }));
+        }
+
+        BitSet hits = new BitSet(keys.length);
+        try {
+            for (Future<BitSet> future : futures)
+                hits.or(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CDKException("Interrupted while matching SMARTS keys", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new CDKException("Could not match SMARTS keys", e.getCause());
+        } finally {
+            for (Future<BitSet> future : futures)
+                future.cancel(true);
+        }
+        return hits;
+    }
+
+    /**
+     * Assign the SMARTS invariants, apply the aromaticity model and count the
+     * elements and cycles of the container.
+     *
+     * @param container the molecule
+     * @return the counts used to screen the keys
+     * @throws CDKException the aromaticity could not be perceived
+     */
+    private Target prepare(IAtomContainer container) throws CDKException {
+        SmartsMatchers.prepare(container, true);
+        try {
+            aromaticity.apply(container);
+        } catch (CDKException e) {
+            throw new CDKException(e.toString(), e);
+        }
+        return new Target(container);
+    }
+
+    /**
+     * Counts the number of atoms which have a given symbol and atomic number.
+     * Both are counted as the symbol query atoms test the symbol and the
+     * atomic number query atoms test the atomic number.
+     *
+     * @param atom    an atom
+     * @param symbols symbol counts
+     * @param numbers atomic number counts
+     */
+    private static void count(IAtom atom, Map<String, int[]> symbols, Map<Integer, int[]> numbers) {
+        if (atom.getSymbol() != null)
+            increment(symbols, atom.getSymbol());
+        if (atom.getAtomicNumber() != null)
+            increment(numbers, atom.getAtomicNumber());
+    }
+
+    private static <T> void increment(Map<T, int[]> counts, T key) {
+        int[] count = counts.get(key);
+        if (count == null)
+            counts.put(key, new int[]{1});
+        else
+            count[0]++;
+    }
+
+    private static <T> int get(Map<T, int[]> counts, T key) {
+        int[] count = counts.get(key);
+        return count != null ? count[0] : 0;
+    }
+
+    /**
+     * The number of independent cycles (circuit rank) of a graph, the number
+     * of bonds - number of atoms + number of connected components.
+     *
+     * @param container a molecule or query
+     * @param indices   the index of each atom
+     * @return the circuit rank
+     */
+    private static int circuitRank(IAtomContainer container, Map<IAtom, Integer> indices) {
+        int   n          = container.getAtomCount();
+        int[] parent     = new int[n];
+        int   components = n;
+        for (int i = 0; i < n; i++)
+            parent[i] = i;
+        for (IBond bond : container.bonds()) {
+            Integer u = indices.get(bond.getAtom(0));
+            Integer v = indices.get(bond.getAtom(1));
+            if (u == null || v == null)
+                continue;
+            int a = find(parent, u), b = find(parent, v);
+            if (a != b) {
+                parent[a] = b;
+                components--;
+            }
+        }
+        return container.getBondCount() - n + components;
+    }
+
+    private static int find(int[] parent, int x) {
+        while (parent[x] != x)
+            x = parent[x] = parent[parent[x]];
+        return x;
+    }
+
+    private static Map<IAtom, Integer> indices(IAtomContainer container) {
+        Map<IAtom, Integer> indices = new HashMap<IAtom, Integer>(2 * container.getAtomCount());
+        for (IAtom atom : container.atoms())
+            indices.put(atom, indices.size());
+        return indices;
+    }
+
+    /**
+     * The element and cycle counts of a molecule being matched.
+     */
+    private static final class Target {
+
+        private final int                  atoms, rank;
+        private final Map<String, int[]>  symbols = new HashMap<String, int[]>();
+        private final Map<Integer, int[]> numbers = new HashMap<Integer, int[]>();
+
+        private Target(IAtomContainer container) {
+            for (IAtom atom : container.atoms())
+                count(atom, symbols, numbers);
+            this.atoms = container.getAtomCount();
+            this.rank  = circuitRank(container, indices(container));
+        }
+    }
+
+    /**
+     * A parsed SMARTS key and its prerequisites.
+     */
+    private static final class Key {
+
+        private final String         smarts;
+        private final IAtomContainer query;
+        private final Pattern        pattern;
+        private final boolean        stereo, grouping;
+        private final int            atoms, rank;
+
+        /** Required symbols/atomic numbers and the minimum number of each. */
+        private final String[]  symbols;
+        private final int[]     symbolCounts;
+        private final Integer[] numbers;
+        private final int[]     numberCounts;
+
+        private Key(String smarts, IAtomContainer query) {
+            this.smarts   = smarts;
+            this.query    = query;
+            this.pattern  = query.getAtomCount() > 1 ? Pattern.findSubstructure(query) : null;
+            this.stereo   = query.stereoElements().iterator().hasNext();
+            this.grouping = query.getProperty(ComponentGrouping.KEY) != null;
+            this.atoms    = query.getAtomCount();
+            this.rank     = circuitRank(query, indices(query));
+
+            Map<String, int[]>  symbols = new HashMap<String, int[]>();
+            Map<Integer, int[]> numbers = new HashMap<Integer, int[]>();
+            for (IAtom atom : query.atoms()) {
+                // the first element found is sufficient, a conjunction of
+                // different elements can not match anything
+                for (IQueryAtom expr : LogicalOperatorAtom.conjuncts((IQueryAtom) atom)) {
+                    if (expr instanceof AliphaticSymbolAtom || expr instanceof AromaticSymbolAtom) {
+                        increment(symbols, expr.getSymbol());
+                        break;
+                    } else if (expr instanceof AtomicNumberAtom) {
+                        increment(numbers, expr.getAtomicNumber());
+                        break;
+                    }
+                }
+            }
+            this.symbols      = symbols.keySet().toArray(new String[symbols.size()]);
+            this.symbolCounts = new int[this.symbols.length];
+            for (int i = 0; i < this.symbols.length; i++)
+                symbolCounts[i] = get(symbols, this.symbols[i]);
+            this.numbers      = numbers.keySet().toArray(new Integer[numbers.size()]);
+            this.numberCounts = new int[this.numbers.length];
+            for (int i = 0; i < this.numbers.length; i++)
+                numberCounts[i] = get(numbers, this.numbers[i]);
+        }
+
+        /**
+         * Check the prerequisites of the key are met by the target.
+         *
+         * @param target counts of the molecule
+         * @return the key may match
+         */
+        private boolean screen(Target target) {
+            if (atoms > target.atoms || rank > target.rank)
+                return false;
+            for (int i = 0; i < symbols.length; i++) {
+                if (get(target.symbols, symbols[i]) < symbolCounts[i])
+                    return false;
+            }
+            for (int i = 0; i < numbers.length; i++) {
+                if (get(target.numbers, numbers[i]) < numberCounts[i])
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * Match the key against a prepared container.
+         *
+         * @param container the molecule
+         * @return the key matched
+         */
+        private boolean matches(IAtomContainer container) {
+            if (pattern == null) {
+                if (atoms == 0)
+                    return true;
+                IQueryAtom qatom = (IQueryAtom) query.getAtom(0);
+                for (IAtom atom : container.atoms()) {
+                    if (qatom.matches(atom))
+                        return true;
+                }
+                return false;
+            }
+            Mappings mappings = pattern.matchAll(container);
+            if (stereo)
+                mappings = mappings.filter(new SmartsStereoMatch(query, container));
+            if (grouping)
+                mappings = mappings.filter(new ComponentGrouping(query, container));
+            return mappings.atLeast(1);
+        }
+    }
+}
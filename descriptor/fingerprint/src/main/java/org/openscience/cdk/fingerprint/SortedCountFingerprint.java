@@ -0,0 +1,330 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.fingerprint;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+
+import java.util.Arrays;
+
+/**
+ * A count fingerprint stored as two primitive arrays, the distinct hashes in
+ * ascending order and the count of each hash. Lookups by hash are a binary
+ * search and two fingerprints are compared with a single merge of the sorted
+ * hashes ({@link #dot(SortedCountFingerprint)}, {@link
+ * #minSum(SortedCountFingerprint)}). The squared norm and the sum of the
+ * counts are computed once when the fingerprint is created. No boxing occurs
+ * in any of the lookups or comparisons.
+ *
+ * <blockquote><pre>
+ * SortedCountFingerprint fp1 = SortedCountFingerprint.of(fpr.getCountFingerprint(mol1));
+ * SortedCountFingerprint fp2 = SortedCountFingerprint.of(fpr.getCountFingerprint(mol2));
+ * double sim = CountSimilarity.tanimoto(fp1, fp2);
+ * </pre></blockquote>
+ *
+ * @cdk.module fingerprint
+ * @cdk.githash
+ * @cdk.keyword fingerprint
+ * @see org.openscience.cdk.similarity.CountSimilarity
+ */
+@TestClass("org.openscience.cdk.fingerprint.SortedCountFingerprintTest")
+public final class SortedCountFingerprint implements ICountFingerprint {
+
+    private static final long serialVersionUID = -3325871617402153724L;
+
+    /** Distinct hashes, in ascending order. */
+    private int[] hashes;
+
+    /** Count of each hash. */
+    private int[] counts;
+
+    /** Counts that are compared, 'counts' or all 1 when acting as a bit fingerprint. */
+    private int[] weights;
+
+    /** Sum of the squared weights. */
+    private long norm2;
+
+    /** Sum of the weights. */
+    private long sum;
+
+    private boolean behaveAsBitFingerprint = false;
+
+    /**
+     * Internal constructor, the hashes must already be distinct and sorted.
+     *
+     * @param hashes sorted distinct hashes
+     * @param counts count of each hash
+     */
+    private SortedCountFingerprint(int[] hashes, int[] counts) {
+        this.hashes = hashes;
+        this.counts = counts;
+        this.weights = counts;
+        update();
+    }
+
+    /**
+     * Create a fingerprint from the hash of each feature found. A hash may be
+     * present multiple times, its count is the number of times it occurs. The
+     * provided array is not modified.
+     *
+     * @param features hash of each feature
+     * @return the fingerprint
+     */
+    @TestMethod("fromFeatures")
+    public static SortedCountFingerprint fromFeatures(int[] features) {
+        return fromFeatures(features, features.length);
+    }
+
+    /**
+     * Create a fingerprint from the first {@code len} hashes of the provided
+     * array. A hash may be present multiple times, its count is the number of
+     * times it occurs. The provided array is not modified.
+     *
+     * @param features hash of each feature
+     * @param len      number of features
+     * @return the fingerprint
+     */
+    @TestMethod("fromFeatures")
+    public static SortedCountFingerprint fromFeatures(int[] features, int len) {
+        if (len < 0 || len > features.length)
+            throw new IllegalArgumentException("invalid number of features: " + len);
+        int[] sorted = Arrays.copyOf(features, len);
+        Arrays.sort(sorted);
+        int n = 0;
+        for (int i = 0; i < len; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) n++;
+        }
+        int[] hashes = new int[n];
+        int[] counts = new int[n];
+        int j = -1;
+        for (int i = 0; i < len; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) hashes[++j] = sorted[i];
+            counts[j]++;
+        }
+        return new SortedCountFingerprint(hashes, counts);
+    }
+
+    /**
+     * Create a fingerprint with the same hashes and counts as the provided
+     * count fingerprint, the bins of the provided fingerprint may be in any
+     * order. Bins with the same hash are combined and bins with a count of 0
+     * are removed. If the provided fingerprint is already a {@link
+     * SortedCountFingerprint} it is returned.
+     *
+     * @param fp a count fingerprint
+     * @return a sorted count fingerprint
+     */
+    @TestMethod("of")
+    public static SortedCountFingerprint of(ICountFingerprint fp) {
+        if (fp instanceof SortedCountFingerprint)
+            return (SortedCountFingerprint) fp;
+
+        final int len = fp.numOfPopulatedbins();
+
+        // pack the hash (high bits) and the bin index (low bits), sorting the
+        // packed values orders the bins by hash
+        long[] packed = new long[len];
+        for (int i = 0; i < len; i++)
+            packed[i] = ((long) fp.getHash(i) << 32) | i;
+        Arrays.sort(packed);
+
+        int[] hashes = new int[len];
+        int[] counts = new int[len];
+        int n = 0;
+        for (int i = 0; i < len; i++) {
+            int hash = (int) (packed[i] >>> 32);
+            int count = fp.getCount((int) packed[i]);
+            if (count == 0) continue;
+            if (n > 0 && hashes[n - 1] == hash) {
+                counts[n - 1] += count;
+            } else {
+                hashes[n] = hash;
+                counts[n++] = count;
+            }
+        }
+        if (n < len) {
+            hashes = Arrays.copyOf(hashes, n);
+            counts = Arrays.copyOf(counts, n);
+        }
+        return new SortedCountFingerprint(hashes, counts);
+    }
+
+    /**
+     * The dot product of the counts of this and another fingerprint, the sum
+     * of the products of the counts of each hash present in both.
+     *
+     * @param that another fingerprint
+     * @return the dot product
+     */
+    @TestMethod("dot")
+    public long dot(SortedCountFingerprint that) {
+        final int[] ah = this.hashes, bh = that.hashes;
+        final int[] aw = this.weights, bw = that.weights;
+        final int alen = ah.length, blen = bh.length;
+        if (alen == 0 || blen == 0 || ah[alen - 1] < bh[0] || bh[blen - 1] < ah[0]) return 0;
+        long dot = 0;
+        int i = 0, j = 0;
+        while (i < alen && j < blen) {
+            final int a = ah[i], b = bh[j];
+            if (a < b) {
+                i++;
+            } else if (a > b) {
+                j++;
+            } else {
+                dot += (long) aw[i++] * bw[j++];
+            }
+        }
+        return dot;
+    }
+
+    /**
+     * The sum of the minimum count of each hash present in both this and
+     * another fingerprint.
+     *
+     * @param that another fingerprint
+     * @return the sum of the minimum counts
+     */
+    @TestMethod("minSum")
+    public long minSum(SortedCountFingerprint that) {
+        final int[] ah = this.hashes, bh = that.hashes;
+        final int[] aw = this.weights, bw = that.weights;
+        final int alen = ah.length, blen = bh.length;
+        if (alen == 0 || blen == 0 || ah[alen - 1] < bh[0] || bh[blen - 1] < ah[0]) return 0;
+        long sum = 0;
+        int i = 0, j = 0;
+        while (i < alen && j < blen) {
+            final int a = ah[i], b = bh[j];
+            if (a < b) {
+                i++;
+            } else if (a > b) {
+                j++;
+            } else {
+                sum += Math.min(aw[i++], bw[j++]);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * The squared (Euclidean) norm of the counts, this is the dot product of
+     * the fingerprint with itself.
+     *
+     * @return the squared norm
+     */
+    @TestMethod("dot")
+    public long squaredNorm() {
+        return norm2;
+    }
+
+    /**
+     * The sum of all the counts.
+     *
+     * @return sum of the counts
+     */
+    @TestMethod("minSum")
+    public long sum() {
+        return sum;
+    }
+
+    @Override
+    public long size() {
+        return 4294967296l;
+    }
+
+    @Override
+    public int numOfPopulatedbins() {
+        return hashes.length;
+    }
+
+    @Override
+    public int getCount(int index) {
+        return weights[index];
+    }
+
+    @Override
+    public int getHash(int index) {
+        return hashes[index];
+    }
+
+    @Override
+    @TestMethod("merge")
+    public void merge(ICountFingerprint fp) {
+        SortedCountFingerprint that = of(fp);
+        final int[] ah = this.hashes, bh = that.hashes;
+        final int[] ac = this.counts, bc = that.counts;
+        int[] hashes = new int[ah.length + bh.length];
+        int[] counts = new int[hashes.length];
+        int i = 0, j = 0, n = 0;
+        while (i < ah.length || j < bh.length) {
+            if (j == bh.length || (i < ah.length && ah[i] < bh[j])) {
+                hashes[n] = ah[i];
+                counts[n++] = ac[i++];
+            } else if (i == ah.length || ah[i] > bh[j]) {
+                hashes[n] = bh[j];
+                counts[n++] = bc[j++];
+            } else {
+                hashes[n] = ah[i];
+                counts[n++] = ac[i++] + bc[j++];
+            }
+        }
+        this.hashes = Arrays.copyOf(hashes, n);
+        this.counts = Arrays.copyOf(counts, n);
+        setBehaveAsBitFingerprint(behaveAsBitFingerprint);
+    }
+
+    @Override
+    @TestMethod("behaveAsBitFingerprint")
+    public void setBehaveAsBitFingerprint(boolean behaveAsBitFingerprint) {
+        this.behaveAsBitFingerprint = behaveAsBitFingerprint;
+        if (behaveAsBitFingerprint) {
+            this.weights = new int[counts.length];
+            Arrays.fill(weights, 1);
+        } else {
+            this.weights = counts;
+        }
+        update();
+    }
+
+    @Override
+    public boolean hasHash(int hash) {
+        return Arrays.binarySearch(hashes, hash) >= 0;
+    }
+
+    @Override
+    public int getCountForHash(int hash) {
+        int index = Arrays.binarySearch(hashes, hash);
+        return index >= 0 ? weights[index] : 0;
+    }
+
+    /** Recompute the norm and sum of the weights. */
+    private void update() {
+        long norm2 = 0, sum = 0;
+        for (int w : weights) {
+            norm2 += (long) w * w;
+            sum += w;
+        }
+        this.norm2 = norm2;
+        this.sum = sum;
+    }
+}
@@ -31,10 +31,10 @@ import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtomContainer;
-import org.openscience.cdk.smiles.smarts.SMARTSQueryTool;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
 
-import java.util.BitSet;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 /**
  * {@link IFingerprinter} that gives a bit set which has a size equal to the number
@@ -375,6 +375,9 @@ public class SubstructureFingerprinter implements IFingerprinter {
 
     private String[] smarts;
 
+    /** The keys are parsed on first use. */
+    private volatile SmartsKeySet keys = null;
+
     /**
      * Set up the fingerprinter to use the fragments from 
      * {@link org.openscience.cdk.fingerprint.StandardSubstructureSets}.
@@ -402,22 +405,46 @@ public class SubstructureFingerprinter implements IFingerprinter {
     @TestMethod("testUserFunctionalGroups,testFingerprint")
     public IBitFingerprint getBitFingerprint(IAtomContainer atomContainer) 
                   throws CDKException {
-        if (smarts == null) {
-            throw new CDKException("No substructures were defined");
-        }
-
-        int bitsetLength = smarts.length;
-        BitSet fingerPrint = new BitSet(bitsetLength);
+        return new BitSetFingerprint(keys(atomContainer.getBuilder()).match(atomContainer));
+    }
 
-        SMARTSQueryTool sqt = new SMARTSQueryTool("C", atomContainer.getBuilder());
-        for (int i = 0; i < smarts.length; i++) {
-            String pattern = smarts[i];
+    /**
+     * Generate the fingerprint matching the substructures in parallel using
+     * the provided executor.
+     *
+     * @param atomContainer the molecule
+     * @param executor      executor to match the substructures with
+     * @return the fingerprint
+     * @throws CDKException the fingerprint could not be generated
+     * @see SmartsKeySet#match(IAtomContainer, ExecutorService)
+     */
+    @TestMethod("testGetBitFingerprint_executor")
+    public IBitFingerprint getBitFingerprint(IAtomContainer atomContainer, ExecutorService executor)
+                  throws CDKException {
+        return new BitSetFingerprint(keys(atomContainer.getBuilder()).match(atomContainer, executor));
+    }
 
-            sqt.setSmarts(pattern);
-            boolean status = sqt.matches(atomContainer);
-            if (status) fingerPrint.set(i, true);
+    /**
+     * Access the parsed substructure keys, the keys are parsed on first use.
+     *
+     * @param builder chem object builder
+     * @return the keys
+     * @throws CDKException no substructures were defined or one could not be
+     *                      parsed
+     */
+    private SmartsKeySet keys(IChemObjectBuilder builder) throws CDKException {
+        SmartsKeySet result = keys;
+        if (result == null) {
+            if (smarts == null) {
+                throw new CDKException("No substructures were defined");
+            }
+            synchronized (this) {
+                result = keys;
+                if (result == null)
+                    keys = result = new SmartsKeySet(smarts, builder);
+            }
         }
-        return new BitSetFingerprint(fingerPrint);
+        return result;
     }
 
     /** {@inheritDoc} */
@@ -0,0 +1,483 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.fingerprint;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.isomorphism.Mappings;
+import org.openscience.cdk.isomorphism.Pattern;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * An in-memory substructure search index. Each record stores a screening
+ * fingerprint, by default the path based {@link Fingerprinter}. A query is
+ * only matched (e.g. with {@link org.openscience.cdk.isomorphism.VentoFoggia})
+ * against the records whose fingerprint is a superset of the query
+ * fingerprint. The screen requires the fingerprint to be substructure
+ * monotonic - every bit set for a substructure is also set for the
+ * superstructure. This holds for the path fingerprinters but not for the
+ * similarity ({@link CircularFingerprinter}) fingerprints.
+ *
+ * <blockquote><pre>
+ * SubstructureIndex index = new SubstructureIndex();
+ * for (IAtomContainer container : library)
+ *     index.add(container);
+ *
+ * for (SubstructureIndex.Hit hit : index.search(query)) {
+ *     int     id       = hit.id();
+ *     int[][] mappings = hit.mappings().toArray();
+ * }
+ * </pre></blockquote>
+ *
+ * Searches over large indices can be split in to shards of records which are
+ * screened and matched in parallel. The hits are still provided in record
+ * order as each shard completes.
+ *
+ * <blockquote><pre>
+ * ExecutorService executor = Executors.newFixedThreadPool(4);
+ * for (SubstructureIndex.Hit hit : index.search(query, executor)) {
+ *     // ...
+ * }
+ * executor.shutdown();
+ * </pre></blockquote>
+ *
+ * Queries which can not be fingerprinted (e.g. SMARTS) may be provided as a
+ * {@link Pattern} with a screen of only the bits that are known to be required,
+ * an empty screen matches every record. The index is not thread-safe for
+ * modification, records should not be added whilst a search is running.
+ *
+ * @cdk.module fingerprint
+ * @cdk.githash
+ * @cdk.keyword substructure search
+ * @cdk.keyword screening
+ */
+@TestClass("org.openscience.cdk.fingerprint.SubstructureIndexTest")
+public final class SubstructureIndex {
+
+    /** Default number of records in each shard of a parallel search. */
+    public static final int DEFAULT_SHARD_SIZE = 4096;
+
+    private static final ILoggingTool logger = LoggingToolFactory.createLoggingTool(SubstructureIndex.class);
+
+    /** Fingerprinter used to generate the screens. */
+    private final IFingerprinter fingerprinter;
+
+    /** Number of records in each shard. */
+    private final int shardSize;
+
+    /** Number of 64-bit words in each screen. */
+    private final int words;
+
+    /** The indexed records. */
+    private final List<IAtomContainer> records = new ArrayList<IAtomContainer>();
+
+    /** Screens of each record, stored contiguously ('words' per record). */
+    private long[] screens = new long[0];
+
+    /**
+     * Create an empty index using the default path {@link Fingerprinter} as a
+     * screen.
+     */
+    public SubstructureIndex() {
+        this(new Fingerprinter());
+    }
+
+    /**
+     * Create an empty index using the provided fingerprinter as a screen. The
+     * fingerprinter should be substructure monotonic.
+     *
+     * @param fingerprinter the screening fingerprinter
+     */
+    public SubstructureIndex(IFingerprinter fingerprinter) {
+        this(fingerprinter, DEFAULT_SHARD_SIZE);
+    }
+
+    /**
+     * Create an empty index using the provided fingerprinter as a screen and
+     * dividing the records in to shards of the given size when searching in
+     * parallel.
+     *
+     * @param fingerprinter the screening fingerprinter
+     * @param shardSize     number of records in each shard
+     */
+    public SubstructureIndex(IFingerprinter fingerprinter, int shardSize) {
+        if (fingerprinter == null)
+            throw new NullPointerException("no fingerprinter provided");
+        if (shardSize < 1)
+            throw new IllegalArgumentException("shard size must be positive");
+        this.fingerprinter = fingerprinter;
+        this.shardSize     = shardSize;
+        this.words         = (fingerprinter.getSize() + 63) / 64;
+    }
+
+    /**
+     * Add a record to the index. The record is fingerprinted (which may
+     * perceive atom types and aromaticity). If a fingerprint can not be
+     * generated the record is never screened out and is always matched.
+     *
+     * @param container the record
+     * @return the id of the record
+     */
+    @TestMethod("searchCandidates,unscreenableRecord")
+    public int add(IAtomContainer container) {
+        if (container == null)
+            throw new NullPointerException("no container provided");
+        int id = records.size();
+        if (screens.length < (id + 1) * words)
+            screens = Arrays.copyOf(screens, Math.max((id + 1) * words, 2 * screens.length));
+        try {
+            pack(fingerprinter.getBitFingerprint(container).asBitSet(), screens, id * words);
+        } catch (CDKException e) {
+            logger.debug("could not fingerprint record ", id, ": ", e.getMessage());
+            Arrays.fill(screens, id * words, (id + 1) * words, -1L);
+        }
+        records.add(container);
+        return id;
+    }
+
+    /**
+     * Number of records in the index.
+     *
+     * @return the number of records
+     */
+    @TestMethod("searchCandidates")
+    public int size() {
+        return records.size();
+    }
+
+    /**
+     * Access the record with the given id.
+     *
+     * @param id record id
+     * @return the record
+     */
+    @TestMethod("searchCandidates")
+    public IAtomContainer get(int id) {
+        return records.get(id);
+    }
+
+    /**
+     * Generate the screen for a query structure.
+     *
+     * @param query the query structure
+     * @return the screen
+     * @throws CDKException the query could not be fingerprinted
+     */
+    @TestMethod("searchCandidates")
+    public BitSet screen(IAtomContainer query) throws CDKException {
+        return fingerprinter.getBitFingerprint(query).asBitSet();
+    }
+
+    /**
+     * Determine the ids of the records which pass the screen, the records
+     * which may contain a query with the given screen.
+     *
+     * @param screen the query screen
+     * @return ids of records whose fingerprint is a superset of the screen
+     */
+    @TestMethod("searchCandidates")
+    public int[] candidates(BitSet screen) {
+        long[] query = pack(screen);
+        int[] ids = new int[records.size()];
+        int n = 0;
+        for (int id = 0; id < records.size(); id++) {
+            if (passes(query, id))
+                ids[n++] = id;
+        }
+        return Arrays.copyOf(ids, n);
+    }
+
+    /**
+     * Find the records which contain the query structure.
+     *
+     * @param query the query structure
+     * @return hits in record order
+     * @throws CDKException the query could not be fingerprinted
+     */
+    @TestMethod("searchSequential")
+    public Iterable<Hit> search(IAtomContainer query) throws CDKException {
+        BitSet screen = screen(query);
+        return search(Pattern.findSubstructure(query), screen);
+    }
+
+    /**
+     * Find the records which contain the query structure, the shards of the
+     * index are searched in parallel.
+     *
+     * @param query    the query structure
+     * @param executor the executor to run the shard searches
+     * @return hits in record order
+     * @throws CDKException the query could not be fingerprinted
+     */
+    @TestMethod("searchParallel")
+    public Iterable<Hit> search(IAtomContainer query, ExecutorService executor) throws CDKException {
+        BitSet screen = screen(query);
+        return search(Pattern.findSubstructure(query), screen, executor);
+    }
+
+    /**
+     * Find the records matched by the pattern and which pass the screen. The
+     * records are screened and matched lazily as the hits are iterated.
+     *
+     * @param pattern the pattern to match
+     * @param screen  the bits a record must have to be matched
+     * @return hits in record order
+     */
+    @TestMethod("searchSequential,searchPattern")
+    public Iterable<Hit> search(final Pattern pattern, BitSet screen) {
+        final long[] query = pack(screen);
+        return new Iterable<Hit>() {
+            @Override public Iterator<Hit> iterator() {
+                return new HitIterator(pattern) {
+                    int id = 0;
+
+                    @Override int advance() {
+                        while (id < records.size()) {
+                            int candidate = id++;
+                            if (passes(query, candidate) && pattern.matches(records.get(candidate)))
+                                return candidate;
+                        }
+                        return -1;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Find the records matched by the pattern and which pass the screen. The
+     * index is divided in to shards which are screened and matched in
+     * parallel. The hits are provided in record order, iteration blocks until
+     * the next shard has completed. The pattern must be safe to use from
+     * multiple threads.
+     *
+     * @param pattern  the pattern to match
+     * @param screen   the bits a record must have to be matched
+     * @param executor the executor to run the shard searches
+     * @return hits in record order
+     */
+    @TestMethod("searchParallel")
+    public Iterable<Hit> search(final Pattern pattern, BitSet screen, final ExecutorService executor) {
+        final long[] query = pack(screen);
+        return new Iterable<Hit>() {
+            @Override public Iterator<Hit> iterator() {
+
+                final List<Future<int[]>> shards = new ArrayList<Future<int[]>>();
+                for (int beg = 0; beg < records.size(); beg += shardSize) {
+                    final int from = beg, to = Math.min(beg + shardSize, records.size());
+                    shards.add(executor.submit(new Callable<int[]>() {
+                        @Override public int[] call() throws Exception {
+                            int[] ids = new int[to - from];
+                            int n = 0;
+                            for (int id = from; id < to; id++) {
+                                if (passes(query, id) && pattern.matches(records.get(id)))
+                                    ids[n++] = id;
+                            }
+                            return Arrays.copyOf(ids, n);
+                        }
+                    }));
+                }
+
+                return new HitIterator(pattern) {
+                    int   shard = 0, i = 0;
+                    int[] ids   = new int[0];
+
+                    @Override int advance() {
+                        while (i == ids.length) {
+                            if (shard == shards.size())
+                                return -1;
+                            ids = complete(shards.get(shard++));
+                            i = 0;
+                        }
+                        return ids[i++];
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Wait for a shard search to complete.
+     *
+     * @param shard the shard search
+     * @return ids of the hits in the shard
+     */
+    private static int[] complete(Future<int[]> shard) {
+        try {
+            return shard.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("search was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("shard search failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Check whether the screen of a record is a superset of the query screen.
+     *
+     * @param query packed query screen (null if no record can pass)
+     * @param id    record id
+     * @return the record passes the screen
+     */
+    private boolean passes(long[] query, int id) {
+        if (query == null)
+            return false;
+        int offset = id * words;
+        for (int i = 0; i < query.length; i++) {
+            if ((query[i] & ~screens[offset + i]) != 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Pack a query screen in to words. Bits beyond the fingerprint length can
+     * never be set on a record and so the screen can never pass.
+     *
+     * @param screen query screen
+     * @return packed screen, null if the screen can never pass
+     */
+    private long[] pack(BitSet screen) {
+        long[] query = new long[Math.max(words, (screen.length() + 63) / 64)];
+        pack(screen, query, 0);
+        if (query.length > words) {
+            for (int i = words; i < query.length; i++) {
+                if (query[i] != 0)
+                    return null;
+            }
+            return Arrays.copyOf(query, words);
+        }
+        return query;
+    }
+
+    /**
+     * Pack the bits of a bit set in to the words at the given offset.
+     *
+     * @param bits   bit set
+     * @param dest   destination words
+     * @param offset offset in the destination
+     */
+    private static void pack(BitSet bits, long[] dest, int offset) {
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1))
+            dest[offset + (i >>> 6)] |= 1L << i;
+    }
+
+    /**
+     * A record matched by a search.
+     */
+    public final class Hit {
+
+        private final int     id;
+        private final Pattern pattern;
+
+        private Hit(int id, Pattern pattern) {
+            this.id = id;
+            this.pattern = pattern;
+        }
+
+        /**
+         * The id of the matched record.
+         *
+         * @return record id
+         */
+        @TestMethod("searchSequential")
+        public int id() {
+            return id;
+        }
+
+        /**
+         * The matched record.
+         *
+         * @return the record
+         */
+        @TestMethod("searchSequential")
+        public IAtomContainer container() {
+            return records.get(id);
+        }
+
+        /**
+         * The mappings of the query to the matched record. The mappings are
+         * lazily generated when iterated.
+         *
+         * @return the mappings
+         */
+        @TestMethod("searchSequential")
+        public Mappings mappings() {
+            return pattern.matchAll(container());
+        }
+    }
+
+    /**
+     * Base iterator of hits, subclasses provide the next matched id.
+     */
+    private abstract class HitIterator implements Iterator<Hit> {
+
+        private final Pattern pattern;
+        private int next = -2;
+
+        private HitIterator(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        /**
+         * Find the next matched record.
+         *
+         * @return the id of the next matched record or -1 if none
+         */
+        abstract int advance();
+
+        @Override public boolean hasNext() {
+            if (next == -2)
+                next = advance();
+            return next >= 0;
+        }
+
+        @Override public Hit next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Hit hit = new Hit(next, pattern);
+            next = -2;
+            return hit;
+        }
+
+        @Override public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.similarity;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.fingerprint.SortedCountFingerprint;
+
+import java.util.List;
+
+/**
+ * Similarity coefficients of count fingerprints (e.g. ECFP counts from the
+ * {@link org.openscience.cdk.fingerprint.CircularFingerprinter}). The
+ * fingerprints are {@link SortedCountFingerprint}s, the common hashes are
+ * found with a single merge of the sorted hashes and the norms are
+ * precomputed. Where <i>x</i> and <i>y</i> are the count vectors:
+ *
+ * <ul>
+ *     <li>Tanimoto: <i>x</i>&middot;<i>y</i> / (|<i>x</i>|<sup>2</sup> +
+ *     |<i>y</i>|<sup>2</sup> - <i>x</i>&middot;<i>y</i>), the same value as {@link Tanimoto#calculate(org.openscience.cdk.fingerprint.ICountFingerprint,
+ *     org.openscience.cdk.fingerprint.ICountFingerprint)}</li>
+ *     <li>Dice: 2<i>x</i>&middot;<i>y</i> / (|<i>x</i>|<sup>2</sup> +
+ *     |<i>y</i>|<sup>2</sup>)</li>
+ *     <li>Cosine: <i>x</i>&middot;<i>y</i> / (|<i>x</i>||<i>y</i>|)</li>
+ *     <li>MinMax: &Sigma;min(<i>x<sub>i</sub></i>,<i>y<sub>i</sub></i>) /
+ *     &Sigma;max(<i>x<sub>i</sub></i>,<i>y<sub>i</sub></i>), the same value as
+ *     {@link Tanimoto#method2(org.openscience.cdk.fingerprint.ICountFingerprint,
+ *     org.openscience.cdk.fingerprint.ICountFingerprint)}</li>
+ * </ul>
+ *
+ * The similarity of two empty fingerprints is 0. Each coefficient is also
+ * provided for one query against many fingerprints:
+ *
+ * <blockquote><pre>
+ * List&lt;SortedCountFingerprint&gt; fps = new ArrayList&lt;SortedCountFingerprint&gt;();
+ * for (IAtomContainer container : library)
+ *     fps.add(SortedCountFingerprint.of(fingerprinter.getCountFingerprint(container)));
+ *
+ * double[] scores = CountSimilarity.tanimoto(fps.get(0), fps);
+ * </pre></blockquote>
+ *
+ * @cdk.module fingerprint
+ * @cdk.githash
+ * @cdk.keyword similarity
+ * @cdk.keyword tanimoto
+ * @cdk.keyword dice
+ * @cdk.keyword cosine
+ */
+@TestClass("org.openscience.cdk.similarity.CountSimilarityTest")
+public final class CountSimilarity {
+
+    private CountSimilarity() {
+    }
+
+    /**
+     * Tanimoto similarity of two count fingerprints.
+     *
+     * @param fp1 first fingerprint
+     * @param fp2 second fingerprint
+     * @return the Tanimoto similarity
+     */
+    @TestMethod("tanimoto")
+    public static double tanimoto(SortedCountFingerprint fp1, SortedCountFingerprint fp2) {
+        return tanimoto(fp1.dot(fp2), fp1.squaredNorm(), fp2.squaredNorm());
+    }
+
+    /**
+     * Dice similarity of two count fingerprints.
+     *
+     * @param fp1 first fingerprint
+     * @param fp2 second fingerprint
+     * @return the Dice similarity
+     */
+    @TestMethod("dice")
+    public static double dice(SortedCountFingerprint fp1, SortedCountFingerprint fp2) {
+        return dice(fp1.dot(fp2), fp1.squaredNorm(), fp2.squaredNorm());
+    }
+
+    /**
+     * Cosine similarity of two count fingerprints.
+     *
+     * @param fp1 first fingerprint
+     * @param fp2 second fingerprint
+     * @return the cosine similarity
+     */
+    @TestMethod("cosine")
+    public static double cosine(SortedCountFingerprint fp1, SortedCountFingerprint fp2) {
+        return cosine(fp1.dot(fp2), fp1.squaredNorm(), fp2.squaredNorm());
+    }
+
+    /**
+     * MinMax similarity of two count fingerprints.
+     *
+     * @param fp1 first fingerprint
+     * @param fp2 second fingerprint
+     * @return the MinMax similarity
+     */
+    @TestMethod("minMax")
+    public static double minMax(SortedCountFingerprint fp1, SortedCountFingerprint fp2) {
+        return minMax(fp1.minSum(fp2), fp1.sum(), fp2.sum());
+    }
+
+    /**
+     * Tanimoto similarity of a query against each of the provided
+     * fingerprints.
+     *
+     * @param query   the query fingerprint
+     * @param targets fingerprints to compare to
+     * @return the similarity to each target (in order)
+     */
+    @TestMethod("batch")
+    public static double[] tanimoto(SortedCountFingerprint query, List<SortedCountFingerprint> targets) {
+        final double[] scores = new double[targets.size()];
+        final long x = query.squaredNorm();
+        for (int i = 0; i < scores.length; i++) {
+            final SortedCountFingerprint target = targets.get(i);
+            scores[i] = tanimoto(query.dot(target), x, target.squaredNorm());
+        }
+        return scores;
+    }
+
+    /**
+     * Dice similarity of a query against each of the provided fingerprints.
+     *
+     * @param query   the query fingerprint
+     * @param targets fingerprints to compare to
+     * @return the similarity to each target (in order)
+     */
+    @TestMethod("batch")
+    public static double[] dice(SortedCountFingerprint query, List<SortedCountFingerprint> targets) {
+        final double[] scores = new double[targets.size()];
+        final long x = query.squaredNorm();
+        for (int i = 0; i < scores.length; i++) {
+            final SortedCountFingerprint target = targets.get(i);
+            scores[i] = dice(query.dot(target), x, target.squaredNorm());
+        }
+        return scores;
+    }
+
+    /**
+     * Cosine similarity of a query against each of the provided fingerprints.
+     *
+     * @param query   the query fingerprint
+     * @param targets fingerprints to compare to
+     * @return the similarity to each target (in order)
+     */
+    @TestMethod("batch")
+    public static double[] cosine(SortedCountFingerprint query, List<SortedCountFingerprint> targets) {
+        final double[] scores = new double[targets.size()];
+        final long x = query.squaredNorm();
+        for (int i = 0; i < scores.length; i++) {
+            final SortedCountFingerprint target = targets.get(i);
+            scores[i] = cosine(query.dot(target), x, target.squaredNorm());
+        }
+        return scores;
+    }
+
+    /**
+     * MinMax similarity of a query against each of the provided fingerprints.
+     *
+     * @param query   the query fingerprint
+     * @param targets fingerprints to compare to
+     * @return the similarity to each target (in order)
+     */
+    @TestMethod("batch")
+    public static double[] minMax(SortedCountFingerprint query, List<SortedCountFingerprint> targets) {
+        final double[] scores = new double[targets.size()];
+        final long x = query.sum();
+        for (int i = 0; i < scores.length; i++) {
+            final SortedCountFingerprint target = targets.get(i);
+            scores[i] = minMax(query.minSum(target), x, target.sum());
+        }
+        return scores;
+    }
+
+    private static double tanimoto(long xy, long x, long y) {
+        final long denom = x + y - xy;
+        return denom == 0 ? 0 : (double) xy / denom;
+    }
+
+    private static double dice(long xy, long x, long y) {
+        final long denom = x + y;
+        return denom == 0 ? 0 : 2d * xy / denom;
+    }
+
+    private static double cosine(long xy, long x, long y) {
+        return x == 0 || y == 0 ? 0 : xy / Math.sqrt((double) x * y);
+    }
+
+    private static double minMax(long min, long x, long y) {
+        final long max = x + y - min;
+        return max == 0 ? 0 : (double) min / max;
+    }
+}
@@ -0,0 +1,516 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.similarity;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in-memory 3D shape screening index of the distance moments (Ultrafast
+ * Shape Recognition) of a conformer library, see {@link DistanceMoment}. The
+ * 12 moments of each conformer are computed once when it is added and stored
+ * in large packed float[] blocks. A search scans the blocks and scores each
+ * conformer with the same similarity as {@link DistanceMoment#calculate}, no
+ * objects are created per conformer.
+ *
+ * <blockquote><pre>
+ * DistanceMomentIndex index = new DistanceMomentIndex();
+ * for (ConformerContainer conformers : library)
+ *     index.add(conformers);
+ *
+ * // the 10 molecules with the most similar conformer
+ * for (DistanceMomentIndex.Hit hit : index.nearest(query, 10)) {
+ *     int   id        = hit.id();
+ *     int   conformer = hit.conformer();
+ *     float score     = hit.score();
+ * }
+ * </pre></blockquote>
+ *
+ * A record (molecule) may have any number of conformers (e.g. a {@link
+ * org.openscience.cdk.ConformerContainer}) and the similarity of a record is
+ * that of its most similar conformer. The similarity decreases with the sum
+ * of the absolute differences of the moments, once the partial sum of a
+ * conformer exceeds that of the best conformer of the record (or the
+ * <i>k</i>th best record) the remaining moments are not compared.
+ *
+ * Searches may be split in to shards of records which are scanned in
+ * parallel with an {@link ExecutorService}. The index is not thread-safe for
+ * modification, records should not be added whilst a search is running but
+ * any number of searches may run concurrently.
+ *
+ * @cdk.module fingerprint
+ * @cdk.githash
+ * @cdk.keyword similarity, 3D
+ * @cdk.keyword shape
+ * @see DistanceMoment
+ */
+@TestClass("org.openscience.cdk.similarity.DistanceMomentIndexTest")
+public final class DistanceMomentIndex {
+
+    /** Default (minimum) number of conformers in each shard of a parallel search. */
+    public static final int DEFAULT_SHARD_SIZE = 65536;
+
+    /** Number of moments of each conformer. */
+    private static final int N_MOMENTS = 12;
+
+    /** Conformers in each block of moments. */
+    private static final int BLOCK_SHIFT = 16, BLOCK_SIZE = 1 << BLOCK_SHIFT, BLOCK_MASK = BLOCK_SIZE - 1;
+
+    /** Number of conformers in each shard. */
+    private final int shardSize;
+
+    /** Moments of the conformers, 'BLOCK_SIZE' conformers per block. */
+    private float[][] blocks = new float[0][];
+
+    /** Number of conformers. */
+    private int nConformers = 0;
+
+    /** Index of the first conformer of each record, 'nRecords' + 1 entries. */
+    private int[] first = new int[]{0};
+
+    /** Number of records. */
+    private int nRecords = 0;
+
+    /**
+     * Create an empty index.
+     */
+    @TestMethod("nearest")
+    public DistanceMomentIndex() {
+        this(DEFAULT_SHARD_SIZE);
+    }
+
+    /**
+     * Create an empty index with the (minimum) number of conformers scanned
+     * in each shard of a parallel search.
+     *
+     * @param shardSize number of conformers in each shard
+     */
+    @TestMethod("nearestParallel")
+    public DistanceMomentIndex(int shardSize) {
+        if (shardSize < 1)
+            throw new IllegalArgumentException("shard size must be positive");
+        this.shardSize = shardSize;
+    }
+
+    /**
+     * Add a record with a single conformer.
+     *
+     * @param container a molecule with 3D coordinates
+     * @return the id of the record
+     * @throws CDKException the molecule does not have 3D coordinates
+     */
+    @TestMethod("nearest")
+    public int add(IAtomContainer container) throws CDKException {
+        return addMoments(DistanceMoment.generateMoments(container));
+    }
+
+    /**
+     * Add a record with multiple conformers (e.g. a {@link
+     * org.openscience.cdk.ConformerContainer}).
+     *
+     * @param conformers conformers of a molecule with 3D coordinates
+     * @return the id of the record
+     * @throws CDKException a conformer does not have 3D coordinates
+     * @throws IllegalArgumentException there were no conformers
+     */
+    @TestMethod("conformers")
+    public int add(List<IAtomContainer> conformers) throws CDKException {
+        float[][] moments = new float[conformers.size()][];
+        for (int i = 0; i < moments.length; i++)
+            moments[i] = DistanceMoment.generateMoments(conformers.get(i));
+        return addMoments(moments);
+    }
+
+    /**
+     * Add a record from the precomputed moments of each of its conformers,
+     * see {@link DistanceMoment#generateMoments(IAtomContainer)}.
+     *
+     * @param moments the 12 moments of each conformer
+     * @return the id of the record
+     * @throws IllegalArgumentException there were no conformers or they did
+     *                                  not have 12 moments
+     */
+    @TestMethod("moments")
+    public int addMoments(float[]... moments) {
+        if (moments.length == 0)
+            throw new IllegalArgumentException("a record must have at least one conformer");
+        for (float[] conformer : moments) {
+            if (conformer.length != N_MOMENTS)
+                throw new IllegalArgumentException("expected " + N_MOMENTS + " moments, got " + conformer.length);
+        }
+        for (float[] conformer : moments) {
+            final int block = nConformers >>> BLOCK_SHIFT;
+            if (block == blocks.length) {
+                blocks = Arrays.copyOf(blocks, block + 1);
+                blocks[block] = new float[BLOCK_SIZE * N_MOMENTS];
+            }
+            System.arraycopy(conformer, 0, blocks[block], (nConformers & BLOCK_MASK) * N_MOMENTS, N_MOMENTS);
+            nConformers++;
+        }
+        if (nRecords + 2 > first.length)
+            first = Arrays.copyOf(first, 2 * first.length);
+        first[++nRecords] = nConformers;
+        return nRecords - 1;
+    }
+
+    /**
+     * The number of records in the index.
+     *
+     * @return number of records
+     */
+    @TestMethod("nearest")
+    public int size() {
+        return nRecords;
+    }
+
+    /**
+     * The number of conformers of all records in the index.
+     *
+     * @return number of conformers
+     */
+    @TestMethod("conformers")
+    public int conformers() {
+        return nConformers;
+    }
+
+    /**
+     * Find the <i>k</i> records with the most similar conformer to the query.
+     * The hits are ordered by decreasing similarity, equally similar records
+     * are ordered by id.
+     *
+     * @param query a molecule with 3D coordinates
+     * @param k     number of hits
+     * @return up to <i>k</i> hits
+     * @throws CDKException the query does not have 3D coordinates
+     */
+    @TestMethod("nearest")
+    public List<Hit> nearest(IAtomContainer query, int k) throws CDKException {
+        return nearest(DistanceMoment.generateMoments(query), k);
+    }
+
+    /**
+     * Find the <i>k</i> records with the most similar conformer to the query
+     * moments.
+     *
+     * @param moments the 12 moments of the query
+     * @param k       number of hits
+     * @return up to <i>k</i> hits
+     * @see #nearest(IAtomContainer, int)
+     */
+    @TestMethod("moments")
+    public List<Hit> nearest(float[] moments, int k) {
+        checkQuery(moments);
+        if (k < 1)
+            return Collections.emptyList();
+        return nearest(moments, 0, nRecords, k, new AtomicInteger(0)).hits();
+    }
+
+    /**
+     * Find the <i>k</i> records with the most similar conformer to the query,
+     * scanning shards of the index in parallel.
+     *
+     * @param query    a molecule with 3D coordinates
+     * @param k        number of hits
+     * @param executor the executor to run the shard searches
+     * @return up to <i>k</i> hits
+     * @throws CDKException the query does not have 3D coordinates
+     */
+    @TestMethod("nearestParallel")
+    public List<Hit> nearest(IAtomContainer query, int k, ExecutorService executor) throws CDKException {
+        return nearest(DistanceMoment.generateMoments(query), k, executor);
+    }
+
+    /**
+     * Find the <i>k</i> records with the most similar conformer to the query
+     * moments, scanning shards of the index in parallel.
+     *
+     * @param moments  the 12 moments of the query
+     * @param k        number of hits
+     * @param executor the executor to run the shard searches
+     * @return up to <i>k</i> hits
+     */
+    @TestMethod("nearestParallel")
+    public List<Hit> nearest(final float[] moments, final int k, ExecutorService executor) {
+        checkQuery(moments);
+        if (k < 1)
+            return Collections.emptyList();
+
+        // the kth best score of any shard is a lower bound on the kth best
+        // score overall and is shared to prune the other shards
+        final AtomicInteger floor = new AtomicInteger(0);
+        final List<Future<TopK>> shards = new ArrayList<Future<TopK>>();
+        for (int beg = 0; beg < nRecords; ) {
+            int end = beg + 1;
+            while (end < nRecords && first[end] - first[beg] < shardSize)
+                end++;
+            final int from = beg, to = end;
+            shards.add(executor.submit(new Callable<TopK>() {
+                @Override public TopK call() throws Exception {
+                    return nearest(moments, from, to, k, floor);
+                }
+            }));
+            beg = end;
+        }
+
+        TopK topk = new TopK(k);
+        for (Future<TopK> shard : shards) {
+            for (Hit hit : complete(shard).heap)
+                topk.offer(hit.id, hit.conformer, hit.score);
+        }
+        return topk.hits();
+    }
+
+    /**
+     * Find the <i>k</i> most similar records in the range [from, to).
+     *
+     * @param query the query moments
+     * @param from  first record
+     * @param to    last record (exclusive)
+     * @param k     number of hits
+     * @param floor shared lower bound of the <i>k</i>th best score (float bits)
+     * @return the top <i>k</i> of the range
+     */
+    private TopK nearest(float[] query, int from, int to, int k, AtomicInteger floor) {
+        final TopK topk = new TopK(k);
+        final float q0 = query[0], q1 = query[1], q2 = query[2], q3 = query[3], q4 = query[4], q5 = query[5];
+        final float q6 = query[6], q7 = query[7], q8 = query[8], q9 = query[9], q10 = query[10], q11 = query[11];
+
+        // largest moment difference sum a conformer may have to be a hit
+        float limit = limit(Float.intBitsToFloat(floor.get()));
+
+        for (int id = from; id < to; id++) {
+            float best = Float.POSITIVE_INFINITY;
+            int bestConformer = -1;
+            for (int c = first[id], end = first[id + 1]; c < end; c++) {
+                final float[] block = blocks[c >>> BLOCK_SHIFT];
+                final int off = (c & BLOCK_MASK) * N_MOMENTS;
+                final float cutoff = Math.min(best, limit);
+                float sum = 0;
+                sum += Math.abs(q0 - block[off]);
+                sum += Math.abs(q1 - block[off + 1]);
+                sum += Math.abs(q2 - block[off + 2]);
+                sum += Math.abs(q3 - block[off + 3]);
+                sum += Math.abs(q4 - block[off + 4]);
+                sum += Math.abs(q5 - block[off + 5]);
+                if (sum > cutoff)
+                    continue;
+                sum += Math.abs(q6 - block[off + 6]);
+                sum += Math.abs(q7 - block[off + 7]);
+                sum += Math.abs(q8 - block[off + 8]);
+                sum += Math.abs(q9 - block[off + 9]);
+                sum += Math.abs(q10 - block[off + 10]);
+                sum += Math.abs(q11 - block[off + 11]);
+                if (sum < best) {
+                    best = sum;
+                    bestConformer = c;
+                }
+            }
+            if (bestConformer < 0 || best > limit)
+                continue;
+            topk.offer(id, bestConformer - first[id], score(best));
+            if (topk.full()) {
+                raise(floor, topk.min());
+                limit = limit(Math.max(topk.min(), Float.intBitsToFloat(floor.get())));
+            }
+        }
+        return topk;
+    }
+
+    /**
+     * The similarity of a conformer with the given sum of the absolute
+     * moment differences, as computed by {@link DistanceMoment#calculate}.
+     *
+     * @param sum sum of the absolute differences
+     * @return the similarity
+     */
+    private static float score(float sum) {
+        return (float) (1.0 / (1.0 + sum / 12.0));
+    }
+
+    /**
+     * The largest sum of the absolute moment differences a conformer may have
+     * and reach the given similarity. The limit is slightly relaxed so that
+     * rounding never excludes an equally similar conformer, the hits are
+     * decided on the exact score.
+     *
+     * @param score a similarity
+     * @return limit of the sum
+     */
+    private static float limit(float score) {
+        if (score <= 0)
+            return Float.POSITIVE_INFINITY;
+        return (float) (12.0 * (1.0 / score - 1.0) * (1 + 1e-5) + 1e-5);
+    }
+
+    private static void checkQuery(float[] moments) {
+        if (moments.length != N_MOMENTS)
+            throw new IllegalArgumentException("expected " + N_MOMENTS + " moments, got " + moments.length);
+    }
+
+    /**
+     * Raise a shared (non-negative) score to at least the given value.
+     *
+     * @param floor the shared score (float bits)
+     * @param score the new score
+     */
+    private static void raise(AtomicInteger floor, float score) {
+        // non-negative floats order the same as their bits
+        final int bits = Float.floatToIntBits(score);
+        int prev;
+        while ((prev = floor.get()) < bits) {
+            if (floor.compareAndSet(prev, bits))
+                return;
+        }
+    }
+
+    /**
+     * Wait for a shard search to complete.
+     *
+     * @param shard the shard search
+     * @return result of the shard
+     */
+    private static <T> T complete(Future<T> shard) {
+        try {
+            return shard.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("search was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("shard search failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * The best <i>k</i> hits seen so far, the worst of which is at the head
+     * of the heap.
+     */
+    private static final class TopK {
+
+        private final int                k;
+        private final PriorityQueue<Hit> heap;
+
+        private TopK(int k) {
+            this.k = k;
+            this.heap = new PriorityQueue<Hit>(Math.min(k, 1024), Collections.reverseOrder(Hit.ORDER));
+        }
+
+        private boolean full() {
+            return heap.size() == k;
+        }
+
+        private float min() {
+            return heap.peek().score;
+        }
+
+        private void offer(int id, int conformer, float score) {
+            if (full()) {
+                Hit worst = heap.peek();
+                if (score < worst.score || (score == worst.score && id > worst.id))
+                    return;
+                heap.poll();
+            }
+            heap.add(new Hit(id, conformer, score));
+        }
+
+        private List<Hit> hits() {
+            List<Hit> hits = new ArrayList<Hit>(heap);
+            Collections.sort(hits, Hit.ORDER);
+            return hits;
+        }
+    }
+
+    /**
+     * A record found by a search.
+     */
+    public static final class Hit {
+
+        /** Decreasing similarity and then increasing id. */
+        private static final Comparator<Hit> ORDER = new Comparator<Hit>() {
+            @Override public int compare(Hit a, Hit b) {
+                int cmp = Float.compare(b.score, a.score);
+                return cmp != 0 ? cmp : (a.id < b.id ? -1 : a.id > b.id ? 1 : 0);
+            }
+        };
+
+        private final int   id, conformer;
+        private final float score;
+
+        private Hit(int id, int conformer, float score) {
+            this.id = id;
+            this.conformer = conformer;
+            this.score = score;
+        }
+
+        /**
+         * The id of the record.
+         *
+         * @return record id
+         */
+        @TestMethod("nearest")
+        public int id() {
+            return id;
+        }
+
+        /**
+         * The index of the most similar conformer of the record.
+         *
+         * @return conformer index
+         */
+        @TestMethod("conformers")
+        public int conformer() {
+            return conformer;
+        }
+
+        /**
+         * The similarity of the most similar conformer to the query.
+         *
+         * @return similarity
+         */
+        @TestMethod("nearest")
+        public float score() {
+            return score;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override public String toString() {
+            return id + ":" + conformer + ":" + score;
+        }
+    }
+}
@@ -26,7 +26,9 @@ package org.openscience.cdk.similarity;
 
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.fingerprint.SortedCountFingerprint;
 
+import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
 
@@ -34,7 +36,17 @@ import java.util.TreeSet;
  * A class to evaluate the similarity between two LINGO's as described in {@cdk.cite Vidal2005}.
  *
  * The similarity calculation is a variant of the Tanimoto coefficient and hence its
- * value ranges from 0 to 1
+ * value ranges from 0 to 1. Where <i>N<sub>A,i</sub></i> and <i>N<sub>B,i</sub></i>
+ * are the counts of substring <i>i</i> of the <i>l</i> substrings present in
+ * either LINGO:
+ *
+ * <blockquote>
+ * 1/<i>l</i> &Sigma; (1 - |<i>N<sub>A,i</sub></i> - <i>N<sub>B,i</sub></i>| /
+ * (<i>N<sub>A,i</sub></i> + <i>N<sub>B,i</sub></i>))
+ * </blockquote>
+ *
+ * The similarity of {@link org.openscience.cdk.fingerprint.Lingo} fingerprints
+ * is computed with a single merge of the sorted substring keys.
  * 
  * @author Rajarshi Guha
  * @cdk.githash
@@ -51,13 +63,16 @@ public class LingoSimilarity {
     /**
      * Evaluate the LINGO similarity between two key,value sty;e fingerprints.
      *
-     * The value will range from 0.0 to 1.0.
+     * The value will range from 0.0 to 1.0. Note the counts of a substring
+     * are compared with integer division, a substring present in both
+     * fingerprints scores 1 whatever its counts. Two empty fingerprints have
+     * a similarity of NaN.
      * 
      * @param features1
      * @param features2
      * @return similarity
      */
-    @TestMethod("testLingoSim")
+    @TestMethod("testLingoSim,testLingoSim_counts,testLingoSim_empty")
     public static float calculate(Map<String, Integer> features1, Map<String, Integer> features2) {
         TreeSet<String> keys = new TreeSet<String>(features1.keySet());
         keys.addAll(features2.keySet());
@@ -74,4 +89,52 @@ public class LingoSimilarity {
 
         return sum / keys.size();
     }
+
+    /**
+     * Evaluate the LINGO similarity between two fingerprints from {@link
+     * org.openscience.cdk.fingerprint.Lingo}. Unlike {@link #calculate(Map,
+     * Map)} the counts of a substring are compared with exact division (as
+     * in the formula above), a substring with counts 1 and 2 scores 2/3
+     * rather than 1. Two empty fingerprints have a similarity of 0.
+     *
+     * @param fp1 first fingerprint
+     * @param fp2 second fingerprint
+     * @return similarity
+     */
+    @TestMethod("testLingoSim_sorted")
+    public static float calculate(SortedCountFingerprint fp1, SortedCountFingerprint fp2) {
+        final int alen = fp1.numOfPopulatedbins(), blen = fp2.numOfPopulatedbins();
+        float sum = 0.0f;
+        int i = 0, j = 0, n = 0;
+        while (i < alen && j < blen) {
+            final int a = fp1.getHash(i), b = fp2.getHash(j);
+            if (a < b) {
+                i++;
+            } else if (a > b) {
+                j++;
+            } else {
+                final int c1 = fp1.getCount(i++), c2 = fp2.getCount(j++);
+                sum += 1.0 - (double) Math.abs(c1 - c2) / (c1 + c2);
+            }
+            n++;
+        }
+        n += (alen - i) + (blen - j);
+        return n == 0 ? 0 : sum / n;
+    }
+
+    /**
+     * Evaluate the LINGO similarity of a query against each of the provided
+     * fingerprints.
+     *
+     * @param query   the query fingerprint
+     * @param targets fingerprints to compare to
+     * @return the similarity to each target (in order)
+     */
+    @TestMethod("testLingoSim_batch")
+    public static float[] calculate(SortedCountFingerprint query, List<SortedCountFingerprint> targets) {
+        final float[] scores = new float[targets.size()];
+        for (int i = 0; i < scores.length; i++)
+            scores[i] = calculate(query, targets.get(i));
+        return scores;
+    }
 }
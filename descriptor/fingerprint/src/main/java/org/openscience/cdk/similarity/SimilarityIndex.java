@@ -0,0 +1,813 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.similarity;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.fingerprint.IBitFingerprint;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory similarity search index over fixed length binary fingerprints.
+ * The fingerprints are packed in to a single contiguous block of 64-bit words
+ * (optionally allocated off the Java heap) and compared with word-wise
+ * population counts, no {@link BitSet} or {@link IBitFingerprint} is created
+ * per comparison.
+ *
+ * <blockquote><pre>
+ * SimilarityIndex index = new SimilarityIndex(1024);
+ * for (IAtomContainer container : library)
+ *     index.add(fingerprinter.getBitFingerprint(container));
+ *
+ * // the 10 most similar records
+ * for (SimilarityIndex.Hit hit : index.nearest(query, 10)) {
+ *     int    id    = hit.id();
+ *     double score = hit.score();
+ * }
+ *
+ * // all records with a Tanimoto similarity of at least 0.8
+ * List&lt;SimilarityIndex.Hit&gt; hits = index.threshold(query, 0.8);
+ * </pre></blockquote>
+ *
+ * The records are ordered by the number of bits set. The similarity of two
+ * fingerprints with <i>a</i> and <i>b</i> bits set is bounded by the number of
+ * bits they can have in common (min(<i>a</i>,<i>b</i>)), for the Tanimoto
+ * coefficient this bound is min(<i>a</i>,<i>b</i>) / max(<i>a</i>,<i>b</i>)
+ * {@cdk.cite Swamidass07}. Records whose bound is below the threshold (or the
+ * current <i>k</i>th best score) are never compared. Both the Tanimoto and the
+ * asymmetric Tversky similarity are supported, the Tversky similarity is
+ * <i>c</i> / (&alpha;(<i>a</i>-<i>c</i>) + &beta;(<i>b</i>-<i>c</i>) +
+ * <i>c</i>) where <i>a</i> is the number of bits in the query, <i>b</i> the
+ * number of bits in the record and <i>c</i> the number of bits in common. The
+ * Tanimoto coefficient is the Tversky similarity with &alpha; = &beta; = 1.
+ * Two empty fingerprints have a similarity of 0.
+ *
+ * Searches may be split in to shards of records which are scanned in
+ * parallel with an {@link ExecutorService}. The index is not thread-safe for
+ * modification, records should not be added whilst a search is running but
+ * any number of searches may run concurrently.
+ *
+ * @cdk.module fingerprint
+ * @cdk.githash
+ * @cdk.keyword similarity search
+ * @cdk.keyword tanimoto
+ * @cdk.keyword tversky
+ */
+@TestClass("org.openscience.cdk.similarity.SimilarityIndexTest")
+public final class SimilarityIndex {
+
+    /** Default number of records in each shard of a parallel search. */
+    public static final int DEFAULT_SHARD_SIZE = 65536;
+
+    /** Number of bits in each fingerprint. */
+    private final int length;
+
+    /** Number of 64-bit words in each fingerprint. */
+    private final int words;
+
+    /** Whether the packed fingerprints are allocated off the heap. */
+    private final boolean direct;
+
+    /** Number of records in each shard. */
+    private final int shardSize;
+
+    /** Fingerprints added since the index was last ordered (in id order). */
+    private long[] pending = new long[0];
+
+    /** Number of fingerprints in 'pending'. */
+    private int npending = 0;
+
+    /** Fingerprints ordered by cardinality ('words' per record). */
+    private Store store;
+
+    /** Id of the record at each position of the store. */
+    private int[] ids = new int[0];
+
+    /** First position in the store of records with a given cardinality. */
+    private int[] buckets;
+
+    /**
+     * Create an empty index of fingerprints with the given length (number of
+     * bits). The fingerprints are stored on the heap.
+     *
+     * @param length fingerprint length
+     */
+    @TestMethod("nearest,threshold")
+    public SimilarityIndex(int length) {
+        this(length, false);
+    }
+
+    /**
+     * Create an empty index of fingerprints with the given length (number of
+     * bits). A direct (off-heap) index avoids very large arrays on the Java
+     * heap but can hold at most ({@link Integer#MAX_VALUE} / 8) 64-bit words,
+     * the largest buffer that can be addressed in bytes. That is 2<sup>28</sup>
+     * - 1 words or 16,777,215 1024-bit fingerprints.
+     *
+     * @param length fingerprint length
+     * @param direct store the fingerprints off the Java heap
+     */
+    @TestMethod("direct")
+    public SimilarityIndex(int length, boolean direct) {
+        this(length, direct, DEFAULT_SHARD_SIZE);
+    }
+
+    /**
+     * Create an empty index of fingerprints with the given length (number of
+     * bits) and the number of records scanned in each shard of a parallel
+     * search.
+     *
+     * @param length    fingerprint length
+     * @param direct    store the fingerprints off the Java heap
+     * @param shardSize number of records in each shard
+     */
+    @TestMethod("nearestParallel,thresholdParallel")
+    public SimilarityIndex(int length, boolean direct, int shardSize) {
+        if (length < 1)
+            throw new IllegalArgumentException("fingerprint length must be positive");
+        if (shardSize < 1)
+            throw new IllegalArgumentException("shard size must be positive");
+        this.length = length;
+        this.words = (length + 63) / 64;
+        this.direct = direct;
+        this.shardSize = shardSize;
+        this.buckets = new int[words * 64 + 2];
+        this.store = direct ? new DirectStore(0) : new HeapStore(0);
+    }
+
+    /**
+     * Add a fingerprint to the index.
+     *
+     * @param fingerprint the fingerprint
+     * @return the id of the record
+     * @throws IllegalArgumentException a bit beyond the fingerprint length was
+     *                                  set
+     */
+    @TestMethod("nearest")
+    public int add(BitSet fingerprint) {
+        if (fingerprint.length() > length)
+            throw new IllegalArgumentException("bit " + (fingerprint.length() - 1)
+                                                       + " is beyond the fingerprint length " + length);
+        if ((npending + 1) * words > pending.length)
+            pending = Arrays.copyOf(pending, Math.max(words, 2 * pending.length));
+        pack(fingerprint, pending, npending * words);
+        return ids.length + npending++;
+    }
+
+    /**
+     * Add a fingerprint to the index.
+     *
+     * @param fingerprint the fingerprint
+     * @return the id of the record
+     * @throws IllegalArgumentException the fingerprint has a different length
+     */
+    @TestMethod("addBitFingerprint")
+    public int add(IBitFingerprint fingerprint) {
+        if (fingerprint.size() != length)
+            throw new IllegalArgumentException("fingerprint length " + fingerprint.size()
+                                                       + " != index fingerprint length " + length);
+        return add(fingerprint.asBitSet());
+    }
+
+    /**
+     * The number of records in the index.
+     *
+     * @return number of records
+     */
+    @TestMethod("nearest")
+    public int size() {
+        return ids.length + npending;
+    }
+
+    /**
+     * The length (number of bits) of the indexed fingerprints.
+     *
+     * @return fingerprint length
+     */
+    @TestMethod("nearest")
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Find the <i>k</i> records most similar (Tanimoto) to the query. The hits
+     * are ordered by decreasing similarity, equally similar records are
+     * ordered by id.
+     *
+     * @param query query fingerprint
+     * @param k     number of hits
+     * @return up to <i>k</i> hits
+     */
+    @TestMethod("nearest")
+    public List<Hit> nearest(BitSet query, int k) {
+        return nearest(query, 1, 1, k);
+    }
+
+    /**
+     * Find the <i>k</i> records most similar (Tversky) to the query. The hits
+     * are ordered by decreasing similarity, equally similar records are
+     * ordered by id.
+     *
+     * @param query query fingerprint
+     * @param alpha weight of the bits only in the query
+     * @param beta  weight of the bits only in the record
+     * @param k     number of hits
+     * @return up to <i>k</i> hits
+     */
+    @TestMethod("nearestTversky")
+    public List<Hit> nearest(BitSet query, double alpha, double beta, int k) {
+        Query q = new Query(query, alpha, beta);
+        if (k < 1)
+            return Collections.emptyList();
+        prepare();
+        return q.nearest(0, ids.length, k, new AtomicLong(Double.doubleToLongBits(0))).hits();
+    }
+
+    /**
+     * Find the <i>k</i> records most similar (Tanimoto) to the query, scanning
+     * shards of the index in parallel.
+     *
+     * @param query    query fingerprint
+     * @param k        number of hits
+     * @param executor the executor to run the shard searches
+     * @return up to <i>k</i> hits
+     */
+    @TestMethod("nearestParallel")
+    public List<Hit> nearest(BitSet query, int k, ExecutorService executor) {
+        return nearest(query, 1, 1, k, executor);
+    }
+
+    /**
+     * Find the <i>k</i> records most similar (Tversky) to the query, scanning
+     * shards of the index in parallel.
+     *
+     * @param query    query fingerprint
+     * @param alpha    weight of the bits only in the query
+     * @param beta     weight of the bits only in the record
+     * @param k        number of hits
+     * @param executor the executor to run the shard searches
+     * @return up to <i>k</i> hits
+     */
+    @TestMethod("nearestParallel")
+    public List<Hit> nearest(BitSet query, double alpha, double beta, final int k, ExecutorService executor) {
+        final Query q = new Query(query, alpha, beta);
+        if (k < 1)
+            return Collections.emptyList();
+        prepare();
+
+        // the kth best score of any shard is a lower bound on the kth best
+        // score overall and is shared to prune the other shards
+        final AtomicLong floor = new AtomicLong(Double.doubleToLongBits(0));
+        List<Future<TopK>> shards = new ArrayList<Future<TopK>>();
+        for (int beg = 0; beg < ids.length; beg += shardSize) {
+            final int from = beg, to = Math.min(beg + shardSize, ids.length);
+            shards.add(executor.submit(new Callable<TopK>() {
+                @Override public TopK call() throws Exception {
+                    return q.nearest(from, to, k, floor);
+                }
+            }));
+        }
+
+        TopK topk = new TopK(k);
+        for (Future<TopK> shard : shards) {
+            for (Hit hit : complete(shard).heap)
+                topk.offer(hit.id, hit.score);
+        }
+        return topk.hits();
+    }
+
+    /**
+     * Find all records with a Tanimoto similarity to the query of at least
+     * the given threshold. The hits are ordered by decreasing similarity,
+     * equally similar records are ordered by id.
+     *
+     * @param query     query fingerprint
+     * @param threshold minimum similarity
+     * @return the hits
+     */
+    @TestMethod("threshold")
+    public List<Hit> threshold(BitSet query, double threshold) {
+        return threshold(query, 1, 1, threshold);
+    }
+
+    /**
+     * Find all records with a Tversky similarity to the query of at least the
+     * given threshold. The hits are ordered by decreasing similarity, equally
+     * similar records are ordered by id.
+     *
+     * @param query     query fingerprint
+     * @param alpha     weight of the bits only in the query
+     * @param beta      weight of the bits only in the record
+     * @param threshold minimum similarity
+     * @return the hits
+     */
+    @TestMethod("thresholdTversky")
+    public List<Hit> threshold(BitSet query, double alpha, double beta, double threshold) {
+        Query q = new Query(query, alpha, beta);
+        prepare();
+        int[] range = q.range(threshold);
+        List<Hit> hits = q.threshold(range[0], range[1], threshold);
+        Collections.sort(hits, Hit.ORDER);
+        return hits;
+    }
+
+    /**
+     * Find all records with a Tanimoto similarity to the query of at least
+     * the given threshold, scanning shards of the index in parallel.
+     *
+     * @param query     query fingerprint
+     * @param threshold minimum similarity
+     * @param executor  the executor to run the shard searches
+     * @return the hits
+     */
+    @TestMethod("thresholdParallel")
+    public List<Hit> threshold(BitSet query, double threshold, ExecutorService executor) {
+        return threshold(query, 1, 1, threshold, executor);
+    }
+
+    /**
+     * Find all records with a Tversky similarity to the query of at least the
+     * given threshold, scanning shards of the index in parallel.
+     *
+     * @param query     query fingerprint
+     * @param alpha     weight of the bits only in the query
+     * @param beta      weight of the bits only in the record
+     * @param threshold minimum similarity
+     * @param executor  the executor to run the shard searches
+     * @return the hits
+     */
+    @TestMethod("thresholdParallel")
+    public List<Hit> threshold(BitSet query, double alpha, double beta, final double threshold,
+                               ExecutorService executor) {
+        final Query q = new Query(query, alpha, beta);
+        prepare();
+        int[] range = q.range(threshold);
+        List<Future<List<Hit>>> shards = new ArrayList<Future<List<Hit>>>();
+        for (int beg = range[0]; beg < range[1]; beg += shardSize) {
+            final int from = beg, to = Math.min(beg + shardSize, range[1]);
+            shards.add(executor.submit(new Callable<List<Hit>>() {
+                @Override public List<Hit> call() throws Exception {
+                    return q.threshold(from, to, threshold);
+                }
+            }));
+        }
+        List<Hit> hits = new ArrayList<Hit>();
+        for (Future<List<Hit>> shard : shards)
+            hits.addAll(complete(shard));
+        Collections.sort(hits, Hit.ORDER);
+        return hits;
+    }
+
+    /**
+     * Order the fingerprints added since the last search by cardinality and
+     * merge them with the existing store.
+     */
+    private synchronized void prepare() {
+        if (npending == 0)
+            return;
+
+        int nOld = ids.length;
+        int n = nOld + npending;
+        if ((long) n * words > (direct ? Integer.MAX_VALUE / 8 : Integer.MAX_VALUE))
+            throw new IllegalStateException("too many fingerprints for a single index");
+
+        int[] counts = new int[n];
+        int[] newIds = new int[n];
+        for (int pos = 0; pos < nOld; pos++) {
+            counts[pos] = store.cardinality(pos * words, words);
+            newIds[pos] = ids[pos];
+        }
+        for (int i = 0; i < npending; i++) {
+            int c = 0;
+            for (int j = 0; j < words; j++)
+                c += Long.bitCount(pending[i * words + j]);
+            counts[nOld + i] = c;
+            newIds[nOld + i] = nOld + i;
+        }
+
+        // counting sort, stable so records of equal cardinality stay in
+        // id order
+        int[] newBuckets = new int[buckets.length];
+        for (int c : counts)
+            newBuckets[c + 1]++;
+        for (int c = 1; c < newBuckets.length; c++)
+            newBuckets[c] += newBuckets[c - 1];
+        int[] next = Arrays.copyOf(newBuckets, newBuckets.length);
+
+        Store newStore = direct ? new DirectStore(n * words) : new HeapStore(n * words);
+        int[] sortedIds = new int[n];
+        for (int pos = 0; pos < n; pos++) {
+            int dest = next[counts[pos]]++;
+            sortedIds[dest] = newIds[pos];
+            for (int j = 0; j < words; j++) {
+                long word = pos < nOld ? store.get(pos * words + j) : pending[(pos - nOld) * words + j];
+                newStore.set(dest * words + j, word);
+            }
+        }
+
+        this.store = newStore;
+        this.ids = sortedIds;
+        this.buckets = newBuckets;
+        this.pending = new long[0];
+        this.npending = 0;
+    }
+
+    /**
+     * Wait for a shard search to complete.
+     *
+     * @param shard the shard search
+     * @return result of the shard
+     */
+    private static <T> T complete(Future<T> shard) {
+        try {
+            return shard.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("search was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("shard search failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Pack the bits of a bit set in to the words at the given offset.
+     *
+     * @param bits   bit set
+     * @param dest   destination words
+     * @param offset offset in the destination
+     */
+    private static void pack(BitSet bits, long[] dest, int offset) {
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1))
+            dest[offset + (i >>> 6)] |= 1L << i;
+    }
+
+    /**
+     * A packed query and the similarity measure it is scored with.
+     */
+    private final class Query {
+
+        private final long[] bits;
+        private final int    cardinality;
+        private final double alpha, beta;
+
+        private Query(BitSet query, double alpha, double beta) {
+            if (alpha < 0 || beta < 0)
+                throw new IllegalArgumentException("Tversky weights must not be negative");
+            this.alpha = alpha;
+            this.beta = beta;
+            this.cardinality = query.cardinality();
+            // bits beyond the fingerprint length are counted but can never
+            // be in common with a record
+            this.bits = new long[words];
+            for (int i = query.nextSetBit(0); i >= 0 && i < 64 * words; i = query.nextSetBit(i + 1))
+                this.bits[i >>> 6] |= 1L << i;
+        }
+
+        /**
+         * The similarity of the query to a record.
+         *
+         * @param b number of bits set in the record
+         * @param c number of bits in common
+         * @return the similarity
+         */
+        private double score(int b, int c) {
+            double denom = alpha * (cardinality - c) + beta * (b - c) + c;
+            return denom == 0 ? 0 : c / denom;
+        }
+
+        /**
+         * Upper bound of the similarity of the query to a record with 'b'
+         * bits set. The bound increases up to b = |query| and then decreases.
+         *
+         * @param b number of bits set in the record
+         * @return maximum similarity
+         */
+        private double bound(int b) {
+            return score(b, Math.min(b, cardinality));
+        }
+
+        /**
+         * The store positions of records whose bound is at least the
+         * threshold. As the bound is unimodal in the record cardinality the
+         * positions are a single contiguous range.
+         *
+         * @param threshold minimum similarity
+         * @return the range [from, to)
+         */
+        private int[] range(double threshold) {
+            int lo = 0, hi = buckets.length - 2;
+            while (lo <= hi && bound(lo) < threshold)
+                lo++;
+            while (hi >= lo && bound(hi) < threshold)
+                hi--;
+            if (lo > hi)
+                return new int[]{0, 0};
+            return new int[]{buckets[lo], buckets[hi + 1]};
+        }
+
+        /**
+         * Scan the store positions [from, to) for records with a similarity
+         * of at least the threshold.
+         *
+         * @param from      first position
+         * @param to        last position (exclusive)
+         * @param threshold minimum similarity
+         * @return the hits (unordered)
+         */
+        private List<Hit> threshold(int from, int to, double threshold) {
+            List<Hit> hits = new ArrayList<Hit>();
+            if (from >= to)
+                return hits;
+            for (int b = cardinality(from); b <= cardinality(to - 1); b++) {
+                if (bound(b) < threshold)
+                    continue;
+                int beg = Math.max(from, buckets[b]), end = Math.min(to, buckets[b + 1]);
+                for (int pos = beg; pos < end; pos++) {
+                    double score = score(b, store.intersect(pos * words, bits));
+                    if (score >= threshold)
+                        hits.add(new Hit(ids[pos], score));
+                }
+            }
+            return hits;
+        }
+
+        /**
+         * Find the <i>k</i> most similar records at the store positions
+         * [from, to). The cardinalities are visited in order of decreasing
+         * bound, outwards from the query cardinality, and the scan stops once
+         * no remaining record can beat the <i>k</i>th best score.
+         *
+         * @param from  first position
+         * @param to    last position (exclusive)
+         * @param k     number of hits
+         * @param floor shared lower bound of the <i>k</i>th best score
+         * @return the top <i>k</i> of the range
+         */
+        private TopK nearest(int from, int to, int k, AtomicLong floor) {
+            TopK topk = new TopK(k);
+            if (from >= to)
+                return topk;
+            int min = cardinality(from), max = cardinality(to - 1);
+            int up = Math.max(min, Math.min(max, cardinality)), down = up - 1;
+            while (up <= max || down >= min) {
+                int b;
+                if (down < min || (up <= max && bound(up) >= bound(down)))
+                    b = up++;
+                else
+                    b = down--;
+                double bound = bound(b);
+                if (bound < Double.longBitsToDouble(floor.get()) || (topk.full() && bound < topk.min()))
+                    break;
+                int beg = Math.max(from, buckets[b]), end = Math.min(to, buckets[b + 1]);
+                for (int pos = beg; pos < end; pos++)
+                    topk.offer(ids[pos], score(b, store.intersect(pos * words, bits)));
+                if (topk.full())
+                    raise(floor, topk.min());
+            }
+            return topk;
+        }
+
+        /**
+         * The cardinality of the record at a store position.
+         *
+         * @param pos store position
+         * @return number of bits set
+         */
+        private int cardinality(int pos) {
+            int lo = 0, hi = buckets.length - 2;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (buckets[mid] <= pos)
+                    lo = mid;
+                else
+                    hi = mid - 1;
+            }
+            return lo;
+        }
+    }
+
+    /**
+     * Raise a shared (non-negative) score to at least the given value.
+     *
+     * @param floor the shared score
+     * @param score the new score
+     */
+    private static void raise(AtomicLong floor, double score) {
+        long prev;
+        do {
+            prev = floor.get();
+            if (Double.longBitsToDouble(prev) >= score)
+                return;
+        } while (!floor.compareAndSet(prev, Double.doubleToLongBits(score)));
+    }
+
+    /**
+     * A bounded heap of the best <i>k</i> hits, the root is the worst hit.
+     */
+    private static final class TopK {
+
+        private final int                 k;
+        private final PriorityQueue<Hit> heap;
+
+        private TopK(int k) {
+            this.k = k;
+            this.heap = new PriorityQueue<Hit>(Math.min(k, 1024), Collections.reverseOrder(Hit.ORDER));
+        }
+
+        private boolean full() {
+            return heap.size() == k;
+        }
+
+        private double min() {
+            return heap.peek().score;
+        }
+
+        private void offer(int id, double score) {
+            if (full()) {
+                Hit worst = heap.peek();
+                if (score < worst.score || (score == worst.score && id > worst.id))
+                    return;
+                heap.poll();
+            }
+            heap.add(new Hit(id, score));
+        }
+
+        private List<Hit> hits() {
+            List<Hit> hits = new ArrayList<Hit>(heap);
+            Collections.sort(hits, Hit.ORDER);
+            return hits;
+        }
+    }
+
+    /**
+     * Packed fingerprint words.
+     */
+    private abstract static class Store {
+
+        abstract long get(int idx);
+
+        abstract void set(int idx, long word);
+
+        /**
+         * Number of bits set in the words at the offset.
+         *
+         * @param offset first word
+         * @param n      number of words
+         * @return number of bits set
+         */
+        int cardinality(int offset, int n) {
+            int c = 0;
+            for (int i = 0; i < n; i++)
+                c += Long.bitCount(get(offset + i));
+            return c;
+        }
+
+        /**
+         * Number of bits set in both the query and the words at the offset.
+         *
+         * @param offset first word
+         * @param query  query words
+         * @return number of common bits
+         */
+        abstract int intersect(int offset, long[] query);
+    }
+
+    /**
+     * Words stored in a Java array.
+     */
+    private static final class HeapStore extends Store {
+
+        private final long[] words;
+
+        private HeapStore(int n) {
+            this.words = new long[n];
+        }
+
+        @Override long get(int idx) {
+            return words[idx];
+        }
+
+        @Override void set(int idx, long word) {
+            words[idx] = word;
+        }
+
+        @Override int intersect(int offset, long[] query) {
+            int c = 0;
+            for (int i = 0; i < query.length; i++)
+                c += Long.bitCount(query[i] & words[offset + i]);
+            return c;
+        }
+    }
+
+    /**
+     * Words stored in a direct (off-heap) buffer.
+     */
+    private static final class DirectStore extends Store {
+
+        private final LongBuffer words;
+
+        private DirectStore(int n) {
+            this.words = ByteBuffer.allocateDirect(8 * n).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+
+        @Override long get(int idx) {
+            return words.get(idx);
+        }
+
+        @Override void set(int idx, long word) {
+            words.put(idx, word);
+        }
+
+        @Override int intersect(int offset, long[] query) {
+            int c = 0;
+            for (int i = 0; i < query.length; i++)
+                c += Long.bitCount(query[i] & words.get(offset + i));
+            return c;
+        }
+    }
+
+    /**
+     * A record found by a similarity search.
+     */
+    public static final class Hit {
+
+        /** Decreasing similarity and then increasing id. */
+        private static final Comparator<Hit> ORDER = new Comparator<Hit>() {
+            @Override public int compare(Hit a, Hit b) {
+                int cmp = Double.compare(b.score, a.score);
+                return cmp != 0 ? cmp : (a.id < b.id ? -1 : a.id > b.id ? 1 : 0);
+            }
+        };
+
+        private final int    id;
+        private final double score;
+
+        private Hit(int id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        /**
+         * The id of the record.
+         *
+         * @return record id
+         */
+        @TestMethod("nearest")
+        public int id() {
+            return id;
+        }
+
+        /**
+         * The similarity of the record to the query.
+         *
+         * @return similarity
+         */
+        @TestMethod("nearest")
+        public double score() {
+            return score;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override public String toString() {
+            return id + ":" + score;
+        }
+    }
+}
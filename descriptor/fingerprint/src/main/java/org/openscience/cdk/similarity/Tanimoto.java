@@ -37,6 +37,7 @@ import org.openscience.cdk.fingerprint.IBitFingerprint;
 import org.openscience.cdk.fingerprint.ICountFingerprint;
 import org.openscience.cdk.fingerprint.IntArrayCountFingerprint;
 import org.openscience.cdk.fingerprint.IntArrayFingerprint;
+import org.openscience.cdk.fingerprint.SortedCountFingerprint;
 
 import java.util.BitSet;
 import java.util.Map;
@@ -197,10 +198,18 @@ public class Tanimoto
      * @param fp1 The first fingerprint
      * @param fp2 The second fingerprint
      * @return The Tanimoto coefficient
+     * @see CountSimilarity#tanimoto(SortedCountFingerprint, SortedCountFingerprint)
      */
     @TestMethod("testICountFingerprintComparison")
 	public static double calculate( ICountFingerprint fp1, 
 			                       ICountFingerprint fp2 ) {
+		if ( fp1 instanceof SortedCountFingerprint 
+				&& fp2 instanceof SortedCountFingerprint ) {
+			SortedCountFingerprint sfp1 = (SortedCountFingerprint) fp1;
+			SortedCountFingerprint sfp2 = (SortedCountFingerprint) fp2;
+			long xy = sfp1.dot(sfp2);
+			return ( (double)xy / (sfp1.squaredNorm() + sfp2.squaredNorm() - xy) );
+		}
 		long xy=0, 
 		     x=0, 
 		     y=0;
@@ -238,11 +247,19 @@ public class Tanimoto
      * @param fp1 count fingerprint 1
      * @param fp2 count fingerprint 2
      * @return a Tanimoto distance
+     * @see CountSimilarity#minMax(SortedCountFingerprint, SortedCountFingerprint)
      */
     @TestMethod("method2")
     public static double method2( ICountFingerprint fp1,
                                   ICountFingerprint fp2) {
     	
+    		if ( fp1 instanceof SortedCountFingerprint 
+    				&& fp2 instanceof SortedCountFingerprint ) {
+    			SortedCountFingerprint sfp1 = (SortedCountFingerprint) fp1;
+    			SortedCountFingerprint sfp2 = (SortedCountFingerprint) fp2;
+    			long min = sfp1.minSum(sfp2);
+    			return ((double)min) / (sfp1.sum() + sfp2.sum() - min);
+    		}
     		long maxSum = 0,
     		     minSum = 0;
     		int i = 0, 
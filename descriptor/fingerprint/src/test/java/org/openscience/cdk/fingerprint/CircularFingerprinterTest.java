@@ -146,6 +146,50 @@ public class CircularFingerprinterTest extends CDKTestCase
 		// currently no-op
 	}
 	
+	@Test
+	public void testFeatureListener() throws Exception
+	{
+		SmilesParser parser=new SmilesParser(SilentChemObjectBuilder.getInstance());
+		final int[][] ECFP={{CircularFingerprinter.CLASS_ECFP0,CircularFingerprinter.CLASS_ECFP2,
+							 CircularFingerprinter.CLASS_ECFP4,CircularFingerprinter.CLASS_ECFP6},
+							{CircularFingerprinter.CLASS_FCFP0,CircularFingerprinter.CLASS_FCFP2,
+							 CircularFingerprinter.CLASS_FCFP4,CircularFingerprinter.CLASS_FCFP6}};
+
+		// the same instances are reused for each molecule
+		final CircularFingerprinter[] circ={new CircularFingerprinter(ECFP[0][3]),new CircularFingerprinter(ECFP[1][3])};
+		for (String smi : new String[]{"CCC(=O)N","c1ccccc1CC(N)C(=O)O","C","OC1CCC(CC1)c1ccncc1","CC"})
+		{
+			IAtomContainer mol=parser.parseSmiles(smi);
+			for (int t=0;t<2;t++)
+			{
+				final List<CircularFingerprinter.FP> emitted=new ArrayList<CircularFingerprinter.FP>();
+				final CircularFingerprinter fpr=circ[t];
+				fpr.calculate(mol,new CircularFingerprinter.FeatureListener()
+				{
+					public void features(int iteration,int[] hashes,int[] atoms,int count)
+					{
+						for (int n=0;n<count;n++) emitted.add(new CircularFingerprinter.FP(hashes[n],iteration,fpr.getAtoms(iteration,atoms[n])));
+					}
+				});
+				
+				// the fingerprints are passed to the listener in the same order they are stored
+				assertThat(emitted.size(),is(fpr.getFPCount()));
+				for (int n=0;n<emitted.size();n++) assertThat(formatFP(emitted.get(n)),is(formatFP(fpr.getFP(n))));
+				
+				// ECFP0/2/4 are the leading iterations of the ECFP6 pass
+				for (int iter=0;iter<=3;iter++)
+				{
+					CircularFingerprinter single=new CircularFingerprinter(ECFP[t][iter]);
+					single.calculate(mol);
+					List<String> expect=new ArrayList<String>(),actual=new ArrayList<String>();
+					for (int n=0;n<single.getFPCount();n++) expect.add(formatFP(single.getFP(n)));
+					for (CircularFingerprinter.FP fp : emitted) if (fp.iteration<=iter) actual.add(formatFP(fp));
+					assertThat(actual,is(expect));
+				}
+			}
+		}
+	}
+	
 	private void validate(InputStream in) throws Exception
 	{
 		ZipInputStream zip=new ZipInputStream(in);
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.fingerprint;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.BitSet;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @cdk.module test-fingerprint
+ */
+public class FingerprintFileWriterTest {
+
+    @Test public void bitRows() throws Exception {
+        File file = MappedFingerprintFileTest.temp();
+        FingerprintFileWriter writer = FingerprintFileWriter.bits(file, 1024);
+        writer.write(new BitSetFingerprint(1024));
+        writer.write(new BitSet());
+        assertThat(writer.size(), is(2L));
+        writer.close();
+        writer.close(); // no-op
+        // header + two rows of 16 words
+        assertThat(file.length(), is(48L + 2 * 128));
+    }
+
+    @Test public void countRows() throws Exception {
+        File file = MappedFingerprintFileTest.temp();
+        FingerprintFileWriter writer = FingerprintFileWriter.counts(file);
+        writer.write(SortedCountFingerprint.fromFeatures(new int[]{1, 2, 2}));
+        writer.write(SortedCountFingerprint.fromFeatures(new int[0]));
+        assertThat(writer.size(), is(2L));
+        writer.close();
+        // header + one row of 2 bins + 3 offsets
+        assertThat(file.length(), is(48L + 16 + 3 * 8));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidLength() throws Exception {
+        FingerprintFileWriter.bits(MappedFingerprintFileTest.temp(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sizeMismatch() throws Exception {
+        FingerprintFileWriter writer = FingerprintFileWriter.bits(MappedFingerprintFileTest.temp(), 64);
+        try {
+            BitSet bits = new BitSet();
+            bits.set(64);
+            writer.write(bits);
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongType() throws Exception {
+        FingerprintFileWriter writer = FingerprintFileWriter.counts(MappedFingerprintFileTest.temp());
+        try {
+            writer.write(new BitSet());
+        } finally {
+            writer.close();
+        }
+    }
+}
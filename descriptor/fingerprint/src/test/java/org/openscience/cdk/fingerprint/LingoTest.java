@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.fingerprint;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @cdk.module test-fingerprint
+ */
+public class LingoTest {
+
+    private static final String[] SMILES = {"c1ccccc1O", "CC(=O)Oc1ccccc1C(=O)O", "C1CC2CCC1CC2",
+                                            "[13CH3]C%10CCCCC%10", "O(NC)PS", "C", ""};
+
+    @Test public void fingerprint() throws Exception {
+        for (String smi : SMILES) {
+            for (int q = 1; q <= 4; q++) {
+                Map<String, Integer> expected = substrings(smi, q);
+                SortedCountFingerprint fp = Lingo.fingerprint(smi, q);
+                assertThat(fp.numOfPopulatedbins(), is(expected.size()));
+                for (Map.Entry<String, Integer> e : expected.entrySet())
+                    assertThat(fp.getCountForHash(Lingo.key(e.getKey())), is(e.getValue()));
+            }
+        }
+    }
+
+    @Test public void ringClosures() throws Exception {
+        // ring closure numbers are not distinguished
+        assertSameKeys(Lingo.fingerprint("C2CC2"), Lingo.fingerprint("C1CC1"));
+        assertThat(Lingo.fingerprint("C%12CC%12").getCountForHash(Lingo.key("C%0C")), is(1));
+    }
+
+    @Test public void read() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (String smi : SMILES) {
+            if (smi.isEmpty()) continue;
+            sb.append(smi).append(" title of ").append(smi).append("\r\n\n");
+        }
+        sb.append("  c1ccccc1N"); // no newline
+        List<SortedCountFingerprint> fps = Lingo.read(new StringReader(sb.toString()));
+        assertThat(fps.size(), is(SMILES.length));
+        for (int i = 0; i < SMILES.length - 1; i++)
+            assertSameKeys(Lingo.fingerprint(SMILES[i]), fps.get(i));
+        assertSameKeys(Lingo.fingerprint("c1ccccc1N"), fps.get(SMILES.length - 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidLength() throws Exception {
+        Lingo.fingerprint("CCCCCC", 5);
+    }
+
+    /** Substrings as counted by the LingoFingerprinter. */
+    private static Map<String, Integer> substrings(String smi, int q) {
+        smi = smi.replaceAll("[0-9]+", "0");
+        Map<String, Integer> map = new HashMap<String, Integer>();
+        for (int i = 0; i < smi.length() - q + 1; i++) {
+            String sub = smi.substring(i, i + q);
+            map.put(sub, map.containsKey(sub) ? map.get(sub) + 1 : 1);
+        }
+        return map;
+    }
+
+    private static void assertSameKeys(SortedCountFingerprint expected, SortedCountFingerprint actual) {
+        assertThat(actual.numOfPopulatedbins(), is(expected.numOfPopulatedbins()));
+        for (int i = 0; i < actual.numOfPopulatedbins(); i++) {
+            assertThat(actual.getHash(i), is(expected.getHash(i)));
+            assertThat(actual.getCount(i), is(expected.getCount(i)));
+        }
+    }
+}
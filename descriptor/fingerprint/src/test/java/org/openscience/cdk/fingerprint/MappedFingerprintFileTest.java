@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.fingerprint;
+
+import org.junit.Test;
+import org.openscience.cdk.similarity.Tanimoto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @cdk.module test-fingerprint
+ */
+public class MappedFingerprintFileTest {
+
+    @Test public void bitRows() throws Exception {
+        Random rand = new Random(42);
+        List<BitSet> expected = new ArrayList<BitSet>();
+        File file = temp();
+        FingerprintFileWriter writer = FingerprintFileWriter.bits(file, 166);
+        for (int i = 0; i < 100; i++) {
+            BitSet bits = new BitSet();
+            for (int j = 0; j < 166; j++)
+                if (rand.nextInt(4) == 0) bits.set(j);
+            expected.add(bits);
+            writer.write(bits);
+        }
+        writer.write(new BitSet());
+        expected.add(new BitSet());
+        assertThat(writer.size(), is(101L));
+        writer.close();
+
+        MappedFingerprintFile fps = new MappedFingerprintFile(file);
+        try {
+            assertThat(fps.size(), is(101));
+            assertThat(fps.length(), is(166));
+            assertThat(fps.hasCounts(), is(false));
+            for (int i = fps.size() - 1; i >= 0; i--) {
+                IBitFingerprint fp = fps.getBitFingerprint(i);
+                BitSet bits = expected.get(i);
+                assertThat(fp.size(), is(166L));
+                assertThat(fp.asBitSet(), is(bits));
+                assertThat(fp.cardinality(), is(bits.cardinality()));
+                for (int j = 0; j < 200; j++)
+                    assertThat(fp.get(j), is(bits.get(j)));
+                int[] setbits = fp.getSetbits();
+                assertThat(setbits.length, is(bits.cardinality()));
+                for (int bit : setbits)
+                    assertThat(bits.get(bit), is(true));
+            }
+            IBitFingerprint fp1 = fps.getBitFingerprint(3), fp2 = fps.getBitFingerprint(7);
+            assertThat(Tanimoto.calculate(fp1.asBitSet(), fp2.asBitSet()),
+                       is(Tanimoto.calculate(expected.get(3), expected.get(7))));
+        } finally {
+            fps.close();
+        }
+    }
+
+    @Test public void countRows() throws Exception {
+        Random rand = new Random(7);
+        List<SortedCountFingerprint> expected = new ArrayList<SortedCountFingerprint>();
+        File file = temp();
+        FingerprintFileWriter writer = FingerprintFileWriter.counts(file);
+        for (int i = 0; i < 100; i++) {
+            int[] features = new int[rand.nextInt(50)];
+            for (int j = 0; j < features.length; j++)
+                features[j] = rand.nextInt();
+            SortedCountFingerprint fp = SortedCountFingerprint.fromFeatures(features);
+            expected.add(fp);
+            writer.write(fp);
+        }
+        writer.close();
+
+        MappedFingerprintFile fps = new MappedFingerprintFile(file);
+        try {
+            assertThat(fps.size(), is(100));
+            assertThat(fps.hasCounts(), is(true));
+            for (int i = 0; i < fps.size(); i++) {
+                ICountFingerprint fp = fps.getCountFingerprint(i);
+                SortedCountFingerprint exp = expected.get(i);
+                assertThat(fp.numOfPopulatedbins(), is(exp.numOfPopulatedbins()));
+                for (int j = 0; j < fp.numOfPopulatedbins(); j++) {
+                    assertThat(fp.getHash(j), is(exp.getHash(j)));
+                    assertThat(fp.getCount(j), is(exp.getCount(j)));
+                    assertThat(fp.hasHash(exp.getHash(j)), is(true));
+                    assertThat(fp.getCountForHash(exp.getHash(j)), is(exp.getCount(j)));
+                }
+                assertThat(fp.hasHash(rand.nextInt()), is(false));
+            }
+        } finally {
+            fps.close();
+        }
+    }
+
+    @Test public void unsortedCounts() throws Exception {
+        File file = temp();
+        FingerprintFileWriter writer = FingerprintFileWriter.counts(file);
+        Map<String, Integer> raw = new HashMap<String, Integer>();
+        raw.put("C", 3);
+        raw.put("A", 1);
+        raw.put("B", 2);
+        writer.write(new IntArrayCountFingerprint(raw));
+        writer.close();
+        MappedFingerprintFile fps = new MappedFingerprintFile(file);
+        try {
+            ICountFingerprint fp = fps.getCountFingerprint(0);
+            assertThat(fp.getCountForHash("A".hashCode()), is(1));
+            assertThat(fp.getCountForHash("B".hashCode()), is(2));
+            assertThat(fp.getCountForHash("C".hashCode()), is(3));
+            assertThat(fp.getCountForHash("D".hashCode()), is(0));
+        } finally {
+            fps.close();
+        }
+    }
+
+    @Test public void serialization() throws Exception {
+        File file = temp();
+        FingerprintFileWriter writer = FingerprintFileWriter.bits(file, 64);
+        BitSet bits = new BitSet();
+        bits.set(2);
+        bits.set(63);
+        writer.write(bits);
+        writer.close();
+        MappedFingerprintFile fps = new MappedFingerprintFile(file);
+        try {
+            Object copy = roundTrip(fps.getBitFingerprint(0));
+            assertThat(copy, is(instanceOf(BitSetFingerprint.class)));
+            assertThat(((IBitFingerprint) copy).asBitSet(), is(bits));
+        } finally {
+            fps.close();
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void readOnly() throws Exception {
+        File file = temp();
+        FingerprintFileWriter writer = FingerprintFileWriter.bits(file, 64);
+        writer.write(new BitSet());
+        writer.close();
+        MappedFingerprintFile fps = new MappedFingerprintFile(file);
+        try {
+            fps.getBitFingerprint(0).set(1);
+        } finally {
+            fps.close();
+        }
+    }
+
+    @Test public void invalidRow() throws Exception {
+        File file = temp();
+        FingerprintFileWriter writer = FingerprintFileWriter.bits(file, 64);
+        writer.write(new BitSet());
+        writer.close();
+        MappedFingerprintFile fps = new MappedFingerprintFile(file);
+        try {
+            fps.getBitFingerprint(1);
+            throw new AssertionError("expected an exception");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        try {
+            fps.getCountFingerprint(0);
+            throw new AssertionError("expected an exception");
+        } catch (IllegalStateException e) {
+            // expected
+        } finally {
+            fps.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidFile() throws Exception {
+        File file = temp();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[100]);
+        out.close();
+        new MappedFingerprintFile(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedFile() throws Exception {
+        File file = temp();
+        FingerprintFileWriter writer = FingerprintFileWriter.bits(file, 128);
+        writer.write(new BitSet());
+        writer.write(new BitSet());
+        writer.close();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(file.length() - 8);
+        raf.close();
+        new MappedFingerprintFile(file);
+    }
+
+    private static Object roundTrip(Object obj) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(obj);
+        out.close();
+        return new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    }
+
+    static File temp() throws IOException {
+        File file = File.createTempFile("cdk", ".fps");
+        file.deleteOnExit();
+        return file;
+    }
+}
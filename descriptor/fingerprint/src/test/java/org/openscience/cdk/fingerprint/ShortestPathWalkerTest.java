@@ -35,4 +35,25 @@ public class ShortestPathWalkerTest {
         ShortestPathWalker walker = new ShortestPathWalker(triazole);
         assertThat(walker.toString(), is("C->C1N->C1N1N->C1N2N->C2C->C2C1N->N->N1C->N1C2C->N1N->N1N1C->N1N2N->N2N->N2N1C->N2N1N"));
     }
+
+    /**
+     * The hashed paths are the hash codes of the path strings.
+     */
+    @Test
+    public void hashPaths() throws Exception {
+        IAtomContainer[] containers = new IAtomContainer[]{MoleculeFactory.make123Triazole(),
+                                                           MoleculeFactory.makeIndole(),
+                                                           MoleculeFactory.makeDiamantane(),
+                                                           MoleculeFactory.makeSpiroRings(),
+                                                           MoleculeFactory.makeAdenine()};
+        for (IAtomContainer container : containers) {
+            Set<Integer> expected = new TreeSet<Integer>();
+            for (String path : new ShortestPathWalker(container).paths())
+                expected.add(path.hashCode());
+            Set<Integer> actual = new TreeSet<Integer>();
+            for (int hash : ShortestPathWalker.hashPaths(container))
+                actual.add(hash);
+            assertThat(actual, is(expected));
+        }
+    }
 }
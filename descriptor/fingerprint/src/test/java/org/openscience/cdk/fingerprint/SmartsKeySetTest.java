@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.fingerprint;
+
+import org.junit.Test;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.cdk.smiles.smarts.SMARTSQueryTool;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @cdk.module test-fingerprint
+ */
+public class SmartsKeySetTest {
+
+    private final IChemObjectBuilder builder = SilentChemObjectBuilder.getInstance();
+    private final SmilesParser       sp      = new SmilesParser(builder);
+
+    @Test public void match() throws Exception {
+        String[] smarts = {"c1ccccc1", "[CX4H3][#6]", "[CX2]#[CX2]", "[OX2H]", "C=O", "[Cl]", "[#7]"};
+        SmartsKeySet keys = new SmartsKeySet(smarts, builder);
+        assertThat(keys.size(), is(7));
+        assertThat(keys.smarts(3), is("[OX2H]"));
+        assertThat(keys.match(sp.parseSmiles("c1ccccc1CCC")), is(bits(0, 1)));
+        assertThat(keys.match(sp.parseSmiles("CC#CCO")), is(bits(1, 2, 3)));
+        assertThat(keys.match(sp.parseSmiles("ClCC(=O)N")), is(bits(4, 5, 6)));
+    }
+
+    @Test public void prerequisites() throws Exception {
+        String[] smarts = {"ClCCl", "C1CCCCC1", "C1CCCC1.C1CCCC1", "[#8]~[#8]", "[N;H2]"};
+        SmartsKeySet keys = new SmartsKeySet(smarts, builder);
+        assertThat(keys.match(sp.parseSmiles("ClC(Cl)C")), is(bits(0)));
+        assertThat(keys.match(sp.parseSmiles("ClCC")), is(bits()));
+        assertThat(keys.match(sp.parseSmiles("CCCCCC")), is(bits()));
+        assertThat(keys.match(sp.parseSmiles("C1CCCCC1")), is(bits(1)));
+        assertThat(keys.match(sp.parseSmiles("C1CCCC1C1CCCC1")), is(bits(2)));
+        assertThat(keys.match(sp.parseSmiles("OO")), is(bits(3)));
+        assertThat(keys.match(sp.parseSmiles("CN")), is(bits(4)));
+    }
+
+    @Test public void disconnected() throws Exception {
+        SmartsKeySet keys = new SmartsKeySet(new String[]{"C.C", "(C.C)", "(C).(C)"}, builder);
+        assertThat(keys.match(sp.parseSmiles("CC")), is(bits(0, 1)));
+        assertThat(keys.match(sp.parseSmiles("C.C")), is(bits(0, 2)));
+    }
+
+    @Test(expected = CDKException.class)
+    public void invalidSmarts() throws Exception {
+        new SmartsKeySet(new String[]{"CC", "C(C"}, builder);
+    }
+
+    /**
+     * The keys of the substructure fingerprinters should match the same
+     * molecules as the SMARTSQueryTool.
+     */
+    @Test public void sameAsQueryTool() throws Exception {
+        String[] smarts = StandardSubstructureSets.getFunctionalGroupSMARTS();
+        SmartsKeySet keys = new SmartsKeySet(smarts, builder);
+        for (String smi : drugs()) {
+            BitSet expected = new BitSet();
+            SMARTSQueryTool sqt = new SMARTSQueryTool("C", builder);
+            IAtomContainer container = sp.parseSmiles(smi);
+            for (int i = 0; i < smarts.length; i++) {
+                sqt.setSmarts(smarts[i]);
+                if (sqt.matches(container))
+                    expected.set(i);
+            }
+            assertThat(smi, keys.match(sp.parseSmiles(smi)), is(expected));
+        }
+    }
+
+    @Test public void match_executor() throws Exception {
+        KlekotaRothFingerprinter fpr = new KlekotaRothFingerprinter();
+        String[] smarts = new String[fpr.getSize()];
+        for (int i = 0; i < smarts.length; i++)
+            smarts[i] = fpr.getSubstructure(i);
+        SmartsKeySet    keys     = new SmartsKeySet(smarts, builder);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (String smi : drugs().subList(0, 40)) {
+                assertThat(smi, keys.match(sp.parseSmiles(smi), executor), is(keys.match(sp.parseSmiles(smi))));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private List<String> drugs() throws Exception {
+        List<String>   smis = new ArrayList<String>();
+        BufferedReader rdr  = new BufferedReader(new InputStreamReader(getClass().getResourceAsStream("/data/smiles/drugs.smi")));
+        try {
+            String line;
+            while ((line = rdr.readLine()) != null)
+                smis.add(line.split("\\s")[0]);
+        } finally {
+            rdr.close();
+        }
+        return smis;
+    }
+
+    private static BitSet bits(int... xs) {
+        BitSet bits = new BitSet();
+        for (int x : xs)
+            bits.set(x);
+        return bits;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.fingerprint;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @cdk.module test-fingerprint
+ */
+public class SortedCountFingerprintTest {
+
+    @Test public void fromFeatures() {
+        SortedCountFingerprint fp = SortedCountFingerprint.fromFeatures(new int[]{5, -3, 5, 12, -3, 5, Integer.MIN_VALUE});
+        assertThat(fp.numOfPopulatedbins(), is(4));
+        assertThat(hashes(fp), is(new int[]{Integer.MIN_VALUE, -3, 5, 12}));
+        assertThat(counts(fp), is(new int[]{1, 2, 3, 1}));
+        assertThat(fp.hasHash(5), is(true));
+        assertThat(fp.hasHash(6), is(false));
+        assertThat(fp.getCountForHash(-3), is(2));
+        assertThat(fp.getCountForHash(6), is(0));
+        assertThat(SortedCountFingerprint.fromFeatures(new int[]{1, 2, 3}, 0).numOfPopulatedbins(), is(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromFeaturesInvalidLength() {
+        SortedCountFingerprint.fromFeatures(new int[]{1, 2, 3}, 4);
+    }
+
+    @Test public void of() {
+        ICountFingerprint org = new IntArrayCountFingerprint(new HashMap<String, Integer>() {{
+            put("A", 1);
+            put("B", 2);
+            put("C", 3);
+            put("D", 0);
+        }});
+        SortedCountFingerprint fp = SortedCountFingerprint.of(org);
+        assertThat(fp.numOfPopulatedbins(), is(3));
+        for (String key : new String[]{"A", "B", "C"})
+            assertThat(fp.getCountForHash(key.hashCode()), is(org.getCountForHash(key.hashCode())));
+        assertThat(fp.hasHash("D".hashCode()), is(false));
+        assertThat(SortedCountFingerprint.of(fp) == fp, is(true));
+    }
+
+    @Test public void ofUnsorted() {
+        // unsorted bins with a repeated hash
+        final int[] hashes = {7, -1, 0, 7, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        final int[] counts = {1, 2, 3, 4, 5, 6};
+        SortedCountFingerprint fp = SortedCountFingerprint.of(new IntArrayCountFingerprint() {
+            @Override public int numOfPopulatedbins() {
+                return hashes.length;
+            }
+            @Override public int getHash(int index) {
+                return hashes[index];
+            }
+            @Override public int getCount(int index) {
+                return counts[index];
+            }
+        });
+        assertThat(hashes(fp), is(new int[]{Integer.MIN_VALUE, -1, 0, 7, Integer.MAX_VALUE}));
+        assertThat(counts(fp), is(new int[]{6, 2, 3, 5, 5}));
+    }
+
+    @Test public void dot() {
+        SortedCountFingerprint fp1 = SortedCountFingerprint.fromFeatures(new int[]{1, 1, 2, 3, 3, 3});
+        SortedCountFingerprint fp2 = SortedCountFingerprint.fromFeatures(new int[]{1, 3, 3, 4});
+        assertThat(fp1.dot(fp2), is(2L * 1 + 3 * 2));
+        assertThat(fp2.dot(fp1), is(fp1.dot(fp2)));
+        assertThat(fp1.dot(fp1), is(fp1.squaredNorm()));
+        assertThat(fp1.squaredNorm(), is(4L + 1 + 9));
+        SortedCountFingerprint disjoint = SortedCountFingerprint.fromFeatures(new int[]{10, 11});
+        assertThat(fp1.dot(disjoint), is(0L));
+    }
+
+    @Test public void minSum() {
+        SortedCountFingerprint fp1 = SortedCountFingerprint.fromFeatures(new int[]{1, 1, 2, 3, 3, 3});
+        SortedCountFingerprint fp2 = SortedCountFingerprint.fromFeatures(new int[]{1, 3, 3, 4});
+        assertThat(fp1.minSum(fp2), is(1L + 2));
+        assertThat(fp1.sum(), is(6L));
+        assertThat(fp2.sum(), is(4L));
+    }
+
+    @Test public void merge() {
+        SortedCountFingerprint fp1 = SortedCountFingerprint.fromFeatures(new int[]{1, 1, 2, 5});
+        SortedCountFingerprint fp2 = SortedCountFingerprint.fromFeatures(new int[]{0, 1, 5, 5, 9});
+        fp1.merge(fp2);
+        assertThat(hashes(fp1), is(new int[]{0, 1, 2, 5, 9}));
+        assertThat(counts(fp1), is(new int[]{1, 3, 1, 3, 1}));
+        assertThat(fp1.sum(), is(9L));
+        assertThat(fp1.squaredNorm(), is(1L + 9 + 1 + 9 + 1));
+    }
+
+    @Test public void behaveAsBitFingerprint() {
+        SortedCountFingerprint fp1 = SortedCountFingerprint.fromFeatures(new int[]{1, 1, 2, 3, 3, 3});
+        SortedCountFingerprint fp2 = SortedCountFingerprint.fromFeatures(new int[]{1, 3, 3, 4});
+        fp1.setBehaveAsBitFingerprint(true);
+        assertThat(counts(fp1), is(new int[]{1, 1, 1}));
+        assertThat(fp1.getCountForHash(3), is(1));
+        assertThat(fp1.dot(fp2), is(1L + 2));
+        assertThat(fp1.squaredNorm(), is(3L));
+        fp1.setBehaveAsBitFingerprint(false);
+        assertThat(counts(fp1), is(new int[]{2, 1, 3}));
+        assertThat(fp1.squaredNorm(), is(14L));
+    }
+
+    static int[] hashes(ICountFingerprint fp) {
+        int[] hashes = new int[fp.numOfPopulatedbins()];
+        for (int i = 0; i < hashes.length; i++)
+            hashes[i] = fp.getHash(i);
+        return hashes;
+    }
+
+    static int[] counts(ICountFingerprint fp) {
+        int[] counts = new int[fp.numOfPopulatedbins()];
+        for (int i = 0; i < counts.length; i++)
+            counts[i] = fp.getCount(i);
+        return counts;
+    }
+}
@@ -32,6 +32,8 @@ import org.openscience.cdk.smiles.SmilesParser;
 import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
 
 import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -51,6 +53,20 @@ public class SubstructureFingerprinterTest extends AbstractFixedLengthFingerprin
         Assert.assertEquals(307, fp.getSize());
     }
 
+    @Test public void testGetBitFingerprint_executor() throws Exception {
+        SubstructureFingerprinter fpr      = new SubstructureFingerprinter();
+        SmilesParser              sp       = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        ExecutorService           executor = Executors.newFixedThreadPool(2);
+        try {
+            for (String smi : new String[]{"c1ccccc1CCC", "OC(=O)C1=CC=CC=C1OC(C)=O", "CN1C=NC2=C1C(=O)N(C(=O)N2C)C"}) {
+                Assert.assertEquals(fpr.getBitFingerprint(sp.parseSmiles(smi)),
+                                    fpr.getBitFingerprint(sp.parseSmiles(smi), executor));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test public void testBug706786() throws Exception {
 
         IAtomContainer superStructure = bug706786_1();
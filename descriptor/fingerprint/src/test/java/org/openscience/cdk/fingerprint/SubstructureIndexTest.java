@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.fingerprint;
+
+import org.junit.Test;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.isomorphism.Pattern;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @cdk.module test-fingerprint
+ */
+public class SubstructureIndexTest {
+
+    private static final String[] LIBRARY = {"c1ccccc1O", "CCO", "c1ccccc1CCN", "CC(=O)O", "c1ccncc1",
+                                             "Oc1ccc(cc1)C(=O)O", "CCCCCC", "c1ccc2ccccc2c1"};
+
+    @Test public void searchCandidates() throws Exception {
+        SubstructureIndex index = index(new SubstructureIndex());
+        assertThat(index.size(), is(LIBRARY.length));
+        assertThat(index.get(1).getAtomCount(), is(3));
+        BitSet screen = index.screen(smi("c1ccccc1"));
+        int[] candidates = index.candidates(screen);
+        // every benzene containing record must pass the screen and ethanol must not
+        for (int id : new int[]{0, 2, 5, 7})
+            assertThat(contains(candidates, id), is(true));
+        assertThat(contains(candidates, 1), is(false));
+        assertThat(index.candidates(new BitSet()).length, is(LIBRARY.length));
+    }
+
+    @Test public void screenBeyondFingerprintLength() throws Exception {
+        SubstructureIndex index = index(new SubstructureIndex());
+        BitSet screen = new BitSet();
+        screen.set(5000);
+        assertThat(index.candidates(screen).length, is(0));
+    }
+
+    @Test public void searchSequential() throws Exception {
+        SubstructureIndex index = index(new SubstructureIndex());
+        List<Integer> ids = new ArrayList<Integer>();
+        for (SubstructureIndex.Hit hit : index.search(smi("c1ccccc1O"))) {
+            ids.add(hit.id());
+            assertThat(hit.container(), is(index.get(hit.id())));
+            assertThat(hit.mappings().atLeast(1), is(true));
+        }
+        assertThat(ids, is(list(0, 5)));
+    }
+
+    @Test public void searchParallel() throws Exception {
+        SubstructureIndex index = index(new SubstructureIndex(new Fingerprinter(), 2));
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Integer> ids = new ArrayList<Integer>();
+            for (SubstructureIndex.Hit hit : index.search(smi("c1ccccc1"), executor))
+                ids.add(hit.id());
+            assertThat(ids, is(list(0, 2, 5, 7)));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test public void searchPattern() throws Exception {
+        SubstructureIndex index = index(new SubstructureIndex());
+        Pattern pattern = Pattern.findSubstructure(smi("CO"));
+        List<Integer> ids = new ArrayList<Integer>();
+        for (SubstructureIndex.Hit hit : index.search(pattern, new BitSet()))
+            ids.add(hit.id());
+        assertThat(ids, is(list(0, 1, 3, 5)));
+    }
+
+    @Test public void unscreenableRecord() throws Exception {
+        IFingerprinter fpr = mock(IFingerprinter.class);
+        when(fpr.getSize()).thenReturn(64);
+        when(fpr.getBitFingerprint(any(IAtomContainer.class))).thenThrow(new CDKException("too many paths"));
+        SubstructureIndex index = new SubstructureIndex(fpr);
+        index.add(smi("CCO"));
+        BitSet screen = new BitSet();
+        screen.set(12);
+        assertThat(index.candidates(screen).length, is(1));
+    }
+
+    private static SubstructureIndex index(SubstructureIndex index) throws Exception {
+        for (String smi : LIBRARY)
+            index.add(smi(smi));
+        return index;
+    }
+
+    private static boolean contains(int[] xs, int x) {
+        for (int y : xs)
+            if (x == y) return true;
+        return false;
+    }
+
+    private static List<Integer> list(int... xs) {
+        List<Integer> list = new ArrayList<Integer>();
+        for (int x : xs)
+            list.add(x);
+        return list;
+    }
+
+    private static IAtomContainer smi(String smi) throws Exception {
+        return new SmilesParser(SilentChemObjectBuilder.getInstance()).parseSmiles(smi);
+    }
+}
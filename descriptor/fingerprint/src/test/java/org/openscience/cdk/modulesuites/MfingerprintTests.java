@@ -26,14 +26,23 @@ import org.junit.runners.Suite.SuiteClasses;
 import org.openscience.cdk.coverage.FingerprintCoverageTest;
 import org.openscience.cdk.fingerprint.EStateFingerprinterTest;
 import org.openscience.cdk.fingerprint.ExtendedFingerprinterTest;
+import org.openscience.cdk.fingerprint.FingerprintFileWriterTest;
 import org.openscience.cdk.fingerprint.KlekotaRothFingerprinterTest;
+import org.openscience.cdk.fingerprint.LingoTest;
 import org.openscience.cdk.fingerprint.MACCSFingerprinterTest;
+import org.openscience.cdk.fingerprint.MappedFingerprintFileTest;
 import org.openscience.cdk.fingerprint.PubchemFingerprinterTest;
 import org.openscience.cdk.fingerprint.ShortestPathFingerprinterTest;
 import org.openscience.cdk.fingerprint.ShortestPathWalkerTest;
+import org.openscience.cdk.fingerprint.SmartsKeySetTest;
+import org.openscience.cdk.fingerprint.SortedCountFingerprintTest;
+import org.openscience.cdk.fingerprint.SubstructureIndexTest;
 import org.openscience.cdk.fingerprint.CircularFingerprinterTest;
+import org.openscience.cdk.similarity.CountSimilarityTest;
+import org.openscience.cdk.similarity.DistanceMomentIndexTest;
 import org.openscience.cdk.similarity.DistanceMomentTest;
 import org.openscience.cdk.similarity.LingoSimilarityTest;
+import org.openscience.cdk.similarity.SimilarityIndexTest;
 import org.openscience.cdk.similarity.TanimotoTest;
 
 /**
@@ -54,6 +63,15 @@ import org.openscience.cdk.similarity.TanimotoTest;
     LingoSimilarityTest.class,
     KlekotaRothFingerprinterTest.class,
 	ShortestPathFingerprinterTest.class,
-    ShortestPathWalkerTest.class
+    ShortestPathWalkerTest.class,
+    SubstructureIndexTest.class,
+    SmartsKeySetTest.class,
+    SimilarityIndexTest.class,
+    SortedCountFingerprintTest.class,
+    CountSimilarityTest.class,
+    FingerprintFileWriterTest.class,
+    MappedFingerprintFileTest.class,
+    LingoTest.class,
+    DistanceMomentIndexTest.class
 })
 public class MfingerprintTests {}
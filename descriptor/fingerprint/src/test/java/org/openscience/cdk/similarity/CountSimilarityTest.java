@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.similarity;
+
+import org.junit.Test;
+import org.openscience.cdk.fingerprint.CircularFingerprinter;
+import org.openscience.cdk.fingerprint.ICountFingerprint;
+import org.openscience.cdk.fingerprint.SortedCountFingerprint;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @cdk.module test-fingerprint
+ */
+public class CountSimilarityTest {
+
+    private final SortedCountFingerprint fp1 = SortedCountFingerprint.fromFeatures(new int[]{1, 1, 2, 3, 3, 3});
+    private final SortedCountFingerprint fp2 = SortedCountFingerprint.fromFeatures(new int[]{1, 3, 3, 4});
+    private final SortedCountFingerprint empty = SortedCountFingerprint.fromFeatures(new int[0]);
+
+    // x.y = 8, |x|^2 = 14, |y|^2 = 6
+
+    @Test public void tanimoto() {
+        assertThat(CountSimilarity.tanimoto(fp1, fp2), closeTo(8 / 12d, 1e-10));
+        assertThat(CountSimilarity.tanimoto(fp1, fp1), is(1d));
+        assertThat(CountSimilarity.tanimoto(fp1, empty), is(0d));
+        assertThat(CountSimilarity.tanimoto(empty, empty), is(0d));
+    }
+
+    @Test public void dice() {
+        assertThat(CountSimilarity.dice(fp1, fp2), closeTo(16 / 20d, 1e-10));
+        assertThat(CountSimilarity.dice(fp1, fp1), is(1d));
+        assertThat(CountSimilarity.dice(empty, empty), is(0d));
+    }
+
+    @Test public void cosine() {
+        assertThat(CountSimilarity.cosine(fp1, fp2), closeTo(8 / Math.sqrt(14 * 6), 1e-10));
+        assertThat(CountSimilarity.cosine(fp1, fp1), closeTo(1d, 1e-10));
+        assertThat(CountSimilarity.cosine(fp1, empty), is(0d));
+    }
+
+    @Test public void minMax() {
+        // min: 1 + 2 = 3, max: 2 + 1 + 3 + 1 = 7
+        assertThat(CountSimilarity.minMax(fp1, fp2), closeTo(3 / 7d, 1e-10));
+        assertThat(CountSimilarity.minMax(empty, empty), is(0d));
+    }
+
+    @Test public void batch() {
+        Random rand = new Random(42);
+        List<SortedCountFingerprint> fps = new ArrayList<SortedCountFingerprint>();
+        for (int i = 0; i < 200; i++)
+            fps.add(random(rand));
+        SortedCountFingerprint query = fps.get(7);
+        double[] tanimoto = CountSimilarity.tanimoto(query, fps);
+        double[] dice = CountSimilarity.dice(query, fps);
+        double[] cosine = CountSimilarity.cosine(query, fps);
+        double[] minMax = CountSimilarity.minMax(query, fps);
+        assertThat(tanimoto.length, is(fps.size()));
+        assertThat(tanimoto[7], is(1d));
+        for (int i = 0; i < fps.size(); i++) {
+            assertThat(tanimoto[i], is(CountSimilarity.tanimoto(query, fps.get(i))));
+            assertThat(dice[i], is(CountSimilarity.dice(query, fps.get(i))));
+            assertThat(cosine[i], is(CountSimilarity.cosine(query, fps.get(i))));
+            assertThat(minMax[i], is(CountSimilarity.minMax(query, fps.get(i))));
+        }
+    }
+
+    /**
+     * The merge-join kernels must give the same value as the generic count
+     * fingerprint implementations in {@link Tanimoto}.
+     */
+    @Test public void consistentWithTanimoto() throws Exception {
+        Random rand = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            SortedCountFingerprint a = random(rand), b = random(rand);
+            ICountFingerprint ua = unsorted(a), ub = unsorted(b);
+            assertThat(CountSimilarity.tanimoto(a, b), closeTo(Tanimoto.calculate(ua, ub), 1e-10));
+            assertThat(Tanimoto.calculate(a, b), closeTo(Tanimoto.calculate(ua, ub), 1e-10));
+            assertThat(Tanimoto.method2(a, b), closeTo(CountSimilarity.minMax(a, b), 1e-10));
+        }
+    }
+
+    @Test public void circularFingerprints() throws Exception {
+        SmilesParser smipar = new SmilesParser(SilentChemObjectBuilder.getInstance());
+        CircularFingerprinter fpr = new CircularFingerprinter();
+        IAtomContainer mol1 = smipar.parseSmiles("c1ccccc1CCN");
+        IAtomContainer mol2 = smipar.parseSmiles("c1ccccc1CCO");
+        ICountFingerprint cfp1 = fpr.getCountFingerprint(mol1);
+        ICountFingerprint cfp2 = fpr.getCountFingerprint(mol2);
+        assertThat(cfp1, is(instanceOf(SortedCountFingerprint.class)));
+        SortedCountFingerprint sfp1 = SortedCountFingerprint.of(cfp1);
+        SortedCountFingerprint sfp2 = SortedCountFingerprint.of(cfp2);
+        double expected = Tanimoto.calculate(unsorted(sfp1), unsorted(sfp2));
+        assertThat(CountSimilarity.tanimoto(sfp1, sfp2), closeTo(expected, 1e-10));
+        assertThat(CountSimilarity.tanimoto(sfp1, sfp1), is(1d));
+    }
+
+    /** A random fingerprint with a few hundred features from a small hash range. */
+    private static SortedCountFingerprint random(Random rand) {
+        int[] features = new int[1 + rand.nextInt(300)];
+        for (int i = 0; i < features.length; i++)
+            features[i] = rand.nextInt(400) - 200;
+        return SortedCountFingerprint.fromFeatures(features);
+    }
+
+    /** A copy of the fingerprint with the bins in reverse order. */
+    private static ICountFingerprint unsorted(final SortedCountFingerprint fp) {
+        final int n = fp.numOfPopulatedbins();
+        return new ICountFingerprint() {
+            @Override public long size() {
+                return fp.size();
+            }
+            @Override public int numOfPopulatedbins() {
+                return n;
+            }
+            @Override public int getCount(int index) {
+                return fp.getCount(n - 1 - index);
+            }
+            @Override public int getHash(int index) {
+                return fp.getHash(n - 1 - index);
+            }
+            @Override public void merge(ICountFingerprint fp) {
+                throw new UnsupportedOperationException();
+            }
+            @Override public void setBehaveAsBitFingerprint(boolean behaveAsBitFingerprint) {
+                throw new UnsupportedOperationException();
+            }
+            @Override public boolean hasHash(int hash) {
+                return fp.hasHash(hash);
+            }
+            @Override public int getCountForHash(int hash) {
+                return fp.getCountForHash(hash);
+            }
+        };
+    }
+}
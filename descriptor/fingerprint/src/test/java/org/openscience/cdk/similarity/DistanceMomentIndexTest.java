@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.similarity;
+
+import org.junit.Test;
+import org.openscience.cdk.Atom;
+import org.openscience.cdk.AtomContainer;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.ConformerContainer;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import javax.vecmath.Point3d;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @cdk.module test-fingerprint
+ */
+public class DistanceMomentIndexTest {
+
+    @Test public void nearest() throws Exception {
+        Random rand = new Random(1);
+        List<IAtomContainer> library = new ArrayList<IAtomContainer>();
+        DistanceMomentIndex index = new DistanceMomentIndex();
+        for (int i = 0; i < 200; i++) {
+            IAtomContainer container = randomConformer(rand, 5 + rand.nextInt(20));
+            library.add(container);
+            assertThat(index.add(container), is(i));
+        }
+        assertThat(index.size(), is(200));
+        assertThat(index.conformers(), is(200));
+
+        IAtomContainer query = library.get(42);
+        List<DistanceMomentIndex.Hit> hits = index.nearest(query, 10);
+        assertThat(hits.size(), is(10));
+        assertThat(hits.get(0).id(), is(42));
+        assertThat(hits.get(0).score(), is(1f));
+        assertBruteForce(hits, query, library, 10);
+    }
+
+    @Test public void nearestParallel() throws Exception {
+        Random rand = new Random(2);
+        List<IAtomContainer> library = new ArrayList<IAtomContainer>();
+        DistanceMomentIndex index = new DistanceMomentIndex(7);
+        for (int i = 0; i < 300; i++) {
+            IAtomContainer container = randomConformer(rand, 5 + rand.nextInt(20));
+            library.add(container);
+            index.add(container);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int q = 0; q < 5; q++) {
+                IAtomContainer query = randomConformer(rand, 12);
+                assertBruteForce(index.nearest(query, 15, executor), query, library, 15);
+                assertHits(index.nearest(query, 15, executor), index.nearest(query, 15));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test public void conformers() throws Exception {
+        Random rand = new Random(3);
+        DistanceMomentIndex index = new DistanceMomentIndex();
+        List<ConformerContainer> library = new ArrayList<ConformerContainer>();
+        for (int i = 0; i < 50; i++) {
+            ConformerContainer conformers = new ConformerContainer();
+            int n = 5 + rand.nextInt(10);
+            for (int j = 0, m = 1 + rand.nextInt(5); j < m; j++) {
+                IAtomContainer conformer = randomConformer(rand, n);
+                conformer.setProperty(CDKConstants.TITLE, "mol" + i);
+                conformers.add(conformer);
+            }
+            library.add(conformers);
+            index.add(conformers);
+        }
+
+        IAtomContainer query = randomConformer(rand, 10);
+        List<DistanceMomentIndex.Hit> hits = index.nearest(query, 50);
+        assertThat(hits.size(), is(50));
+        for (DistanceMomentIndex.Hit hit : hits) {
+            ConformerContainer conformers = library.get(hit.id());
+            float best = 0;
+            int bestConformer = -1;
+            for (int j = 0; j < conformers.size(); j++) {
+                float sim = DistanceMoment.calculate(query, conformers.get(j));
+                if (sim > best) {
+                    best = sim;
+                    bestConformer = j;
+                }
+            }
+            assertThat(hit.score(), is(best));
+            assertThat(hit.conformer(), is(bestConformer));
+        }
+    }
+
+    @Test public void moments() throws Exception {
+        DistanceMomentIndex index = new DistanceMomentIndex();
+        float[] a = new float[12], b = new float[12], c = new float[12];
+        b[0] = 1.2f;
+        c[0] = 2.4f;
+        index.addMoments(b, c);
+        index.addMoments(c);
+        List<DistanceMomentIndex.Hit> hits = index.nearest(a, 5);
+        assertThat(hits.size(), is(2));
+        assertThat(hits.get(0).id(), is(0));
+        assertThat(hits.get(0).conformer(), is(0));
+        assertThat(hits.get(0).score(), is((float) (1 / (1 + 1.2f / 12.0))));
+        assertThat(hits.get(1).id(), is(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidMoments() throws Exception {
+        new DistanceMomentIndex().addMoments(new float[11]);
+    }
+
+    private static void assertHits(List<DistanceMomentIndex.Hit> actual, List<DistanceMomentIndex.Hit> expected) {
+        assertThat(actual.size(), is(expected.size()));
+        for (int i = 0; i < actual.size(); i++) {
+            assertThat(actual.get(i).id(), is(expected.get(i).id()));
+            assertThat(actual.get(i).score(), is(expected.get(i).score()));
+        }
+    }
+
+    /** The hits are the top k from comparing the query with each molecule. */
+    private static void assertBruteForce(List<DistanceMomentIndex.Hit> hits, IAtomContainer query,
+                                         List<IAtomContainer> library, int k) throws Exception {
+        final float[] scores = new float[library.size()];
+        List<Integer> ids = new ArrayList<Integer>();
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = DistanceMoment.calculate(query, library.get(i));
+            ids.add(i);
+        }
+        Collections.sort(ids, new Comparator<Integer>() {
+            @Override public int compare(Integer a, Integer b) {
+                int cmp = Float.compare(scores[b], scores[a]);
+                return cmp != 0 ? cmp : a.compareTo(b);
+            }
+        });
+        assertThat(hits.size(), is(k));
+        for (int i = 0; i < k; i++) {
+            assertThat(hits.get(i).id(), is(ids.get(i)));
+            assertThat(hits.get(i).score(), is(scores[ids.get(i)]));
+        }
+    }
+
+    private static IAtomContainer randomConformer(Random rand, int n) {
+        IAtomContainer container = new AtomContainer();
+        for (int i = 0; i < n; i++) {
+            Atom atom = new Atom("C");
+            atom.setPoint3d(new Point3d(5 * rand.nextDouble(), 3 * rand.nextDouble(), 2 * rand.nextDouble()));
+            container.addAtom(atom);
+        }
+        return container;
+    }
+}
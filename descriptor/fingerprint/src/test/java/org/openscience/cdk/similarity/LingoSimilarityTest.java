@@ -25,12 +25,18 @@
 
 package org.openscience.cdk.similarity;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.junit.Assert;
 import org.junit.Test;
 import org.openscience.cdk.CDKTestCase;
+import org.openscience.cdk.fingerprint.Lingo;
 import org.openscience.cdk.fingerprint.LingoFingerprinter;
+import org.openscience.cdk.fingerprint.SortedCountFingerprint;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.templates.MoleculeFactory;
 import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
@@ -55,5 +61,69 @@ public class LingoSimilarityTest extends CDKTestCase {
         Assert.assertEquals(1.0, lingosim, 0.01);
     }
 
+    @Test
+    public void testLingoSim_counts() throws Exception {
+        Map<String, Integer> fp1 = new HashMap<String, Integer>();
+        Map<String, Integer> fp2 = new HashMap<String, Integer>();
+        fp1.put("CCCC", 1);
+        fp2.put("CCCC", 2);
+        Assert.assertEquals(1.0, LingoSimilarity.calculate(fp1, fp2), 0.001);
+        fp2.put("CCCN", 1);
+        Assert.assertEquals(0.5, LingoSimilarity.calculate(fp1, fp2), 0.001);
+    }
+
+    @Test
+    public void testLingoSim_empty() throws Exception {
+        Map<String, Integer> empty = new HashMap<String, Integer>();
+        Assert.assertTrue(Float.isNaN(LingoSimilarity.calculate(empty, empty)));
+    }
+
+    @Test
+    public void testLingoSim_sorted() throws Exception {
+        String[] smis = {"c1ccccc1O", "c1ccccc1N", "CC(=O)Oc1ccccc1C(=O)O", "CCCCCCCCO", "CCCCO", "C"};
+        for (String smi1 : smis) {
+            for (String smi2 : smis) {
+                Assert.assertEquals(vidal(substrings(smi1), substrings(smi2)),
+                                    LingoSimilarity.calculate(Lingo.fingerprint(smi1), Lingo.fingerprint(smi2)),
+                                    0.0001);
+            }
+        }
+        Assert.assertEquals(1.0, LingoSimilarity.calculate(Lingo.fingerprint(smis[2]), Lingo.fingerprint(smis[2])), 0.0001);
+        Assert.assertEquals(0.0, LingoSimilarity.calculate(Lingo.fingerprint(""), Lingo.fingerprint("C")), 0.0001);
+    }
+
+    @Test
+    public void testLingoSim_batch() throws Exception {
+        SortedCountFingerprint query = Lingo.fingerprint("c1ccccc1O");
+        SortedCountFingerprint[] targets = {Lingo.fingerprint("c1ccccc1N"), Lingo.fingerprint("CCCCO"),
+                                            Lingo.fingerprint("c1ccccc1O")};
+        float[] scores = LingoSimilarity.calculate(query, Arrays.asList(targets));
+        Assert.assertEquals(targets.length, scores.length);
+        for (int i = 0; i < targets.length; i++)
+            Assert.assertEquals(LingoSimilarity.calculate(query, targets[i]), scores[i], 0.0001);
+    }
 
+    /** Reference implementation of the similarity {@cdk.cite Vidal2005}. */
+    private static double vidal(Map<String, Integer> fp1, Map<String, Integer> fp2) {
+        Set<String> keys = new HashSet<String>(fp1.keySet());
+        keys.addAll(fp2.keySet());
+        double sum = 0;
+        for (String key : keys) {
+            int c1 = fp1.containsKey(key) ? fp1.get(key) : 0;
+            int c2 = fp2.containsKey(key) ? fp2.get(key) : 0;
+            sum += 1 - Math.abs(c1 - c2) / (double) (c1 + c2);
+        }
+        return keys.isEmpty() ? 0 : sum / keys.size();
+    }
+
+    /** Substrings of length 4 as counted by the LingoFingerprinter. */
+    private static Map<String, Integer> substrings(String smi) {
+        smi = smi.replaceAll("[0-9]+", "0");
+        Map<String, Integer> map = new HashMap<String, Integer>();
+        for (int i = 0; i < smi.length() - 3; i++) {
+            String sub = smi.substring(i, i + 4);
+            map.put(sub, map.containsKey(sub) ? map.get(sub) + 1 : 1);
+        }
+        return map;
+    }
 }
@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.similarity;
+
+import org.junit.Test;
+import org.openscience.cdk.fingerprint.BitSetFingerprint;
+import org.openscience.cdk.fingerprint.Fingerprinter;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @cdk.module test-fingerprint
+ */
+public class SimilarityIndexTest {
+
+    private static final String[] LIBRARY = {"c1ccccc1O", "CCO", "c1ccccc1CCN", "CC(=O)O", "c1ccncc1",
+                                             "Oc1ccc(cc1)C(=O)O", "CCCCCC", "c1ccc2ccccc2c1", "c1ccccc1C"};
+
+    @Test public void nearest() throws Exception {
+        Fingerprinter fingerprinter = new Fingerprinter();
+        SimilarityIndex index = new SimilarityIndex(fingerprinter.getSize());
+        List<BitSet> fps = new ArrayList<BitSet>();
+        for (String smi : LIBRARY) {
+            BitSet fp = fingerprinter.getBitFingerprint(smi(smi)).asBitSet();
+            assertThat(index.add(fp), is(fps.size()));
+            fps.add(fp);
+        }
+        assertThat(index.size(), is(LIBRARY.length));
+        assertThat(index.length(), is(1024));
+
+        BitSet query = fingerprinter.getBitFingerprint(smi("c1ccccc1O")).asBitSet();
+        List<SimilarityIndex.Hit> hits = index.nearest(query, 3);
+        assertThat(hits.size(), is(3));
+        assertThat(hits.get(0).id(), is(0));
+        assertThat(hits.get(0).score(), is(1.0));
+        for (SimilarityIndex.Hit hit : hits)
+            assertThat(hit.score(), closeTo(Tanimoto.calculate(query, fps.get(hit.id())), 1e-6));
+        assertThat(str(hits), is(bruteForce(fps, query, 1, 1, 0, 3)));
+        assertThat(index.nearest(query, 0).isEmpty(), is(true));
+        assertThat(index.nearest(query, 100).size(), is(LIBRARY.length));
+    }
+
+    @Test public void threshold() throws Exception {
+        List<BitSet> fps = random(2000, 256, 3);
+        SimilarityIndex index = index(new SimilarityIndex(256), fps);
+        for (BitSet query : random(20, 256, 4)) {
+            for (double t : new double[]{0, 0.3, 0.5, 0.8, 1})
+                assertThat(str(index.threshold(query, t)), is(bruteForce(fps, query, 1, 1, t, fps.size())));
+        }
+        // identical fingerprint
+        assertThat(index.threshold(fps.get(42), 1).get(0).id(), is(42));
+    }
+
+    @Test public void nearestTversky() throws Exception {
+        List<BitSet> fps = random(2000, 200, 5);
+        SimilarityIndex index = index(new SimilarityIndex(200), fps);
+        for (BitSet query : random(20, 200, 6)) {
+            assertThat(str(index.nearest(query, 0.9, 0.1, 10)), is(bruteForce(fps, query, 0.9, 0.1, 0, 10)));
+            assertThat(str(index.nearest(query, 0.1, 0.9, 10)), is(bruteForce(fps, query, 0.1, 0.9, 0, 10)));
+            assertThat(str(index.nearest(query, 10)), is(bruteForce(fps, query, 1, 1, 0, 10)));
+        }
+    }
+
+    @Test public void thresholdTversky() throws Exception {
+        List<BitSet> fps = random(2000, 200, 7);
+        SimilarityIndex index = index(new SimilarityIndex(200), fps);
+        for (BitSet query : random(20, 200, 8)) {
+            assertThat(str(index.threshold(query, 0.9, 0.1, 0.6)), is(bruteForce(fps, query, 0.9, 0.1, 0.6, fps.size())));
+            assertThat(str(index.threshold(query, 0.5, 0.5, 0.6)), is(bruteForce(fps, query, 0.5, 0.5, 0.6, fps.size())));
+        }
+    }
+
+    @Test public void direct() throws Exception {
+        List<BitSet> fps = random(500, 130, 9);
+        SimilarityIndex heap = index(new SimilarityIndex(130), fps);
+        SimilarityIndex direct = index(new SimilarityIndex(130, true), fps);
+        for (BitSet query : random(10, 130, 10)) {
+            assertThat(str(direct.nearest(query, 5)), is(str(heap.nearest(query, 5))));
+            assertThat(str(direct.threshold(query, 0.4)), is(str(heap.threshold(query, 0.4))));
+        }
+    }
+
+    @Test public void addAfterSearch() throws Exception {
+        List<BitSet> fps = random(300, 64, 11);
+        SimilarityIndex index = index(new SimilarityIndex(64), fps.subList(0, 100));
+        BitSet query = fps.get(150);
+        assertThat(str(index.nearest(query, 5)), is(bruteForce(fps.subList(0, 100), query, 1, 1, 0, 5)));
+        for (BitSet fp : fps.subList(100, 300))
+            index.add(fp);
+        assertThat(index.size(), is(300));
+        assertThat(str(index.nearest(query, 5)), is(bruteForce(fps, query, 1, 1, 0, 5)));
+        assertThat(index.nearest(query, 1).get(0).id(), is(150));
+    }
+
+    @Test public void nearestParallel() throws Exception {
+        List<BitSet> fps = random(3000, 256, 12);
+        SimilarityIndex index = index(new SimilarityIndex(256, false, 100), fps);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (BitSet query : random(10, 256, 13)) {
+                assertThat(str(index.nearest(query, 20, executor)), is(str(index.nearest(query, 20))));
+                assertThat(str(index.nearest(query, 0.7, 0.3, 20, executor)), is(bruteForce(fps, query, 0.7, 0.3, 0, 20)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test public void thresholdParallel() throws Exception {
+        List<BitSet> fps = random(3000, 256, 14);
+        SimilarityIndex index = index(new SimilarityIndex(256, true, 100), fps);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (BitSet query : random(10, 256, 15)) {
+                assertThat(str(index.threshold(query, 0.4, executor)), is(str(index.threshold(query, 0.4))));
+                assertThat(str(index.threshold(query, 0.2, 0.8, 0.5, executor)),
+                           is(bruteForce(fps, query, 0.2, 0.8, 0.5, fps.size())));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test public void addBitFingerprint() throws Exception {
+        SimilarityIndex index = new SimilarityIndex(64);
+        BitSetFingerprint fp = new BitSetFingerprint(64);
+        fp.set(3, true);
+        assertThat(index.add(fp), is(0));
+        assertThat(index.nearest(fp.asBitSet(), 1).get(0).score(), is(1.0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addBitFingerprintWrongLength() throws Exception {
+        new SimilarityIndex(64).add(new BitSetFingerprint(128));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addBeyondLength() throws Exception {
+        BitSet fp = new BitSet();
+        fp.set(64);
+        new SimilarityIndex(64).add(fp);
+    }
+
+    @Test public void emptyIndex() throws Exception {
+        SimilarityIndex index = new SimilarityIndex(64);
+        BitSet query = new BitSet();
+        query.set(1);
+        assertThat(index.nearest(query, 5).isEmpty(), is(true));
+        assertThat(index.threshold(query, 0.5).isEmpty(), is(true));
+    }
+
+    @Test public void queryBeyondLength() throws Exception {
+        SimilarityIndex index = new SimilarityIndex(64);
+        BitSet fp = new BitSet();
+        fp.set(1);
+        index.add(fp);
+        BitSet query = new BitSet();
+        query.set(1);
+        query.set(100);
+        assertThat(index.nearest(query, 1).get(0).score(), is(0.5));
+    }
+
+    /**
+     * Reference search, score every record and sort.
+     */
+    private static List<String> bruteForce(List<BitSet> fps, BitSet query, double alpha, double beta,
+                                            double threshold, int k) {
+        final List<double[]> scores = new ArrayList<double[]>();
+        int a = query.cardinality();
+        for (int id = 0; id < fps.size(); id++) {
+            BitSet common = (BitSet) query.clone();
+            common.and(fps.get(id));
+            int b = fps.get(id).cardinality(), c = common.cardinality();
+            double denom = alpha * (a - c) + beta * (b - c) + c;
+            double score = denom == 0 ? 0 : c / denom;
+            if (score >= threshold)
+                scores.add(new double[]{score, id});
+        }
+        Collections.sort(scores, new Comparator<double[]>() {
+            @Override public int compare(double[] x, double[] y) {
+                int cmp = Double.compare(y[0], x[0]);
+                return cmp != 0 ? cmp : Double.compare(x[1], y[1]);
+            }
+        });
+        List<String> hits = new ArrayList<String>();
+        for (double[] score : scores.subList(0, Math.min(k, scores.size())))
+            hits.add((int) score[1] + ":" + score[0]);
+        return hits;
+    }
+
+    /**
+     * The hits as 'id:score' strings.
+     */
+    private static List<String> str(List<SimilarityIndex.Hit> hits) {
+        List<String> strs = new ArrayList<String>();
+        for (SimilarityIndex.Hit hit : hits)
+            strs.add(hit.toString());
+        return strs;
+    }
+
+    private static SimilarityIndex index(SimilarityIndex index, List<BitSet> fps) {
+        for (BitSet fp : fps)
+            index.add(fp);
+        return index;
+    }
+
+    /**
+     * Random fingerprints with a spread of densities.
+     */
+    private static List<BitSet> random(int n, int length, long seed) {
+        Random rand = new Random(seed);
+        List<BitSet> fps = new ArrayList<BitSet>();
+        for (int i = 0; i < n; i++) {
+            BitSet fp = new BitSet(length);
+            double density = 0.05 + 0.4 * rand.nextDouble();
+            for (int j = 0; j < length; j++)
+                if (rand.nextDouble() < density) fp.set(j);
+            fps.add(fp);
+        }
+        return fps;
+    }
+
+    private static IAtomContainer smi(String smi) throws Exception {
+        return new SmilesParser(SilentChemObjectBuilder.getInstance()).parseSmiles(smi);
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.qsar;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.aromaticity.Aromaticity;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.exception.Intractable;
+import org.openscience.cdk.graph.AllPairsShortestPaths;
+import org.openscience.cdk.graph.CycleFinder;
+import org.openscience.cdk.graph.Cycles;
+import org.openscience.cdk.graph.GraphUtil;
+import org.openscience.cdk.graph.ShortestPaths;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IRingSet;
+import org.openscience.cdk.ringsearch.AllRingsFinder;
+import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Lazily computed and memoized structural perception of a single molecule,
+ * shared between descriptors. Many descriptors independently compute the
+ * same graph properties (adjacency, rings, topological distances) and
+ * perceive the same atom types and aromaticity for each molecule. The {@link DescriptorEngine} attaches a context to each molecule
+ * it processes and descriptors obtain it with {@link #of(IAtomContainer)}.
+ * When no context is attached (e.g. a descriptor is used directly) a new,
+ * unattached, context is returned and the descriptor behaves as before.
+ *
+ * <blockquote><pre>
+ * public DescriptorValue calculate(IAtomContainer container) {
+ *     PerceptionContext context = PerceptionContext.of(container);
+ *     int[][] distances         = context.topologicalDistances();
+ *     Cycles  rings             = context.cycles(Cycles.mcb());
+ *     ...
+ * }
+ * </pre></blockquote>
+ *
+ * The memoized values are only valid whilst the constitution of the molecule
+ * is unchanged. Descriptors which modify the molecule (e.g. add hydrogens)
+ * should do so on a copy and not use the context of the original. The
+ * returned values are shared and must not be modified. A context is not
+ * thread-safe and should be confined to the thread processing the molecule.
+ *
+ * @cdk.module qsar
+ * @cdk.githash
+ * @see DescriptorEngine
+ */
+@TestClass("org.openscience.cdk.qsar.PerceptionContextTest")
+public final class PerceptionContext {
+
+    /** Property key used to attach the context to a molecule. */
+    private static final String KEY = PerceptionContext.class.getName();
+
+    /** Distance used between atoms which are not connected. */
+    public static final int DISCONNECTED = 999999999;
+
+    private final IAtomContainer container;
+
+    /* memoized values - computed on first access */
+    private int[][]                        graph;
+    private int[][]                        distances;
+    private ShortestPaths[]                shortestPaths;
+    private AllPairsShortestPaths          allPairsShortestPaths;
+    private Map<CycleFinder, Cycles>       cycles;
+    private PerceptionContext              suppressed;
+    private IRingSet                       allRings;
+    private PerceptionContext              aromatic;
+
+    /* failures are memoized so the computation is not repeated */
+    private CDKException                   allRingsFailure, aromaticFailure;
+
+    /**
+     * Create a new context for the given container.
+     *
+     * @param container the molecule
+     */
+    private PerceptionContext(IAtomContainer container) {
+        if (container == null)
+            throw new NullPointerException("no container provided");
+        this.container = container;
+    }
+
+    /**
+     * Access the perception context of the provided molecule. If a context
+     * has been attached ({@link #attach(IAtomContainer)}) it is returned
+     * otherwise a new unattached context is created.
+     *
+     * @param container the molecule
+     * @return the perception context
+     */
+    @TestMethod("attached,unattached")
+    public static PerceptionContext of(IAtomContainer container) {
+        Object value = container.getProperty(KEY);
+        if (value instanceof PerceptionContext && ((PerceptionContext) value).container == container)
+            return (PerceptionContext) value;
+        return new PerceptionContext(container);
+    }
+
+    /**
+     * Attach a new perception context to the provided molecule. Descriptors
+     * calculated on the molecule will share the context until it is
+     * detached.
+     *
+     * @param container the molecule
+     * @return the attached context
+     * @see #detach(IAtomContainer)
+     */
+    @TestMethod("attached")
+    public static PerceptionContext attach(IAtomContainer container) {
+        PerceptionContext context = new PerceptionContext(container);
+        container.setProperty(KEY, context);
+        return context;
+    }
+
+    /**
+     * Detach (remove) the perception context from the provided molecule.
+     *
+     * @param container the molecule
+     */
+    @TestMethod("detached")
+    public static void detach(IAtomContainer container) {
+        container.removeProperty(KEY);
+    }
+
+    /**
+     * The molecule this context was created for.
+     *
+     * @return the molecule
+     */
+    @TestMethod("attached")
+    public IAtomContainer container() {
+        return container;
+    }
+
+    /**
+     * Adjacency list representation of the molecule.
+     *
+     * @return adjacency list
+     * @see GraphUtil#toAdjList(IAtomContainer)
+     */
+    @TestMethod("graph")
+    public int[][] graph() {
+        if (graph == null)
+            graph = GraphUtil.toAdjList(container);
+        return graph;
+    }
+
+    /**
+     * The cycles of the molecule found with the given cycle finder. The
+     * result is memoized per cycle finder instance, the finders provided by
+     * {@link Cycles} (e.g. {@link Cycles#mcb()}) are singletons and can be
+     * used directly.
+     *
+     * @param finder the cycle finder
+     * @return the cycles found
+     * @throws Intractable the cycles could not be found in a reasonable time
+     */
+    @TestMethod("cycles")
+    public Cycles cycles(CycleFinder finder) throws Intractable {
+        if (cycles == null)
+            cycles = new IdentityHashMap<CycleFinder, Cycles>(4);
+        Cycles result = cycles.get(finder);
+        if (result == null) {
+            result = finder.find(container, graph(), container.getAtomCount());
+            cycles.put(finder, result);
+        }
+        return result;
+    }
+
+    /**
+     * The shortest paths from the atom at index {@code start}.
+     *
+     * @param start index of the start atom
+     * @return the shortest paths
+     */
+    @TestMethod("shortestPaths")
+    public ShortestPaths shortestPaths(int start) {
+        if (allPairsShortestPaths != null)
+            return allPairsShortestPaths.from(start);
+        if (shortestPaths == null)
+            shortestPaths = new ShortestPaths[container.getAtomCount()];
+        if (shortestPaths[start] == null)
+            shortestPaths[start] = new ShortestPaths(container, container.getAtom(start));
+        return shortestPaths[start];
+    }
+
+    /**
+     * The shortest paths between all pairs of atoms.
+     *
+     * @return all-pairs shortest paths
+     */
+    @TestMethod("allPairsShortestPaths")
+    public AllPairsShortestPaths allPairsShortestPaths() {
+        if (allPairsShortestPaths == null) {
+            allPairsShortestPaths = new AllPairsShortestPaths(container);
+            shortestPaths = null;
+        }
+        return allPairsShortestPaths;
+    }
+
+    /**
+     * The topological distance matrix, {@code distances[i][j]} is the number
+     * of bonds on the shortest path between the i'th and j'th atoms. Atoms
+     * which are not connected have a distance of {@link #DISCONNECTED}. The
+     * values are the same as those of {@link
+     * org.openscience.cdk.graph.PathTools#computeFloydAPSP(int[][])} but are
+     * found with a breadth-first search from each atom.
+     *
+     * @return the distance matrix
+     */
+    @TestMethod("topologicalDistances,topologicalDistances_disconnected")
+    public int[][] topologicalDistances() {
+        if (distances == null) {
+            int[][] g = graph();
+            int n = g.length;
+            int[] queue = new int[n];
+            distances = new int[n][n];
+            for (int i = 0; i < n; i++) {
+                int[] dist = distances[i];
+                Arrays.fill(dist, DISCONNECTED);
+                dist[i] = 0;
+                int head = 0, tail = 0;
+                queue[tail++] = i;
+                while (head < tail) {
+                    int v = queue[head++];
+                    for (int w : g[v]) {
+                        if (dist[w] == DISCONNECTED) {
+                            dist[w] = dist[v] + 1;
+                            queue[tail++] = w;
+                        }
+                    }
+                }
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * The context of the hydrogen suppressed molecule, as produced by {@link
+     * AtomContainerManipulator#removeHydrogens(IAtomContainer)}. The
+     * suppressed molecule is created once and shared, it must not be
+     * modified.
+     *
+     * @return context of the hydrogen suppressed molecule
+     */
+    @TestMethod("suppressedHydrogens")
+    public PerceptionContext suppressedHydrogens() {
+        if (suppressed == null)
+            suppressed = new PerceptionContext(AtomContainerManipulator.removeHydrogens(container));
+        return suppressed;
+    }
+
+    /**
+     * All rings of the molecule as found by {@link AllRingsFinder}. The rings
+     * are the same (and in the same order) as those found by {@link
+     * AllRingsFinder#findAllRings(IAtomContainer)}.
+     *
+     * @return all rings
+     * @throws CDKException the threshold was exceeded
+     */
+    @TestMethod("allRings")
+    public IRingSet allRings() throws CDKException {
+        if (allRingsFailure != null)
+            throw allRingsFailure;
+        if (allRings == null) {
+            try {
+                allRings = new AllRingsFinder().findAllRings(container);
+            } catch (CDKException e) {
+                allRingsFailure = e;
+                throw e;
+            }
+        }
+        return allRings;
+    }
+
+    /**
+     * The context of a copy of the molecule with the atom types perceived
+     * and configured ({@link
+     * AtomContainerManipulator#percieveAtomTypesAndConfigureAtoms(IAtomContainer)})
+     * and the CDK legacy aromaticity model applied ({@link
+     * Aromaticity#cdkLegacy()}). The molecule itself is not modified. The copy
+     * is created once and shared, it must not be modified.
+     *
+     * @return context of the atom typed and aromatic copy
+     * @throws CDKException atom types or aromaticity could not be perceived
+     */
+    @TestMethod("aromatic")
+    public PerceptionContext aromatic() throws CDKException {
+        if (aromaticFailure != null)
+            throw aromaticFailure;
+        if (aromatic == null) {
+            try {
+                IAtomContainer copy = (IAtomContainer) container.clone();
+                copy.removeProperty(KEY);
+                AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(copy);
+                Aromaticity.cdkLegacy().apply(copy);
+                aromatic = new PerceptionContext(copy);
+            } catch (CloneNotSupportedException e) {
+                aromaticFailure = new CDKException("Error during clone: " + e.getMessage(), e);
+                throw aromaticFailure;
+            } catch (CDKException e) {
+                aromaticFailure = e;
+                throw e;
+            }
+        }
+        return aromatic;
+    }
+}
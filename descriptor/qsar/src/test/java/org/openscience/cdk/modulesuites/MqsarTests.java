@@ -23,6 +23,7 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 import org.openscience.cdk.coverage.QsarCoverageTest;
 import org.openscience.cdk.qsar.DescriptorExceptionTest;
+import org.openscience.cdk.qsar.PerceptionContextTest;
 import org.openscience.cdk.tools.AtomicPropertiesTest;
 
 /**
@@ -34,6 +35,7 @@ import org.openscience.cdk.tools.AtomicPropertiesTest;
 @SuiteClasses(value={
     QsarCoverageTest.class,
     DescriptorExceptionTest.class,
+    PerceptionContextTest.class,
     AtomicPropertiesTest.class
 })
 public class MqsarTests {}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.qsar;
+
+import org.junit.Test;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.graph.Cycles;
+import org.openscience.cdk.graph.PathTools;
+import org.openscience.cdk.graph.matrix.AdjacencyMatrix;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IRingSet;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @cdk.module test-qsar
+ */
+public class PerceptionContextTest {
+
+    private final SmilesParser sp = new SmilesParser(SilentChemObjectBuilder.getInstance());
+
+    @Test public void attached() throws Exception {
+        IAtomContainer container = sp.parseSmiles("c1ccccc1O");
+        PerceptionContext context = PerceptionContext.attach(container);
+        assertThat(PerceptionContext.of(container), is(sameInstance(context)));
+        assertThat(context.container(), is(sameInstance(container)));
+    }
+
+    @Test public void unattached() throws Exception {
+        IAtomContainer container = sp.parseSmiles("c1ccccc1O");
+        assertThat(PerceptionContext.of(container), is(not(sameInstance(PerceptionContext.of(container)))));
+    }
+
+    @Test public void detached() throws Exception {
+        IAtomContainer container = sp.parseSmiles("c1ccccc1O");
+        PerceptionContext context = PerceptionContext.attach(container);
+        PerceptionContext.detach(container);
+        assertThat(container.getProperty(PerceptionContext.class.getName()), is(nullValue()));
+        assertThat(PerceptionContext.of(container), is(not(sameInstance(context))));
+    }
+
+    /** a copied container should not use the context of the original */
+    @Test public void cloned() throws Exception {
+        IAtomContainer container = sp.parseSmiles("c1ccccc1O");
+        PerceptionContext context = PerceptionContext.attach(container);
+        IAtomContainer cpy = container.clone();
+        assertThat(PerceptionContext.of(cpy), is(not(sameInstance(context))));
+        assertThat(PerceptionContext.of(cpy).container(), is(sameInstance(cpy)));
+    }
+
+    @Test public void graph() throws Exception {
+        PerceptionContext context = PerceptionContext.of(sp.parseSmiles("CCO"));
+        int[][] graph = context.graph();
+        assertThat(graph, is(new int[][]{{1}, {0, 2}, {1}}));
+        assertThat(context.graph(), is(sameInstance(graph)));
+    }
+
+    @Test public void cycles() throws Exception {
+        PerceptionContext context = PerceptionContext.of(sp.parseSmiles("c1ccc2ccccc2c1"));
+        Cycles cycles = context.cycles(Cycles.mcb());
+        assertThat(cycles.numberOfCycles(), is(2));
+        assertThat(context.cycles(Cycles.mcb()), is(sameInstance(cycles)));
+        assertThat(context.cycles(Cycles.all()).numberOfCycles(), is(3));
+    }
+
+    @Test public void shortestPaths() throws Exception {
+        PerceptionContext context = PerceptionContext.of(sp.parseSmiles("c1ccccc1"));
+        assertThat(context.shortestPaths(0).distanceTo(3), is(3));
+        assertThat(context.shortestPaths(0).nPathsTo(3), is(2));
+        assertThat(context.shortestPaths(0), is(sameInstance(context.shortestPaths(0))));
+    }
+
+    @Test public void allPairsShortestPaths() throws Exception {
+        PerceptionContext context = PerceptionContext.of(sp.parseSmiles("c1ccccc1"));
+        assertThat(context.allPairsShortestPaths().from(1).distanceTo(4), is(3));
+        assertThat(context.allPairsShortestPaths(), is(sameInstance(context.allPairsShortestPaths())));
+        assertThat(context.shortestPaths(1), is(sameInstance(context.allPairsShortestPaths().from(1))));
+    }
+
+    @Test public void topologicalDistances() throws Exception {
+        IAtomContainer container = sp.parseSmiles("CC1CCC(N)C(C)C1O");
+        int[][] expected = PathTools.computeFloydAPSP(AdjacencyMatrix.getMatrix(container));
+        assertThat(PerceptionContext.of(container).topologicalDistances(), is(expected));
+    }
+
+    @Test public void topologicalDistances_disconnected() throws Exception {
+        IAtomContainer container = sp.parseSmiles("CCO.CN");
+        int[][] expected = PathTools.computeFloydAPSP(AdjacencyMatrix.getMatrix(container));
+        int[][] actual = PerceptionContext.of(container).topologicalDistances();
+        assertThat(actual, is(expected));
+        assertThat(actual[0][4], is(PerceptionContext.DISCONNECTED));
+    }
+
+    @Test public void suppressedHydrogens() throws Exception {
+        IAtomContainer container = sp.parseSmiles("[H]C([H])([H])O[H]");
+        PerceptionContext context = PerceptionContext.of(container);
+        assertThat(context.suppressedHydrogens().container().getAtomCount(), is(2));
+        assertThat(context.suppressedHydrogens(), is(sameInstance(context.suppressedHydrogens())));
+        assertThat(container.getAtomCount(), is(6));
+    }
+
+    @Test public void allRings() throws Exception {
+        PerceptionContext context = PerceptionContext.of(sp.parseSmiles("C1CC2CCC1CC2"));
+        IRingSet rings = context.allRings();
+        assertThat(rings.getAtomContainerCount(), is(3));
+        assertThat(context.allRings(), is(sameInstance(rings)));
+    }
+
+    @Test public void aromatic() throws Exception {
+        IAtomContainer container = sp.parseSmiles("C1=CC=CC=C1O");
+        PerceptionContext context = PerceptionContext.of(container);
+        PerceptionContext aromatic = context.aromatic();
+        assertThat(aromatic.container(), is(not(sameInstance(container))));
+        assertThat(aromatic.container().getAtom(0).getFlag(CDKConstants.ISAROMATIC), is(true));
+        assertThat(container.getAtom(0).getFlag(CDKConstants.ISAROMATIC), is(false));
+        assertThat(context.aromatic(), is(sameInstance(aromatic)));
+    }
+}
@@ -34,6 +34,12 @@ import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.qsar.result.BooleanResult;
+import org.openscience.cdk.qsar.result.DoubleArrayResult;
+import org.openscience.cdk.qsar.result.DoubleResult;
+import org.openscience.cdk.qsar.result.IDescriptorResult;
+import org.openscience.cdk.qsar.result.IntegerArrayResult;
+import org.openscience.cdk.qsar.result.IntegerResult;
 import org.openscience.cdk.tools.ILoggingTool;
 import org.openscience.cdk.tools.LoggingToolFactory;
 
@@ -42,14 +48,20 @@ import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -177,6 +189,25 @@ public class DescriptorEngine {
             throw new CDKException("Number of specs and descriptors do not match");
 
 
+        // share perception between the descriptors
+        PerceptionContext.attach(molecule);
+        try {
+            process(molecule, descriptors, speclist);
+        } finally {
+            PerceptionContext.detach(molecule);
+        }
+    }
+
+    /**
+     * Calculate the descriptors for a molecule setting the values as properties
+     * of the molecule, atoms or bonds.
+     *
+     * @param molecule    the molecule
+     * @param descriptors the descriptors
+     * @param speclist    specifications of the descriptors
+     */
+    private static void process(IAtomContainer molecule, List<IDescriptor> descriptors,
+                                List<IImplementationSpecification> speclist) {
         for (int i = 0; i < descriptors.size(); i++) {
             IDescriptor descriptor = descriptors.get(i);
             if (descriptor instanceof IMolecularDescriptor) {
@@ -217,6 +248,189 @@ public class DescriptorEngine {
         }
     }
 
+    /**
+     * Calculates the molecular descriptors for a batch of molecules using the
+     * provided executor. Each molecule is calculated as a separate task and
+     * each thread of the executor uses its own descriptor instances, created
+     * from the loaded descriptors with the same parameters, as descriptors
+     * may hold mutable state. Atomic and bond descriptors are skipped.
+     * <p/>
+     * Rather than setting the values as properties of the molecules, the values
+     * are stored in a {@link DescriptorMatrix} with rows in the same order
+     * as the input. Values which could not be calculated are stored as
+     * {@link Double#NaN}. The number of molecules being calculated at any one
+     * time is bounded and so the input iterator may be lazy (e.g. a file
+     * reader).
+     *
+     * <pre>
+     * ExecutorService  executor = Executors.newFixedThreadPool(4);
+     * DescriptorMatrix matrix   = engine.process(reader, executor);
+     * executor.shutdown();
+     * </pre>
+     *
+     * @param molecules the molecules for which we want to calculate descriptors
+     * @param executor  executor used to calculate each molecule
+     * @return descriptor values for each molecule
+     * @throws CDKException if an error occurred during descriptor calculation, the
+     *                      calculation was interrupted or the descriptors
+     *                      and/or specifications have not been initialized
+     */
+    @TestMethod("testBatchProcess,testBatchProcessOrder")
+    public DescriptorMatrix process(Iterator<IAtomContainer> molecules, ExecutorService executor) throws CDKException {
+
+        if (descriptors == null || speclist == null) throw new CDKException("Descriptors have not been instantiated");
+        if (speclist.size() != descriptors.size())
+            throw new CDKException("Number of specs and descriptors do not match");
+
+        final List<IMolecularDescriptor> prototypes = new ArrayList<IMolecularDescriptor>();
+        final List<IImplementationSpecification> specs = new ArrayList<IImplementationSpecification>();
+        for (int i = 0; i < descriptors.size(); i++) {
+            IDescriptor descriptor = descriptors.get(i);
+            if (descriptor instanceof IMolecularDescriptor) {
+                prototypes.add((IMolecularDescriptor) descriptor);
+                specs.add(speclist.get(i));
+            } else {
+                logger.debug("Skipping non-molecular descriptor in batch mode: ", descriptor.getClass().getName());
+            }
+        }
+
+        String[][] names = new String[prototypes.size()][];
+        for (int i = 0; i < names.length; i++)
+            names[i] = prototypes.get(i).getDescriptorNames();
+
+        final DescriptorMatrix matrix = new DescriptorMatrix(specs, names);
+
+        // thread confined copies of each descriptor, created on first use
+        final ThreadLocal<IMolecularDescriptor[]> local = new ThreadLocal<IMolecularDescriptor[]>() {
+            @Override protected IMolecularDescriptor[] initialValue() {
+                return copyDescriptors(prototypes);
+            }
+        };
+
+        // bound the number of pending tasks, results are collected in order
+        final int limit = 64 * Runtime.getRuntime().availableProcessors();
+        Deque<Future<double[][]>> pending = new ArrayDeque<Future<double[][]>>(limit);
+
+        try {
+            while (molecules.hasNext()) {
+                final IAtomContainer molecule = molecules.next();
+                pending.add(executor.submit(new Callable<double[][]>() {
+                    @Override public double[][] call() throws Exception {
+                        return calculate(local.get(), molecule);
+                    }
+                }));
+                if (pending.size() == limit)
+                    matrix.add(pending.poll().get());
+            }
+            while (!pending.isEmpty())
+                matrix.add(pending.poll().get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CDKException("Descriptor calculation was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new CDKException("Could not calculate descriptors: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            for (Future<double[][]> future : pending)
+                future.cancel(true);
+        }
+
+        return matrix;
+    }
+
+    /**
+     * Calculate the values of each descriptor for the molecule.
+     *
+     * @param descriptors the descriptors to calculate
+     * @param molecule    the molecule
+     * @return values indexed by descriptor and value
+     */
+    private static double[][] calculate(IMolecularDescriptor[] descriptors, IAtomContainer molecule) {
+        PerceptionContext.attach(molecule);
+        try {
+            return calculateRow(descriptors, molecule);
+        } finally {
+            PerceptionContext.detach(molecule);
+        }
+    }
+
+    /**
+     * Calculate the values of each descriptor for the molecule.
+     *
+     * @param descriptors the descriptors to calculate
+     * @param molecule    the molecule
+     * @return values indexed by descriptor and value
+     */
+    private static double[][] calculateRow(IMolecularDescriptor[] descriptors, IAtomContainer molecule) {
+        double[][] row = new double[descriptors.length][];
+        for (int i = 0; i < descriptors.length; i++) {
+            DescriptorValue value = descriptors[i].calculate(molecule);
+            row[i] = new double[descriptors[i].getDescriptorNames().length];
+            if (value.getException() == null) {
+                toDoubleArray(value.getValue(), row[i]);
+            } else {
+                logger.error("Could not calculate descriptor value for: ", descriptors[i].getClass().getName());
+                logger.debug(value.getException());
+                Arrays.fill(row[i], Double.NaN);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Copy the values of a descriptor result in to the provided array, if the
+     * result has less values than the array the remaining values are set to
+     * {@link Double#NaN}.
+     *
+     * @param result a descriptor result
+     * @param dest   destination of the values
+     */
+    private static void toDoubleArray(IDescriptorResult result, double[] dest) {
+        Arrays.fill(dest, Double.NaN);
+        if (result instanceof DoubleResult) {
+            dest[0] = ((DoubleResult) result).doubleValue();
+        } else if (result instanceof IntegerResult) {
+            dest[0] = ((IntegerResult) result).intValue();
+        } else if (result instanceof BooleanResult) {
+            dest[0] = ((BooleanResult) result).booleanValue() ? 1 : 0;
+        } else if (result instanceof DoubleArrayResult) {
+            DoubleArrayResult array = (DoubleArrayResult) result;
+            for (int i = 0; i < Math.min(dest.length, array.length()); i++)
+                dest[i] = array.get(i);
+        } else if (result instanceof IntegerArrayResult) {
+            IntegerArrayResult array = (IntegerArrayResult) result;
+            for (int i = 0; i < Math.min(dest.length, array.length()); i++)
+                dest[i] = array.get(i);
+        } else {
+            logger.debug("Unknown descriptor result type: ", result.getClass().getName());
+        }
+    }
+
+    /**
+     * Create new instances of the provided descriptors, the instances are
+     * initialised with the same builder and parameters.
+     *
+     * @param prototypes descriptors to copy
+     * @return new descriptor instances
+     */
+    private IMolecularDescriptor[] copyDescriptors(List<IMolecularDescriptor> prototypes) {
+        IMolecularDescriptor[] copies = new IMolecularDescriptor[prototypes.size()];
+        for (int i = 0; i < copies.length; i++) {
+            IMolecularDescriptor prototype = prototypes.get(i);
+            try {
+                IMolecularDescriptor copy = (IMolecularDescriptor) instantiate(prototype.getClass());
+                copy.initialise(builder);
+                Object[] params = prototype.getParameters();
+                if (params != null && params.length > 0)
+                    copy.setParameters(params);
+                copies[i] = copy;
+            } catch (Exception e) {
+                throw new IllegalStateException("Could not create a copy of descriptor: "
+                                                        + prototype.getClass().getName(), e);
+            }
+        }
+        return copies;
+    }
+
     /**
      * Returns the type of the descriptor as defined in the descriptor dictionary.
      * <p/>
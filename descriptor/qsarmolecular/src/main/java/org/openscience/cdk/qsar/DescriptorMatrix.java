@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.qsar;
+
+import org.openscience.cdk.IImplementationSpecification;
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Columnar storage of molecular descriptor values computed over a batch of
+ * molecules. Rather than storing each {@link DescriptorValue} as a property
+ * of the molecule, the values of each descriptor are kept in a
+ * {@code double[][]} matrix indexed by the molecule (row) and the descriptor
+ * value (column). Rows are in the order the molecules were provided.
+ *
+ * <blockquote><pre>
+ * DescriptorEngine engine = ...;
+ * DescriptorMatrix matrix = engine.process(molecules, executor);
+ * double[][] xlogp        = matrix.getMatrix(0);
+ * for (int i = 0; i &lt; matrix.getMoleculeCount(); i++) {
+ *     double value = xlogp[i][0];
+ * }
+ * </pre></blockquote>
+ *
+ * Values which could not be calculated (the descriptor reported an exception)
+ * are stored as {@link Double#NaN}.
+ *
+ * @cdk.module qsarmolecular
+ * @cdk.githash
+ * @see DescriptorEngine#process(java.util.Iterator, java.util.concurrent.ExecutorService)
+ */
+@TestClass("org.openscience.cdk.qsar.DescriptorMatrixTest")
+public final class DescriptorMatrix {
+
+    /** Specifications of each descriptor (column block). */
+    private final List<IImplementationSpecification> specs;
+
+    /** Names of the values for each descriptor. */
+    private final String[][] names;
+
+    /** Values, indexed by descriptor, molecule and value. */
+    private double[][][] values;
+
+    /** Number of molecules (rows) stored. */
+    private int n;
+
+    /**
+     * Create an empty matrix for the specified descriptors.
+     *
+     * @param specs specifications of each descriptor
+     * @param names names of the values calculated by each descriptor
+     */
+    DescriptorMatrix(List<IImplementationSpecification> specs, String[][] names) {
+        if (specs.size() != names.length)
+            throw new IllegalArgumentException("Number of specs and descriptors do not match");
+        this.specs  = Collections.unmodifiableList(specs);
+        this.names  = names;
+        this.values = new double[names.length][64][];
+    }
+
+    /**
+     * Append a row (one molecule) to the matrix.
+     *
+     * @param row descriptor values indexed by descriptor and value
+     */
+    void add(double[][] row) {
+        // rows may have been trimmed independently (getMatrix) so each row
+        // is grown based on its own length
+        for (int i = 0; i < values.length; i++) {
+            if (n == values[i].length)
+                values[i] = Arrays.copyOf(values[i], Math.max(n + 1, n + (n >> 1)));
+            values[i][n] = row[i];
+        }
+        n++;
+    }
+
+    /**
+     * Number of descriptors (matrices) stored.
+     *
+     * @return number of descriptors
+     */
+    @TestMethod("descriptorCount")
+    public int getDescriptorCount() {
+        return names.length;
+    }
+
+    /**
+     * Number of molecules (rows in each matrix) stored.
+     *
+     * @return number of molecules
+     */
+    @TestMethod("moleculeCount")
+    public int getMoleculeCount() {
+        return n;
+    }
+
+    /**
+     * Specification of the descriptor at the given index.
+     *
+     * @param descriptor index of the descriptor
+     * @return the specification
+     */
+    @TestMethod("specification")
+    public IImplementationSpecification getSpecification(int descriptor) {
+        return specs.get(descriptor);
+    }
+
+    /**
+     * Names of the values (columns) calculated by the descriptor at the given
+     * index.
+     *
+     * @param descriptor index of the descriptor
+     * @return the value names
+     */
+    @TestMethod("names")
+    public String[] getNames(int descriptor) {
+        return names[descriptor].clone();
+    }
+
+    /**
+     * Access the values of the descriptor at the given index. The matrix is
+     * indexed by molecule and then value, {@code matrix[i][j]} is the j'th
+     * value of the descriptor for the i'th molecule. The returned matrix is
+     * not a copy and should not be modified.
+     *
+     * @param descriptor index of the descriptor
+     * @return values of the descriptor for each molecule
+     */
+    @TestMethod("matrix,addAfterAccess")
+    public double[][] getMatrix(int descriptor) {
+        if (values[descriptor].length != n)
+            values[descriptor] = Arrays.copyOf(values[descriptor], n);
+        return values[descriptor];
+    }
+}
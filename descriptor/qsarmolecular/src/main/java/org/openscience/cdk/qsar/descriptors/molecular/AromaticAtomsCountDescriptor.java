@@ -27,16 +27,15 @@ package org.openscience.cdk.qsar.descriptors.molecular;
 import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
-import org.openscience.cdk.aromaticity.Aromaticity;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.qsar.AbstractMolecularDescriptor;
 import org.openscience.cdk.qsar.DescriptorSpecification;
 import org.openscience.cdk.qsar.DescriptorValue;
 import org.openscience.cdk.qsar.IMolecularDescriptor;
+import org.openscience.cdk.qsar.PerceptionContext;
 import org.openscience.cdk.qsar.result.IDescriptorResult;
 import org.openscience.cdk.qsar.result.IntegerResult;
-import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
 
 /**
  *  Class that returns the number of aromatic atoms in an atom container.
@@ -157,30 +156,24 @@ public class AromaticAtomsCountDescriptor extends AbstractMolecularDescriptor im
     @TestMethod("testCalculate_IAtomContainer,testAromaticAtomsCountDescriptor,testViaFlags")
     public DescriptorValue calculate(IAtomContainer atomContainer) {
         IAtomContainer ac;
-        try {
-            ac = (IAtomContainer) atomContainer.clone();
-        } catch (CloneNotSupportedException e) {
-            return new DescriptorValue(getSpecification(), getParameterNames(), getParameters(),
-                    new IntegerResult((int) Double.NaN), getDescriptorNames(),
-                    new CDKException("Error during clone"));
-        }
-
-
         int aromaticAtomsCount = 0;
         if (checkAromaticity) {
+            // atom types and aromaticity are perceived once (on a copy) for
+            // all descriptors of the molecule
             try {
-                AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(ac);
+                ac = PerceptionContext.of(atomContainer).aromatic().container();
             } catch (CDKException e) {
                 return new DescriptorValue(getSpecification(), getParameterNames(), getParameters(),
                         new IntegerResult((int) Double.NaN), getDescriptorNames(),
-                        new CDKException("Error during atom type perception"));
+                        new CDKException("Error during aromaticity detection: " + e.getMessage()));
             }
+        } else {
             try {
-                Aromaticity.cdkLegacy().apply(ac);
-            } catch (CDKException e) {
+                ac = (IAtomContainer) atomContainer.clone();
+            } catch (CloneNotSupportedException e) {
                 return new DescriptorValue(getSpecification(), getParameterNames(), getParameters(),
                         new IntegerResult((int) Double.NaN), getDescriptorNames(),
-                        new CDKException("Error during aromaticity detection: " + e.getMessage()));
+                        new CDKException("Error during clone"));
             }
         }
         for (int i = 0; i < ac.getAtomCount(); i++) {
@@ -27,7 +27,6 @@ package org.openscience.cdk.qsar.descriptors.molecular;
 import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
-import org.openscience.cdk.aromaticity.Aromaticity;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
@@ -35,9 +34,9 @@ import org.openscience.cdk.qsar.AbstractMolecularDescriptor;
 import org.openscience.cdk.qsar.DescriptorSpecification;
 import org.openscience.cdk.qsar.DescriptorValue;
 import org.openscience.cdk.qsar.IMolecularDescriptor;
+import org.openscience.cdk.qsar.PerceptionContext;
 import org.openscience.cdk.qsar.result.IDescriptorResult;
 import org.openscience.cdk.qsar.result.IntegerResult;
-import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
 
 import java.util.Iterator;
 
@@ -159,30 +158,24 @@ public class AromaticBondsCountDescriptor extends AbstractMolecularDescriptor im
     @TestMethod("testCalculate_IAtomContainer")
     public DescriptorValue calculate(IAtomContainer atomContainer) {
         IAtomContainer ac;
-        try {
-            ac = (IAtomContainer) atomContainer.clone();
-        } catch (CloneNotSupportedException e) {
-            return new DescriptorValue(getSpecification(), getParameterNames(), getParameters(),
-                    new IntegerResult((int) Double.NaN), getDescriptorNames(),
-                    new CDKException("Error during clone"));
-        }
-
-
         int aromaticBondsCount = 0;
         if (checkAromaticity) {
+            // atom types and aromaticity are perceived once (on a copy) for
+            // all descriptors of the molecule
             try {
-                AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(ac);
+                ac = PerceptionContext.of(atomContainer).aromatic().container();
             } catch (CDKException e) {
                 return new DescriptorValue(getSpecification(), getParameterNames(), getParameters(),
                         new IntegerResult((int) Double.NaN), getDescriptorNames(),
-                        new CDKException("Error during atom type perception"));
+                        new CDKException("Error during aromaticity detection: " + e.getMessage()));
             }
+        } else {
             try {
-                Aromaticity.cdkLegacy().apply(ac);
-            } catch (CDKException e) {
+                ac = (IAtomContainer) atomContainer.clone();
+            } catch (CloneNotSupportedException e) {
                 return new DescriptorValue(getSpecification(), getParameterNames(), getParameters(),
                         new IntegerResult((int) Double.NaN), getDescriptorNames(),
-                        new CDKException("Error during aromaticity detection: " + e.getMessage()));
+                        new CDKException("Error during clone"));
             }
         }
         Iterator bonds = ac.bonds().iterator();
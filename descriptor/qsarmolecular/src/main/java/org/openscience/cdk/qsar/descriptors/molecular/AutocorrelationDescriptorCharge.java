@@ -26,13 +26,13 @@ import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.charges.GasteigerMarsiliPartialCharges;
 import org.openscience.cdk.exception.CDKException;
-import org.openscience.cdk.graph.matrix.TopologicalMatrix;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.qsar.AbstractMolecularDescriptor;
 import org.openscience.cdk.qsar.DescriptorSpecification;
 import org.openscience.cdk.qsar.DescriptorValue;
 import org.openscience.cdk.qsar.IMolecularDescriptor;
+import org.openscience.cdk.qsar.PerceptionContext;
 import org.openscience.cdk.qsar.result.DoubleArrayResult;
 import org.openscience.cdk.qsar.result.DoubleArrayResultType;
 import org.openscience.cdk.qsar.result.IDescriptorResult;
@@ -92,7 +92,9 @@ public class AutocorrelationDescriptorCharge extends AbstractMolecularDescriptor
         try {
             double[] w = listcharges(container);
             int natom = container.getAtomCount();
-            int[][] distancematrix = TopologicalMatrix.getMatrix(container);
+            // the hydrogen suppressed copy has the same constitution as the
+            // shared hydrogen suppressed molecule of the context
+            int[][] distancematrix = PerceptionContext.of(atomContainer).suppressedHydrogens().topologicalDistances();
 
             double[] chargeSum = new double[5];
 
@@ -25,13 +25,13 @@ import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.config.Isotopes;
 import org.openscience.cdk.config.IsotopeFactory;
 import org.openscience.cdk.exception.CDKException;
-import org.openscience.cdk.graph.matrix.TopologicalMatrix;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IElement;
 import org.openscience.cdk.qsar.AbstractMolecularDescriptor;
 import org.openscience.cdk.qsar.DescriptorSpecification;
 import org.openscience.cdk.qsar.DescriptorValue;
 import org.openscience.cdk.qsar.IMolecularDescriptor;
+import org.openscience.cdk.qsar.PerceptionContext;
 import org.openscience.cdk.qsar.result.DoubleArrayResult;
 import org.openscience.cdk.qsar.result.DoubleArrayResultType;
 import org.openscience.cdk.qsar.result.IDescriptorResult;
@@ -95,7 +95,9 @@ public class AutocorrelationDescriptorMass extends AbstractMolecularDescriptor i
         try {
             double[] w = listConvertion(container);
             int natom = container.getAtomCount();
-            int[][] distancematrix = TopologicalMatrix.getMatrix(container);
+            // the hydrogen suppressed copy has the same constitution as the
+            // shared hydrogen suppressed molecule of the context
+            int[][] distancematrix = PerceptionContext.of(atomContainer).suppressedHydrogens().topologicalDistances();
             double[] masSum = new double[5];
 
             for (int k = 0; k < 5; k++) {
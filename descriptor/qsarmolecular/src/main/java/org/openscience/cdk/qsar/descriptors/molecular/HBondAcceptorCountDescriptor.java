@@ -27,7 +27,6 @@ package org.openscience.cdk.qsar.descriptors.molecular;
 import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
-import org.openscience.cdk.aromaticity.Aromaticity;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
@@ -36,9 +35,9 @@ import org.openscience.cdk.qsar.AbstractMolecularDescriptor;
 import org.openscience.cdk.qsar.DescriptorSpecification;
 import org.openscience.cdk.qsar.DescriptorValue;
 import org.openscience.cdk.qsar.IMolecularDescriptor;
+import org.openscience.cdk.qsar.PerceptionContext;
 import org.openscience.cdk.qsar.result.IDescriptorResult;
 import org.openscience.cdk.qsar.result.IntegerResult;
-import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
 
 import java.util.List;
 
@@ -160,21 +159,22 @@ public class HBondAcceptorCountDescriptor extends AbstractMolecularDescriptor im
         int hBondAcceptors = 0;
 
         IAtomContainer ac;
-        try {
-            ac = (IAtomContainer) atomContainer.clone();
-        } catch (CloneNotSupportedException e) {
-            return getDummyDescriptorValue(e);
-        }
 
-        // aromaticity is detected prior to descriptor calculation if the respective parameter is set to true
+        // aromaticity is detected prior to descriptor calculation if the respective parameter is set to true,
+        // the atom typed and aromatic copy is shared by all descriptors of the molecule
 
         if (checkAromaticity) {
             try {
-                AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(ac);
-                Aromaticity.cdkLegacy().apply(ac);
+                ac = PerceptionContext.of(atomContainer).aromatic().container();
             } catch (CDKException e) {
                 return getDummyDescriptorValue(e);
             }
+        } else {
+            try {
+                ac = (IAtomContainer) atomContainer.clone();
+            } catch (CloneNotSupportedException e) {
+                return getDummyDescriptorValue(e);
+            }
         }
 
         //org.openscience.cdk.interfaces.IAtom[] atoms = ac.getAtoms();
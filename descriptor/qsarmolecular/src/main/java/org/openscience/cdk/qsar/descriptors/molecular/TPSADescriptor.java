@@ -21,7 +21,6 @@ package org.openscience.cdk.qsar.descriptors.molecular;
 import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
-import org.openscience.cdk.aromaticity.Aromaticity;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
@@ -32,9 +31,9 @@ import org.openscience.cdk.qsar.AbstractMolecularDescriptor;
 import org.openscience.cdk.qsar.DescriptorSpecification;
 import org.openscience.cdk.qsar.DescriptorValue;
 import org.openscience.cdk.qsar.IMolecularDescriptor;
+import org.openscience.cdk.qsar.PerceptionContext;
 import org.openscience.cdk.qsar.result.DoubleResult;
 import org.openscience.cdk.qsar.result.IDescriptorResult;
-import org.openscience.cdk.ringsearch.AllRingsFinder;
 import org.openscience.cdk.tools.CDKHydrogenAdder;
 import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
 
@@ -226,30 +225,23 @@ public class TPSADescriptor extends AbstractMolecularDescriptor implements IMole
      */
     @TestMethod("testCalculate_IAtomContainer")
     public DescriptorValue calculate(IAtomContainer atomContainer) {
-        IAtomContainer ac;
-        try {
-            ac = (IAtomContainer) atomContainer.clone();
-        } catch (CloneNotSupportedException e) {
-            return getDummyDescriptorValue(e);
-        }
         List<String> profiles = new ArrayList<String>();
 
-        // calculate the set of all rings
+        // the molecule is only read, the rings and (if the descriptor
+        // parameter is set to true) the atom typed and aromatic copy are
+        // shared by all descriptors of the molecule
+        PerceptionContext context = PerceptionContext.of(atomContainer);
+        IAtomContainer ac;
         IRingSet rs;
         try {
-            rs = (new AllRingsFinder()).findAllRings(ac);
+            if (checkAromaticity)
+                context = context.aromatic();
+            ac = context.container();
+            // calculate the set of all rings
+            rs = context.allRings();
         } catch (CDKException e) {
             return getDummyDescriptorValue(e);
         }
-        // check aromaticity if the descriptor parameter is set to true
-        if (checkAromaticity) {
-            try {
-                AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(ac);
-                Aromaticity.cdkLegacy().apply(ac);
-            } catch (CDKException e) {
-                return getDummyDescriptorValue(e);
-            }
-        }
 
         // iterate over all atoms of ac
         for (IAtom atom : ac.atoms()) {
@@ -25,6 +25,7 @@ import org.junit.runners.Suite.SuiteClasses;
 import org.openscience.cdk.coverage.QsarmolecularCoverageTest;
 import org.openscience.cdk.graph.matrix.TopologicalMatrixTest;
 import org.openscience.cdk.qsar.DescriptorEngineTest;
+import org.openscience.cdk.qsar.DescriptorMatrixTest;
 import org.openscience.cdk.qsar.DescriptorNamesTest;
 import org.openscience.cdk.qsar.descriptors.molecular.ALOGPDescriptorTest;
 import org.openscience.cdk.qsar.descriptors.molecular.APolDescriptorTest;
@@ -90,6 +91,7 @@ import org.openscience.cdk.qsar.descriptors.molecular.ZagrebIndexDescriptorTest;
         // Individual Tests - Please add correlatively  
     ChiIndexUtilsTest.class,
     DescriptorEngineTest.class,
+    DescriptorMatrixTest.class,
     DescriptorNamesTest.class,
 
 //      from cdk.test.qsar.molecular
@@ -32,6 +32,12 @@ import org.openscience.cdk.modeling.builder3d.ModelBuilder3D;
 import org.openscience.cdk.modeling.builder3d.TemplateHandler3D;
 import org.openscience.cdk.smiles.SmilesParser;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 /**
  * TestSuite that runs all tests for the DescriptorEngine.
  *
@@ -137,5 +143,56 @@ public class DescriptorEngineTest extends CDKTestCase {
     	Assert.assertEquals(loadedDescriptors, engine.getDescriptorClassNames().size());
     	Assert.assertEquals(loadedDescriptors, engine.getDescriptorSpecifications().size());
     }
-}
 
+    @Test
+    public void testBatchProcess() throws Exception {
+        DescriptorEngine engine = new DescriptorEngine(Arrays.asList(
+                "org.openscience.cdk.qsar.descriptors.molecular.AtomCountDescriptor",
+                "org.openscience.cdk.qsar.descriptors.molecular.ZagrebIndexDescriptor"),
+                                                       DefaultChemObjectBuilder.getInstance());
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        List<IAtomContainer> molecules = new ArrayList<IAtomContainer>();
+        for (String smi : new String[]{"CCO", "c1ccccc1", "CC(=O)O", "C1CCCCC1N"})
+            molecules.add(sp.parseSmiles(smi));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        DescriptorMatrix matrix = engine.process(molecules.iterator(), executor);
+        executor.shutdown();
+
+        Assert.assertEquals(2, matrix.getDescriptorCount());
+        Assert.assertEquals(4, matrix.getMoleculeCount());
+        for (int i = 0; i < molecules.size(); i++) {
+            engine.process(molecules.get(i));
+            for (int j = 0; j < matrix.getDescriptorCount(); j++) {
+                DescriptorValue value = molecules.get(i).getProperty(matrix.getSpecification(j));
+                Assert.assertEquals(Double.parseDouble(value.getValue().toString()),
+                                    matrix.getMatrix(j)[i][0], 0.001);
+            }
+        }
+    }
+
+    @Test
+    public void testBatchProcessOrder() throws Exception {
+        DescriptorEngine engine = new DescriptorEngine(Arrays.asList(
+                "org.openscience.cdk.qsar.descriptors.molecular.AtomCountDescriptor"),
+                                                       DefaultChemObjectBuilder.getInstance());
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        List<IAtomContainer> molecules = new ArrayList<IAtomContainer>();
+        String smi = "C";
+        for (int i = 0; i < 500; i++) {
+            molecules.add(sp.parseSmiles(smi));
+            smi += "C";
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        DescriptorMatrix matrix = engine.process(molecules.iterator(), executor);
+        executor.shutdown();
+
+        Assert.assertEquals(500, matrix.getMoleculeCount());
+        double[][] counts = matrix.getMatrix(0);
+        for (int i = 0; i < 500; i++) {
+            // all atoms including implicit hydrogens
+            Assert.assertEquals((i + 1) + (2 * (i + 1) + 2), counts[i][0], 0.001);
+        }
+    }
+}
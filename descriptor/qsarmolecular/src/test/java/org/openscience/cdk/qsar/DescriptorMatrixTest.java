@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.qsar;
+
+import org.junit.Test;
+import org.openscience.cdk.IImplementationSpecification;
+
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @cdk.module test-qsarmolecular
+ */
+public class DescriptorMatrixTest {
+
+    private final IImplementationSpecification spec1 = new DescriptorSpecification("http://example.org/#a", "a", "CDK");
+    private final IImplementationSpecification spec2 = new DescriptorSpecification("http://example.org/#b", "b", "CDK");
+
+    @Test public void descriptorCount() {
+        DescriptorMatrix matrix = new DescriptorMatrix(Arrays.asList(spec1, spec2),
+                                                       new String[][]{{"a"}, {"b1", "b2"}});
+        assertThat(matrix.getDescriptorCount(), is(2));
+    }
+
+    @Test public void moleculeCount() {
+        DescriptorMatrix matrix = new DescriptorMatrix(Arrays.asList(spec1, spec2),
+                                                       new String[][]{{"a"}, {"b1", "b2"}});
+        assertThat(matrix.getMoleculeCount(), is(0));
+        for (int i = 0; i < 100; i++)
+            matrix.add(new double[][]{{i}, {i, -i}});
+        assertThat(matrix.getMoleculeCount(), is(100));
+    }
+
+    @Test public void specification() {
+        DescriptorMatrix matrix = new DescriptorMatrix(Arrays.asList(spec1, spec2),
+                                                       new String[][]{{"a"}, {"b1", "b2"}});
+        assertThat(matrix.getSpecification(0), is(sameInstance(spec1)));
+        assertThat(matrix.getSpecification(1), is(sameInstance(spec2)));
+    }
+
+    @Test public void names() {
+        DescriptorMatrix matrix = new DescriptorMatrix(Arrays.asList(spec1, spec2),
+                                                       new String[][]{{"a"}, {"b1", "b2"}});
+        assertThat(matrix.getNames(0), is(new String[]{"a"}));
+        assertThat(matrix.getNames(1), is(new String[]{"b1", "b2"}));
+    }
+
+    @Test public void matrix() {
+        DescriptorMatrix matrix = new DescriptorMatrix(Arrays.asList(spec1, spec2),
+                                                       new String[][]{{"a"}, {"b1", "b2"}});
+        for (int i = 0; i < 100; i++)
+            matrix.add(new double[][]{{i}, {i, -i}});
+        double[][] a = matrix.getMatrix(0);
+        double[][] b = matrix.getMatrix(1);
+        assertThat(a.length, is(100));
+        assertThat(b.length, is(100));
+        for (int i = 0; i < 100; i++) {
+            assertThat(a[i], is(new double[]{i}));
+            assertThat(b[i], is(new double[]{i, -i}));
+        }
+    }
+
+    /**
+     * Adding after one matrix was accessed (and trimmed) and from an empty or
+     * single row matrix.
+     */
+    @Test public void addAfterAccess() {
+        DescriptorMatrix matrix = new DescriptorMatrix(Arrays.asList(spec1, spec2),
+                                                       new String[][]{{"a"}, {"b1", "b2"}});
+        assertThat(matrix.getMatrix(1).length, is(0));
+        matrix.add(new double[][]{{0}, {0, 0}});
+        assertThat(matrix.getMatrix(0).length, is(1));
+        for (int i = 1; i < 10; i++) {
+            matrix.add(new double[][]{{i}, {i, -i}});
+            assertThat(matrix.getMatrix(i % 2).length, is(i + 1));
+        }
+        assertThat(matrix.getMatrix(0)[9], is(new double[]{9}));
+        assertThat(matrix.getMatrix(1)[9], is(new double[]{9, -9}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mismatchedNames() {
+        new DescriptorMatrix(Arrays.asList(spec1, spec2), new String[][]{{"a"}});
+    }
+}
@@ -27,6 +27,7 @@ import com.google.common.collect.ImmutableSet;
 import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.config.Elements;
 import org.openscience.cdk.config.IsotopeFactory;
 import org.openscience.cdk.config.Isotopes;
 import org.openscience.cdk.exception.CDKException;
@@ -133,6 +134,24 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
                                                                  .add("R#")
                                                                  .build();
 
+    /**
+     * Periodic element symbols indexed by the characters of the symbol (see
+     * {@link #elementSymbol(String)}), allows the common atom symbols to be
+     * read without creating a substring.
+     */
+    private static final String[] ELEMENT_SYMBOLS = new String[26 * 27];
+
+    static {
+        for (Elements e : Elements.values()) {
+            String symbol = e.symbol();
+            if (e.number() < 1 || symbol.length() < 1 || symbol.length() > 2)
+                continue;
+            int idx = symbolIndex(symbol.charAt(0), symbol.length() == 2 ? symbol.charAt(1) : ' ');
+            if (idx >= 0)
+                ELEMENT_SYMBOLS[idx] = symbol.intern();
+        }
+    }
+
     public MDLV2000Reader() {
         this(new StringReader(""));
     }
@@ -375,42 +394,39 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
             int[] explicitValence = new int[nAtoms];
 
             boolean hasX = false, hasY = false, hasZ = false;
-            
+
+            // coordinates are buffered and only one point (2D or 3D) is
+            // created once the dimensionality of the block is known
+            final double[] coords = new double[3 * nAtoms];
+
             for (int i = 0; i < nAtoms; i++) {
                 line = input.readLine();
                 linecount++;
                 
-                final IAtom atom = readAtomFast(line, molecule.getBuilder(), linecount);
+                final IAtom atom = readAtomFast(line, molecule.getBuilder(), linecount, coords, 3 * i);
                 
                 atoms[i] = atom;
 
-                Point3d p = atom.getPoint3d();
-                hasX = hasX || p.x != 0d;
-                hasY = hasY || p.y != 0d;
-                hasZ = hasZ || p.z != 0d;
+                hasX = hasX || coords[3 * i] != 0d;
+                hasY = hasY || coords[3 * i + 1] != 0d;
+                hasZ = hasZ || coords[3 * i + 2] != 0d;
             }
             
             // convert to 2D, if totalZ == 0
             if (!hasX && !hasY && !hasZ) {
                 if (nAtoms == 1) {
+                    atoms[0].setPoint3d(new Point3d(0, 0, 0));
                     atoms[0].setPoint2d(new Point2d(0, 0));
                 }
-                else {
-                    for (IAtom atomToUpdate : atoms) {
-                        atomToUpdate.setPoint3d(null);
-                    }
+            }
+            else if (!hasZ && !forceReadAs3DCoords.isSet()) {
+                for (int i = 0; i < nAtoms; i++) {
+                    atoms[i].setPoint2d(new Point2d(coords[3 * i], coords[3 * i + 1]));
                 }
             }
-            else if (!hasZ) {
-
-                if (!forceReadAs3DCoords.isSet()) {
-                    for (IAtom atomToUpdate : atoms) {
-                        Point3d p3d = atomToUpdate.getPoint3d();
-                        if (p3d != null) {
-                            atomToUpdate.setPoint2d(new Point2d(p3d.x, p3d.y));
-                            atomToUpdate.setPoint3d(null);
-                        }
-                    }
+            else {
+                for (int i = 0; i < nAtoms; i++) {
+                    atoms[i].setPoint3d(new Point3d(coords[3 * i], coords[3 * i + 1], coords[3 * i + 2]));
                 }
             }
 
@@ -618,6 +634,31 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
     IAtom readAtomFast(String             line,
                        IChemObjectBuilder builder,
                        int                lineNum) throws CDKException, IOException {
+        final double[] xyz = new double[3];
+        final IAtom atom = readAtomFast(line, builder, lineNum, xyz, 0);
+        atom.setPoint3d(new Point3d(xyz[0], xyz[1], xyz[2]));
+        return atom;
+    }
+
+    /**
+     * Parse an atom line from the atom block storing the coordinates in the
+     * provided buffer (at 'offset', 'offset+1', 'offset+2') rather than
+     * setting them on the atom. The atom symbol of periodic elements is read
+     * directly from the line without creating a substring.
+     *
+     * @param line    input line
+     * @param builder chem object builder to create the atom
+     * @param lineNum the line number - for printing error messages
+     * @param coords  buffer to store the x, y and z coordinates in
+     * @param offset  index in the buffer to store the coordinates at
+     * @return a new atom instance
+     * @see #readAtomFast(String, IChemObjectBuilder, int)
+     */
+    private IAtom readAtomFast(String             line,
+                               IChemObjectBuilder builder,
+                               int                lineNum,
+                               double[]           coords,
+                               int                offset) throws CDKException, IOException {
 
         // The line may be truncated and it's checked in reverse at the specified
         // lengths:
@@ -660,16 +701,19 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
                 x      = readMDLCoordinate(line, 0);
                 y      = readMDLCoordinate(line, 10);
                 z      = readMDLCoordinate(line, 20);
-                symbol = line.substring(31, 34).trim().intern();
+                symbol = elementSymbol(line);
                 break;
              default:
                  handleError("invalid line length", lineNum, 0, 0);
                  throw new CDKException("invalid line length, " + length + ": " + line);
         }
 
-        IAtom atom = createAtom(symbol, builder, lineNum);
+        IAtom atom = symbol != null ? builder.newInstance(IAtom.class, symbol)
+                                    : createAtom(line.substring(31, 34).trim().intern(), builder, lineNum);
 
-        atom.setPoint3d(new Point3d(x, y, z));
+        coords[offset]     = x;
+        coords[offset + 1] = y;
+        coords[offset + 2] = z;
         atom.setFormalCharge(charge);
         atom.setStereoParity(parity);
 
@@ -744,21 +788,24 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
                 throw new CDKException("invalid line length: " + length + " " + line);
         }
         
-        IBond bond = builder.newInstance(IBond.class, atoms[u], atoms[v]);
+        // the order and stereo of the common bond types are set on
+        // construction (one reflective creation, no change notifications)
+        IBond bond;
         
         switch (type) {
             case 1: // single
-                bond.setOrder(IBond.Order.SINGLE);
-                bond.setStereo(toStereo(stereo, type));
+                bond = builder.newInstance(IBond.class, atoms[u], atoms[v],
+                                           IBond.Order.SINGLE, toStereo(stereo, type));
                 break;
             case 2: // double
-                bond.setOrder(IBond.Order.DOUBLE);
-                bond.setStereo(toStereo(stereo, type));
+                bond = builder.newInstance(IBond.class, atoms[u], atoms[v],
+                                           IBond.Order.DOUBLE, toStereo(stereo, type));
                 break;
             case 3: // triple
-                bond.setOrder(IBond.Order.TRIPLE);
+                bond = builder.newInstance(IBond.class, atoms[u], atoms[v], IBond.Order.TRIPLE);
                 break;
             case 4: // aromatic
+                bond = builder.newInstance(IBond.class, atoms[u], atoms[v]);
                 bond.setOrder(IBond.Order.UNSET);
                 bond.setFlag(CDKConstants.ISAROMATIC, true);
                 bond.setFlag(CDKConstants.SINGLE_OR_DOUBLE, true);
@@ -769,7 +816,7 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
             case 6: // single or aromatic
             case 7: // double or aromatic
             case 8: // any
-                bond = CTFileQueryBond.ofType(bond, type);
+                bond = CTFileQueryBond.ofType(builder.newInstance(IBond.class, atoms[u], atoms[v]), type);
                 break;
             default:
                 throw new CDKException("unrecognised bond type: " + type + ", " + line);
@@ -980,6 +1027,41 @@ public class MDLV2000Reader extends DefaultChemObjectReader {
         return i + 1;
     }
 
+    /**
+     * Read the symbol of a periodic element from the 'aaa' columns of an atom
+     * line. Only correctly capitalised one or two letter symbols (left aligned)
+     * are recognised, any other input (pseudo atoms, non-standard case)
+     * returns null and should be read with {@link #createAtom}.
+     *
+     * @param line an atom line of at least 32 characters
+     * @return the (interned) element symbol, or null
+     */
+    static String elementSymbol(final String line) {
+        final char c1 = line.length() > 32 ? line.charAt(32) : ' ';
+        final char c2 = line.length() > 33 ? line.charAt(33) : ' ';
+        if (c2 != ' ')
+            return null;
+        final int idx = symbolIndex(line.charAt(31), c1);
+        return idx < 0 ? null : ELEMENT_SYMBOLS[idx];
+    }
+
+    /**
+     * Index of a one or two letter symbol in {@link #ELEMENT_SYMBOLS}.
+     *
+     * @param c0 first character, upper case
+     * @param c1 second character, lower case or a space
+     * @return the index, or -1 if the characters are not a valid symbol
+     */
+    private static int symbolIndex(final char c0, final char c1) {
+        if (c0 < 'A' || c0 > 'Z')
+            return -1;
+        if (c1 == ' ')
+            return 27 * (c0 - 'A');
+        if (c1 < 'a' || c1 > 'z')
+            return -1;
+        return 27 * (c0 - 'A') + 1 + (c1 - 'a');
+    }
+
     /**
      * Create an atom for the provided symbol. If the atom symbol is a periodic
      * element a new 'Atom' is created otherwise if the symbol is an allowed
@@ -0,0 +1,398 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.io.iterator;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A multi-threaded SD file reader for large files. The file is memory mapped
+ * and split on the '$$$$' record separators by a background thread, each
+ * record is then parsed by a pool of workers using the {@link
+ * IteratingSDFReader} (MDL V2000 and V3000 molfiles and the SD data items).
+ * The molecules can be provided in the order they appear in the file or, for
+ * maximum throughput, in the order they are parsed. The number of records
+ * that are split but not yet consumed is bounded, memory use therefore
+ * remains constant for any size of file.
+ *
+ * <blockquote><pre>
+ * ParallelSDFReader reader = new ParallelSDFReader(new File("library.sdf"),
+ *                                                  SilentChemObjectBuilder.getInstance());
+ * try {
+ *     while (reader.hasNext()) {
+ *         IAtomContainer container = reader.next();
+ *     }
+ * } finally {
+ *     reader.close();
+ * }
+ * </pre></blockquote>
+ *
+ * If a record can not be parsed the reader stops (like the {@link
+ * IteratingSDFReader}) unless it was asked to skip broken records. When the
+ * molecules are not ordered, records which precede a broken record in the
+ * file may not have been provided when the reader stops.
+ *
+ * @cdk.module io
+ * @cdk.githash
+ * @cdk.keyword file format, SDF
+ * @see IteratingSDFReader
+ */
+@TestClass("org.openscience.cdk.io.iterator.ParallelSDFReaderTest")
+public final class ParallelSDFReader implements Iterator<IAtomContainer>, Closeable {
+
+    private static final ILoggingTool logger = LoggingToolFactory.createLoggingTool(ParallelSDFReader.class);
+
+    /** Initial size of the region of the file mapped in to memory. */
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /** Marks the end of the records. */
+    private static final Record END = new Record(null, false);
+
+    /** Marks a record which could not be parsed. */
+    private static final Record BROKEN = new Record(null, false);
+
+    private final FileChannel        channel;
+    private final IChemObjectBuilder builder;
+    private final boolean            ordered, skip;
+    private final ExecutorService    workers;
+    private final Thread             splitter;
+
+    /** Limit on the number records that are split but not yet consumed. */
+    private final Semaphore capacity;
+
+    /** Parsed records (unordered) or pending parses (ordered). */
+    private final BlockingQueue<Future<Record>> queue = new LinkedBlockingQueue<Future<Record>>();
+
+    /** Each worker reuses an iterating reader. */
+    private final ThreadLocal<IteratingSDFReader> readers = new ThreadLocal<IteratingSDFReader>() {
+        @Override protected IteratingSDFReader initialValue() {
+            return new IteratingSDFReader(new InputStreamReader(new ByteArrayInputStream(new byte[0])), builder);
+        }
+    };
+
+    /** Consumer state. */
+    private IAtomContainer next;
+    private boolean        done;
+    private int            received, total = -1;
+
+    /**
+     * Create a reader for an SD file which parses records on a worker thread
+     * for each available processor, provides molecules in file order and stops
+     * at the first broken record.
+     *
+     * @param file    the SD file
+     * @param builder chem object builder
+     * @throws IOException the file could not be opened
+     */
+    @TestMethod("ordered")
+    public ParallelSDFReader(File file, IChemObjectBuilder builder) throws IOException {
+        this(file, builder, Runtime.getRuntime().availableProcessors(), true, false);
+    }
+
+    /**
+     * Create a reader for an SD file.
+     *
+     * @param file    the SD file
+     * @param builder chem object builder
+     * @param threads number of threads to parse the records with
+     * @param ordered provide the molecules in the same order as the file
+     * @param skip    skip broken records, otherwise stop at the first
+     * @throws IOException the file could not be opened
+     */
+    @TestMethod("unordered,skipBrokenRecords,stopAtBrokenRecord")
+    public ParallelSDFReader(File file, IChemObjectBuilder builder, int threads, boolean ordered, boolean skip)
+            throws IOException {
+        this(file, builder, threads, ordered, skip, WINDOW_SIZE);
+    }
+
+    /**
+     * Create a reader for an SD file mapping regions of the given size.
+     *
+     * @param file    the SD file
+     * @param builder chem object builder
+     * @param threads number of threads to parse the records with
+     * @param ordered provide the molecules in the same order as the file
+     * @param skip    skip broken records, otherwise stop at the first
+     * @param window  initial size of the mapped regions
+     * @throws IOException the file could not be opened
+     */
+    ParallelSDFReader(File file, IChemObjectBuilder builder, int threads, boolean ordered, boolean skip,
+                      final int window) throws IOException {
+        if (threads < 1)
+            throw new IllegalArgumentException("at least one thread is required");
+        this.channel  = new FileInputStream(file).getChannel();
+        this.builder  = builder;
+        this.ordered  = ordered;
+        this.skip     = skip;
+        this.capacity = new Semaphore(64 * threads);
+        this.workers  = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ParallelSDFReader-worker");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.splitter = new Thread(new Runnable() {
+            @Override public void run() {
+                split(window);
+            }
+        }, "ParallelSDFReader-splitter");
+        this.splitter.setDaemon(true);
+        this.splitter.start();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("ordered,unordered")
+    @Override public boolean hasNext() {
+        while (next == null && !done) {
+            Record record = take();
+            if (record == END) {
+                done = true;
+            } else if (record == BROKEN) {
+                done = !skip;
+            } else {
+                next = record.container;
+            }
+        }
+        return next != null;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("ordered,unordered")
+    @Override public IAtomContainer next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        IAtomContainer container = next;
+        next = null;
+        return container;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("remove")
+    @Override public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stop reading, any remaining records are discarded.
+     *
+     * @throws IOException the file could not be closed
+     */
+    @TestMethod("ordered,stopAtBrokenRecord")
+    @Override public void close() throws IOException {
+        done = true;
+        splitter.interrupt();
+        workers.shutdownNow();
+        channel.close();
+    }
+
+    /**
+     * Take the next record from the queue, when unordered the end marker
+     * carries the number of records and may arrive before the last records.
+     *
+     * @return the next record
+     */
+    private Record take() {
+        try {
+            if (!ordered && total == received)
+                return END;
+            Record record = queue.take().get();
+            if (record == END) {
+                return END;
+            } else if (record.end) {
+                total = record.count;
+                return take();
+            }
+            received++;
+            capacity.release();
+            return record;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return END;
+        } catch (ExecutionException e) {
+            logger.error("Error while reading next molecule: " + e.getCause().getMessage());
+            logger.debug(e.getCause());
+            received++;
+            capacity.release();
+            return BROKEN;
+        }
+    }
+
+    /**
+     * Split the mapped file on the record separators and submit each record to
+     * be parsed. The splitting blocks when the capacity is exhausted.
+     *
+     * @param window initial size of the mapped regions
+     */
+    private void split(int window) {
+        final int[] count = new int[1];
+        try {
+            SDRecordSplitter.split(channel, window, new SDRecordSplitter.Handler() {
+                @Override public void record(MappedByteBuffer region, long offset, int beg, int end)
+                        throws IOException {
+                    try {
+                        submit(copy(region, beg, end));
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+                    count[0]++;
+                }
+            });
+        } catch (InterruptedIOException e) {
+            // reader was closed
+        } catch (RejectedExecutionException e) {
+            // reader was closed
+        } catch (IOException e) {
+            if (!done) {
+                logger.error("Error while splitting SD file: " + e.getMessage());
+                logger.debug(e);
+            }
+        } finally {
+            finish(count[0]);
+        }
+    }
+
+    /**
+     * Submit a record to be parsed.
+     *
+     * @param bytes the record
+     * @throws InterruptedException the reader was closed
+     */
+    private void submit(final byte[] bytes) throws InterruptedException {
+        capacity.acquire();
+        Callable<Record> parse = new Callable<Record>() {
+            @Override public Record call() throws Exception {
+                return parse(bytes);
+            }
+        };
+        if (ordered) {
+            queue.put(workers.submit(parse));
+        } else {
+            final FutureTask<Record> task = new FutureTask<Record>(parse) {
+                @Override protected void done() {
+                    queue.add(this);
+                }
+            };
+            workers.execute(task);
+        }
+    }
+
+    /**
+     * Signal that all records have been submitted.
+     *
+     * @param count the number of records submitted
+     */
+    private void finish(int count) {
+        FutureTask<Record> marker = new FutureTask<Record>(new Runnable() {
+            @Override public void run() {
+            }
+        }, ordered ? END : new Record(count));
+        marker.run();
+        queue.add(marker);
+    }
+
+    /**
+     * Parse a record with the worker's reader.
+     *
+     * @param bytes the record
+     * @return the parsed record
+     */
+    private Record parse(byte[] bytes) {
+        IteratingSDFReader reader = readers.get();
+        reader.setReader(new ByteArrayInputStream(bytes));
+        if (reader.hasNext())
+            return new Record(reader.next(), false);
+        return BROKEN;
+    }
+
+    /**
+     * Copy a region of the buffer.
+     *
+     * @param buffer the mapped file
+     * @param beg    start of the region
+     * @param end    end of the region (exclusive)
+     * @return the bytes of the region
+     */
+    private static byte[] copy(MappedByteBuffer buffer, int beg, int end) {
+        byte[] bytes = new byte[end - beg];
+        buffer.position(beg);
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * A parsed record or the end marker (with a count of the records).
+     */
+    private static final class Record {
+
+        private final IAtomContainer container;
+        private final boolean        end;
+        private final int            count;
+
+        private Record(IAtomContainer container, boolean end) {
+            this.container = container;
+            this.end = end;
+            this.count = 0;
+        }
+
+        private Record(int count) {
+            this.container = null;
+            this.end = true;
+            this.count = count;
+        }
+    }
+}
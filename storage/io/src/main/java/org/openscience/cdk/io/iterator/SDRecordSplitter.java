@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.io.iterator;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Splits an SD file on the '$$$$' record separators. The file is memory
+ * mapped in regions (windows), a region ends after the last separator it
+ * contains and the next region starts at the following record. If a record
+ * does not fit in a region the size of the region is doubled. The last
+ * record of the file need not be terminated by a separator, trailing white
+ * space is ignored.
+ *
+ * The splitter is used by the {@link ParallelSDFReader} and the {@link
+ * org.openscience.cdk.io.random.MappedSDFReader}.
+ *
+ * @cdk.module io
+ * @cdk.githash
+ * @cdk.keyword file format, SDF
+ */
+@TestClass("org.openscience.cdk.io.iterator.SDRecordSplitterTest")
+public final class SDRecordSplitter {
+
+    /**
+     * Receives each record of the file in order.
+     */
+    public interface Handler {
+
+        /**
+         * A record was found, the bytes from <i>beg</i> to <i>end</i> of the
+         * mapped region are the record, including the separator line if
+         * present. The region is only valid for the duration of the call.
+         *
+         * @param region the mapped region containing the record
+         * @param offset offset of the region in the file
+         * @param beg    start of the record in the region
+         * @param end    end of the record in the region (exclusive)
+         * @throws IOException the record could not be handled, splitting
+         *                     stops
+         */
+        void record(MappedByteBuffer region, long offset, int beg, int end) throws IOException;
+    }
+
+    private SDRecordSplitter() {
+    }
+
+    /**
+     * Split the file of a channel on the record separators and pass each
+     * record to the handler.
+     *
+     * @param channel the SD file
+     * @param window  initial size of the mapped regions
+     * @param handler receives the records
+     * @return the end of the last record, the file length unless the file
+     *         ends with white space
+     * @throws IOException the file could not be read, a record was too large
+     *                     to map or the handler failed
+     */
+    @TestMethod("split,smallWindow,unterminated,trailingWhiteSpace,carriageReturns")
+    public static long split(FileChannel channel, int window, Handler handler) throws IOException {
+        final long size = channel.size();
+        long pos = 0;
+        while (pos < size) {
+            int len = (int) Math.min(window, size - pos);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos, len);
+
+            int start = 0, lineStart = 0;
+            for (int i = 0; i < len; i++) {
+                if (buffer.get(i) != '\n')
+                    continue;
+                if (isSeparator(buffer, lineStart, i)) {
+                    handler.record(buffer, pos, start, i + 1);
+                    start = i + 1;
+                }
+                lineStart = i + 1;
+            }
+
+            if (pos + len == size) {
+                // last record may not be terminated
+                if (!isBlank(buffer, start, len)) {
+                    handler.record(buffer, pos, start, len);
+                    start = len;
+                }
+                pos += start;
+                break;
+            } else if (start == 0) {
+                // the record was larger than the window
+                if (window == Integer.MAX_VALUE)
+                    throw new IOException("SD record at offset " + pos + " is too large");
+                window = (int) Math.min(Integer.MAX_VALUE, 2L * window);
+            } else {
+                pos += start;
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Check if a line in the buffer is the '$$$$' record separator, a
+     * trailing carriage return is permitted.
+     *
+     * @param buffer the mapped file
+     * @param beg    start of the line
+     * @param end    end of the line (exclusive, excludes the new line)
+     * @return the line is a record separator
+     */
+    private static boolean isSeparator(MappedByteBuffer buffer, int beg, int end) {
+        if (end > beg && buffer.get(end - 1) == '\r')
+            end--;
+        if (end - beg != 4)
+            return false;
+        for (int i = beg; i < end; i++)
+            if (buffer.get(i) != '$')
+                return false;
+        return true;
+    }
+
+    /**
+     * Check if a region of the buffer contains only white space.
+     *
+     * @param buffer the mapped file
+     * @param beg    start of the region
+     * @param end    end of the region (exclusive)
+     * @return the region is blank
+     */
+    private static boolean isBlank(MappedByteBuffer buffer, int beg, int end) {
+        for (int i = beg; i < end; i++)
+            if (buffer.get(i) > ' ')
+                return false;
+        return true;
+    }
+}
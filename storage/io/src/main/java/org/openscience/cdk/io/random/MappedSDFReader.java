@@ -0,0 +1,372 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.io.random;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.io.iterator.IteratingSDFReader;
+import org.openscience.cdk.io.iterator.SDRecordSplitter;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Random access to the records of an SD file using memory mapped I/O. The
+ * byte offsets of the records are stored in a compact binary index file
+ * (a header and a long[] of offsets). The index is memory mapped when opened
+ * so opening an existing index is independent of the number of records. The
+ * index is created on first use and recreated if the SD file has changed.
+ *
+ * <p/>Unlike the {@link RandomAccessSDFReader}, {@link #readRecord(int)} is
+ * not synchronized and may be called concurrently from many threads. There is
+ * no cursor, records are only accessed by their (zero-based) number.
+ *
+ * <blockquote><pre>
+ * MappedSDFReader reader = new MappedSDFReader(new File("library.sdf"),
+ *                                              SilentChemObjectBuilder.getInstance());
+ * IAtomContainer container = reader.readRecord(41);
+ * reader.close();
+ * </pre></blockquote>
+ *
+ * The index stores a header of five longs (magic number, file length, file
+ * modification time, number of records and length of the longest record)
+ * followed by the offsets of the records and the length of the file. An index
+ * is never modified in place (it may be mapped by another reader), it is
+ * written to a temporary file which is then renamed.
+ *
+ * @cdk.module io
+ * @cdk.githash
+ * @cdk.keyword file format, SDF
+ * @see RandomAccessSDFReader
+ */
+@TestClass("org.openscience.cdk.io.random.MappedSDFReaderTest")
+public final class MappedSDFReader implements Closeable {
+
+    private static final ILoggingTool logger = LoggingToolFactory.createLoggingTool(MappedSDFReader.class);
+
+    /** Identifies (and versions) the index file - 'CDKSDFX1'. */
+    private static final long MAGIC = 0x43444B5344465831L;
+
+    /** Number of bytes in the index header. */
+    private static final int HEADER = 5 * 8;
+
+    /** Size of the regions the SD file is mapped in. */
+    private static final int CHUNK_SIZE = 1 << 30;
+
+    /** Initial size of the regions mapped whilst indexing. */
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final FileChannel        channel;
+    private final IChemObjectBuilder builder;
+
+    /** Offsets of each record, the last entry is the file length. */
+    private final LongBuffer offsets;
+
+    /** Number of records. */
+    private final int records;
+
+    /** The mapped SD file, each chunk overlaps the next by the longest record. */
+    private final MappedByteBuffer[] chunks;
+
+    private volatile boolean closed = false;
+
+    /** Each thread reuses an iterating reader to parse records. */
+    private final ThreadLocal<IteratingSDFReader> readers = new ThreadLocal<IteratingSDFReader>() {
+        @Override protected IteratingSDFReader initialValue() {
+            return new IteratingSDFReader(new InputStreamReader(new ByteArrayInputStream(new byte[0])), builder);
+        }
+    };
+
+    /**
+     * Open an SD file for random access. The index is stored in the
+     * temporary directory ({@link #getIndexFile(String)}).
+     *
+     * @param file    the SD file
+     * @param builder chem object builder
+     * @throws IOException the SD file or index could not be read
+     */
+    @TestMethod("readRecords")
+    public MappedSDFReader(File file, IChemObjectBuilder builder) throws IOException {
+        this(file, getIndexFile(file.getAbsolutePath()), builder);
+    }
+
+    /**
+     * Open an SD file for random access using the given index file. The
+     * index is created if it does not exist or is for a different version of
+     * the SD file.
+     *
+     * @param file    the SD file
+     * @param index   the index file
+     * @param builder chem object builder
+     * @throws IOException the SD file or index could not be read
+     */
+    @TestMethod("reuseIndex,staleIndex")
+    public MappedSDFReader(File file, File index, IChemObjectBuilder builder) throws IOException {
+        this.builder = builder;
+        this.channel = new FileInputStream(file).getChannel();
+
+        boolean opened = false;
+        try {
+            if (!isValid(index, file)) {
+                long before = System.currentTimeMillis();
+                createIndex(file, index);
+                logger.info("Index created in " + (System.currentTimeMillis() - before) + " ms.");
+            }
+
+            FileChannel indexChannel = new RandomAccessFile(index, "r").getChannel();
+            try {
+                ByteBuffer header = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+                long count = header.getLong(24);
+                long longest = header.getLong(32);
+                if (count >= Integer.MAX_VALUE / 8 || longest >= CHUNK_SIZE)
+                    throw new IOException("SD file is too large to index: " + file);
+                this.records = (int) count;
+                this.offsets = indexChannel.map(FileChannel.MapMode.READ_ONLY, HEADER, 8 * (count + 1)).asLongBuffer();
+                this.chunks = map(channel, (int) longest);
+            } finally {
+                // the mappings remain valid after the channel is closed
+                indexChannel.close();
+            }
+            opened = true;
+        } finally {
+            if (!opened)
+                channel.close();
+        }
+    }
+
+    /**
+     * The number of records in the SD file.
+     *
+     * @return number of records
+     */
+    @TestMethod("readRecords")
+    public int size() {
+        return records;
+    }
+
+    /**
+     * Read the record with the given (zero-based) number. This method may be
+     * called concurrently.
+     *
+     * @param record the record number
+     * @return the molecule of the record
+     * @throws CDKException the record number was invalid or the record could
+     *                      not be parsed
+     */
+    @TestMethod("readRecords,concurrentReads,invalidRecord")
+    public IAtomContainer readRecord(int record) throws CDKException {
+        IteratingSDFReader reader = readers.get();
+        reader.setReader(new ByteArrayInputStream(readContent(record)));
+        if (!reader.hasNext())
+            throw new CDKException("Could not read record " + record);
+        return reader.next();
+    }
+
+    /**
+     * Access the raw bytes of the record with the given (zero-based) number.
+     * This method may be called concurrently.
+     *
+     * @param record the record number
+     * @return the bytes of the record
+     * @throws CDKException the record number was invalid
+     */
+    @TestMethod("readContent")
+    public byte[] readContent(int record) throws CDKException {
+        if (closed)
+            throw new CDKException("Reader has been closed");
+        if (record < 0 || record >= records)
+            throw new CDKException("No such record " + record);
+
+        long beg = offsets.get(record);
+        int  len = (int) (offsets.get(record + 1) - beg);
+
+        // absolute gets do not modify the shared buffer
+        MappedByteBuffer chunk = chunks[(int) (beg / CHUNK_SIZE)];
+        int offset = (int) (beg % CHUNK_SIZE);
+        byte[] bytes = new byte[len];
+        for (int i = 0; i < len; i++)
+            bytes[i] = chunk.get(offset + i);
+        return bytes;
+    }
+
+    /**
+     * Close the SD file, records can no longer be read.
+     *
+     * @throws IOException the file could not be closed
+     */
+    @TestMethod("readRecords")
+    @Override public void close() throws IOException {
+        closed = true;
+        channel.close();
+    }
+
+    /**
+     * Default location of the index for an SD file,
+     * <i>filename</i>_<i>key</i>_cdk.offsets in the temporary directory
+     * ("java.io.tmpdir"). The key is a hash of the absolute path, length and
+     * modification time of the SD file such that files with the same name in
+     * different directories, or different versions of a file, do not share
+     * an index.
+     *
+     * @param filename path of the SD file
+     * @return the index file
+     */
+    @TestMethod("readRecords,indexFileKey")
+    public static File getIndexFile(String filename) {
+        File file = new File(filename).getAbsoluteFile();
+        // 64-bit FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        String path = file.getPath();
+        for (int i = 0; i < path.length(); i++)
+            hash = (hash ^ path.charAt(i)) * 0x100000001b3L;
+        hash = (hash ^ file.length()) * 0x100000001b3L;
+        hash = (hash ^ file.lastModified()) * 0x100000001b3L;
+        return new File(System.getProperty("java.io.tmpdir"),
+                        file.getName() + "_" + Long.toHexString(hash) + "_cdk.offsets");
+    }
+
+    /**
+     * Map the SD file in regions of {@link #CHUNK_SIZE}, each region extends
+     * past the end of the chunk by the length of the longest record such that
+     * every record lies entirely in the region that it starts in.
+     *
+     * @param channel the SD file
+     * @param longest length of the longest record
+     * @return the mapped regions
+     * @throws IOException the file could not be mapped
+     */
+    private static MappedByteBuffer[] map(FileChannel channel, int longest) throws IOException {
+        long size = channel.size();
+        MappedByteBuffer[] chunks = new MappedByteBuffer[(int) Math.max(1, (size + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+        for (int i = 0; i < chunks.length; i++) {
+            long pos = (long) i * CHUNK_SIZE;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(size - pos, CHUNK_SIZE + longest));
+        }
+        return chunks;
+    }
+
+    /**
+     * Check the index exists and was created for the current version of the
+     * SD file.
+     *
+     * @param index the index file
+     * @param file  the SD file
+     * @return the index can be used
+     */
+    private static boolean isValid(File index, File file) throws IOException {
+        if (!index.exists() || index.length() < HEADER)
+            return false;
+        RandomAccessFile in = new RandomAccessFile(index, "r");
+        try {
+            return in.readLong() == MAGIC && in.readLong() == file.length() && in.readLong() == file.lastModified()
+                    && index.length() == HEADER + 8 * (in.readLong() + 1);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Create the index by splitting the mapped SD file on the '$$$$' record
+     * separators. The index is written to a temporary file in the same
+     * directory which then replaces the index, an existing index may be
+     * mapped by another reader and must not be truncated.
+     *
+     * @param file  the SD file
+     * @param index the index file to write
+     * @throws IOException the file could not be read or the index written
+     */
+    private void createIndex(File file, File index) throws IOException {
+        File tmp = File.createTempFile(index.getName(), ".tmp", index.getAbsoluteFile().getParentFile());
+        try {
+            writeIndex(file, tmp);
+            if (!tmp.renameTo(index)) {
+                // another reader may have created the index concurrently,
+                // some platforms do not replace an existing file on rename
+                if (!isValid(index, file) && !(index.delete() && tmp.renameTo(index)))
+                    throw new IOException("Could not create index: " + index);
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Write the index by splitting the mapped SD file on the '$$$$' record
+     * separators. The offsets are written as they are found and the header is
+     * completed at the end.
+     *
+     * @param file  the SD file
+     * @param index the index file to write
+     * @throws IOException the file could not be read or the index written
+     */
+    private void writeIndex(File file, File index) throws IOException {
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(index), 1 << 16));
+        // number of records and length of the longest
+        final long[] stats = new long[2];
+        try {
+            for (int i = 0; i < 5; i++)
+                out.writeLong(0);
+            long last = SDRecordSplitter.split(channel, WINDOW_SIZE, new SDRecordSplitter.Handler() {
+                @Override public void record(MappedByteBuffer region, long offset, int beg, int end)
+                        throws IOException {
+                    out.writeLong(offset + beg);
+                    stats[0]++;
+                    stats[1] = Math.max(stats[1], end - beg);
+                }
+            });
+            // end of the last record
+            out.writeLong(last);
+        } finally {
+            out.close();
+        }
+
+        RandomAccessFile header = new RandomAccessFile(index, "rw");
+        try {
+            header.writeLong(MAGIC);
+            header.writeLong(file.length());
+            header.writeLong(file.lastModified());
+            header.writeLong(stats[0]);
+            header.writeLong(stats[1]);
+        } finally {
+            header.close();
+        }
+    }
+}
@@ -275,4 +275,52 @@ public class MDLV2000AtomBlockTest {
                    is(closeTo(7.8089, 0.1)));
     }
 
+    @Test public void elementSymbol() throws Exception {
+        assertThat(MDLV2000Reader.elementSymbol("    7.8089   -1.3194    0.0000 C   0  0  0  0  0  0  0  0  0  0  0  0"),
+                   is("C"));
+        assertThat(MDLV2000Reader.elementSymbol("    7.8089   -1.3194    0.0000 Cl  0  0  0  0  0  0  0  0  0  0  0  0"),
+                   is("Cl"));
+        assertThat(MDLV2000Reader.elementSymbol("    7.8089   -1.3194    0.0000 Br"),
+                   is("Br"));
+        assertThat(MDLV2000Reader.elementSymbol("    7.8089   -1.3194    0.0000 N"),
+                   is("N"));
+    }
+
+    @Test public void elementSymbol_interned() throws Exception {
+        String symbol = MDLV2000Reader.elementSymbol("    7.8089   -1.3194    0.0000 Na  0  0  0  0  0  0  0  0  0  0  0  0");
+        assertTrue(symbol == "Na");
+    }
+
+    /** Pseudo atoms and non-standard symbols are not handled. */
+    @Test public void elementSymbol_notPeriodic() throws Exception {
+        assertThat(MDLV2000Reader.elementSymbol("    7.8089   -1.3194    0.0000 R#  0  0  0  0  0  0  0  0  0  0  0  0"),
+                   is(nullValue()));
+        assertThat(MDLV2000Reader.elementSymbol("    7.8089   -1.3194    0.0000 LP  0  0  0  0  0  0  0  0  0  0  0  0"),
+                   is(nullValue()));
+        assertThat(MDLV2000Reader.elementSymbol("    7.8089   -1.3194    0.0000 CL  0  0  0  0  0  0  0  0  0  0  0  0"),
+                   is(nullValue()));
+        assertThat(MDLV2000Reader.elementSymbol("    7.8089   -1.3194    0.0000  C  0  0  0  0  0  0  0  0  0  0  0  0"),
+                   is(nullValue()));
+        assertThat(MDLV2000Reader.elementSymbol("    7.8089   -1.3194    0.0000 Xx  0  0  0  0  0  0  0  0  0  0  0  0"),
+                   is(nullValue()));
+        assertThat(MDLV2000Reader.elementSymbol("    7.8089   -1.3194    0.0000 RNA 0  0  0  0  0  0  0  0  0  0  0  0"),
+                   is(nullValue()));
+    }
+
+    @Test public void symbol_nonStandardCase() throws Exception {
+        IAtom atom = reader.readAtomFast("    7.8089   -1.3194    0.0000 CL  0  0  0  0  0  0  0  0  0  0  0  0",
+                                         builder,
+                                         1);
+        assertThat(atom.getSymbol(), is("CL"));
+    }
+
+    @Test public void coordinates() throws Exception {
+        IAtom atom = reader.readAtomFast("    7.8089   -1.3194    2.0000 C   0  0  0  0  0  0  0  0  0  0  0  0",
+                                         builder,
+                                         1);
+        assertThat(atom.getPoint3d().x, is(closeTo(7.8089, 0.001)));
+        assertThat(atom.getPoint3d().y, is(closeTo(-1.3194, 0.001)));
+        assertThat(atom.getPoint3d().z, is(closeTo(2.0, 0.001)));
+        assertThat(atom.getPoint2d(), is(nullValue()));
+    }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.io.iterator;
+
+import org.junit.Test;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @cdk.module test-io
+ */
+public class ParallelSDFReaderTest {
+
+    @Test public void ordered() throws Exception {
+        File file = copy("data/mdl/pcoretest1.sdf");
+        ParallelSDFReader reader = new ParallelSDFReader(file, SilentChemObjectBuilder.getInstance());
+        try {
+            assertThat(summarise(reader), is(expected("data/mdl/pcoretest1.sdf", false)));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test public void unordered() throws Exception {
+        File file = copy("data/mdl/pcoretest1.sdf");
+        ParallelSDFReader reader = new ParallelSDFReader(file, SilentChemObjectBuilder.getInstance(), 4, false, false);
+        try {
+            List<String> actual = summarise(reader);
+            List<String> expected = expected("data/mdl/pcoretest1.sdf", false);
+            Collections.sort(actual);
+            Collections.sort(expected);
+            assertThat(actual, is(expected));
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * A small mapped region means records span the region boundaries and some
+     * records are larger than the initial region.
+     */
+    @Test public void smallWindow() throws Exception {
+        File file = copy("data/mdl/test2.sdf");
+        ParallelSDFReader reader = new ParallelSDFReader(file, SilentChemObjectBuilder.getInstance(), 2, true, false,
+                                                         256);
+        try {
+            assertThat(summarise(reader), is(expected("data/mdl/test2.sdf", false)));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test public void skipBrokenRecords() throws Exception {
+        File file = copy("data/mdl/molecules_exception.sdf");
+        ParallelSDFReader reader = new ParallelSDFReader(file, SilentChemObjectBuilder.getInstance(), 2, true, true);
+        try {
+            assertThat(summarise(reader), is(expected("data/mdl/molecules_exception.sdf", true)));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test public void stopAtBrokenRecord() throws Exception {
+        File file = copy("data/mdl/molecules_exception.sdf");
+        ParallelSDFReader reader = new ParallelSDFReader(file, SilentChemObjectBuilder.getInstance(), 2, true, false);
+        try {
+            assertThat(summarise(reader), is(expected("data/mdl/molecules_exception.sdf", false)));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void remove() throws Exception {
+        ParallelSDFReader reader = new ParallelSDFReader(copy("data/mdl/test2.sdf"),
+                                                         SilentChemObjectBuilder.getInstance());
+        try {
+            reader.remove();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Summarise each molecule as its title, atom/bond counts and properties.
+     */
+    private static List<String> summarise(Iterator<IAtomContainer> molecules) {
+        List<String> summary = new ArrayList<String>();
+        while (molecules.hasNext()) {
+            IAtomContainer container = molecules.next();
+            summary.add(container.getAtomCount() + " " + container.getBondCount() + " " + container.getProperties());
+        }
+        return summary;
+    }
+
+    private List<String> expected(String path, boolean skip) throws IOException {
+        InputStream in = getClass().getClassLoader().getResourceAsStream(path);
+        IteratingSDFReader reader = new IteratingSDFReader(in, SilentChemObjectBuilder.getInstance(), skip);
+        try {
+            return summarise(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private File copy(String path) throws IOException {
+        File file = File.createTempFile("cdk", ".sdf");
+        file.deleteOnExit();
+        InputStream in = getClass().getClassLoader().getResourceAsStream(path);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0)
+                out.write(buffer, 0, n);
+        } finally {
+            in.close();
+            out.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.io.iterator;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @cdk.module test-io
+ */
+public class SDRecordSplitterTest {
+
+    @Test public void split() throws Exception {
+        List<String> records = new ArrayList<String>();
+        long end = split("a\n$$$$\nb\nc\n$$$$\n", 1024, records);
+        assertThat(records, is(Arrays.asList("a\n$$$$\n", "b\nc\n$$$$\n")));
+        assertThat(end, is(16L));
+    }
+
+    /** records span the regions and are larger than the initial region */
+    @Test public void smallWindow() throws Exception {
+        List<String> records = new ArrayList<String>();
+        long end = split("a\n$$$$\nlonger record\n$$$$\nb\n$$$$\n", 4, records);
+        assertThat(records, is(Arrays.asList("a\n$$$$\n", "longer record\n$$$$\n", "b\n$$$$\n")));
+        assertThat(end, is(33L));
+    }
+
+    @Test public void unterminated() throws Exception {
+        List<String> records = new ArrayList<String>();
+        long end = split("a\n$$$$\nb\n", 1024, records);
+        assertThat(records, is(Arrays.asList("a\n$$$$\n", "b\n")));
+        assertThat(end, is(9L));
+    }
+
+    @Test public void trailingWhiteSpace() throws Exception {
+        List<String> records = new ArrayList<String>();
+        long end = split("a\n$$$$\n \n\n", 1024, records);
+        assertThat(records, is(Arrays.asList("a\n$$$$\n")));
+        assertThat(end, is(7L));
+    }
+
+    /** '$$$$' must be the whole line, a trailing carriage return is permitted */
+    @Test public void carriageReturns() throws Exception {
+        List<String> records = new ArrayList<String>();
+        split("a\r\n$$$$\r\n$$$$$\nb\n $$$$\n$$$$\n", 1024, records);
+        assertThat(records, is(Arrays.asList("a\r\n$$$$\r\n", "$$$$$\nb\n $$$$\n$$$$\n")));
+    }
+
+    /**
+     * Split the content (written to a temporary file) and collect the
+     * records.
+     */
+    private static long split(String content, int window, final List<String> records) throws IOException {
+        File file = File.createTempFile("cdk-", ".sdf");
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("US-ASCII"));
+        } finally {
+            out.close();
+        }
+        FileChannel channel = new FileInputStream(file).getChannel();
+        try {
+            return SDRecordSplitter.split(channel, window, new SDRecordSplitter.Handler() {
+                @Override public void record(MappedByteBuffer region, long offset, int beg, int end) {
+                    byte[] bytes = new byte[end - beg];
+                    for (int i = 0; i < bytes.length; i++)
+                        bytes[i] = region.get(beg + i);
+                    records.add(new String(bytes));
+                }
+            });
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.io.random;
+
+import org.junit.Test;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @cdk.module test-io
+ */
+public class MappedSDFReaderTest {
+
+    private static final String[] MDL_NUMBERS = {"MFCD00000387", "MFCD00000661", "MFCD00000662", "MFCD00000663",
+                                                 "MFCD00000664", "MFCD03453215"};
+
+    @Test public void readRecords() throws Exception {
+        File file = copy("data/mdl/test2.sdf");
+        MappedSDFReader reader = new MappedSDFReader(file, SilentChemObjectBuilder.getInstance());
+        try {
+            assertThat(reader.size(), is(6));
+            assertTrue(MappedSDFReader.getIndexFile(file.getAbsolutePath()).exists());
+            // reading backwards
+            for (int i = reader.size() - 1; i >= 0; i--) {
+                IAtomContainer container = reader.readRecord(i);
+                assertThat((String) container.getProperty("MDLNUMBER"), is(MDL_NUMBERS[i]));
+                assertTrue(container.getAtomCount() > 0);
+            }
+        } finally {
+            reader.close();
+            MappedSDFReader.getIndexFile(file.getAbsolutePath()).delete();
+        }
+    }
+
+    @Test public void readContent() throws Exception {
+        File file = copy("data/mdl/test2.sdf");
+        File index = index();
+        MappedSDFReader reader = new MappedSDFReader(file, index, SilentChemObjectBuilder.getInstance());
+        try {
+            String content = new String(reader.readContent(0), "US-ASCII");
+            assertTrue(content.contains("MFCD00000387"));
+            assertTrue(content.trim().endsWith("$$$$"));
+            assertTrue(new String(reader.readContent(1), "US-ASCII").contains("MFCD00000661"));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test public void reuseIndex() throws Exception {
+        File file = copy("data/mdl/test2.sdf");
+        File index = index();
+        new MappedSDFReader(file, index, SilentChemObjectBuilder.getInstance()).close();
+        long modified = index.lastModified();
+        long length = index.length();
+        assertThat(length, is(8L * (5 + 7)));
+
+        MappedSDFReader reader = new MappedSDFReader(file, index, SilentChemObjectBuilder.getInstance());
+        try {
+            assertThat(index.lastModified(), is(modified));
+            assertThat(reader.size(), is(6));
+            assertThat((String) reader.readRecord(5).getProperty("MDLNUMBER"), is(MDL_NUMBERS[5]));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test public void staleIndex() throws Exception {
+        File file = copy("data/mdl/test2.sdf");
+        File index = index();
+        new MappedSDFReader(file, index, SilentChemObjectBuilder.getInstance()).close();
+
+        // replace the SD file, the old index is not valid
+        OutputStream out = new FileOutputStream(file);
+        copy(getClass().getClassLoader().getResourceAsStream("data/mdl/test.sdf"), out);
+        out.close();
+
+        MappedSDFReader reader = new MappedSDFReader(file, index, SilentChemObjectBuilder.getInstance());
+        try {
+            assertThat((String) reader.readRecord(0).getProperty("E_CAS"), is("553-97-9"));
+        } finally {
+            reader.close();
+        }
+    }
+
+    /** an index in use by a reader is replaced, not rewritten in place */
+    @Test public void staleIndexIsReplaced() throws Exception {
+        File index = index();
+        MappedSDFReader reader = new MappedSDFReader(copy("data/mdl/test2.sdf"), index,
+                                                     SilentChemObjectBuilder.getInstance());
+        try {
+            MappedSDFReader other = new MappedSDFReader(copy("data/mdl/test.sdf"), index,
+                                                        SilentChemObjectBuilder.getInstance());
+            other.close();
+            assertThat(reader.size(), is(6));
+            assertTrue(new String(reader.readContent(5), "US-ASCII").contains(MDL_NUMBERS[5]));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test public void indexFileKey() throws Exception {
+        File file = copy("data/mdl/test2.sdf");
+        File dir = File.createTempFile("cdk", "");
+        assertTrue(dir.delete() && dir.mkdir());
+        File other = copy("data/mdl/test2.sdf", new File(dir, file.getName()));
+        try {
+            File index = MappedSDFReader.getIndexFile(file.getPath());
+            assertTrue(!index.equals(MappedSDFReader.getIndexFile(other.getPath())));
+            assertThat(MappedSDFReader.getIndexFile(file.getAbsolutePath()), is(index));
+            assertTrue(file.setLastModified(file.lastModified() - 60000));
+            assertTrue(!index.equals(MappedSDFReader.getIndexFile(file.getPath())));
+        } finally {
+            other.delete();
+            dir.delete();
+        }
+    }
+
+    @Test(expected = CDKException.class)
+    public void invalidRecord() throws Exception {
+        MappedSDFReader reader = new MappedSDFReader(copy("data/mdl/test2.sdf"), index(),
+                                                     SilentChemObjectBuilder.getInstance());
+        try {
+            reader.readRecord(6);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test public void concurrentReads() throws Exception {
+        final MappedSDFReader reader = new MappedSDFReader(copy("data/mdl/test2.sdf"), index(),
+                                                           SilentChemObjectBuilder.getInstance());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> futures = new ArrayList<Future<String>>();
+            for (int i = 0; i < 600; i++) {
+                final int record = i % reader.size();
+                futures.add(executor.submit(new Callable<String>() {
+                    @Override public String call() throws Exception {
+                        return (String) reader.readRecord(record).getProperty("MDLNUMBER");
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++)
+                assertThat(futures.get(i).get(), is(MDL_NUMBERS[i % MDL_NUMBERS.length]));
+        } finally {
+            executor.shutdown();
+            reader.close();
+        }
+    }
+
+    private static File index() throws IOException {
+        File index = File.createTempFile("cdk", ".offsets");
+        index.delete();
+        index.deleteOnExit();
+        return index;
+    }
+
+    private File copy(String path) throws IOException {
+        File file = File.createTempFile("cdk", ".sdf");
+        file.deleteOnExit();
+        return copy(path, file);
+    }
+
+    private File copy(String path, File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            copy(getClass().getClassLoader().getResourceAsStream(path), out);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        try {
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0)
+                out.write(buffer, 0, n);
+        } finally {
+            in.close();
+        }
+    }
+}
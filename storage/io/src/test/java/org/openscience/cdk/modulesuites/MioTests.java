@@ -59,6 +59,9 @@ import org.openscience.cdk.io.XYZReaderTest;
 import org.openscience.cdk.io.XYZWriterTest;
 import org.openscience.cdk.io.cml.CMLIOTests;
 import org.openscience.cdk.io.iterator.IteratingSDFReaderTest;
+import org.openscience.cdk.io.iterator.ParallelSDFReaderTest;
+import org.openscience.cdk.io.iterator.SDRecordSplitterTest;
+import org.openscience.cdk.io.random.MappedSDFReaderTest;
 import org.openscience.cdk.io.iterator.IteratingPCCompoundASNReaderTest;
 import org.openscience.cdk.io.iterator.IteratingPCCompoundXMLReaderTest;
 import org.openscience.cdk.io.iterator.IteratingPCSubstancesXMLReaderTest;
@@ -108,6 +111,9 @@ import org.openscience.cdk.io.program.Mopac7WriterTest;
 
         // cdk.io.iterator package
     IteratingSDFReaderTest.class,
+    ParallelSDFReaderTest.class,
+    SDRecordSplitterTest.class,
+    MappedSDFReaderTest.class,
     IteratingPCCompoundASNReaderTest.class,
     IteratingPCCompoundXMLReaderTest.class,
     IteratingPCSubstancesXMLReaderTest.class        
@@ -0,0 +1,376 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.io.iterator;
+
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.io.formats.IResourceFormat;
+import org.openscience.cdk.io.formats.SMILESFormat;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.cdk.tools.ILoggingTool;
+import org.openscience.cdk.tools.LoggingToolFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A multi-threaded SMILES file reader. Lines are read in chunks on the
+ * calling thread and each chunk is parsed by a pool of workers, each with
+ * its own {@link SmilesParser}. The molecules are provided in the same order
+ * as the input and, like the {@link IteratingSMILESReader}, the text after
+ * the first space or tab is stored as the {@link CDKConstants#TITLE}. Only a
+ * fixed number of chunks are read ahead of the consumer and memory use
+ * therefore remains constant for any size of input.
+ *
+ * <blockquote><pre>
+ * ParallelSMILESReader reader = new ParallelSMILESReader(new FileReader("library.smi"),
+ *                                                        SilentChemObjectBuilder.getInstance());
+ * try {
+ *     while (reader.hasNext()) {
+ *         IAtomContainer container = reader.next();
+ *     }
+ * } finally {
+ *     reader.close();
+ * }
+ * </pre></blockquote>
+ *
+ * A line which could not be parsed is provided as an empty container with the
+ * property {@link IteratingSMILESReader#BAD_SMILES_INPUT} set to the
+ * attempted input and is reported to the error handler ({@link
+ * #setErrorHandler}) on the calling thread. In {@link Mode#STRICT} mode the
+ * reader stops at the first line which could not be parsed.
+ *
+ * @cdk.module smiles
+ * @cdk.githash
+ * @cdk.keyword file format, SMILES
+ * @see IteratingSMILESReader
+ */
+@TestClass("org.openscience.cdk.io.iterator.ParallelSMILESReaderTest")
+public final class ParallelSMILESReader extends DefaultIteratingChemObjectReader<IAtomContainer> {
+
+    private static final ILoggingTool logger = LoggingToolFactory.createLoggingTool(ParallelSMILESReader.class);
+
+    /** Number of lines parsed by a worker in one go. */
+    private static final int CHUNK_SIZE = 256;
+
+    private final IChemObjectBuilder builder;
+    private final ExecutorService    workers;
+
+    /** Maximum number of chunks read ahead of the consumer. */
+    private final int                limit;
+
+    /** Each worker has it's own parser. */
+    private final ThreadLocal<SmilesParser> parsers = new ThreadLocal<SmilesParser>() {
+        @Override protected SmilesParser initialValue() {
+            return new SmilesParser(builder);
+        }
+    };
+
+    /** Chunks which have been submitted but not yet consumed, in input order. */
+    private final Deque<Future<Chunk>> pending = new ArrayDeque<Future<Chunk>>();
+
+    private BufferedReader input;
+    private boolean        eof, done;
+    private int            lineNumber;
+
+    /** The chunk being consumed. */
+    private Chunk chunk;
+    private int   offset;
+
+    /**
+     * Create a reader which parses the SMILES on a worker thread for each
+     * available processor.
+     *
+     * @param in      the reader to read from
+     * @param builder chem object builder
+     */
+    @TestMethod("sameAsIteratingReader")
+    public ParallelSMILESReader(Reader in, IChemObjectBuilder builder) {
+        this(in, builder, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a reader which parses the SMILES on a worker thread for each
+     * available processor.
+     *
+     * @param in      the input stream to read from
+     * @param builder chem object builder
+     */
+    @TestMethod("sameAsIteratingReader")
+    public ParallelSMILESReader(InputStream in, IChemObjectBuilder builder) {
+        this(new InputStreamReader(in), builder);
+    }
+
+    /**
+     * Create a reader which parses the SMILES with the given number of
+     * threads.
+     *
+     * @param in      the reader to read from
+     * @param builder chem object builder
+     * @param threads number of threads to parse the SMILES with
+     */
+    @TestMethod("inputOrder")
+    public ParallelSMILESReader(Reader in, IChemObjectBuilder builder, int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("at least one thread is required");
+        this.builder = builder;
+        this.limit   = 4 * threads;
+        this.workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ParallelSMILESReader-worker");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        setReader(in);
+    }
+
+    /**
+     * Get the format for this reader.
+     *
+     * @return An instance of {@link SMILESFormat}
+     */
+    @TestMethod("format")
+    @Override public IResourceFormat getFormat() {
+        return SMILESFormat.getInstance();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("sameAsIteratingReader,inputOrder")
+    @Override public boolean hasNext() {
+        while (!done && (chunk == null || offset == chunk.containers.length)) {
+            chunk = take();
+            offset = 0;
+            if (chunk == null)
+                done = true;
+        }
+        return !done;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("sameAsIteratingReader,inputOrder")
+    @Override public IAtomContainer next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        IAtomContainer container = chunk.containers[offset];
+        Exception      exception = chunk.exceptions[offset];
+        int            row       = chunk.first + offset;
+        chunk.containers[offset++] = null;
+        if (exception != null) {
+            String line = container.getProperty(IteratingSMILESReader.BAD_SMILES_INPUT);
+            try {
+                handleError("Error while reading the SMILES from: " + line, row, 1, line.length(), exception);
+            } catch (CDKException e) {
+                logger.error("Stopped reading at line ", row, ": ", e.getMessage());
+                shutdown();
+            }
+        }
+        return container;
+    }
+
+    /**
+     * Stop reading, any lines which were read ahead are discarded.
+     *
+     * @throws IOException the input could not be closed
+     */
+    @TestMethod("close")
+    @Override public void close() throws IOException {
+        shutdown();
+        workers.shutdownNow();
+        if (input != null)
+            input.close();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("remove")
+    @Override public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("setReader")
+    @Override public void setReader(Reader reader) {
+        shutdown();
+        this.input = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        this.eof = false;
+        this.done = false;
+        this.lineNumber = 0;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @TestMethod("setReader")
+    @Override public void setReader(InputStream reader) {
+        setReader(new InputStreamReader(reader));
+    }
+
+    /**
+     * Discard the pending chunks and mark the reader as done.
+     */
+    private void shutdown() {
+        for (Future<Chunk> future : pending)
+            future.cancel(true);
+        pending.clear();
+        chunk = null;
+        offset = 0;
+        done = true;
+    }
+
+    /**
+     * Read ahead so the workers remain busy and then wait for the next chunk
+     * in input order.
+     *
+     * @return the next chunk, null if there are no more lines
+     */
+    private Chunk take() {
+        try {
+            while (!eof && pending.size() < limit)
+                submit();
+            Future<Chunk> future = pending.poll();
+            return future != null ? future.get() : null;
+        } catch (IOException e) {
+            logger.error("Could not read the SMILES input: ", e.getMessage());
+            logger.debug(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("Unexpected problem: ", e.getCause().getMessage());
+            logger.debug(e.getCause());
+        }
+        shutdown();
+        return null;
+    }
+
+    /**
+     * Read up to {@link #CHUNK_SIZE} lines and submit them to the workers.
+     *
+     * @throws IOException the lines could not be read
+     */
+    private void submit() throws IOException {
+        final String[] lines = new String[CHUNK_SIZE];
+        int n = 0;
+        String line;
+        while (n < lines.length && (line = input.readLine()) != null)
+            lines[n++] = line;
+        if (n < lines.length)
+            eof = true;
+        if (n == 0)
+            return;
+        final int first = lineNumber + 1;
+        final int count = n;
+        lineNumber += n;
+        pending.add(workers.submit(new Callable<Chunk>() {
+            @Override public Chunk call() throws Exception {
+                return parse(lines, count, first);
+            }
+        }));
+    }
+
+    /**
+     * Parse the lines of a chunk with this thread's parser.
+     *
+     * @param lines input lines
+     * @param n     number of lines
+     * @param first the line number of the first line
+     * @return the parsed chunk
+     */
+    private Chunk parse(String[] lines, int n, int first) {
+        SmilesParser sp = parsers.get();
+        Chunk chunk = new Chunk(n, first);
+        for (int i = 0; i < n; i++) {
+            String line = lines[i];
+            IAtomContainer container;
+            try {
+                container = sp.parseSmiles(line);
+            } catch (Exception e) {
+                // also unexpected (runtime) exceptions, which would otherwise
+                // fail the whole chunk and stop the reader
+                container = builder.newInstance(IAtomContainer.class, 0, 0, 0, 0);
+                container.setProperty(IteratingSMILESReader.BAD_SMILES_INPUT, line);
+                chunk.exceptions[i] = e;
+            }
+            container.setProperty(CDKConstants.TITLE, suffix(line));
+            chunk.containers[i] = container;
+        }
+        return chunk;
+    }
+
+    /**
+     * Obtain the suffix after a line containing SMILES. The suffix follows
+     * any ' ' or '\t' termination characters.
+     *
+     * @param line input line
+     * @return the suffix - or an empty line
+     */
+    private static String suffix(final String line) {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == ' ' || c == '\t')
+                return line.substring(i + 1);
+        }
+        return "";
+    }
+
+    /**
+     * The parsed molecules of consecutive lines and the exceptions of any
+     * lines which could not be parsed.
+     */
+    private static final class Chunk {
+
+        private final IAtomContainer[] containers;
+        private final Exception[]      exceptions;
+        private final int              first;
+
+        private Chunk(int n, int first) {
+            this.containers = new IAtomContainer[n];
+            this.exceptions = new Exception[n];
+            this.first = first;
+        }
+    }
+}
@@ -138,11 +138,25 @@ final class CDKToBeam {
      */
     @TestMethod("adenine,benzene,imidazole")
     Graph toBeamGraph(IAtomContainer ac) throws CDKException {
+        return toBeamGraph(ac, Maps.<IAtom, Integer>newHashMapWithExpectedSize(ac.getAtomCount()));
+    }
+
+    /**
+     * Convert a CDK {@link IAtomContainer} to a Beam ChemicalGraph using the
+     * provided map to store the atom indices. Any existing entries in the map
+     * are cleared, on return it maps each atom of the container to its index.
+     * Reusing the map avoids reallocating it when converting many containers.
+     *
+     * @param ac      an atom container instance
+     * @param indices map to store the atom indices
+     * @return the Beam ChemicalGraph for additional manipulation
+     */
+    Graph toBeamGraph(IAtomContainer ac, Map<IAtom, Integer> indices) throws CDKException {
 
         int order = ac.getAtomCount();
 
-        GraphBuilder        gb      = GraphBuilder.create(order);
-        Map<IAtom, Integer> indices = Maps.newHashMapWithExpectedSize(order);
+        GraphBuilder gb = GraphBuilder.create(order);
+        indices.clear();
 
         for (IAtom a : ac.atoms()) {
             indices.put(a, indices.size());
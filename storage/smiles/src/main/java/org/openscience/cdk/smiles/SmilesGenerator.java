@@ -27,9 +27,10 @@ package org.openscience.cdk.smiles;
 import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.exception.CDKException;
-import org.openscience.cdk.graph.GraphUtil;
 import org.openscience.cdk.graph.invariant.Canon;
+import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.interfaces.IAtomContainerSet;
 import org.openscience.cdk.interfaces.IReaction;
 import uk.ac.ebi.beam.Functions;
@@ -38,6 +39,17 @@ import uk.ac.ebi.beam.Graph;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Generate a SMILES {@cdk.cite WEI88, WEI89} string for a provided structure.
@@ -179,6 +191,19 @@ public final class SmilesGenerator {
     private final boolean   isomeric, canonical, aromatic, classes;
     private final CDKToBeam converter;
 
+    /** Number of molecules a worker generates SMILES for in one go. */
+    private static final int BATCH_SIZE = 128;
+
+    /** Maximum number of batches submitted but not yet collected. */
+    private static final int MAX_PENDING = 64;
+
+    /** Buffers reused by each thread when generating many SMILES. */
+    private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+        @Override protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
     /**
      * Create the generic SMILES generator.
      * @see #generic() 
@@ -367,20 +392,169 @@ public final class SmilesGenerator {
      * @throws CDKException SMILES could not be created
      */
     public String create(IAtomContainer molecule, int[] order) throws CDKException {
+        if (order.length != molecule.getAtomCount())
+            throw new IllegalArgumentException("the array for storing output order should be" +
+                                                       "the same length as the number of atoms");
+        return create(molecule, order, new Scratch());
+    }
+
+    /**
+     * Generate SMILES for each of the provided molecules. The buffers used
+     * for the conversion and canonical labelling are reused between
+     * molecules.
+     *
+     * <blockquote><pre>
+     * SmilesGenerator sg     = SmilesGenerator.unique();
+     * List&lt;String&gt;    smiles = sg.createAll(containers);
+     * </pre></blockquote>
+     *
+     * @param molecules the molecules to evaluate
+     * @return the SMILES strings, in the same order as the molecules
+     * @throws CDKException SMILES could not be created for one of the molecules
+     */
+    @TestMethod("createAll")
+    public List<String> createAll(Iterable<? extends IAtomContainer> molecules) throws CDKException {
+        Scratch      scratch = SCRATCH.get();
+        List<String> smis    = new ArrayList<String>();
+        for (IAtomContainer molecule : molecules) {
+            smis.add(create(molecule, scratch, smis.size()));
+        }
+        return smis;
+    }
+
+    /**
+     * Generate SMILES for each of the provided molecules using the threads
+     * of the given executor. The molecules are split into batches which are
+     * processed by the executor, each thread reuses its buffers between
+     * molecules. Only a bounded number of batches are in progress at any
+     * time so the molecules may be provided lazily (e.g. from a reader).
+     * The generator itself is immutable and can be used by several threads.
+     *
+     * <blockquote><pre>
+     * ExecutorService executor = Executors.newFixedThreadPool(4);
+     * SmilesGenerator sg       = SmilesGenerator.unique();
+     * List&lt;String&gt;    smiles   = sg.createAll(containers, executor);
+     * executor.shutdown();
+     * </pre></blockquote>
+     *
+     * @param molecules the molecules to evaluate
+     * @param executor  executor to generate the SMILES with
+     * @return the SMILES strings, in the same order as the molecules
+     * @throws CDKException SMILES could not be created for one of the molecules
+     *                      or the calling thread was interrupted
+     */
+    @TestMethod("createAll_executor,createAll_executor_failure")
+    public List<String> createAll(Iterable<? extends IAtomContainer> molecules, ExecutorService executor)
+            throws CDKException {
+        List<String>             smis    = new ArrayList<String>();
+        Deque<Future<String[]>>  pending = new ArrayDeque<Future<String[]>>();
+        List<IAtomContainer>     batch   = new ArrayList<IAtomContainer>(BATCH_SIZE);
+        int                      offset  = 0;
+        try {
+            for (IAtomContainer molecule : molecules) {
+                batch.add(molecule);
+                if (batch.size() == BATCH_SIZE) {
+                    pending.add(submit(batch, offset, executor));
+                    offset += batch.size();
+                    batch = new ArrayList<IAtomContainer>(BATCH_SIZE);
+                    if (pending.size() == MAX_PENDING)
+                        collect(pending.poll(), smis);
+                }
+            }
+            if (!batch.isEmpty())
+                pending.add(submit(batch, offset, executor));
+            while (!pending.isEmpty())
+                collect(pending.poll(), smis);
+        } finally {
+            for (Future<String[]> future : pending)
+                future.cancel(true);
+        }
+        return smis;
+    }
+
+    /**
+     * Submit a batch of molecules to the executor.
+     *
+     * @param batch    the molecules
+     * @param offset   index of the first molecule in the batch
+     * @param executor the executor
+     * @return the pending SMILES of the batch
+     */
+    private Future<String[]> submit(final List<IAtomContainer> batch, final int offset, ExecutorService executor) {
+        return executor.submit(new Callable<String[]>() {
+            @Override public String[] call() throws CDKException {
+                Scratch  scratch = SCRATCH.get();
+                String[] smis    = new String[batch.size()];
+                for (int i = 0; i < smis.length; i++)
+                    smis[i] = create(batch.get(i), scratch, offset + i);
+                return smis;
+            }
+        });
+    }
+
+    /**
+     * Wait for a batch to complete and add the SMILES to the output.
+     *
+     * @param future the pending batch
+     * @param smis   the output
+     * @throws CDKException SMILES could not be created or the thread was
+     *                      interrupted
+     */
+    private static void collect(Future<String[]> future, List<String> smis) throws CDKException {
+        try {
+            smis.addAll(Arrays.asList(future.get()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CDKException("Interrupted while generating SMILES", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CDKException)
+                throw (CDKException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new CDKException(cause.getMessage(), cause);
+        }
+    }
 
+    /**
+     * Generate the SMILES of a molecule using reusable buffers, the index of
+     * the molecule is included in the message of any exception.
+     *
+     * @param molecule the molecule to evaluate
+     * @param scratch  reusable buffers
+     * @param index    index of the molecule in the input
+     * @return the SMILES string
+     * @throws CDKException SMILES could not be created
+     */
+    private String create(IAtomContainer molecule, Scratch scratch, int index) throws CDKException {
         try {
-            if (order.length != molecule.getAtomCount())
-                throw new IllegalArgumentException("the array for storing output order should be" +
-                                                           "the same length as the number of atoms");
+            return create(molecule, scratch.order(molecule.getAtomCount()), scratch);
+        } catch (CDKException e) {
+            throw new CDKException("SMILES could not be created for molecule " + index + ": " + e.getMessage(), e);
+        }
+    }
 
-            Graph g = converter.toBeamGraph(molecule);
+    /**
+     * Generate the SMILES of a molecule using the provided buffers.
+     *
+     * @param molecule the molecule to evaluate
+     * @param order    array to store the output order of atoms, at least as
+     *                 long as the number of atoms
+     * @param scratch  reusable buffers
+     * @return the SMILES string
+     * @throws CDKException SMILES could not be created
+     */
+    private String create(IAtomContainer molecule, int[] order, Scratch scratch) throws CDKException {
+
+        try {
+            Graph g = converter.toBeamGraph(molecule, scratch.indices);
 
 
             // apply the canonical labelling
             if (canonical) {
 
                 // determine the output order
-                int[] labels = labels(molecule);
+                int[] labels = labels(molecule, scratch);
 
                 g = g.permute(labels)
                      .resonate();
@@ -404,10 +578,10 @@ public final class SmilesGenerator {
 
                 // the SMILES has been generated on a reordered molecule, transform
                 // the ordering
-                int[] canorder = new int[order.length];
+                int[] canorder = scratch.canorder(labels.length);
                 for (int i = 0; i < labels.length; i++)
                     canorder[i] = order[labels[i]];
-                System.arraycopy(canorder, 0, order, 0, order.length);
+                System.arraycopy(canorder, 0, order, 0, labels.length);
 
                 return smiles;
             }
@@ -476,12 +650,13 @@ public final class SmilesGenerator {
      * should be present on the classpath.
      * 
      * @param molecule the molecule to 
+     * @param scratch  reusable buffers, the atom indices are already set
      * @return the permutation
      * @see Canon
      */
-    private int[] labels(final IAtomContainer molecule) throws CDKException {
+    private int[] labels(final IAtomContainer molecule, Scratch scratch) throws CDKException {
         long[] labels = isomeric ? inchiNumbers(molecule) 
-                                 : Canon.label(molecule, GraphUtil.toAdjList(molecule));
+                                 : Canon.label(molecule, scratch.toAdjList(molecule));
         int[]  cpy    = new int[labels.length];
         for (int i = 0; i < labels.length; i++)
             cpy[i] = (int) labels[i] - 1;              
@@ -520,4 +695,73 @@ public final class SmilesGenerator {
         }
     }
 
+    /**
+     * Buffers which are reused when generating the SMILES of many molecules.
+     * The atom indices are set when the molecule is converted to a Beam graph
+     * and reused to build the adjacency list for the canonical labelling.
+     */
+    private static final class Scratch {
+
+        private final Map<IAtom, Integer> indices  = new HashMap<IAtom, Integer>();
+        private int[]                     order    = new int[0];
+        private int[]                     canorder = new int[0];
+        private int[]                     degree   = new int[0];
+        private int[]                     us       = new int[0];
+        private int[]                     vs       = new int[0];
+
+        private int[] order(int n) {
+            if (order.length < n)
+                order = new int[n];
+            return order;
+        }
+
+        private int[] canorder(int n) {
+            if (canorder.length < n)
+                canorder = new int[n];
+            return canorder;
+        }
+
+        /**
+         * Create the adjacency list of the molecule using the current atom
+         * indices, equivalent to {@link org.openscience.cdk.graph.GraphUtil#toAdjList}.
+         *
+         * @param container the molecule
+         * @return adjacency list representation
+         */
+        private int[][] toAdjList(IAtomContainer container) {
+            int n = container.getAtomCount();
+            if (degree.length < n)
+                degree = new int[n];
+            Arrays.fill(degree, 0, n, 0);
+
+            if (us.length < container.getBondCount()) {
+                us = new int[container.getBondCount()];
+                vs = new int[container.getBondCount()];
+            }
+            int m = 0;
+            for (IBond bond : container.bonds()) {
+                Integer u = indices.get(bond.getAtom(0));
+                Integer v = indices.get(bond.getAtom(1));
+                if (u == null || v == null)
+                    throw new IllegalArgumentException("bond at index " + m
+                                                               + " contained an atom not pressent in molecule");
+                us[m] = u;
+                vs[m] = v;
+                degree[u]++;
+                degree[v]++;
+                m++;
+            }
+
+            int[][] graph = new int[n][];
+            for (int i = 0; i < n; i++) {
+                graph[i] = new int[degree[i]];
+                degree[i] = 0;
+            }
+            for (int j = 0; j < m; j++) {
+                graph[us[j]][degree[us[j]]++] = vs[j];
+                graph[vs[j]][degree[vs[j]]++] = us[j];
+            }
+            return graph;
+        }
+    }
 }
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.io.iterator;
+
+import org.junit.Test;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.ICDKObject;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.io.IChemObjectReader;
+import org.openscience.cdk.io.IChemObjectReaderErrorHandler;
+import org.openscience.cdk.io.formats.SMILESFormat;
+import org.openscience.cdk.silent.Atom;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+/**
+ * @cdk.module test-smiles
+ */
+public class ParallelSMILESReaderTest {
+
+    @Test public void sameAsIteratingReader() throws Exception {
+        for (String path : new String[]{"data/smiles/test.smi", "data/smiles/tabs.smi", "data/smiles/test2.smi"}) {
+            IteratingSMILESReader expected = new IteratingSMILESReader(resource(path),
+                                                                       SilentChemObjectBuilder.getInstance());
+            ParallelSMILESReader actual = new ParallelSMILESReader(resource(path),
+                                                                   SilentChemObjectBuilder.getInstance());
+            while (expected.hasNext()) {
+                assertThat(actual.hasNext(), is(true));
+                IAtomContainer a = expected.next();
+                IAtomContainer b = actual.next();
+                assertThat(b.getAtomCount(), is(a.getAtomCount()));
+                assertThat(b.getBondCount(), is(a.getBondCount()));
+                assertThat(b.getProperty(CDKConstants.TITLE), is(a.<Object>getProperty(CDKConstants.TITLE)));
+            }
+            assertThat(actual.hasNext(), is(false));
+            expected.close();
+            actual.close();
+        }
+    }
+
+    @Test public void inputOrder() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            for (int j = 0; j <= i % 7; j++)
+                sb.append('C');
+            sb.append(' ').append(i).append('\n');
+        }
+        ParallelSMILESReader reader = new ParallelSMILESReader(new StringReader(sb.toString()),
+                                                               SilentChemObjectBuilder.getInstance(), 4);
+        int i = 0;
+        while (reader.hasNext()) {
+            IAtomContainer container = reader.next();
+            assertThat(container.getProperty(CDKConstants.TITLE), is((Object) Integer.toString(i)));
+            assertThat(container.getAtomCount(), is(1 + i % 7));
+            i++;
+        }
+        reader.close();
+        assertThat(i, is(5000));
+    }
+
+    @Test public void badSmiles() throws Exception {
+        IChemObjectReaderErrorHandler handler = mock(IChemObjectReaderErrorHandler.class);
+        ParallelSMILESReader reader = new ParallelSMILESReader(new StringReader("CCO ethanol\nC1CC bad\nc1ccccc1 benzene\n"),
+                                                               SilentChemObjectBuilder.getInstance(), 2);
+        reader.setErrorHandler(handler);
+        List<IAtomContainer> containers = new ArrayList<IAtomContainer>();
+        while (reader.hasNext())
+            containers.add(reader.next());
+        reader.close();
+        assertThat(containers.size(), is(3));
+        assertThat(containers.get(0).getProperty(IteratingSMILESReader.BAD_SMILES_INPUT), is(nullValue()));
+        assertThat(containers.get(1).getAtomCount(), is(0));
+        assertThat(containers.get(1).getProperty(IteratingSMILESReader.BAD_SMILES_INPUT), is((Object) "C1CC bad"));
+        assertThat(containers.get(1).getProperty(CDKConstants.TITLE), is((Object) "bad"));
+        assertThat(containers.get(2).getAtomCount(), is(6));
+        verify(handler).handleError(anyString(), eq(2), anyInt(), anyInt(), any(Exception.class));
+    }
+
+    /**
+     * A line which fails with an unexpected exception is reported as a bad
+     * line, the other lines of the chunk and the remaining input are read.
+     */
+    @Test public void unexpectedException() throws Exception {
+        final IChemObjectBuilder silent = SilentChemObjectBuilder.getInstance();
+        // the parser clones a template atom and sets the symbol
+        IChemObjectBuilder builder = new IChemObjectBuilder() {
+            @Override public <T extends ICDKObject> T newInstance(Class<T> clazz, Object... params) {
+                if (clazz == IAtom.class && params.length == 0)
+                    return clazz.cast(new Atom() {
+                        @Override public void setSymbol(String symbol) {
+                            if ("U".equals(symbol))
+                                throw new IllegalStateException("unexpected");
+                            super.setSymbol(symbol);
+                        }
+                    });
+                return silent.newInstance(clazz, params);
+            }
+        };
+        StringBuilder input = new StringBuilder("CCO\n[U] bad\n");
+        for (int i = 0; i < 600; i++)
+            input.append("CC\n");
+        IChemObjectReaderErrorHandler handler = mock(IChemObjectReaderErrorHandler.class);
+        ParallelSMILESReader reader = new ParallelSMILESReader(new StringReader(input.toString()), builder, 2);
+        reader.setErrorHandler(handler);
+        List<IAtomContainer> containers = new ArrayList<IAtomContainer>();
+        while (reader.hasNext())
+            containers.add(reader.next());
+        reader.close();
+        assertThat(containers.size(), is(602));
+        assertThat(containers.get(0).getAtomCount(), is(3));
+        assertThat(containers.get(1).getAtomCount(), is(0));
+        assertThat(containers.get(1).getProperty(IteratingSMILESReader.BAD_SMILES_INPUT), is((Object) "[U] bad"));
+        assertThat(containers.get(601).getAtomCount(), is(2));
+        verify(handler).handleError(anyString(), eq(2), anyInt(), anyInt(), any(IllegalStateException.class));
+    }
+
+    @Test public void badSmilesStrict() throws Exception {
+        ParallelSMILESReader reader = new ParallelSMILESReader(new StringReader("CCO\nC1CC\nc1ccccc1\n"),
+                                                               SilentChemObjectBuilder.getInstance(), 2);
+        reader.setReaderMode(IChemObjectReader.Mode.STRICT);
+        int count = 0;
+        while (reader.hasNext()) {
+            reader.next();
+            count++;
+        }
+        reader.close();
+        assertThat(count, is(2));
+    }
+
+    @Test public void noErrors() throws Exception {
+        IChemObjectReaderErrorHandler handler = mock(IChemObjectReaderErrorHandler.class);
+        ParallelSMILESReader reader = new ParallelSMILESReader(resource("data/smiles/test2.smi"),
+                                                               SilentChemObjectBuilder.getInstance());
+        reader.setErrorHandler(handler);
+        while (reader.hasNext())
+            reader.next();
+        reader.close();
+        verifyZeroInteractions(handler);
+    }
+
+    @Test public void setReader() throws Exception {
+        ParallelSMILESReader reader = new ParallelSMILESReader(new StringReader("CCO\nCC\n"),
+                                                               SilentChemObjectBuilder.getInstance(), 2);
+        assertThat(reader.next().getAtomCount(), is(3));
+        reader.setReader(new StringReader("CCCC\n"));
+        assertThat(reader.next().getAtomCount(), is(4));
+        assertThat(reader.hasNext(), is(false));
+        reader.setReader(resource("data/smiles/test2.smi"));
+        assertThat(reader.next().getAtomCount(), is(6));
+        reader.close();
+    }
+
+    @Test public void close() throws Exception {
+        ParallelSMILESReader reader = new ParallelSMILESReader(resource("data/smiles/test2.smi"),
+                                                               SilentChemObjectBuilder.getInstance());
+        assertThat(reader.hasNext(), is(true));
+        reader.close();
+        assertThat(reader.hasNext(), is(false));
+    }
+
+    @Test public void format() throws Exception {
+        ParallelSMILESReader reader = new ParallelSMILESReader(new StringReader(""),
+                                                               SilentChemObjectBuilder.getInstance());
+        assertThat(reader.getFormat(), is(instanceOf(SMILESFormat.class)));
+        assertThat(reader.hasNext(), is(false));
+        reader.close();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void remove() throws Exception {
+        ParallelSMILESReader reader = new ParallelSMILESReader(new StringReader("C\n"),
+                                                               SilentChemObjectBuilder.getInstance());
+        try {
+            reader.remove();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private InputStream resource(String path) {
+        return getClass().getClassLoader().getResourceAsStream(path);
+    }
+}
@@ -33,6 +33,7 @@ import org.openscience.cdk.io.SMILES2Mol2WriterTest;
 import org.openscience.cdk.io.SMILESReaderTest;
 import org.openscience.cdk.io.SMILESWriterTest;
 import org.openscience.cdk.io.iterator.IteratingSMILESReaderTest;
+import org.openscience.cdk.io.iterator.ParallelSMILESReaderTest;
 import org.openscience.cdk.smiles.BeamToCDKTest;
 import org.openscience.cdk.smiles.CDKToBeamTest;
 import org.openscience.cdk.smiles.DeduceBondSystemToolTest;
@@ -52,6 +53,7 @@ import org.openscience.cdk.normalize.NormalizerTest;
     SMILESReaderTest.class,
     SMILESWriterTest.class,
     IteratingSMILESReaderTest.class,
+    ParallelSMILESReaderTest.class,
     DeduceBondSystemToolTest.class,
     MoSSOutputReaderTest.class,
     SmilesParserTest.class,
@@ -23,16 +23,22 @@
  */
 package org.openscience.cdk.smiles;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.MatcherAssert.assertThat;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.vecmath.Point2d;
 
@@ -1223,6 +1229,67 @@ public class SmilesGeneratorTest extends CDKTestCase {
                                   .create(ethanol), is("C[CH2:6]O"));
     }
     
+    @Test public void createAll() throws Exception {
+        List<IAtomContainer> containers = drugs();
+        SmilesGenerator      sg         = SmilesGenerator.unique();
+        List<String>         smis       = sg.createAll(containers);
+        assertThat(smis.size(), is(containers.size()));
+        for (int i = 0; i < containers.size(); i++)
+            assertThat(smis.get(i), is(sg.create(containers.get(i))));
+    }
+
+    @Test public void createAll_executor() throws Exception {
+        List<IAtomContainer> drugs      = drugs();
+        List<IAtomContainer> containers = new ArrayList<IAtomContainer>();
+        for (int i = 0; i < 70; i++)
+            containers.addAll(drugs);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (SmilesGenerator sg : new SmilesGenerator[]{SmilesGenerator.generic(),
+                                                            SmilesGenerator.unique(),
+                                                            SmilesGenerator.unique().aromatic()}) {
+                List<String> smis = sg.createAll(containers, executor);
+                assertThat(smis.size(), is(containers.size()));
+                for (int i = 0; i < containers.size(); i++)
+                    assertThat(smis.get(i), is(sg.create(containers.get(i))));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test public void createAll_executor_failure() throws Exception {
+        List<IAtomContainer> containers = drugs();
+        containers.get(5).getBond(0).setOrder(null);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            SmilesGenerator.unique().createAll(containers, executor);
+            Assert.fail("SMILES should not be generated for an undefined bond order");
+        } catch (CDKException e) {
+            assertThat(e.getMessage(), containsString("molecule 5"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Load the molecules of the 'drugs.smi' test file.
+     */
+    private List<IAtomContainer> drugs() throws Exception {
+        SmilesParser         sp         = new SmilesParser(SilentChemObjectBuilder.getInstance());
+        List<IAtomContainer> containers = new ArrayList<IAtomContainer>();
+        InputStream          in         = getClass().getResourceAsStream("/data/smiles/drugs.smi");
+        BufferedReader       rdr        = new BufferedReader(new InputStreamReader(in));
+        try {
+            String line;
+            while ((line = rdr.readLine()) != null)
+                containers.add(sp.parseSmiles(line));
+        } finally {
+            rdr.close();
+        }
+        return containers;
+    }
+
     static ITetrahedralChirality anticlockwise(IAtomContainer container, 
                                        int central, int a1, int a2, int a3, int a4) {
         return new TetrahedralChirality(container.getAtom(central),
@@ -45,6 +45,7 @@ public class FormalChargeAtom extends SMARTSAtom {
     public FormalChargeAtom(int charge, IChemObjectBuilder builder) {
         super(builder);
         this.formalCharge = charge;
+        this.setFormalCharge(charge);
     }
     
     /* (non-Javadoc)
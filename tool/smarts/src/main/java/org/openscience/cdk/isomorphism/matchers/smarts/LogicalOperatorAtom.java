@@ -23,7 +23,9 @@ import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IChemObjectBuilder;
 import org.openscience.cdk.isomorphism.matchers.IQueryAtom;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
 
 /**
  * This class matches a logical operator that connects two query atoms. Logical
@@ -171,6 +173,35 @@ public final class LogicalOperatorAtom extends SMARTSAtom {
         return new Negation(expr.getBuilder(), expr);
     }
 
+    /**
+     * Obtain the operands of a query atom which is a conjunction (AND) of
+     * other query atoms, nested conjunctions are expanded. All operands must
+     * match an atom for the query atom to match. If the query atom is not a
+     * conjunction it is the only operand.
+     *
+     * @param expr a query atom
+     * @return the operands of the conjunction
+     */
+    public static List<IQueryAtom> conjuncts(IQueryAtom expr) {
+        List<IQueryAtom> operands = new ArrayList<IQueryAtom>();
+        conjuncts(expr, operands);
+        return operands;
+    }
+
+    private static void conjuncts(IQueryAtom expr, List<IQueryAtom> operands) {
+        if (expr instanceof Conjunction) {
+            conjuncts(((Conjunction) expr).left, operands);
+            conjuncts(((Conjunction) expr).right, operands);
+        } else if (expr instanceof LogicalOperatorAtom
+                && "and".equals(((LogicalOperatorAtom) expr).operator)
+                && ((LogicalOperatorAtom) expr).right != null) {
+            conjuncts(((LogicalOperatorAtom) expr).left, operands);
+            conjuncts(((LogicalOperatorAtom) expr).right, operands);
+        } else {
+            operands.add(expr);
+        }
+    }
+
     /** Defines a conjunction (AND) between two query atoms. */
     private static class Conjunction extends SMARTSAtom {
 
@@ -195,6 +195,13 @@ public class SMARTSQueryTool {
      */
     private boolean skipAromaticity = false;
 
+    /**
+     * Whether a new target is prepared (ring perception, aromaticity etc.)
+     * before matching. Turned off when the targets are already prepared, e.g.
+     * with {@link SmartsPattern#prepare(IAtomContainer)}.
+     */
+    private boolean doPrep = true;
+
     // a simplistic cache to store parsed SMARTS queries
     private int MAX_ENTRIES = 20;
     Map<String, QueryAtomContainer> cache = new LinkedHashMap<String, QueryAtomContainer>(MAX_ENTRIES + 1, .75F, true) {
@@ -294,6 +301,32 @@ public class SMARTSQueryTool {
                                         "aromaticity was not provided");
     }
 
+    /**
+     * Sets whether a target is initialised (ring perception, aromaticity etc.)
+     * when it is first matched. If turned off, the targets must already have
+     * been prepared, for example by {@link SmartsPattern#prepare(IAtomContainer)},
+     * and are only modified when initialisation is forced ({@link
+     * #matches(IAtomContainer, boolean)}). This avoids initialising each
+     * target once per query tool when many tools are matched against the same
+     * targets.
+     *
+     * <blockquote><pre>
+     * for (SMARTSQueryTool sqt : tools)
+     *     sqt.setPrepare(false);
+     * for (IAtomContainer molecule : molecules) {
+     *     SmartsPattern.prepare(molecule);
+     *     for (SMARTSQueryTool sqt : tools)
+     *         sqt.matches(molecule);
+     * }
+     * </pre></blockquote>
+     *
+     * @param doPrep whether targets should be initialised (default: true)
+     */
+    @TestMethod("preparedTarget")
+    public void setPrepare(boolean doPrep) {
+        this.doPrep = doPrep;
+    }
+
     /**
      * Returns the current SMARTS pattern being used.
      *
@@ -346,7 +379,8 @@ public class SMARTSQueryTool {
      * @param atomContainer       The target moleculoe
      * @param forceInitialization If true, then the molecule is initialized (ring perception, aromaticity etc). If
      *                            false, the molecule is only initialized if it is different (in terms of object
-     *                            reference) than one supplied in a previous call to this method.
+     *                            reference) than one supplied in a previous call to this method
+     *                            and target preparation has not been turned off ({@link #setPrepare(boolean)}).
      * @return true if the pattern is found in the target molecule, false otherwise
      * @throws CDKException if there is an error in ring, aromaticity or isomorphism perception
      * @see #getMatchingAtoms()
@@ -361,7 +395,7 @@ public class SMARTSQueryTool {
         }
         else {
             this.atomContainer = atomContainer;
-            initializeMolecule();
+            if (doPrep) initializeMolecule();
         }
 
         // lets see if we have a single atom query
@@ -33,6 +33,7 @@ import org.openscience.cdk.isomorphism.ComponentGrouping;
 import org.openscience.cdk.isomorphism.Mappings;
 import org.openscience.cdk.isomorphism.Pattern;
 import org.openscience.cdk.isomorphism.SmartsStereoMatch;
+import org.openscience.cdk.isomorphism.matchers.QueryAtomContainer;
 import org.openscience.cdk.isomorphism.matchers.smarts.SmartsMatchers;
 import org.openscience.cdk.smiles.smarts.parser.SMARTSParser;
 import org.openscience.cdk.tools.LoggingToolFactory;
@@ -41,10 +42,10 @@ import java.io.IOException;
 
 /**
  * A {@link Pattern} for matching a single SMARTS query against multiple target
- * compounds. The class should <b>not</b> be used for matching many queries
- * against a single target as in substructure keyed fingerprints. The {@link
- * SMARTSQueryTool} is currently a better option as less target initialistion is
- * performed.
+ * compounds. By default each target is initialised for every match, to match
+ * many queries against a single target (as in substructure keyed
+ * fingerprints) the target should be prepared once and the prepared target
+ * matched against each query (see below).
  *
  * Simple usage:
  *
@@ -70,6 +71,23 @@ import java.io.IOException;
  * }
  * </pre></blockquote>
  *
+ * When many patterns are matched against each target, the target can be
+ * prepared once with {@link #prepare(IAtomContainer)} and the prepared target
+ * matched against each pattern ({@link #matchAll(PreparedTarget)}).
+ *
+ * <blockquote><pre>
+ * List&lt;SmartsPattern&gt; ptrns = ...;
+ *
+ * for (IAtomContainer ac : acs) {
+ *   SmartsPattern.PreparedTarget target = SmartsPattern.prepare(ac);
+ *   for (SmartsPattern ptrn : ptrns) {
+ *     if (ptrn.matches(target)) {
+ *       // 'ac' contains the pattern
+ *     }
+ *   }
+ * }
+ * </pre></blockquote>
+ *
  * @author John May
  */
 public final class SmartsPattern extends Pattern {
@@ -80,12 +98,15 @@ public final class SmartsPattern extends Pattern {
     /** Subgraph mapping. */
     private final Pattern pattern;
 
+    /** Element, charge, bond order and ring counts required of a target. */
+    private final SmartsPrescreen prescreen;
+
     /** Include invariants about ring size / number. */
     private final boolean ringInfo;
 
     /** Aromaticity model. */
-    private final Aromaticity arom = new Aromaticity(ElectronDonation.daylight(),
-                                                     Cycles.or(Cycles.all(), Cycles.relevant()));
+    private static final Aromaticity arom = new Aromaticity(ElectronDonation.daylight(),
+                                                            Cycles.or(Cycles.all(), Cycles.relevant()));
 
     /**
      * Internal constructor.
@@ -101,6 +122,7 @@ public final class SmartsPattern extends Pattern {
             throw new IOException(e);
         }
         this.pattern = Pattern.findSubstructure(query);
+        this.prescreen = SmartsPrescreen.compile(query);
 
         // X<num>, R and @ are cheap and done always but R<num>, r<num> are not
         // we inspect the SMARTS pattern string to determine if ring
@@ -108,6 +130,27 @@ public final class SmartsPattern extends Pattern {
         this.ringInfo = ringSizeOrNumber(smarts);
     }
 
+    /**
+     * Prepare a target for matching with any number of SMARTS patterns. The
+     * SMARTS invariants (including ring size and number) are assigned and the
+     * Daylight aromaticity model is applied, clearing existing aromaticity.
+     * The prepared target can then be matched against patterns ({@link
+     * #matchAll(PreparedTarget)}) without being prepared again, the target
+     * should not be modified between matches.
+     *
+     * @param target the target compound to prepare
+     * @return the prepared target
+     */
+    public static PreparedTarget prepare(IAtomContainer target) {
+        SmartsMatchers.prepare(target, true);
+        try {
+            arom.apply(target);
+        } catch (CDKException e) {
+            LoggingToolFactory.createLoggingTool(SmartsPattern.class).error(e);
+        }
+        return new PreparedTarget(target);
+    }
+
     /**
      * @inheritDoc
      */
@@ -120,7 +163,11 @@ public final class SmartsPattern extends Pattern {
      * initialisations required for the SMARTS match are automatically
      * performed. The Daylight aromaticity model is applied clearing existing
      * aromaticity. <b>Do not use this for matching multiple SMARTS againsts the
-     * same container</b>.
+     * same container</b>. Targets which do not have the elements, charges,
+     * bond orders or number of rings required by the query are rejected
+     * before any initialisation, no mappings are returned and the target is
+     * not modified. To match a target against many patterns use {@link
+     * #matchAll(PreparedTarget)}.
      *
      * <blockquote><pre>
      * Pattern ptrn = SmartsPattern.create("O[C@?H](C)CC");
@@ -139,9 +186,11 @@ public final class SmartsPattern extends Pattern {
      */
     @Override public Mappings matchAll(final IAtomContainer target) {
 
-        // TODO: prescreen target for element frequency before intialising
-        // invariants and applying aromaticity, requires pattern enumeration -
-        // see http://www.daylight.com/meetings/emug00/Sayle/substruct.html. 
+        // prescreen target for element frequency (etc) before intialising
+        // invariants and applying aromaticity - see
+        // http://www.daylight.com/meetings/emug00/Sayle/substruct.html
+        if (!prescreen.accept(target))
+            return Mappings.empty(query, target);
 
         // assign additional atom invariants for SMARTS queries, a CDK quirk
         // as each atom knows not which molecule from wence it came
@@ -154,6 +203,51 @@ public final class SmartsPattern extends Pattern {
             LoggingToolFactory.createLoggingTool(getClass()).error(e);
         }
 
+        return mappings(target);
+    }
+
+    /**
+     * Obtain the mappings of the query pattern against a target which has
+     * already been prepared ({@link #prepare(IAtomContainer)}). The target is
+     * not modified. Targets rejected by the prescreen are not searched.
+     *
+     * <blockquote><pre>
+     * SmartsPattern.PreparedTarget target = SmartsPattern.prepare(ac);
+     * for (SmartsPattern ptrn : ptrns) {
+     *   nHits += ptrn.matchAll(target).count();
+     * }
+     * </pre></blockquote>
+     *
+     * @param target the prepared target compound
+     * @return mappings of the query to the target compound
+     */
+    public Mappings matchAll(final PreparedTarget target) {
+        if (!prescreen.accept(target.container))
+            return Mappings.empty(query, target.container);
+        return mappings(target.container);
+    }
+
+    /**
+     * Determine if the query pattern can be found in a target which has
+     * already been prepared ({@link #prepare(IAtomContainer)}). The target is
+     * not modified.
+     *
+     * @param target the prepared target compound
+     * @return the pattern was found
+     */
+    public boolean matches(final PreparedTarget target) {
+        return matchAll(target).first().length > 0;
+    }
+
+    /**
+     * Match the query against a prepared target, filtering the mappings on
+     * stereochemistry and component grouping.
+     *
+     * @param target the prepared target
+     * @return mappings of the query to the target compound
+     */
+    private Mappings mappings(final IAtomContainer target) {
+
         Mappings mappings = pattern.matchAll(target);
 
         // stereochemistry and component grouping filters are skipped if the 
@@ -169,6 +263,15 @@ public final class SmartsPattern extends Pattern {
         return mappings;
     }
 
+    /**
+     * Access the parsed query.
+     *
+     * @return the query
+     */
+    QueryAtomContainer query() {
+        return (QueryAtomContainer) query;
+    }
+
     /**
      * Create a {@link Pattern} that will match the given {@code smarts} query.
      *
@@ -199,4 +302,27 @@ public final class SmartsPattern extends Pattern {
         }
         return false;
     }
+
+    /**
+     * A target compound which has been prepared for matching with any number
+     * of SMARTS patterns, see {@link #prepare(IAtomContainer)}.
+     */
+    public static final class PreparedTarget {
+
+        /** The prepared compound. */
+        private final IAtomContainer container;
+
+        private PreparedTarget(IAtomContainer container) {
+            this.container = container;
+        }
+
+        /**
+         * The prepared compound.
+         *
+         * @return the compound
+         */
+        public IAtomContainer container() {
+            return container;
+        }
+    }
 }
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.smiles.smarts;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A concurrent cache of parsed SMARTS patterns. Parsing a SMARTS is relatively
+ * expensive and services which match the same patterns repeatedly (from many
+ * threads) can obtain them from the cache. A single process-wide cache is
+ * provided by {@link #getInstance()}.
+ *
+ * <blockquote><pre>
+ * SmartsPatternCache cache = SmartsPatternCache.getInstance();
+ *
+ * // any thread
+ * SmartsPattern ptrn = cache.get("[OH]c1ccccc1", builder);
+ * if (ptrn.matches(container)) {
+ *     // 'container' contains the pattern
+ * }
+ * </pre></blockquote>
+ *
+ * The cache is bounded by the total weight of the patterns, the weight of a
+ * pattern is the number of atoms and bonds in the query plus one. As each
+ * pattern weighs at least one, the maximum weight also bounds the number of
+ * patterns. The least recently used patterns are evicted first. The cache
+ * records hit, miss, load and eviction statistics ({@link #stats()}).
+ *
+ * Cached patterns are shared, matching a shared pattern against different
+ * targets from multiple threads is safe. Targets prepared once for many
+ * patterns are matched with {@link
+ * SmartsPattern#matchAll(SmartsPattern.PreparedTarget)}. The matches of
+ * recursive SMARTS ($(...)) are memoized per target instance by the shared
+ * query, a target must not be modified whilst it is being matched. The {@link
+ * SMARTSQueryTool}, which allows the aromaticity model to be changed, parses
+ * its own queries and does not use the cache.
+ *
+ * @cdk.module smarts
+ * @cdk.githash
+ * @cdk.keyword SMARTS
+ * @see SmartsPattern
+ */
+@TestClass("org.openscience.cdk.smiles.smarts.SmartsPatternCacheTest")
+public final class SmartsPatternCache {
+
+    /** Default maximum weight of the process-wide cache. */
+    public static final long DEFAULT_MAX_WEIGHT = 100000;
+
+    /** Process-wide cache. */
+    private static final SmartsPatternCache INSTANCE = new SmartsPatternCache(DEFAULT_MAX_WEIGHT);
+
+    /** Parsed patterns. */
+    private final LoadingCache<Key, SmartsPattern> cache;
+
+    /**
+     * Create a new cache bounded by the provided total weight of the patterns.
+     *
+     * @param maxWeight maximum total weight of the cached patterns
+     */
+    @TestMethod("weightBounded")
+    public SmartsPatternCache(long maxWeight) {
+        if (maxWeight < 0)
+            throw new IllegalArgumentException("maximum weight must not be negative");
+        this.cache = CacheBuilder.newBuilder()
+                                 .maximumWeight(maxWeight)
+                                 .weigher(new Weigher<Key, SmartsPattern>() {
+                                     @Override public int weigh(Key key, SmartsPattern ptrn) {
+                                         return 1 + ptrn.query().getAtomCount() + ptrn.query().getBondCount();
+                                     }
+                                 })
+                                 .recordStats()
+                                 .build(new CacheLoader<Key, SmartsPattern>() {
+                                     @Override public SmartsPattern load(Key key) throws Exception {
+                                         return SmartsPattern.create(key.smarts, key.builder);
+                                     }
+                                 });
+    }
+
+    /**
+     * Access the process-wide cache.
+     *
+     * @return the process-wide cache
+     */
+    @TestMethod("processWide")
+    public static SmartsPatternCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Obtain the pattern for the provided SMARTS, parsing it if it is not
+     * already cached.
+     *
+     * @param smarts  SMARTS pattern string
+     * @param builder chem object builder used to create objects
+     * @return the (shared) pattern
+     * @throws IOException the SMARTS could not be parsed
+     * @see SmartsPattern#create(String, IChemObjectBuilder)
+     */
+    @TestMethod("hitsAndMisses,invalidSmarts,concurrentMatching")
+    public SmartsPattern get(String smarts, IChemObjectBuilder builder) throws IOException {
+        if (smarts == null || builder == null)
+            throw new NullPointerException("no SMARTS or builder provided");
+        try {
+            return cache.get(new Key(smarts, builder));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        } catch (ExecutionError e) {
+            throw (Error) e.getCause();
+        }
+    }
+
+    /**
+     * Hit, miss, load and eviction statistics of the cache.
+     *
+     * @return snapshot of the statistics
+     */
+    @TestMethod("hitsAndMisses,weightBounded")
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * The (approximate) number of patterns currently cached.
+     *
+     * @return number of cached patterns
+     */
+    @TestMethod("hitsAndMisses,weightBounded")
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Remove all the cached patterns.
+     */
+    @TestMethod("hitsAndMisses")
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    /** Patterns are cached by the SMARTS string and builder. */
+    private static final class Key {
+
+        private final String             smarts;
+        private final IChemObjectBuilder builder;
+
+        private Key(String smarts, IChemObjectBuilder builder) {
+            this.smarts = smarts;
+            this.builder = builder;
+        }
+
+        @Override public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key that = (Key) o;
+            return builder == that.builder && smarts.equals(that.smarts);
+        }
+
+        @Override public int hashCode() {
+            return 31 * smarts.hashCode() + System.identityHashCode(builder);
+        }
+    }
+}
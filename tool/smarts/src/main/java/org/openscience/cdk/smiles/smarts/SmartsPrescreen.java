@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.smiles.smarts;
+
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.graph.GraphUtil;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtom;
+import org.openscience.cdk.isomorphism.matchers.IQueryBond;
+import org.openscience.cdk.isomorphism.matchers.smarts.AliphaticSymbolAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.AromaticAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.AromaticQueryBond;
+import org.openscience.cdk.isomorphism.matchers.smarts.AromaticSymbolAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.AtomicNumberAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.FormalChargeAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.LogicalOperatorAtom;
+import org.openscience.cdk.isomorphism.matchers.smarts.LogicalOperatorBond;
+import org.openscience.cdk.isomorphism.matchers.smarts.OrderQueryBond;
+import org.openscience.cdk.isomorphism.matchers.smarts.RingBond;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A prescreen of the targets for a SMARTS query. Counts that any target
+ * containing the query must have are collected from the parsed query: the
+ * number of atoms of each required element, of each required (non-zero)
+ * formal charge and of each required bond order, and the minimum number of
+ * rings (circuit rank). A target which does not meet these counts can not
+ * match and is rejected before the (expensive) ring and aromaticity
+ * perception.
+ *
+ * Only requirements that hold regardless of perception are used. The element,
+ * charge and bond order of a target are not changed by preparing the target
+ * and the circuit rank of a subgraph is never more than that of the graph.
+ * A query expression which is not understood (e.g. a disjunction, negation or
+ * recursive SMARTS) places no requirement on the target.
+ *
+ * @cdk.module smarts
+ * @cdk.githash
+ * @see SmartsPattern
+ */
+final class SmartsPrescreen {
+
+    /** Number of query atoms and bonds. */
+    private final int atoms, bonds;
+
+    /** Required element symbols / atomic numbers and their frequency. */
+    private final String[] symbols;
+    private final int[]    symbolFreq;
+    private final int[]    numbers, numberFreq;
+
+    /** Required formal charges and their frequency. */
+    private final int[] charges, chargeFreq;
+
+    /** Required frequency of each bond order (indexed by ordinal), null if none. */
+    private final int[] orderFreq;
+
+    /** Minimum circuit rank (number of rings) of the target. */
+    private final int rings;
+
+    private SmartsPrescreen(int atoms, int bonds,
+                            Map<String, Integer> symbols,
+                            Map<Integer, Integer> numbers,
+                            Map<Integer, Integer> charges,
+                            int[] orderFreq,
+                            int rings) {
+        this.atoms = atoms;
+        this.bonds = bonds;
+        this.symbols = symbols.keySet().toArray(new String[symbols.size()]);
+        this.symbolFreq = values(symbols);
+        this.numbers = keys(numbers);
+        this.numberFreq = values(numbers);
+        this.charges = keys(charges);
+        this.chargeFreq = values(charges);
+        this.orderFreq = orderFreq;
+        this.rings = rings;
+    }
+
+    /**
+     * Collect the requirements of a parsed SMARTS query.
+     *
+     * @param query the parsed query
+     * @return prescreen for the query
+     */
+    static SmartsPrescreen compile(IAtomContainer query) {
+
+        Map<String, Integer> symbols = new LinkedHashMap<String, Integer>();
+        Map<Integer, Integer> numbers = new LinkedHashMap<Integer, Integer>();
+        Map<Integer, Integer> charges = new LinkedHashMap<Integer, Integer>();
+        int[] orderFreq = new int[IBond.Order.values().length];
+        boolean ring = false, orders = false;
+
+        for (IAtom atom : query.atoms()) {
+            if (!(atom instanceof IQueryAtom))
+                continue;
+            for (IQueryAtom expr : LogicalOperatorAtom.conjuncts((IQueryAtom) atom)) {
+                if (expr instanceof AliphaticSymbolAtom || expr instanceof AromaticSymbolAtom) {
+                    increment(symbols, expr.getSymbol());
+                } else if (expr instanceof AtomicNumberAtom) {
+                    increment(numbers, expr.getAtomicNumber());
+                } else if (expr instanceof FormalChargeAtom) {
+                    if (expr.getFormalCharge() != 0)
+                        increment(charges, expr.getFormalCharge());
+                }
+                // aromatic atoms are always in a ring
+                if (expr instanceof AromaticSymbolAtom || expr instanceof AromaticAtom)
+                    ring = true;
+            }
+        }
+
+        for (IBond bond : query.bonds()) {
+            if (!(bond instanceof IQueryBond))
+                continue;
+            for (IQueryBond expr : conjuncts((IQueryBond) bond)) {
+                // an aromatic order query matches any aromatic bond
+                if (expr instanceof OrderQueryBond && !expr.getFlag(CDKConstants.ISAROMATIC)
+                        && expr.getOrder() != null) {
+                    orderFreq[expr.getOrder().ordinal()]++;
+                    orders = true;
+                }
+                if (expr instanceof RingBond || expr instanceof AromaticQueryBond)
+                    ring = true;
+            }
+        }
+
+        int rings = Math.max(circuitRank(query, GraphUtil.toAdjList(query)), ring ? 1 : 0);
+
+        return new SmartsPrescreen(query.getAtomCount(), query.getBondCount(),
+                                   symbols, numbers, charges,
+                                   orders ? orderFreq : null,
+                                   rings);
+    }
+
+    /**
+     * Determine if the target may contain the query, if false is returned the
+     * target definitely does not contain the query.
+     *
+     * @param target the target structure
+     * @return the target meets the requirements of the query
+     */
+    boolean accept(IAtomContainer target) {
+
+        final int n = target.getAtomCount(), m = target.getBondCount();
+
+        if (n < atoms || m < bonds)
+            return false;
+
+        if (symbols.length > 0 || numbers.length > 0 || charges.length > 0) {
+            final int[] symbolCount = new int[symbols.length];
+            final int[] numberCount = new int[numbers.length];
+            final int[] chargeCount = new int[charges.length];
+            for (IAtom atom : target.atoms()) {
+                final String symbol = atom.getSymbol();
+                final Integer number = atom.getAtomicNumber();
+                final Integer charge = atom.getFormalCharge();
+                for (int i = 0; i < symbols.length; i++)
+                    if (symbols[i].equals(symbol)) symbolCount[i]++;
+                if (number != null)
+                    for (int i = 0; i < numbers.length; i++)
+                        if (numbers[i] == number) numberCount[i]++;
+                if (charge != null)
+                    for (int i = 0; i < charges.length; i++)
+                        if (charges[i] == charge) chargeCount[i]++;
+            }
+            if (!covers(symbolCount, symbolFreq) || !covers(numberCount, numberFreq)
+                    || !covers(chargeCount, chargeFreq))
+                return false;
+        }
+
+        if (orderFreq != null) {
+            final int[] orderCount = new int[orderFreq.length];
+            for (IBond bond : target.bonds()) {
+                if (bond.getOrder() != null)
+                    orderCount[bond.getOrder().ordinal()]++;
+            }
+            if (!covers(orderCount, orderFreq))
+                return false;
+        }
+
+        // a connected target has a circuit rank of m - n + 1, we only need to
+        // count the components if the target may be disconnected
+        if (rings > 0 && m - n + 1 < rings)
+            return circuitRank(target, GraphUtil.toAdjList(target)) >= rings;
+
+        return true;
+    }
+
+    /**
+     * The circuit rank (cyclomatic number) of a graph, |E| - |V| + the number
+     * of connected components.
+     *
+     * @param container structure
+     * @param g         adjacency list of the structure
+     * @return the circuit rank
+     */
+    static int circuitRank(IAtomContainer container, int[][] g) {
+        final int n = g.length;
+        final boolean[] visited = new boolean[n];
+        final int[] stack = new int[n];
+        int components = 0;
+        for (int i = 0; i < n; i++) {
+            if (visited[i])
+                continue;
+            components++;
+            int top = 0;
+            stack[top++] = i;
+            visited[i] = true;
+            while (top > 0) {
+                final int v = stack[--top];
+                for (int w : g[v]) {
+                    if (!visited[w]) {
+                        visited[w] = true;
+                        stack[top++] = w;
+                    }
+                }
+            }
+        }
+        return container.getBondCount() - n + components;
+    }
+
+    /**
+     * The operands of a query bond which must all match (the operands of a
+     * conjunction).
+     *
+     * @param expr a query bond
+     * @return the operands of the conjunction
+     */
+    private static List<IQueryBond> conjuncts(IQueryBond expr) {
+        List<IQueryBond> operands = new ArrayList<IQueryBond>();
+        conjuncts(expr, operands);
+        return operands;
+    }
+
+    private static void conjuncts(IQueryBond expr, List<IQueryBond> operands) {
+        if (expr instanceof LogicalOperatorBond
+                && "and".equals(((LogicalOperatorBond) expr).getOperator())
+                && ((LogicalOperatorBond) expr).getRight() != null) {
+            conjuncts(((LogicalOperatorBond) expr).getLeft(), operands);
+            conjuncts(((LogicalOperatorBond) expr).getRight(), operands);
+        } else {
+            operands.add(expr);
+        }
+    }
+
+    private static boolean covers(int[] count, int[] required) {
+        for (int i = 0; i < required.length; i++)
+            if (count[i] < required[i]) return false;
+        return true;
+    }
+
+    private static <T> void increment(Map<T, Integer> freq, T key) {
+        if (key == null)
+            return;
+        Integer count = freq.get(key);
+        freq.put(key, count == null ? 1 : count + 1);
+    }
+
+    private static int[] keys(Map<Integer, Integer> freq) {
+        int[] keys = new int[freq.size()];
+        int i = 0;
+        for (Integer key : freq.keySet())
+            keys[i++] = key;
+        return keys;
+    }
+
+    private static int[] values(Map<?, Integer> freq) {
+        int[] values = new int[freq.size()];
+        int i = 0;
+        for (Integer value : freq.values())
+            values[i++] = value;
+        return values;
+    }
+}
@@ -28,6 +28,7 @@ import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import org.junit.Test;
 import org.mockito.Matchers;
+import org.mockito.Mockito;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
@@ -304,6 +305,18 @@ public class MappingsTest {
         assertThat(ms.iterator(), is(sameInstance(iterator)));
     }
 
+    @Test
+    public void empty() throws Exception {
+        IAtomContainer target = mock(IAtomContainer.class);
+        Mappings ms = Mappings.empty(mock(IAtomContainer.class), target);
+        assertFalse(ms.iterator().hasNext());
+        assertThat(ms.count(), is(0));
+        assertThat(ms.countUnique(), is(0));
+        assertThat(ms.first().length, is(0));
+        assertFalse(ms.atLeast(1));
+        Mockito.verifyZeroInteractions(target);
+    }
+
     IChemObjectBuilder bldr   = SilentChemObjectBuilder.getInstance();
     SmilesParser       smipar = new SmilesParser(bldr);
 
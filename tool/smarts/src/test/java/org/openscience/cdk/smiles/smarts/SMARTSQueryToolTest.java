@@ -29,6 +29,7 @@ import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.CDKTestCase;
 import org.openscience.cdk.DefaultChemObjectBuilder;
 import org.openscience.cdk.aromaticity.Aromaticity;
@@ -234,6 +235,25 @@ public class SMARTSQueryToolTest extends CDKTestCase {
         assertFalse(sqt.matches(furan, true));
     }
     
+    @Test
+    public void preparedTarget() throws Exception {
+        SMARTSQueryTool sqt = new SMARTSQueryTool("c1ccccc1", DefaultChemObjectBuilder.getInstance());
+        sqt.setPrepare(false);
+
+        IAtomContainer benzene = smiles("C1=CC=CC=C1");
+        assertFalse(sqt.matches(benzene));
+
+        SmartsPattern.prepare(benzene);
+        assertTrue(sqt.matches(benzene));
+
+        // the target is not initialised again
+        for (IAtom atom : benzene.atoms())
+            atom.setFlag(CDKConstants.ISAROMATIC, false);
+        sqt.setSmarts("C1CCCCC1");
+        assertTrue(sqt.matches(benzene));
+        assertFalse(sqt.matches(benzene, true));
+    }
+
     static IAtomContainer smiles(String smi) throws Exception {
         return new SmilesParser(SilentChemObjectBuilder.getInstance()).parseSmiles(smi);
     }
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.smiles.smarts;
+
+import org.junit.Test;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @cdk.module test-smarts
+ */
+public class SmartsPatternCacheTest {
+
+    IChemObjectBuilder bldr = SilentChemObjectBuilder.getInstance();
+
+    @Test public void hitsAndMisses() throws Exception {
+        SmartsPatternCache cache = new SmartsPatternCache(100);
+        SmartsPattern ptrn = cache.get("C=O", bldr);
+        assertThat(cache.get("C=O", bldr), is(sameInstance(ptrn)));
+        assertThat(cache.get("C-O", bldr), is(not(sameInstance(ptrn))));
+        assertThat(cache.stats().hitCount(), is(1L));
+        assertThat(cache.stats().missCount(), is(2L));
+        assertThat(cache.size(), is(2L));
+        cache.clear();
+        assertThat(cache.size(), is(0L));
+    }
+
+    @Test public void prepared() throws Exception {
+        SmartsPatternCache cache = new SmartsPatternCache(100);
+        IAtomContainer container = smi("C1=CC=CC=C1");
+        SmartsPattern.PreparedTarget target = SmartsPattern.prepare(container);
+        assertThat(cache.get("c1ccccc1", bldr).matches(target), is(true));
+        assertThat(cache.get("C1=CC=CC=C1", bldr).matches(target), is(false));
+    }
+
+    @Test public void processWide() throws Exception {
+        assertThat(SmartsPatternCache.getInstance(), is(sameInstance(SmartsPatternCache.getInstance())));
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidSmarts() throws Exception {
+        new SmartsPatternCache(100).get("C(", bldr);
+    }
+
+    @Test public void weightBounded() throws Exception {
+        // each pattern weighs 3 (two atoms, one bond and one)
+        SmartsPatternCache cache = new SmartsPatternCache(9);
+        for (String smarts : new String[]{"CC", "CN", "CO", "CS", "CP"})
+            cache.get(smarts, bldr);
+        assertTrue(cache.size() <= 3);
+        assertTrue(cache.stats().evictionCount() >= 2);
+    }
+
+    @Test public void concurrentMatching() throws Exception {
+        final SmartsPatternCache cache = new SmartsPatternCache(1000);
+        final String[] smarts = {"[OH]", "c1ccccc1", "C=O", "[#7]", "[R2]"};
+        final String[] smiles = {"Oc1ccccc1", "CC(=O)N", "C1CCC2CCCCC2C1", "CCCC"};
+        final boolean[][] expected = new boolean[smarts.length][smiles.length];
+        for (int i = 0; i < smarts.length; i++)
+            for (int j = 0; j < smiles.length; j++)
+                expected[i][j] = SmartsPattern.create(smarts[i], bldr).matches(smi(smiles[j]));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int t = 0; t < 16; t++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override public Boolean call() throws Exception {
+                        for (int i = 0; i < smarts.length; i++)
+                            for (int j = 0; j < smiles.length; j++)
+                                if (cache.get(smarts[i], bldr).matches(smi(smiles[j])) != expected[i][j])
+                                    return false;
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results)
+                assertTrue(result.get());
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(cache.size(), is((long) smarts.length));
+    }
+
+    IAtomContainer smi(String smi) throws Exception {
+        return new SmilesParser(bldr).parseSmiles(smi);
+    }
+}
@@ -25,6 +25,8 @@
 package org.openscience.cdk.smiles.smarts;
 
 import org.junit.Test;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IChemObjectBuilder;
 import org.openscience.cdk.silent.SilentChemObjectBuilder;
@@ -88,6 +90,55 @@ public class SmartsPatternTest {
                                  .matches(smi("CC(O)CC")));
     }
     
+    @Test public void prescreenRejectsBeforePreparing() throws Exception {
+        IAtomContainer container = smi("C1=CC=CC=C1C");
+        assertFalse(SmartsPattern.create("[N]", bldr).matches(container));
+        for (IAtom atom : container.atoms())
+            assertFalse(atom.getFlag(CDKConstants.ISAROMATIC));
+        assertTrue(SmartsPattern.create("[C]", bldr).matches(container));
+        assertTrue(container.getAtom(0).getFlag(CDKConstants.ISAROMATIC));
+    }
+
+    /**
+     * A rejected target is not searched, a query with SMARTS invariants (e.g.
+     * H count) would otherwise be matched against an unprepared target.
+     */
+    @Test public void prescreenRejectsWithoutSearching() throws Exception {
+        SmartsPattern ptrn = SmartsPattern.create("[CH2]C=O", bldr);
+        assertTrue(ptrn.matchAll(smi("CC")).countUnique() == 0);
+        assertTrue(ptrn.matchAll(smi("CC")).count() == 0);
+        assertFalse(ptrn.matches(smi("CC")));
+        assertTrue(ptrn.matchAll(smi("CCC=O")).countUnique() == 1);
+    }
+
+    @Test public void preparedTargetRejectedByPrescreen() throws Exception {
+        SmartsPattern ptrn = SmartsPattern.create("[CH2]C=O", bldr);
+        SmartsPattern.PreparedTarget target = SmartsPattern.prepare(smi("CC"));
+        assertTrue(ptrn.matchAll(target).count() == 0);
+        assertFalse(ptrn.matches(target));
+        assertTrue(ptrn.matches(SmartsPattern.prepare(smi("CCC=O"))));
+    }
+
+    @Test public void preparedTarget() throws Exception {
+        IAtomContainer container = smi("C1=CC=CC=C1CC1CCCC1");
+        SmartsPattern.PreparedTarget target = SmartsPattern.prepare(container);
+        assertTrue(target.container() == container);
+        assertTrue(container.getAtom(0).getFlag(CDKConstants.ISAROMATIC));
+
+        SmartsPattern aromatic = SmartsPattern.create("c1ccccc1", bldr);
+        SmartsPattern ring5 = SmartsPattern.create("[r5]", bldr);
+        assertTrue(aromatic.matches(target));
+        assertTrue(ring5.matches(target));
+        assertTrue(ring5.matchAll(target).count() == 5);
+
+        // the target is not prepared again
+        for (IAtom atom : container.atoms())
+            atom.setFlag(CDKConstants.ISAROMATIC, false);
+        assertFalse(aromatic.matches(target));
+        assertFalse(container.getAtom(0).getFlag(CDKConstants.ISAROMATIC));
+        assertTrue(SmartsPattern.create("c1ccccc1", bldr).matches(container));
+    }
+
     IAtomContainer smi(String smi) throws Exception {
         return new SmilesParser(bldr).parseSmiles(smi);
     }
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.smiles.smarts;
+
+import org.junit.Test;
+import org.openscience.cdk.graph.GraphUtil;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.cdk.smiles.smarts.parser.SMARTSParser;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @cdk.module test-smarts
+ */
+public class SmartsPrescreenTest {
+
+    IChemObjectBuilder bldr = SilentChemObjectBuilder.getInstance();
+
+    @Test public void atomAndBondCount() throws Exception {
+        assertFalse(accept("CCCC", "CCC"));
+        assertFalse(accept("C1CC1", "CCC"));
+        assertTrue(accept("CCC", "CCC"));
+    }
+
+    @Test public void elementFrequency() throws Exception {
+        assertFalse(accept("ClCCl", "CCCl"));
+        assertTrue(accept("ClCCl", "ClC(Cl)C"));
+        assertFalse(accept("[#7]", "CCO"));
+        assertTrue(accept("[#7]", "CCN"));
+        assertTrue(accept("n", "c1ccncc1"));
+        assertFalse(accept("[O;H1]", "CCN"));
+    }
+
+    @Test public void disjunctionHasNoRequirement() throws Exception {
+        assertTrue(accept("[N,O]", "CCC"));
+        assertTrue(accept("[!C]", "CCC"));
+    }
+
+    @Test public void formalCharge() throws Exception {
+        assertFalse(accept("[N+]", "CCN"));
+        assertTrue(accept("[N+]", "CC[N+](C)(C)C"));
+        assertFalse(accept("[-]", "CC[N+](C)(C)C"));
+        assertTrue(accept("[-]", "CC(=O)[O-]"));
+    }
+
+    @Test public void bondOrder() throws Exception {
+        assertFalse(accept("C#N", "CC=N"));
+        assertTrue(accept("C#N", "CC#N"));
+        assertFalse(accept("C=C.C=C", "C=CCC"));
+        assertTrue(accept("C=C.C=C", "C=CC=C"));
+    }
+
+    @Test public void rings() throws Exception {
+        assertFalse(accept("C1CCCCC1", "CCCCCCC"));
+        assertFalse(accept("c", "C=CC=C"));
+        assertFalse(accept("C@C", "CCCC"));
+        assertTrue(accept("C@C", "C1CCC1"));
+        assertFalse(accept("C1CC2CCC1C2", "C1CCCCC1C"));
+        assertTrue(accept("C1CC2CCC1C2", "C1CC2CCC1C2"));
+        // disconnected target, two rings with more atoms than bonds overall
+        assertTrue(accept("C1CC1.C1CC1", "C1CC1.C1CC1.C.C"));
+        assertFalse(accept("C1CC1.C1CC1", "C1CC1.CCCC.C.C"));
+    }
+
+    @Test public void circuitRank() throws Exception {
+        IAtomContainer container = smi("C1CC2CCC1C2.c1ccccc1.CC");
+        assertThat(SmartsPrescreen.circuitRank(container, GraphUtil.toAdjList(container)), is(3));
+    }
+
+    /**
+     * The prescreen may accept targets that do not match but must never
+     * reject a target which does.
+     */
+    @Test public void neverRejectsAMatch() throws Exception {
+        String[] smarts = {"c1ccccc1", "C=C", "[#6]=[#8]", "[N+]", "[O-]", "C@C", "[R]", "*1****1",
+                           "[CH3]", "C#N", "[n;H1]", "O=C-[OH]", "c:c", "[#6]~[#6]", "(O).(O)"};
+        String[] smiles = {"c1ccccc1", "CC(=O)O", "CC#N", "c1cc[nH]c1", "C[N+](C)(C)C.[Cl-]",
+                           "CC(=O)[O-]", "C1CCCC1", "OCCO", "C1=CC=CC=C1"};
+        for (String sma : smarts) {
+            SmartsPattern ptrn = SmartsPattern.create(sma, bldr);
+            SmartsPrescreen prescreen = SmartsPrescreen.compile(SMARTSParser.parse(sma, bldr));
+            for (String smi : smiles) {
+                if (ptrn.matches(smi(smi)))
+                    assertTrue(sma + " matched " + smi, prescreen.accept(smi(smi)));
+            }
+        }
+    }
+
+    boolean accept(String smarts, String smiles) throws Exception {
+        return SmartsPrescreen.compile(SMARTSParser.parse(smarts, bldr)).accept(smi(smiles));
+    }
+
+    IAtomContainer smi(String smi) throws Exception {
+        return new SmilesParser(bldr).parseSmiles(smi);
+    }
+}
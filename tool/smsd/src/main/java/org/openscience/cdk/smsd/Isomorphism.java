@@ -49,7 +49,7 @@ import org.openscience.cdk.smsd.algorithm.vflib.VFlibMCSHandler;
 import org.openscience.cdk.smsd.algorithm.vflib.VFlibSubStructureHandler;
 import org.openscience.cdk.smsd.algorithm.vflib.VFlibTurboHandler;
 import org.openscience.cdk.smsd.filters.ChemicalFilters;
-import org.openscience.cdk.smsd.global.TimeOut;
+import org.openscience.cdk.smsd.global.SearchContext;
 import org.openscience.cdk.smsd.interfaces.AbstractMCS;
 import org.openscience.cdk.smsd.interfaces.Algorithm;
 import org.openscience.cdk.smsd.tools.MolHandler;
@@ -150,6 +150,13 @@ import org.openscience.cdk.tools.LoggingToolFactory;
  *  </pre>
  *  </font>
  *
+ * <p>Each search runs with its own {@link SearchContext} (time budget,
+ * cancellation and progress), independent searches may therefore run
+ * concurrently provided each thread uses its own Isomorphism instance. A
+ * context can be provided with {@link #setSearchContext(SearchContext)} to
+ * cancel a search from another thread. The global {@link
+ * org.openscience.cdk.smsd.global.TimeOut} is not modified.</p>
+ *
  * @cdk.require java1.5+
  *
  * @cdk.module smsd
@@ -182,6 +189,10 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
     private double bondInSensitiveTimeOut = 1.00;//mins
     private boolean subGraph = false;
     private boolean matchBonds = false;
+    /** Context provided for the searches, null to create one per search. */
+    private transient SearchContext searchContext = null;
+    /** Context of the last search. */
+    private transient SearchContext lastContext = null;
 
     /**
      * This is the algorithm factory and entry port for all the MCS algorithm in the Isomorphism
@@ -206,7 +217,6 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
         allBondMCS = new ArrayList<Map<IBond, IBond>>();
         firstBondMCS = new HashMap<IBond, IBond>();
 
-        setTime(bondTypeFlag);
         setMatchBonds(bondTypeFlag);
     }
 
@@ -393,57 +403,69 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
     }
 
     private void vfLibMCS() {
-        VFlibMCSHandler mcs = null;
-        mcs = new VFlibMCSHandler();
-        if (queryMol == null) {
-            mcs.set(rMol, pMol);
-        } else {
-            mcs.set(queryMol, pAC);
-        }
-        mcs.searchMCS(isMatchBonds());
+        withoutDeadline(new Runnable() {
+            @Override public void run() {
+                VFlibMCSHandler mcs = null;
+                mcs = new VFlibMCSHandler();
+                if (queryMol == null) {
+                    mcs.set(rMol, pMol);
+                } else {
+                    mcs.set(queryMol, pAC);
+                }
+                mcs.searchMCS(isMatchBonds());
 
-        clearMaps();
-        firstSolution.putAll(mcs.getFirstMapping());
-        allMCS.addAll(mcs.getAllMapping());
+                clearMaps();
+                firstSolution.putAll(mcs.getFirstMapping());
+                allMCS.addAll(mcs.getAllMapping());
 
-        firstAtomMCS.putAll(mcs.getFirstAtomMapping());
-        allAtomMCS.addAll(mcs.getAllAtomMapping());
+                firstAtomMCS.putAll(mcs.getFirstAtomMapping());
+                allAtomMCS.addAll(mcs.getAllAtomMapping());
+            }
+        });
     }
 
     private void subStructureHandler() {
-        VFlibSubStructureHandler subGraphTurboSearch = null;
-        subGraphTurboSearch = new VFlibSubStructureHandler();
-        if (queryMol == null) {
-            subGraphTurboSearch.set(rMol, pMol);
-        } else {
-            subGraphTurboSearch.set(queryMol, pAC);
-        }
-        clearMaps();
-        subGraph = subGraphTurboSearch.isSubgraph(isMatchBonds());
-        if (subGraph) {
-            firstSolution.putAll(subGraphTurboSearch.getFirstMapping());
-            allMCS.addAll(subGraphTurboSearch.getAllMapping());
-            firstAtomMCS.putAll(subGraphTurboSearch.getFirstAtomMapping());
-            allAtomMCS.addAll(subGraphTurboSearch.getAllAtomMapping());
-        }
+        withoutDeadline(new Runnable() {
+            @Override public void run() {
+                VFlibSubStructureHandler subGraphTurboSearch = null;
+                subGraphTurboSearch = new VFlibSubStructureHandler();
+                if (queryMol == null) {
+                    subGraphTurboSearch.set(rMol, pMol);
+                } else {
+                    subGraphTurboSearch.set(queryMol, pAC);
+                }
+                clearMaps();
+                subGraph = subGraphTurboSearch.isSubgraph(isMatchBonds());
+                if (subGraph) {
+                    firstSolution.putAll(subGraphTurboSearch.getFirstMapping());
+                    allMCS.addAll(subGraphTurboSearch.getAllMapping());
+                    firstAtomMCS.putAll(subGraphTurboSearch.getFirstAtomMapping());
+                    allAtomMCS.addAll(subGraphTurboSearch.getAllAtomMapping());
+                }
+            }
+        });
     }
 
     private void turboSubStructureHandler() {
-        VFlibTurboHandler subGraphTurboSearch = null;
-        subGraphTurboSearch = new VFlibTurboHandler();
-        if (queryMol == null) {
-            subGraphTurboSearch.set(rMol, pMol);
-        } else {
-            subGraphTurboSearch.set(queryMol, pAC);
-        }
-        clearMaps();
-        subGraph = subGraphTurboSearch.isSubgraph(isMatchBonds());
-        if (subGraph) {
-            firstSolution.putAll(subGraphTurboSearch.getFirstMapping());
-            allMCS.addAll(subGraphTurboSearch.getAllMapping());
-            firstAtomMCS.putAll(subGraphTurboSearch.getFirstAtomMapping());
-            allAtomMCS.addAll(subGraphTurboSearch.getAllAtomMapping());
-        }
+        withoutDeadline(new Runnable() {
+            @Override public void run() {
+                VFlibTurboHandler subGraphTurboSearch = null;
+                subGraphTurboSearch = new VFlibTurboHandler();
+                if (queryMol == null) {
+                    subGraphTurboSearch.set(rMol, pMol);
+                } else {
+                    subGraphTurboSearch.set(queryMol, pAC);
+                }
+                clearMaps();
+                subGraph = subGraphTurboSearch.isSubgraph(isMatchBonds());
+                if (subGraph) {
+                    firstSolution.putAll(subGraphTurboSearch.getFirstMapping());
+                    allMCS.addAll(subGraphTurboSearch.getAllMapping());
+                    firstAtomMCS.putAll(subGraphTurboSearch.getFirstAtomMapping());
+                    allAtomMCS.addAll(subGraphTurboSearch.getAllAtomMapping());
+                }
+            }
+        });
     }
 
     private void singleMapping() {
@@ -552,22 +574,46 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
         vfLibMCS();
     }
 
-    private void setTime(boolean bondTypeFlag) {
-        if (bondTypeFlag) {
-            TimeOut tmo = TimeOut.getInstance();
-            tmo.setTimeOut(getBondSensitiveTimeOut());
-        } else {
-            TimeOut tmo = TimeOut.getInstance();
-            tmo.setTimeOut(getBondInSensitiveTimeOut());
-        }
-    }
-
+    /**
+     * Whether the last search ran out of time.
+     *
+     * @return the last search timed out
+     */
     public boolean isTimeOut() {
-        return TimeOut.getInstance().isTimeOutFlag();
+        return lastContext != null && lastContext.isTimedOut();
     }
 
+    /**
+     * Clear the time out of the last search.
+     */
     public void resetTimeOut() {
-        TimeOut.getInstance().setTimeOutFlag(false);
+        lastContext = null;
+    }
+
+    /**
+     * Set the context (time budget, cancellation and progress) of the next
+     * search run by this instance. A context is used for a single search, the
+     * following searches create their own context from the bond sensitive /
+     * insensitive time out unless a new context is set. Searches in different
+     * threads should use different instances (and contexts), the search can
+     * be cancelled from any thread with {@link SearchContext#cancel()}.
+     *
+     * @param context the context of the next search, null to create one
+     */
+    @TestMethod("testSearchContext")
+    public void setSearchContext(SearchContext context) {
+        this.searchContext = context;
+    }
+
+    /**
+     * The context of the last search (or the provided context), this provides
+     * the progress and whether the search was cancelled or timed out.
+     *
+     * @return the search context, null if no search was run
+     */
+    @TestMethod("testSearchContext")
+    public SearchContext getSearchContext() {
+        return lastContext != null ? lastContext : searchContext;
     }
 
     private void clearMaps() {
@@ -584,10 +630,14 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
      * @param removeHydrogen
      *
      */
-    private void init(MolHandler reactant, MolHandler product) throws CDKException {
+    private void init(final MolHandler reactant, final MolHandler product) throws CDKException {
         this.rMol = reactant;
         this.pMol = product;
-        mcsBuilder(reactant, product);
+        search(new Runnable() {
+            @Override public void run() {
+                mcsBuilder(reactant, product);
+            }
+        });
     }
 
     /**
@@ -600,7 +650,43 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
     public void init(IQueryAtomContainer reactant, IAtomContainer product) throws CDKException {
         this.queryMol = reactant;
         this.pAC = product;
-        mcsBuilder(queryMol, pAC);
+        search(new Runnable() {
+            @Override public void run() {
+                mcsBuilder(queryMol, pAC);
+            }
+        });
+    }
+
+    /**
+     * Run the search with the provided search context bound to the current
+     * thread, if no context was provided a new context with the bond
+     * sensitive or insensitive time out is created. A provided context is
+     * only used for one search.
+     *
+     * @param task the search
+     */
+    private void search(Runnable task) {
+        SearchContext context = searchContext;
+        this.searchContext = null;
+        if (context == null)
+            context = new SearchContext(isMatchBonds() ? getBondSensitiveTimeOut() : getBondInSensitiveTimeOut());
+        this.lastContext = context;
+        context.run(task);
+    }
+
+    /**
+     * The VF algorithms are not limited by the time out, they are often run
+     * after the other algorithms have timed out, but do stop when the search
+     * is cancelled.
+     *
+     * @param task the search
+     */
+    private static void withoutDeadline(Runnable task) {
+        SearchContext context = SearchContext.current();
+        if (context != null)
+            context.withoutDeadline().run(task);
+        else
+            task.run();
     }
 
     /**
@@ -667,7 +753,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
      */
     @Override
     @TestMethod("testGetFragmentSize")
-    public synchronized Integer getFragmentSize(int Key) {
+    public Integer getFragmentSize(int Key) {
         return (fragmentSize != null && !fragmentSize.isEmpty())
                 ? fragmentSize.get(Key) : null;
     }
@@ -676,7 +762,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
      */
     @Override
     @TestMethod("testGetStereoScore")
-    public synchronized Integer getStereoScore(int Key) {
+    public Integer getStereoScore(int Key) {
         return (stereoScore != null && !stereoScore.isEmpty()) ? stereoScore.get(Key).intValue() : null;
     }
 
@@ -684,7 +770,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
      */
     @Override
     @TestMethod("testGetEnergyScore")
-    public synchronized Double getEnergyScore(int Key) {
+    public Double getEnergyScore(int Key) {
         return (bEnergies != null && !bEnergies.isEmpty()) ? bEnergies.get(Key) : null;
     }
 
@@ -692,7 +778,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
      */
     @Override
     @TestMethod("testGetFirstMapping")
-    public synchronized Map<Integer, Integer> getFirstMapping() {
+    public Map<Integer, Integer> getFirstMapping() {
         return firstSolution.isEmpty() ? null : firstSolution;
     }
 
@@ -700,7 +786,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
      */
     @Override
     @TestMethod("testGetAllMapping")
-    public synchronized List<Map<Integer, Integer>> getAllMapping() {
+    public List<Map<Integer, Integer>> getAllMapping() {
         return allMCS.isEmpty() ? null : allMCS;
     }
 
@@ -708,7 +794,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
      */
     @Override
     @TestMethod("testGetFirstAtomMapping")
-    public synchronized Map<IAtom, IAtom> getFirstAtomMapping() {
+    public Map<IAtom, IAtom> getFirstAtomMapping() {
         return firstAtomMCS.isEmpty() ? null : firstAtomMCS;
     }
 
@@ -716,7 +802,7 @@ public final class Isomorphism extends AbstractMCS implements Serializable {
      */
     @Override
     @TestMethod("testGetAllAtomMapping")
-    public synchronized List<Map<IAtom, IAtom>> getAllAtomMapping() {
+    public List<Map<IAtom, IAtom>> getAllAtomMapping() {
         return allAtomMCS.isEmpty() ? null : allAtomMCS;
     }
 
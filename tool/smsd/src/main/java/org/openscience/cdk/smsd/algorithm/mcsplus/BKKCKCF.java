@@ -150,7 +150,8 @@ public class BKKCKCF {
                 }
                 if (clique_size == bestCliqueSize) {
                     //System.out.println("vertexOfCurrentClique-Clique " + vertexOfCurrentClique);
-                    maxCliquesSet.add(vertexOfCurrentClique);
+                    // copy, the clique of a start node is reused for the next start node
+                    maxCliquesSet.add(new ArrayList<Integer>(vertexOfCurrentClique));
                 }
             }
             return 0;
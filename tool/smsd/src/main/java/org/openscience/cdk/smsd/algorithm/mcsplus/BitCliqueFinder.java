@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.smsd.algorithm.mcsplus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Stack;
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+import org.openscience.cdk.smsd.tools.TimeManager;
+
+/**
+ * Finds the maximum c-cliques of a {@link BitCompatibilityGraph}, this is the
+ * enumeration of {@link BKKCKCF} (Bron-Kerbosch with the c-clique extension of
+ * Cazals and Karande [F. Cazals, C. Karande: An Algorithm for reporting
+ * maximal c-cliques; Theoretical Comp. Sc. (2005); vol 349; pp. 484-490]) on
+ * bit sets. The candidates (P), the d-edge candidates (D) and the excluded
+ * nodes (X) of each call are bit sets so the membership tests and
+ * neighbourhood intersections are word-wise operations, and the neighbours of
+ * a node are read from the graph rather than found by scanning the edge lists.
+ *
+ * <p>The nodes are visited in the same order as {@link BKKCKCF}: once a node
+ * has been branched on, its neighbours are not branched on at the same level
+ * (the branched node acts as the pivot). In addition, a greedy colouring of the
+ * candidates bounds the size of the cliques that can extend the current
+ * clique; a branch is abandoned when this bound is smaller than the largest
+ * clique found so far. Only cliques that would never be stored are pruned so
+ * the cliques found (and their order) are the same as {@link BKKCKCF}.</p>
+ *
+ * <p>The search stops, keeping the cliques found so far, when the MCS search
+ * times out or is cancelled ({@link MCSPlus#isTimeOut()}).</p>
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @see BKKCKCF
+ */
+@TestClass("org.openscience.cdk.smsd.algorithm.mcsplus.BitCliqueFinderTest")
+public final class BitCliqueFinder {
+
+    private final BitCompatibilityGraph graph;
+    private final int words;
+
+    /** The current clique (node indices) and its size. */
+    private final int[] clique;
+    private int size = 0;
+
+    private final List<List<Integer>> maxCliquesSet = new ArrayList<List<Integer>>();
+    private int bestCliqueSize = 0;
+    private boolean stopped = false;
+
+    /**
+     * Find the maximum c-cliques of the provided compatibility graph.
+     *
+     * @param graph compatibility graph
+     */
+    @TestMethod("empty,single,triangle,dEdges,sameAsBKKCKCF")
+    public BitCliqueFinder(BitCompatibilityGraph graph) {
+        MCSPlus.setTimeManager(new TimeManager());
+        this.graph = graph;
+        this.words = graph.words();
+        this.clique = new int[graph.size()];
+        init();
+    }
+
+    /**
+     * Start a search from each node that is not a neighbour of a previous
+     * start node.
+     */
+    private void init() {
+        long[] processed = new long[words];
+        long[] skip = new long[words];
+        for (int s = 0; s < graph.size() && !stopped; s++) {
+            if (contains(skip, s))
+                continue;
+
+            int[] p = new int[graph.cNbrs[s].length];
+            int pSize = 0;
+            long[] d = new long[words];
+            long[] x = new long[words];
+            for (int v : graph.cNbrs[s]) {
+                if (contains(processed, v))
+                    add(x, v);
+                else
+                    p[pSize++] = v;
+            }
+            for (int v : graph.dNbrs[s]) {
+                if (!contains(processed, v))
+                    add(d, v);
+            }
+            or(skip, graph.adj[s]);
+
+            clique[size++] = s;
+            enumerate(p, pSize, d, x);
+            size--;
+            add(processed, s);
+        }
+    }
+
+    /**
+     * Extend the current clique, the candidates, d-edge candidates and
+     * excluded nodes are all adjacent to every node in the current clique.
+     *
+     * @param p     candidates (in order)
+     * @param pSize number of candidates
+     * @param d     candidates adjacent to the clique only by d-edges
+     * @param x     excluded nodes
+     */
+    private void enumerate(int[] p, int pSize, long[] d, long[] x) {
+        if (MCSPlus.isTimeOut()) {
+            stopped = true;
+            return;
+        }
+
+        if (pSize == 0) {
+            if (isEmpty(x))
+                store();
+            return;
+        }
+
+        long[] pSet = new long[words];
+        for (int i = 0; i < pSize; i++)
+            add(pSet, p[i]);
+
+        // the clique can not be extended to the best size
+        int need = bestCliqueSize - size;
+        if (need > 0 && !canReach(pSet, d, need))
+            return;
+
+        long[] skip = new long[words];
+        for (int i = 0; i < pSize && !stopped; i++) {
+            final int u = p[i];
+            if (contains(skip, u))
+                continue;
+            remove(pSet, u);
+
+            // candidates of the next level: P (and D nodes c-adjacent to u)
+            // intersected with the neighbours of u
+            long[] dNext = new long[words];
+            long[] xNext = new long[words];
+            long[] moved = new long[words];
+            for (int w = 0; w < words; w++) {
+                moved[w] = d[w] & graph.cAdj[u][w];
+                dNext[w] = d[w] & ~moved[w] & graph.adj[u][w];
+                xNext[w] = x[w] & graph.adj[u][w];
+            }
+            int[] pNext = new int[pSize + graph.cNbrs[u].length];
+            int pNextSize = 0;
+            for (int v : graph.cNbrs[u]) {
+                if (contains(pSet, v) || contains(moved, v))
+                    pNext[pNextSize++] = v;
+            }
+            for (int v : graph.dNbrs[u]) {
+                if (contains(pSet, v) || contains(moved, v))
+                    pNext[pNextSize++] = v;
+            }
+            or(skip, graph.adj[u]);
+
+            clique[size++] = u;
+            enumerate(pNext, pNextSize, dNext, xNext);
+            size--;
+            add(x, u);
+        }
+    }
+
+    /**
+     * Determine whether the candidates could contain a clique of the given
+     * size. A greedy colouring of the candidates splits them in to independent
+     * sets (colours), a clique contains at most one node of each colour.
+     *
+     * @param p    candidates
+     * @param d    d-edge candidates
+     * @param need required clique size
+     * @return the candidates may contain a clique of the required size
+     */
+    private boolean canReach(long[] p, long[] d, int need) {
+        long[] uncoloured = new long[words];
+        int count = 0;
+        for (int w = 0; w < words; w++) {
+            uncoloured[w] = p[w] | d[w];
+            count += Long.bitCount(uncoloured[w]);
+        }
+        if (count < need)
+            return false;
+        long[] independent = new long[words];
+        int colours = 0;
+        while (!isEmpty(uncoloured)) {
+            if (++colours >= need)
+                return true;
+            System.arraycopy(uncoloured, 0, independent, 0, words);
+            for (int v = nextSetBit(independent, 0); v >= 0; v = nextSetBit(independent, v + 1)) {
+                remove(uncoloured, v);
+                long[] vAdj = graph.adj[v];
+                for (int w = v >>> 6; w < words; w++)
+                    independent[w] &= ~vAdj[w];
+            }
+        }
+        return false;
+    }
+
+    /** Store the current (maximal) clique if it is at least as big as the best. */
+    private void store() {
+        if (size < bestCliqueSize)
+            return;
+        if (size > bestCliqueSize) {
+            maxCliquesSet.clear();
+            bestCliqueSize = size;
+        }
+        List<Integer> ids = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++)
+            ids.add(graph.id(clique[i]));
+        maxCliquesSet.add(ids);
+    }
+
+    /**
+     * Size of the maximum c-cliques.
+     *
+     * @return clique size
+     */
+    @TestMethod("single,triangle,dEdges,sameAsBKKCKCF")
+    protected int getBestCliqueSize() {
+        return bestCliqueSize;
+    }
+
+    /**
+     * The maximum c-cliques, each clique is a list of the node ids.
+     *
+     * @return the maximum c-cliques
+     */
+    @TestMethod("empty,single,triangle,dEdges,sameAsBKKCKCF")
+    protected Stack<List<Integer>> getMaxCliqueSet() {
+        Stack<List<Integer>> solution = new Stack<List<Integer>>();
+        solution.addAll(maxCliquesSet);
+        return solution;
+    }
+
+    private static boolean contains(long[] set, int v) {
+        return (set[v >>> 6] & (1L << v)) != 0;
+    }
+
+    private static void add(long[] set, int v) {
+        set[v >>> 6] |= 1L << v;
+    }
+
+    private static void remove(long[] set, int v) {
+        set[v >>> 6] &= ~(1L << v);
+    }
+
+    private static void or(long[] set, long[] other) {
+        for (int w = 0; w < set.length; w++)
+            set[w] |= other[w];
+    }
+
+    private static boolean isEmpty(long[] set) {
+        for (long word : set)
+            if (word != 0)
+                return false;
+        return true;
+    }
+
+    private static int nextSetBit(long[] set, int from) {
+        int w = from >>> 6;
+        if (w >= set.length)
+            return -1;
+        long word = set[w] & (-1L << from);
+        while (true) {
+            if (word != 0)
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            if (++w == set.length)
+                return -1;
+            word = set[w];
+        }
+    }
+}
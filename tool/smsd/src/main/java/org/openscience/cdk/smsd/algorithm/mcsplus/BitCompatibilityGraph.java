@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.smsd.algorithm.mcsplus;
+
+import java.util.Arrays;
+import java.util.List;
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+
+/**
+ * The compatibility graph produced by {@link GenerateCompatibilityGraph}
+ * stored as bit sets. Each node of the compatibility graph is given an index
+ * (0..n-1) and the c-edges and d-edges of a node are stored as a row of
+ * 64-bit words, bit <i>j</i> of the row of <i>i</i> is set when <i>i</i> and
+ * <i>j</i> are adjacent. The neighbours of each node are also kept (in the
+ * order of the edge lists) as arrays. Neighbourhood intersections and
+ * membership tests in the clique search ({@link BitCliqueFinder}) are then
+ * word-wise operations instead of scans of the boxed edge lists.
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @see BitCliqueFinder
+ */
+@TestClass("org.openscience.cdk.smsd.algorithm.mcsplus.BitCompatibilityGraphTest")
+public final class BitCompatibilityGraph {
+
+    /** Number of nodes and words per row. */
+    private final int size, words;
+
+    /** Node id (as used in the edge lists) of each node index. */
+    private final int[] ids;
+
+    /** C-edges, D-edges and all edges (C or D) of each node. */
+    final long[][] cAdj, dAdj, adj;
+
+    /** C-edge and D-edge neighbours of each node, in the order of the edge lists. */
+    final int[][] cNbrs, dNbrs;
+
+    /**
+     * Create the bit set compatibility graph from the nodes and edges of a
+     * {@link GenerateCompatibilityGraph}.
+     *
+     * @param compGraphNodes nodes, triples of the query atom, target atom and
+     *                       node id
+     * @param cEdges         pairs of node ids connected by a c-edge
+     * @param dEdges         pairs of node ids connected by a d-edge
+     */
+    @TestMethod("edges,empty")
+    public BitCompatibilityGraph(List<Integer> compGraphNodes, List<Integer> cEdges, List<Integer> dEdges) {
+        this.size = compGraphNodes.size() / 3;
+        this.words = (size + 63) >>> 6;
+        this.ids = new int[size];
+
+        int maxId = 0;
+        for (int i = 0; i < size; i++) {
+            ids[i] = compGraphNodes.get(i * 3 + 2);
+            maxId = Math.max(maxId, ids[i]);
+        }
+        int[] index = new int[maxId + 1];
+        for (int i = 0; i < size; i++)
+            index[ids[i]] = i;
+
+        this.cAdj = new long[size][words];
+        this.dAdj = new long[size][words];
+        this.adj = new long[size][words];
+        this.cNbrs = addEdges(cAdj, index, cEdges);
+        this.dNbrs = addEdges(dAdj, index, dEdges);
+        for (int i = 0; i < size; i++)
+            for (int w = 0; w < words; w++)
+                adj[i][w] = cAdj[i][w] | dAdj[i][w];
+    }
+
+    /**
+     * Set the bits of each edge and list the neighbours of each node in the
+     * order the edges are listed.
+     */
+    private int[][] addEdges(long[][] rows, int[] index, List<Integer> edges) {
+        int[] degree = new int[size];
+        int[] us = new int[edges.size() / 2];
+        int[] vs = new int[edges.size() / 2];
+        int m = 0;
+        for (int k = 0; k + 1 < edges.size(); k += 2) {
+            int u = index[edges.get(k)];
+            int v = index[edges.get(k + 1)];
+            if (u == v || (rows[u][v >>> 6] & (1L << v)) != 0)
+                continue;
+            rows[u][v >>> 6] |= 1L << v;
+            rows[v][u >>> 6] |= 1L << u;
+            degree[u]++;
+            degree[v]++;
+            us[m] = u;
+            vs[m++] = v;
+        }
+        int[][] nbrs = new int[size][];
+        for (int i = 0; i < size; i++)
+            nbrs[i] = new int[degree[i]];
+        Arrays.fill(degree, 0);
+        for (int e = 0; e < m; e++) {
+            nbrs[us[e]][degree[us[e]]++] = vs[e];
+            nbrs[vs[e]][degree[vs[e]]++] = us[e];
+        }
+        return nbrs;
+    }
+
+    /**
+     * Number of nodes in the compatibility graph.
+     *
+     * @return number of nodes
+     */
+    @TestMethod("edges,empty")
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of 64-bit words in each row.
+     *
+     * @return words per row
+     */
+    int words() {
+        return words;
+    }
+
+    /**
+     * The node id (as used in the edge lists) of the node at the given index.
+     *
+     * @param i node index
+     * @return node id
+     */
+    @TestMethod("edges")
+    public int id(int i) {
+        return ids[i];
+    }
+
+    /**
+     * Whether the nodes at the given indices are connected by a c-edge.
+     *
+     * @param i node index
+     * @param j node index
+     * @return the nodes are connected by a c-edge
+     */
+    @TestMethod("edges")
+    public boolean isCEdge(int i, int j) {
+        return (cAdj[i][j >>> 6] & (1L << j)) != 0;
+    }
+
+    /**
+     * Whether the nodes at the given indices are connected by a d-edge.
+     *
+     * @param i node index
+     * @param j node index
+     * @return the nodes are connected by a d-edge
+     */
+    @TestMethod("edges")
+    public boolean isDEdge(int i, int j) {
+        return (dAdj[i][j >>> 6] & (1L << j)) != 0;
+    }
+}
@@ -32,6 +32,7 @@ import org.openscience.cdk.annotations.TestClass;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.smsd.algorithm.mcgregor.McGregor;
+import org.openscience.cdk.smsd.global.SearchContext;
 import org.openscience.cdk.smsd.global.TimeOut;
 import org.openscience.cdk.smsd.tools.TimeManager;
 
@@ -72,7 +73,9 @@ public class MCSPlus {
      * @param aTimeManager the timeManager to set
      */
     protected synchronized static void setTimeManager(TimeManager aTimeManager) {
-        TimeOut.getInstance().setTimeOutFlag(false);
+        // a search with its own context does not touch the global flag
+        if (SearchContext.current() == null)
+            TimeOut.getInstance().setTimeOutFlag(false);
         timeManager = aTimeManager;
     }
 
@@ -98,7 +101,7 @@ public class MCSPlus {
 //            System.err.println("C_edges: " + C_edges.size());
 //            System.out.println("D_edges: " + D_edges.size());
 
-            BKKCKCF init = new BKKCKCF(comp_graph_nodes, C_edges, D_edges);
+            BitCliqueFinder init = new BitCliqueFinder(new BitCompatibilityGraph(comp_graph_nodes, C_edges, D_edges));
             maxCliqueSet = init.getMaxCliqueSet();
 
 //            System.err.println("**************************************************");
@@ -129,7 +132,21 @@ public class MCSPlus {
         return mappings;
     }
 
-    public synchronized static boolean isTimeOut() {
+    /**
+     * Whether the search should stop. The search context bound to the
+     * current thread is checked, if there is none the global {@link TimeOut}
+     * is used.
+     *
+     * @return the search was cancelled or ran out of time
+     */
+    public static boolean isTimeOut() {
+        SearchContext context = SearchContext.current();
+        if (context != null)
+            return context.isExpired();
+        return isGlobalTimeOut();
+    }
+
+    private synchronized static boolean isGlobalTimeOut() {
         if (getTimeout() > -1 && getTimeManager().getElapsedTimeInMinutes() > getTimeout()) {
             TimeOut.getInstance().setTimeOutFlag(true);
             return true;
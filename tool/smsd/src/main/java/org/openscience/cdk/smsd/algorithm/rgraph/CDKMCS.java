@@ -70,6 +70,7 @@ import org.openscience.cdk.smsd.algorithm.matchers.BondMatcher;
 import org.openscience.cdk.smsd.algorithm.matchers.DefaultBondMatcher;
 import org.openscience.cdk.smsd.algorithm.matchers.DefaultMatcher;
 import org.openscience.cdk.smsd.algorithm.matchers.DefaultRGraphAtomMatcher;
+import org.openscience.cdk.smsd.global.SearchContext;
 import org.openscience.cdk.smsd.global.TimeOut;
 import org.openscience.cdk.smsd.tools.TimeManager;
 import org.openscience.cdk.tools.manipulator.BondManipulator;
@@ -1172,11 +1173,27 @@ public class CDKMCS {
      * @param aTimeManager the timeManager to set
      */
     protected synchronized static void setTimeManager(TimeManager aTimeManager) {
-        TimeOut.getInstance().setTimeOutFlag(false);
+        // a search with its own context does not touch the global flag
+        if (SearchContext.current() == null)
+            TimeOut.getInstance().setTimeOutFlag(false);
         timeManager = aTimeManager;
     }
 
-    public synchronized static boolean isTimeOut() {
+    /**
+     * Whether the search should stop. The search context bound to the
+     * current thread is checked, if there is none the global {@link TimeOut}
+     * is used.
+     *
+     * @return the search was cancelled or ran out of time
+     */
+    public static boolean isTimeOut() {
+        SearchContext context = SearchContext.current();
+        if (context != null)
+            return context.isExpired();
+        return isGlobalTimeOut();
+    }
+
+    private synchronized static boolean isGlobalTimeOut() {
         if (getTimeout() > -1 && getTimeManager().getElapsedTimeInMinutes() > getTimeout()) {
             TimeOut.getInstance().setTimeOutFlag(true);
             return true;
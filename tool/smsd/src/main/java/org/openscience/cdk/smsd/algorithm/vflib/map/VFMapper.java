@@ -62,6 +62,7 @@ import org.openscience.cdk.smsd.algorithm.vflib.interfaces.INode;
 import org.openscience.cdk.smsd.algorithm.vflib.interfaces.IQuery;
 import org.openscience.cdk.smsd.algorithm.vflib.interfaces.IState;
 import org.openscience.cdk.smsd.algorithm.vflib.query.QueryCompiler;
+import org.openscience.cdk.smsd.global.SearchContext;
 import org.openscience.cdk.smsd.global.TimeOut;
 import org.openscience.cdk.smsd.tools.TimeManager;
 
@@ -99,7 +100,9 @@ public class VFMapper implements IMapper {
      * @param aTimeManager the timeManager to set
      */
     protected synchronized static void setTimeManager(TimeManager aTimeManager) {
-        TimeOut.getInstance().setTimeOutFlag(false);
+        // a search with its own context does not touch the global flag
+        if (SearchContext.current() == null)
+            TimeOut.getInstance().setTimeOutFlag(false);
         timeManager = aTimeManager;
     }
 
@@ -213,7 +216,7 @@ public class VFMapper implements IMapper {
     }
 
     private void mapAll(IState state) {
-        if (state.isDead()) {
+        if (state.isDead() || isStopped()) {
             return;
         }
 
@@ -241,7 +244,7 @@ public class VFMapper implements IMapper {
     }
 
     private boolean mapFirst(IState state) {
-        if (state.isDead()) {
+        if (state.isDead() || isStopped()) {
             return false;
         }
 
@@ -271,7 +274,30 @@ public class VFMapper implements IMapper {
         return false;
     }
 
-    public synchronized static boolean isTimeOut() {
+    /**
+     * The VF search only stops for a context bound to the current thread, the
+     * global time out is not checked.
+     */
+    private static boolean isStopped() {
+        SearchContext context = SearchContext.current();
+        return context != null && context.isExpired();
+    }
+
+    /**
+     * Whether the search should stop. The search context bound to the
+     * current thread is checked, if there is none the global {@link TimeOut}
+     * is used.
+     *
+     * @return the search was cancelled or ran out of time
+     */
+    public static boolean isTimeOut() {
+        SearchContext context = SearchContext.current();
+        if (context != null)
+            return context.isExpired();
+        return isGlobalTimeOut();
+    }
+
+    private synchronized static boolean isGlobalTimeOut() {
         if (getTimeout() > -1 && getTimeManager().getElapsedTimeInMinutes() > getTimeout()) {
             TimeOut.getInstance().setTimeOutFlag(true);
             return true;
@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.smsd.global;
+
+import org.openscience.cdk.annotations.TestClass;
+import org.openscience.cdk.annotations.TestMethod;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The execution context of an MCS search: a deadline, a cancellation flag and
+ * a progress counter. Unlike the process-global {@link TimeOut}, each search
+ * has its own context so that searches can run concurrently (e.g. on a thread
+ * pool) without sharing a deadline or timeout flag.
+ *
+ * The algorithms ({@link org.openscience.cdk.smsd.algorithm.mcsplus.MCSPlus},
+ * {@link org.openscience.cdk.smsd.algorithm.rgraph.CDKMCS} and the VF
+ * mappers) check the context bound to the current thread, a context is bound
+ * for the duration of a task with {@link #run(Runnable)}. When no context is
+ * bound the algorithms fall back to the global {@link TimeOut}. The {@link
+ * org.openscience.cdk.smsd.Isomorphism} binds a context for each search.
+ *
+ * A context is used for a single search. The clock starts when the context is
+ * first bound with {@link #run(Runnable)} (or first checked), not when it is
+ * created, so a context may be created ahead of the search. Once the outermost
+ * {@link #run(Runnable)} has returned the search is finished and binding the
+ * context again throws an {@link IllegalStateException}, create a new context
+ * for the next search.
+ *
+ * <blockquote><pre>
+ * final SearchContext context = new SearchContext(0.5); // 30 seconds
+ * final Isomorphism   smsd    = new Isomorphism(Algorithm.DEFAULT, true);
+ * smsd.setSearchContext(context);
+ * Future&lt;?&gt; f = executor.submit(new Callable&lt;Void&gt;() {
+ *     public Void call() throws CDKException {
+ *         smsd.init(query, target, true, true);
+ *         return null;
+ *     }
+ * });
+ * // ... from any thread
+ * context.cancel();
+ * </pre></blockquote>
+ *
+ * @cdk.module smsd
+ * @cdk.githash
+ * @see TimeOut
+ */
+@TestClass("org.openscience.cdk.smsd.global.SearchContextTest")
+public final class SearchContext {
+
+    /** The context bound to each thread. */
+    private static final ThreadLocal<SearchContext> CURRENT = new ThreadLocal<SearchContext>();
+
+    /** Time budget in nanoseconds, -1 if there is no limit. */
+    private final long budget;
+
+    /** Deadline (System.nanoTime()), Long.MAX_VALUE until started or if there is none. */
+    private volatile long deadline = Long.MAX_VALUE;
+
+    /** Whether the clock was started and whether the search has finished. */
+    private boolean started = false;
+    private boolean finished = false;
+
+    /** Number of active bindings (e.g. worker threads) of this context. */
+    private int active = 0;
+
+    /** Cancellation flag and progress counter, shared with derived contexts. */
+    private final AtomicBoolean cancelled;
+    private final AtomicLong    progress;
+
+    /** Whether the deadline was reached. */
+    private volatile boolean timedOut = false;
+
+    /**
+     * Create a context with a time budget in minutes, a negative budget
+     * (e.g. -1) never times out (the convention of {@link TimeOut}). The
+     * budget is counted from the start of the search.
+     *
+     * @param timeout time budget in minutes, &lt; 0 for no limit
+     */
+    @TestMethod("timeout,noTimeout")
+    public SearchContext(double timeout) {
+        this(timeout < 0 ? -1 : (long) (timeout * 60e9), new AtomicBoolean(), new AtomicLong());
+    }
+
+    private SearchContext(long budget, AtomicBoolean cancelled, AtomicLong progress) {
+        this.budget = budget;
+        this.cancelled = cancelled;
+        this.progress = progress;
+    }
+
+    /**
+     * Start the clock, the deadline is set the first time the context is
+     * bound or checked.
+     */
+    private synchronized void start() {
+        if (started)
+            return;
+        started = true;
+        if (budget >= 0)
+            deadline = System.nanoTime() + budget;
+    }
+
+    /**
+     * A new context with no deadline that shares the cancellation flag and
+     * progress counter of this context.
+     *
+     * @return context without a deadline
+     */
+    @TestMethod("withoutDeadline")
+    public SearchContext withoutDeadline() {
+        return new SearchContext(-1, cancelled, progress);
+    }
+
+    /**
+     * Request that the search stops, the search stops at the next check and
+     * keeps the solutions found so far. Can be called from any thread.
+     */
+    @TestMethod("cancel")
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    /**
+     * Whether the search was cancelled.
+     *
+     * @return the search was cancelled
+     */
+    @TestMethod("cancel")
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Whether the search ran out of time.
+     *
+     * @return the deadline was reached
+     */
+    @TestMethod("timeout")
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * The number of checks made by the search, a measure of the progress of
+     * the search.
+     *
+     * @return number of checks
+     */
+    @TestMethod("progress")
+    public long getProgress() {
+        return progress.get();
+    }
+
+    /**
+     * Called periodically by the search, counts the progress and checks
+     * whether the search should stop.
+     *
+     * @return the search was cancelled or ran out of time
+     */
+    @TestMethod("timeout,cancel,progress")
+    public boolean isExpired() {
+        progress.incrementAndGet();
+        if (cancelled.get() || timedOut)
+            return true;
+        if (!started)
+            start();
+        if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0) {
+            timedOut = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Run a task with this context bound to the current thread. Contexts may
+     * be nested, the previous context is restored after the task. Worker
+     * threads of a search bind the context of the search in the same way.
+     * The clock starts on the first call, the search is finished when the
+     * last active call returns.
+     *
+     * @param task the task to run
+     * @throws IllegalStateException the context was already used for a search
+     */
+    @TestMethod("bind,singleUse,clockStartsOnRun")
+    public void run(Runnable task) {
+        enter();
+        SearchContext prev = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            task.run();
+        } finally {
+            if (prev == null)
+                CURRENT.remove();
+            else
+                CURRENT.set(prev);
+            exit();
+        }
+    }
+
+    private synchronized void enter() {
+        if (finished)
+            throw new IllegalStateException("a search context can only be used for one search");
+        start();
+        active++;
+    }
+
+    private synchronized void exit() {
+        if (--active == 0)
+            finished = true;
+    }
+
+    /**
+     * The context bound to the current thread.
+     *
+     * @return the context, null if none is bound
+     */
+    @TestMethod("bind")
+    public static SearchContext current() {
+        return CURRENT.get();
+    }
+}
@@ -33,7 +33,9 @@ import org.openscience.cdk.annotations.TestMethod;
 import org.openscience.cdk.smsd.interfaces.IFinalMapping;
 
 /**
- * Class that stores raw mapping(s) after each algorithm is executed.
+ * Class that stores raw mapping(s) after each algorithm is executed. Each
+ * thread has its own instance ({@link #getInstance()}) so that searches in
+ * different threads do not see each others mappings.
  * @cdk.module smsd
  * @cdk.githash
  * @author Syed Asad Rahman <asad@ebi.ac.uk>
@@ -41,23 +43,27 @@ import org.openscience.cdk.smsd.interfaces.IFinalMapping;
 @TestClass("org.openscience.cdk.smsd.helper.FinalMappingsTest")
 public class FinalMappings implements IFinalMapping {
 
-    private static List<Map<Integer, Integer>> mappings = null;
-    private static FinalMappings instance = null;
+    private final List<Map<Integer, Integer>> mappings;
+
+    /** The instance of each thread. */
+    private static final ThreadLocal<FinalMappings> INSTANCE = new ThreadLocal<FinalMappings>() {
+        @Override protected FinalMappings initialValue() {
+            return new FinalMappings();
+        }
+    };
 
     protected FinalMappings() {
         mappings = new ArrayList<Map<Integer, Integer>>();
     }
 
     /**
-     * Stores mapping solutions
-     * @return instance of this object
+     * Stores mapping solutions, the instance is confined to the current
+     * thread.
+     * @return instance of this object for the current thread
      */
     @TestMethod("testGetInstance")
-    synchronized public static FinalMappings getInstance() {
-        if (instance == null) {
-            instance = new FinalMappings();
-        }
-        return instance;
+    public static FinalMappings getInstance() {
+        return INSTANCE.get();
     }
 
     /**
@@ -95,7 +101,7 @@ public class FinalMappings implements IFinalMapping {
      */
     @TestMethod("testClear")
     synchronized public void clear() {
-        FinalMappings.mappings.clear();
+        mappings.clear();
     }
 
     /**
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.smsd.algorithm.mcsplus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @cdk.module test-smsd
+ */
+public class BitCliqueFinderTest {
+
+    @Test
+    public void empty() {
+        List<Integer> none = Collections.emptyList();
+        BitCliqueFinder finder = new BitCliqueFinder(new BitCompatibilityGraph(none, none, none));
+        assertTrue(finder.getMaxCliqueSet().isEmpty());
+    }
+
+    @Test
+    public void single() {
+        List<Integer> none = Collections.emptyList();
+        BitCliqueFinder finder = new BitCliqueFinder(new BitCompatibilityGraph(Arrays.asList(0, 0, 1), none, none));
+        assertThat(finder.getBestCliqueSize(), is(1));
+        assertThat(finder.getMaxCliqueSet().size(), is(1));
+        assertThat(finder.getMaxCliqueSet().peek(), is(Arrays.asList(1)));
+    }
+
+    @Test
+    public void triangle() {
+        BitCliqueFinder finder = new BitCliqueFinder(new BitCompatibilityGraph(nodes(4),
+                                                                               Arrays.asList(1, 2, 1, 3, 2, 3, 3, 4),
+                                                                               Collections.<Integer> emptyList()));
+        assertThat(finder.getBestCliqueSize(), is(3));
+        assertThat(finder.getMaxCliqueSet().size(), is(1));
+        assertThat(finder.getMaxCliqueSet().peek(), is(Arrays.asList(1, 2, 3)));
+    }
+
+    /**
+     * The d-edge (2-3) can only be part of a c-clique when both ends are
+     * connected by c-edges.
+     */
+    @Test
+    public void dEdges() {
+        BitCliqueFinder finder = new BitCliqueFinder(new BitCompatibilityGraph(nodes(4),
+                                                                               Arrays.asList(1, 2, 1, 3, 3, 4),
+                                                                               Arrays.asList(2, 3)));
+        assertThat(finder.getBestCliqueSize(), is(3));
+        assertThat(finder.getMaxCliqueSet().size(), is(1));
+        assertThat(finder.getMaxCliqueSet().peek(), is(Arrays.asList(1, 2, 3)));
+    }
+
+    /**
+     * The same cliques, in the same order, as the list based implementation.
+     */
+    @Test
+    public void sameAsBKKCKCF() {
+        Random rand = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            int n = 1 + rand.nextInt(30);
+            double cProb = rand.nextDouble() * 0.4, dProb = rand.nextDouble() * 0.5;
+            List<Integer> cEdges = new ArrayList<Integer>();
+            List<Integer> dEdges = new ArrayList<Integer>();
+            for (int u = 1; u <= n; u++) {
+                for (int v = u + 1; v <= n; v++) {
+                    double r = rand.nextDouble();
+                    if (r < cProb) {
+                        cEdges.add(u);
+                        cEdges.add(v);
+                    } else if (r < cProb + dProb) {
+                        dEdges.add(u);
+                        dEdges.add(v);
+                    }
+                }
+            }
+            BKKCKCF expected = new BKKCKCF(nodes(n), cEdges, dEdges);
+            BitCliqueFinder actual = new BitCliqueFinder(new BitCompatibilityGraph(nodes(n), cEdges, dEdges));
+            assertThat(actual.getBestCliqueSize(), is(expected.getBestCliqueSize()));
+            assertThat(actual.getMaxCliqueSet(), is(expected.getMaxCliqueSet()));
+        }
+    }
+
+    /** Compatibility graph nodes (atom pairs are not used) with ids 1..n. */
+    private static List<Integer> nodes(int n) {
+        List<Integer> nodes = new ArrayList<Integer>();
+        for (int i = 1; i <= n; i++) {
+            nodes.add(0);
+            nodes.add(0);
+            nodes.add(i);
+        }
+        return nodes;
+    }
+}
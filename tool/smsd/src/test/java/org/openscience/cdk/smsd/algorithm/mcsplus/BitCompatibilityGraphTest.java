@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.smsd.algorithm.mcsplus;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @cdk.module test-smsd
+ */
+public class BitCompatibilityGraphTest {
+
+    @Test
+    public void edges() {
+        BitCompatibilityGraph graph = new BitCompatibilityGraph(Arrays.asList(0, 0, 1, 0, 1, 2, 1, 0, 3),
+                                                                Arrays.asList(1, 2),
+                                                                Arrays.asList(2, 3));
+        assertThat(graph.size(), is(3));
+        assertThat(graph.id(0), is(1));
+        assertThat(graph.id(2), is(3));
+        assertTrue(graph.isCEdge(0, 1));
+        assertTrue(graph.isCEdge(1, 0));
+        assertFalse(graph.isDEdge(0, 1));
+        assertTrue(graph.isDEdge(1, 2));
+        assertTrue(graph.isDEdge(2, 1));
+        assertFalse(graph.isCEdge(1, 2));
+        assertFalse(graph.isCEdge(0, 2));
+        assertFalse(graph.isDEdge(0, 2));
+    }
+
+    @Test
+    public void empty() {
+        BitCompatibilityGraph graph = new BitCompatibilityGraph(Collections.<Integer> emptyList(),
+                                                                Collections.<Integer> emptyList(),
+                                                                Collections.<Integer> emptyList());
+        assertThat(graph.size(), is(0));
+    }
+}
@@ -41,7 +41,9 @@ import org.junit.runners.Suite;
     org.openscience.cdk.smsd.algorithm.mcsplus.MCSPlusTest.class,
     org.openscience.cdk.smsd.algorithm.mcsplus.ExactMappingTest.class,
     org.openscience.cdk.smsd.algorithm.mcsplus.GenerateCompatibilityGraphTest.class,
-    org.openscience.cdk.smsd.algorithm.mcsplus.BKKCKCFTest.class})
+    org.openscience.cdk.smsd.algorithm.mcsplus.BKKCKCFTest.class,
+    org.openscience.cdk.smsd.algorithm.mcsplus.BitCompatibilityGraphTest.class,
+    org.openscience.cdk.smsd.algorithm.mcsplus.BitCliqueFinderTest.class})
 public class McsplusSuite {
 
     @BeforeClass
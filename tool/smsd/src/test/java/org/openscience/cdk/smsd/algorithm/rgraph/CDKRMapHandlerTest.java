@@ -73,8 +73,9 @@ public class CDKRMapHandlerTest {
     public void testGetSource() {
         System.out.println("getSource");
         IAtomContainer expResult = DefaultChemObjectBuilder.getInstance().newInstance(IAtomContainer.class);
-        CDKRMapHandler.setSource(expResult);
-        IAtomContainer result = CDKRMapHandler.getSource();
+        CDKRMapHandler instance = new CDKRMapHandler();
+        instance.setSource(expResult);
+        IAtomContainer result = instance.getSource();
         Assert.assertEquals(expResult, result);
     }
 
@@ -85,8 +86,9 @@ public class CDKRMapHandlerTest {
     public void testSetSource() {
         System.out.println("setSource");
         IAtomContainer expResult = DefaultChemObjectBuilder.getInstance().newInstance(IAtomContainer.class);
-        CDKRMapHandler.setSource(expResult);
-        IAtomContainer result = CDKRMapHandler.getSource();
+        CDKRMapHandler instance = new CDKRMapHandler();
+        instance.setSource(expResult);
+        IAtomContainer result = instance.getSource();
         Assert.assertEquals(expResult, result);
     }
 
@@ -97,8 +99,9 @@ public class CDKRMapHandlerTest {
     public void testGetTarget() {
         System.out.println("getTarget");
         IAtomContainer expResult = DefaultChemObjectBuilder.getInstance().newInstance(IAtomContainer.class);
-        CDKRMapHandler.setTarget(expResult);
-        IAtomContainer result = CDKRMapHandler.getTarget();
+        CDKRMapHandler instance = new CDKRMapHandler();
+        instance.setTarget(expResult);
+        IAtomContainer result = instance.getTarget();
         Assert.assertEquals(expResult, result);
     }
 
@@ -109,8 +112,9 @@ public class CDKRMapHandlerTest {
     public void testSetTarget() {
         System.out.println("setTarget");
         IAtomContainer expResult = DefaultChemObjectBuilder.getInstance().newInstance(IAtomContainer.class);
-        CDKRMapHandler.setTarget(expResult);
-        IAtomContainer result = CDKRMapHandler.getTarget();
+        CDKRMapHandler instance = new CDKRMapHandler();
+        instance.setTarget(expResult);
+        IAtomContainer result = instance.getTarget();
         Assert.assertEquals(expResult, result);
     }
 
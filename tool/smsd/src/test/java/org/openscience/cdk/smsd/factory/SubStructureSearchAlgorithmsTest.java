@@ -33,9 +33,17 @@ import org.openscience.cdk.exception.InvalidSmilesException;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.smiles.SmilesParser;
 import org.openscience.cdk.smsd.Isomorphism;
+import org.openscience.cdk.smsd.global.SearchContext;
 import org.openscience.cdk.smsd.interfaces.Algorithm;
 import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 /**
  * Unit testing for the {@link SubStructureSearchAlgorithms} class.
  * @author     Syed Asad Rahman
@@ -395,4 +403,81 @@ public class SubStructureSearchAlgorithmsTest {
 
         assertEquals(score, smsd2.getEuclideanDistance(), 0.005);
     }
+
+    /**
+     * Test the search context of the class SubStructureSearchAlgorithms.
+     * @throws Exception
+     */
+    @Test
+    public void testSearchContext() throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        IAtomContainer target = sp.parseSmiles("C\\C=C/Nc1cccc(c1)N(O)\\C=C\\C\\C=C\\C=C/C");
+        IAtomContainer queryac = sp.parseSmiles("Nc1ccccc1");
+
+        Isomorphism smsd1 = new Isomorphism(Algorithm.DEFAULT, true);
+        Assert.assertNull(smsd1.getSearchContext());
+        smsd1.init(queryac, target, true, true);
+        SearchContext context = smsd1.getSearchContext();
+        Assert.assertNotNull(context);
+        Assert.assertFalse(smsd1.isTimeOut());
+        Assert.assertFalse(context.isCancelled());
+        assertEquals(7, smsd1.getFirstAtomMapping().size());
+
+        // a cancelled context is used (and not replaced) by the search
+        SearchContext cancelled = new SearchContext(-1);
+        cancelled.cancel();
+        Isomorphism smsd2 = new Isomorphism(Algorithm.DEFAULT, true);
+        smsd2.setSearchContext(cancelled);
+        smsd2.init(queryac, target, true, true);
+        Assert.assertSame(cancelled, smsd2.getSearchContext());
+        Assert.assertFalse(smsd2.isTimeOut());
+        Assert.assertTrue(smsd2.getSearchContext().isCancelled());
+
+        // the provided context is only used for one search
+        smsd2.init(queryac, target, true, true);
+        Assert.assertNotSame(cancelled, smsd2.getSearchContext());
+        Assert.assertFalse(smsd2.getSearchContext().isCancelled());
+        assertEquals(7, smsd2.getFirstAtomMapping().size());
+    }
+
+    /**
+     * Searches run concurrently (one Isomorphism per search) give the same
+     * mappings as the searches run sequentially.
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrentSearches() throws Exception {
+        final String[][] pairs = {{"c1ccccc1C", "c1ccccc1CCN"}, {"c1ccccc1CCO", "c1ccccc1CCCCN"},
+                {"c1ccccc1CCCN", "c1ccccc1O"}, {"c1ccccc1CO", "C1CCCC1CN"}, {"Nc1ccccc1", "C\\C=C/Nc1cccc(c1)N(O)\\C=C\\C\\C=C\\C=C/C"},
+                {"CCCCc1ccccc1", "OCCCCc1ccccc1"}, {"C1CCCCC1C", "CCCCCCc1ccccc1"}, {"OC(=O)c1ccccc1", "CCOC(=O)c1ccccc1N"}};
+        for (final Algorithm algorithm : new Algorithm[]{Algorithm.MCSPlus, Algorithm.VFLibMCS, Algorithm.CDKMCS,
+                Algorithm.DEFAULT, Algorithm.SubStructure}) {
+            List<String> expected = new ArrayList<String>();
+            for (String[] pair : pairs)
+                expected.add(search(algorithm, pair));
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<String>> results = new ArrayList<Future<String>>();
+                for (int i = 0; i < 25 * pairs.length; i++) {
+                    final String[] pair = pairs[i % pairs.length];
+                    results.add(executor.submit(new Callable<String>() {
+                        @Override public String call() throws Exception {
+                            return search(algorithm, pair);
+                        }
+                    }));
+                }
+                for (int i = 0; i < results.size(); i++)
+                    assertEquals(algorithm.toString(), expected.get(i % pairs.length), results.get(i).get());
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private static String search(Algorithm algorithm, String[] pair) throws Exception {
+        SmilesParser sp = new SmilesParser(DefaultChemObjectBuilder.getInstance());
+        Isomorphism smsd = new Isomorphism(algorithm, true);
+        smsd.init(sp.parseSmiles(pair[0]), sp.parseSmiles(pair[1]), true, true);
+        return smsd.getFirstMapping() + " " + smsd.getAllMapping();
+    }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2014  The Chemistry Development Kit (CDK) project
+ *
+ * Contact: cdk-devel@lists.sourceforge.net
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version. All we ask is that proper credit is given
+ * for our work, which includes - but is not limited to - adding the above
+ * copyright notice to the beginning of your source code files, and to any
+ * copyright notice that you may distribute with programs based on this work.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 U
+ */
+
+package org.openscience.cdk.smsd.global;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit testing for the {@link SearchContext} class.
+ *
+ * @cdk.module test-smsd
+ */
+public class SearchContextTest {
+
+    @Test
+    public void timeout() throws Exception {
+        SearchContext context = new SearchContext(0);
+        assertFalse(context.isTimedOut());
+        assertTrue(context.isExpired());
+        assertTrue(context.isTimedOut());
+        assertFalse(context.isCancelled());
+    }
+
+    @Test
+    public void noTimeout() throws Exception {
+        SearchContext context = new SearchContext(-1);
+        for (int i = 0; i < 100; i++)
+            assertFalse(context.isExpired());
+        assertFalse(context.isTimedOut());
+    }
+
+    @Test
+    public void cancel() throws Exception {
+        SearchContext context = new SearchContext(-1);
+        assertFalse(context.isCancelled());
+        assertFalse(context.isExpired());
+        context.cancel();
+        assertTrue(context.isCancelled());
+        assertTrue(context.isExpired());
+        assertFalse(context.isTimedOut());
+    }
+
+    @Test
+    public void progress() throws Exception {
+        SearchContext context = new SearchContext(-1);
+        assertThat(context.getProgress(), is(0L));
+        context.isExpired();
+        context.isExpired();
+        assertThat(context.getProgress(), is(2L));
+    }
+
+    @Test
+    public void withoutDeadline() throws Exception {
+        SearchContext context = new SearchContext(0);
+        SearchContext unlimited = context.withoutDeadline();
+        assertFalse(unlimited.isExpired());
+        assertTrue(context.isExpired());
+        assertFalse(unlimited.isTimedOut());
+        assertThat(context.getProgress(), is(2L));
+        context.cancel();
+        assertTrue(unlimited.isCancelled());
+        assertTrue(unlimited.isExpired());
+    }
+
+    @Test
+    public void bind() throws Exception {
+        final SearchContext outer = new SearchContext(-1);
+        final SearchContext inner = new SearchContext(-1);
+        final AtomicReference<SearchContext> nested = new AtomicReference<SearchContext>();
+        final AtomicReference<SearchContext> restored = new AtomicReference<SearchContext>();
+        assertThat(SearchContext.current(), is(nullValue()));
+        outer.run(new Runnable() {
+            @Override public void run() {
+                inner.run(new Runnable() {
+                    @Override public void run() {
+                        nested.set(SearchContext.current());
+                    }
+                });
+                restored.set(SearchContext.current());
+            }
+        });
+        assertThat(nested.get(), is(sameInstance(inner)));
+        assertThat(restored.get(), is(sameInstance(outer)));
+        assertThat(SearchContext.current(), is(nullValue()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void singleUse() throws Exception {
+        SearchContext context = new SearchContext(-1);
+        context.run(new Runnable() {
+            @Override public void run() {
+            }
+        });
+        context.run(new Runnable() {
+            @Override public void run() {
+            }
+        });
+    }
+
+    @Test
+    public void clockStartsOnRun() throws Exception {
+        final SearchContext context = new SearchContext(1 / 600.0); // 100 ms
+        Thread.sleep(200);
+        final AtomicReference<Boolean> expired = new AtomicReference<Boolean>();
+        context.run(new Runnable() {
+            @Override public void run() {
+                expired.set(context.isExpired());
+            }
+        });
+        assertFalse(expired.get());
+        assertFalse(context.isTimedOut());
+    }
+}
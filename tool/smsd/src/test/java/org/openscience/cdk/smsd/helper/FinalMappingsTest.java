@@ -72,6 +72,24 @@ public class FinalMappingsTest {
         assertNotNull(result);
     }
 
+    /**
+     * Each thread has its own instance.
+     */
+    @Test
+    public void testGetInstance_perThread() throws Exception {
+        final FinalMappings[] other = new FinalMappings[1];
+        Thread thread = new Thread(new Runnable() {
+            @Override public void run() {
+                other[0] = FinalMappings.getInstance();
+            }
+        });
+        thread.start();
+        thread.join();
+        assertSame(FinalMappings.getInstance(), FinalMappings.getInstance());
+        assertNotNull(other[0]);
+        assertNotSame(FinalMappings.getInstance(), other[0]);
+    }
+
     /**
      * Test of add method, of class FinalMappings.
      */